@@ -22,6 +22,7 @@ import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SWARUtil;
 import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
@@ -62,6 +63,7 @@ public final class ByteBufUtil {
     };
 
     private static final byte WRITE_UTF_UNKNOWN = (byte) '?';
+    private static final boolean NATIVE_ORDER_IS_BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
     private static final int MAX_CHAR_BUFFER_SIZE;
     private static final int THREAD_LOCAL_BUFFER_SIZE;
     private static final int MAX_BYTES_PER_CHAR_UTF8 =
@@ -206,20 +208,124 @@ public final class ByteBufUtil {
 
     /**
      * Returns the reader index of needle in haystack, or -1 if needle is not in haystack.
+     * <p>
+     * Needles of one or two bytes are searched eight bytes at a time, longer needles with the
+     * <a href="https://en.wikipedia.org/wiki/Two-way_string-matching_algorithm">Two-Way algorithm</a>, which runs in
+     * linear time and constant space without any preprocessing tables.
      */
     public static int indexOf(ByteBuf needle, ByteBuf haystack) {
-        // TODO: maybe use Boyer Moore for efficiency.
-        int attempts = haystack.readableBytes() - needle.readableBytes() + 1;
-        for (int i = 0; i < attempts; i++) {
-            if (equals(needle, needle.readerIndex(),
-                       haystack, haystack.readerIndex() + i,
-                       needle.readableBytes())) {
-                return haystack.readerIndex() + i;
+        final int m = needle.readableBytes();
+        final int n = haystack.readableBytes();
+        if (m > n) {
+            return -1;
+        }
+        final int needleStart = needle.readerIndex();
+        final int haystackStart = haystack.readerIndex();
+        if (m == 0) {
+            return haystackStart;
+        }
+        if (m == 1) {
+            return haystack.indexOf(haystackStart, haystack.writerIndex(), needle.getByte(needleStart));
+        }
+        if (m == 2) {
+            return indexOf(haystack, haystackStart, haystack.writerIndex(),
+                           needle.getByte(needleStart), needle.getByte(needleStart + 1));
+        }
+
+        // Critical factorization of the needle into needle[0..ell] and needle[ell + 1..m), using the larger of the
+        // maximal suffixes for both orderings of the alphabet.
+        final long suffix = maxSuffix(needle, needleStart, m, false);
+        final long reversedSuffix = maxSuffix(needle, needleStart, m, true);
+        final int ell;
+        int period;
+        if ((int) (suffix >> 32) >= (int) (reversedSuffix >> 32)) {
+            ell = (int) (suffix >> 32);
+            period = (int) suffix;
+        } else {
+            ell = (int) (reversedSuffix >> 32);
+            period = (int) reversedSuffix;
+        }
+
+        int j = 0;
+        if (ell + 1 + period <= m && equals(needle, needleStart, needle, needleStart + period, ell + 1)) {
+            // The needle is periodic, remember how much of the needle matched after a shift by the period.
+            int memory = -1;
+            while (j <= n - m) {
+                int i = Math.max(ell, memory) + 1;
+                while (i < m && needle.getByte(needleStart + i) == haystack.getByte(haystackStart + i + j)) {
+                    i++;
+                }
+                if (i >= m) {
+                    i = ell;
+                    while (i > memory && needle.getByte(needleStart + i) == haystack.getByte(haystackStart + i + j)) {
+                        i--;
+                    }
+                    if (i <= memory) {
+                        return haystackStart + j;
+                    }
+                    j += period;
+                    memory = m - period - 1;
+                } else {
+                    j += i - ell;
+                    memory = -1;
+                }
+            }
+        } else {
+            period = Math.max(ell + 1, m - ell - 1) + 1;
+            while (j <= n - m) {
+                int i = ell + 1;
+                while (i < m && needle.getByte(needleStart + i) == haystack.getByte(haystackStart + i + j)) {
+                    i++;
+                }
+                if (i >= m) {
+                    i = ell;
+                    while (i >= 0 && needle.getByte(needleStart + i) == haystack.getByte(haystackStart + i + j)) {
+                        i--;
+                    }
+                    if (i < 0) {
+                        return haystackStart + j;
+                    }
+                    j += period;
+                } else {
+                    j += i - ell;
+                }
             }
         }
         return -1;
     }
 
+    /**
+     * Computes the maximal suffix of {@code needle[start..start + m)} and returns its start index relative to
+     * {@code start} minus one in the upper and its period in the lower 32 bits.
+     */
+    private static long maxSuffix(ByteBuf needle, int start, int m, boolean reversed) {
+        int ms = -1;
+        int j = 0;
+        int k = 1;
+        int p = 1;
+        while (j + k < m) {
+            int a = needle.getByte(start + j + k) & 0xFF;
+            int b = needle.getByte(start + ms + k) & 0xFF;
+            if (reversed ? a > b : a < b) {
+                j += k;
+                k = 1;
+                p = j - ms;
+            } else if (a == b) {
+                if (k != p) {
+                    k++;
+                } else {
+                    j += p;
+                    k = 1;
+                }
+            } else {
+                ms = j;
+                j = ms + 1;
+                k = p = 1;
+            }
+        }
+        return ((long) ms << 32) | p;
+    }
+
     /**
      * Returns {@code true} if and only if the two specified buffers are
      * identical to each other for {@code length} bytes starting at {@code aStartIndex}
@@ -458,8 +564,68 @@ public final class ByteBufUtil {
         if (fromIndex >= toIndex || buffer.capacity() == 0) {
             return -1;
         }
+        if (!(buffer instanceof AbstractByteBuf) || !PlatformDependent.isUnaligned()) {
+            return buffer.forEachByte(fromIndex, toIndex - fromIndex, new ByteProcessor.IndexOfProcessor(value));
+        }
+
+        AbstractByteBuf buf = (AbstractByteBuf) buffer;
+        buf.checkIndex(fromIndex, toIndex - fromIndex);
+        final long pattern = SWARUtil.compilePattern(value);
+        int offset = fromIndex;
+        for (; offset <= toIndex - Long.BYTES; offset += Long.BYTES) {
+            long result = SWARUtil.applyPattern(getLongNativeOrder(buf, offset), pattern);
+            if (result != 0) {
+                return offset + SWARUtil.getIndex(result, NATIVE_ORDER_IS_BIG_ENDIAN);
+            }
+        }
+        for (; offset < toIndex; offset++) {
+            if (buf._getByte(offset) == value) {
+                return offset;
+            }
+        }
+        return -1;
+    }
 
-        return buffer.forEachByte(fromIndex, toIndex - fromIndex, new ByteProcessor.IndexOfProcessor(value));
+    /**
+     * Returns the index of the first occurrence of {@code first} immediately followed by {@code second} in the
+     * given {@link ByteBuf}, searching from {@code fromIndex} (inclusive) to {@code toIndex} (exclusive), or
+     * {@code -1} if there is none. This is useful to find delimiters like {@code CRLF}.
+     */
+    public static int indexOf(ByteBuf buffer, int fromIndex, int toIndex, byte first, byte second) {
+        fromIndex = Math.max(fromIndex, 0);
+        if (toIndex - fromIndex < 2 || buffer.capacity() == 0) {
+            return -1;
+        }
+        int offset = fromIndex;
+        if (buffer instanceof AbstractByteBuf && PlatformDependent.isUnaligned()) {
+            AbstractByteBuf buf = (AbstractByteBuf) buffer;
+            buf.checkIndex(fromIndex, toIndex - fromIndex);
+            final long firstPattern = SWARUtil.compilePattern(first);
+            final long secondPattern = SWARUtil.compilePattern(second);
+            // Advance by seven bytes only, so a pair is never split across two words.
+            for (; offset <= toIndex - Long.BYTES; offset += Long.BYTES - 1) {
+                long word = getLongNativeOrder(buf, offset);
+                long result = SWARUtil.combineAdjacent(SWARUtil.applyPattern(word, firstPattern),
+                                                       SWARUtil.applyPattern(word, secondPattern),
+                                                       NATIVE_ORDER_IS_BIG_ENDIAN);
+                if (result != 0) {
+                    return offset + SWARUtil.getIndex(result, NATIVE_ORDER_IS_BIG_ENDIAN);
+                }
+            }
+        }
+        for (; offset < toIndex - 1; offset++) {
+            if (buffer.getByte(offset) == first && buffer.getByte(offset + 1) == second) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads eight bytes in the byte order of the platform, which spares swapping them.
+     */
+    private static long getLongNativeOrder(AbstractByteBuf buf, int index) {
+        return NATIVE_ORDER_IS_BIG_ENDIAN ? buf._getLong(index) : buf._getLongLE(index);
     }
 
     private static int lastIndexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value) {
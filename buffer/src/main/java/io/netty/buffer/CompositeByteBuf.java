@@ -15,6 +15,8 @@
  */
 package io.netty.buffer;
 
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 import static java.util.Objects.requireNonNull;
 
 import io.netty.util.ByteProcessor;
@@ -55,8 +57,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     private final boolean direct;
     private final int maxNumComponents;
 
+    private int consolidationThreshold;
+
     private int componentCount;
     private Component[] components; // resized when needed
+    // the last component if it was created by merging small components, more small ones may be appended to it
+    private Component mergedTail;
 
     private boolean freed;
 
@@ -275,6 +281,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         try {
             checkComponentIndex(cIndex);
 
+            if (cIndex == componentCount && mergeIntoTail(buffer)) {
+                // The bytes were copied, so release the buffer in the finally block.
+                if (increaseWriterIndex) {
+                    writerIndex(writerIndex() + buffer.readableBytes());
+                }
+                return cIndex - 1;
+            }
+
             // No need to consolidate - just add a component to the list.
             Component c = newComponent(buffer, 0);
             int readableBytes = c.length();
@@ -297,6 +311,48 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         }
     }
 
+    /**
+     * Copy {@code buffer} into the last component if both are smaller than the {@link #consolidationThreshold()}.
+     * Returns {@code false} if the buffer needs to be added as a component of its own.
+     */
+    private boolean mergeIntoTail(ByteBuf buffer) {
+        final int threshold = consolidationThreshold;
+        final int size = componentCount;
+        if (threshold == 0 || size == 0) {
+            return false;
+        }
+        final int readableBytes = buffer.readableBytes();
+        final Component last = components[size - 1];
+        final int lastLength = last.length();
+        if (readableBytes == 0 || lastLength + readableBytes > threshold) {
+            return false;
+        }
+        if (last == mergedTail && last.buf.writerIndex() == last.idx(last.endOffset)
+                && last.buf.writableBytes() >= readableBytes) {
+            last.buf.writeBytes(buffer, buffer.readerIndex(), readableBytes);
+            last.endOffset += readableBytes;
+            // the cached slice does not cover the new bytes
+            last.slice = null;
+            return true;
+        }
+        ByteBuf merged = allocBuffer(threshold);
+        try {
+            merged.writeBytes(last.buf, last.idx(last.offset), lastLength)
+                  .writeBytes(buffer, buffer.readerIndex(), readableBytes);
+        } catch (Throwable cause) {
+            merged.release();
+            throw cause;
+        }
+        Component c = new Component(merged, 0, last.offset, lastLength + readableBytes, null);
+        components[size - 1] = c;
+        mergedTail = c;
+        if (lastAccessed == last) {
+            lastAccessed = null;
+        }
+        last.free();
+        return true;
+    }
+
     @SuppressWarnings("deprecation")
     private Component newComponent(ByteBuf buf, int offset) {
         if (checkAccessible && !buf.isAccessible()) {
@@ -341,6 +397,24 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     private CompositeByteBuf addComponents0(boolean increaseWriterIndex,
             final int cIndex, ByteBuf[] buffers, int arrOffset) {
         final int len = buffers.length, count = len - arrOffset;
+        if (consolidationThreshold != 0 && cIndex == componentCount) {
+            // Appended buffers may be merged, so add them one by one.
+            try {
+                for (; arrOffset < len; arrOffset++) {
+                    ByteBuf b = buffers[arrOffset];
+                    if (b == null) {
+                        break;
+                    }
+                    addComponent0(increaseWriterIndex, componentCount, b);
+                }
+            } finally {
+                // release the buffers following the one which could not be added
+                for (arrOffset++; arrOffset < len; arrOffset++) {
+                    ReferenceCountUtil.safeRelease(buffers[arrOffset]);
+                }
+            }
+            return this;
+        }
         // only set ci after we've shifted so that finally block logic is always correct
         int ci = Integer.MAX_VALUE;
         try {
@@ -798,6 +872,29 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         return maxNumComponents;
     }
 
+    /**
+     * Return the size in bytes below which components which are appended are merged, or {@code 0} if they are never
+     * merged.
+     *
+     * @see #consolidationThreshold(int)
+     */
+    public int consolidationThreshold() {
+        return consolidationThreshold;
+    }
+
+    /**
+     * Set the size in bytes below which components which are appended are merged. When a {@link ByteBuf} is added
+     * after the last component and both together are not larger than {@code consolidationThreshold}, the bytes of
+     * both are copied into a single buffer of {@code consolidationThreshold} bytes, which subsequent small components
+     * are copied into as well until it is full. This keeps the number of components, and so the cost of looking up
+     * an offset and of gathering writes, low when many small buffers are aggregated. The default is {@code 0}, which
+     * never merges components.
+     */
+    public CompositeByteBuf consolidationThreshold(int consolidationThreshold) {
+        this.consolidationThreshold = checkPositiveOrZero(consolidationThreshold, "consolidationThreshold");
+        return this;
+    }
+
     /**
      * Return the index for the given offset
      */
@@ -815,7 +912,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
                 }
             }
         }
-        for (int low = 0, high = size; low <= high;) {
+        for (int low = 0, high = size - 1; low <= high;) {
             int mid = low + high >>> 1;
             Component c = components[mid];
             if (offset >= c.endOffset) {
@@ -1475,6 +1572,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     // weak cache - check it first when looking for component
     private Component lastAccessed;
+    // index of lastAccessed when it was looked up, may be stale after components were added or removed
+    private int lastAccessedIndex;
 
     private Component findComponent(int offset) {
         Component la = lastAccessed;
@@ -1495,7 +1594,17 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     }
 
     private Component findIt(int offset) {
-        for (int low = 0, high = componentCount; low <= high;) {
+        // Sequential access moves on to the next component, so check it before falling back to a binary search.
+        int next = lastAccessedIndex + 1;
+        if (next < componentCount) {
+            Component c = components[next];
+            if (offset >= c.offset && offset < c.endOffset) {
+                lastAccessed = c;
+                lastAccessedIndex = next;
+                return c;
+            }
+        }
+        for (int low = 0, high = componentCount - 1; low <= high;) {
             int mid = low + high >>> 1;
             Component c = components[mid];
             if (offset >= c.endOffset) {
@@ -1504,6 +1613,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
                 high = mid - 1;
             } else {
                 lastAccessed = c;
+                lastAccessedIndex = mid;
                 return c;
             }
         }
@@ -1573,15 +1683,30 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public ByteBuffer[] nioBuffers(int index, int length) {
+        return nioBuffers(index, length, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Exposes at most {@code maxCount} NIO buffers which share the content of the components, starting at
+     * {@code index}. Unlike {@link #nioBuffers(int, int)} the returned buffers may cover less than {@code length}
+     * bytes, which allows a gathering write to only look at the components it is able to write at once instead of
+     * at all components of this buffer. No bytes are copied.
+     *
+     * @param index the index of the first byte to expose.
+     * @param length the maximum number of bytes to expose.
+     * @param maxCount the maximum number of {@link ByteBuffer}s to return.
+     */
+    public ByteBuffer[] nioBuffers(int index, int length, int maxCount) {
         checkIndex(index, length);
+        checkPositive(maxCount, "maxCount");
         if (length == 0) {
             return new ByteBuffer[] { EMPTY_NIO_BUFFER };
         }
 
-        RecyclableArrayList buffers = RecyclableArrayList.newInstance(componentCount);
+        RecyclableArrayList buffers = RecyclableArrayList.newInstance(Math.min(componentCount, maxCount));
         try {
             int i = toComponentIndex0(index);
-            while (length > 0) {
+            while (length > 0 && buffers.size() < maxCount) {
                 Component c = components[i];
                 ByteBuf s = c.buf;
                 int localLength = Math.min(length, c.endOffset - index);
@@ -1592,7 +1717,13 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
                     buffers.add(s.nioBuffer(c.idx(index), localLength));
                     break;
                 default:
-                    Collections.addAll(buffers, s.nioBuffers(c.idx(index), localLength));
+                    ByteBuffer[] nioBuffers = s.nioBuffers(c.idx(index), localLength);
+                    int remaining = maxCount - buffers.size();
+                    if (nioBuffers.length > remaining) {
+                        buffers.addAll(Arrays.asList(nioBuffers).subList(0, remaining));
+                    } else {
+                        Collections.addAll(buffers, nioBuffers);
+                    }
                 }
 
                 index += localLength;
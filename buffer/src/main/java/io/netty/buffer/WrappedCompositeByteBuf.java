@@ -631,6 +631,17 @@ class WrappedCompositeByteBuf extends CompositeByteBuf {
         return wrapped.maxNumComponents();
     }
 
+    @Override
+    public final int consolidationThreshold() {
+        return wrapped.consolidationThreshold();
+    }
+
+    @Override
+    public CompositeByteBuf consolidationThreshold(int consolidationThreshold) {
+        wrapped.consolidationThreshold(consolidationThreshold);
+        return this;
+    }
+
     @Override
     public final int toComponentIndex(int offset) {
         return wrapped.toComponentIndex(offset);
@@ -868,6 +879,11 @@ class WrappedCompositeByteBuf extends CompositeByteBuf {
         return wrapped.nioBuffers(index, length);
     }
 
+    @Override
+    public ByteBuffer[] nioBuffers(int index, int length, int maxCount) {
+        return wrapped.nioBuffers(index, length, maxCount);
+    }
+
     @Override
     public CompositeByteBuf consolidate() {
         wrapped.consolidate();
@@ -278,6 +278,97 @@ public abstract class AbstractCompositeByteBufTest extends AbstractByteBufTest {
         buf.release();
     }
 
+    @Test
+    public void testConsolidationThreshold() {
+        CompositeByteBuf buf = compositeBuffer(Integer.MAX_VALUE).consolidationThreshold(8);
+        assertEquals(8, buf.consolidationThreshold());
+
+        ByteBuf first = wrappedBuffer(new byte[] { 1, 2 });
+        ByteBuf second = wrappedBuffer(new byte[] { 3, 4, 5 });
+        buf.addComponent(true, first);
+        buf.addComponent(true, second);
+        assertEquals(1, buf.numComponents());
+        assertEquals(0, first.refCnt());
+        assertEquals(0, second.refCnt());
+
+        // Merged into the tail without copying it again.
+        buf.addComponents(true, wrappedBuffer(new byte[] { 6 }), wrappedBuffer(new byte[] { 7, 8 }));
+        assertEquals(1, buf.numComponents());
+        assertEquals(wrappedBuffer(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }), buf.component(0));
+
+        // The tail is full.
+        buf.addComponent(true, wrappedBuffer(new byte[] { 9 }));
+        // Too large to be merged.
+        buf.addComponent(true, wrappedBuffer(new byte[] { 10, 11, 12, 13, 14, 15, 16, 17, 18 }));
+        // Small components which are not appended are never merged.
+        buf.addComponent(true, 0, wrappedBuffer(new byte[] { 0 }));
+        assertEquals(4, buf.numComponents());
+
+        assertEquals(19, buf.readableBytes());
+        for (int i = 0; i < buf.readableBytes(); i++) {
+            assertEquals(i, buf.getByte(i));
+        }
+        buf.release();
+    }
+
+    @Test
+    public void testConsolidationThresholdAfterCapacityDecrease() {
+        CompositeByteBuf buf = compositeBuffer(Integer.MAX_VALUE).consolidationThreshold(8);
+        buf.addComponents(true, wrappedBuffer(new byte[] { 1, 2 }), wrappedBuffer(new byte[] { 3, 4 }));
+        assertEquals(1, buf.numComponents());
+
+        buf.capacity(3);
+        buf.addComponent(true, wrappedBuffer(new byte[] { 5 }));
+        assertEquals(1, buf.numComponents());
+        assertEquals(wrappedBuffer(new byte[] { 1, 2, 3, 5 }), buf.component(0));
+        buf.release();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeConsolidationThreshold() {
+        CompositeByteBuf buf = compositeBuffer();
+        try {
+            buf.consolidationThreshold(-1);
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testNioBuffersMaxCount() {
+        CompositeByteBuf buf = compositeBuffer(Integer.MAX_VALUE);
+        buf.addComponents(true, wrappedBuffer(new byte[] { 1, 2 }),
+                wrappedBuffer(wrappedBuffer(new byte[] { 3 }), wrappedBuffer(new byte[] { 4, 5 })),
+                wrappedBuffer(new byte[] { 6 }));
+
+        ByteBuffer[] nioBuffers = buf.nioBuffers(1, 5, 2);
+        assertEquals(2, nioBuffers.length);
+        assertEquals(1, nioBuffers[0].remaining());
+        assertEquals(2, nioBuffers[0].get());
+        assertEquals(1, nioBuffers[1].remaining());
+        assertEquals(3, nioBuffers[1].get());
+
+        assertEquals(4, buf.nioBuffers(0, 6, 10).length);
+        assertEquals(4, buf.nioBuffers(0, 6).length);
+        buf.release();
+    }
+
+    @Test
+    public void testSequentialAccessAcrossManyComponents() {
+        CompositeByteBuf buf = compositeBuffer(Integer.MAX_VALUE);
+        for (int i = 0; i < 256; i++) {
+            buf.addComponent(true, wrappedBuffer(new byte[] { (byte) i }));
+            buf.addComponent(true, EMPTY_BUFFER);
+        }
+        for (int i = 0; i < 256; i++) {
+            assertEquals((byte) i, buf.getByte(i));
+        }
+        for (int i = 255; i >= 0; i--) {
+            assertEquals((byte) i, buf.getByte(i));
+        }
+        buf.release();
+    }
+
     @Test
     public void testCompositeWrappedBuffer() {
         ByteBuf header = buffer(12).order(order);
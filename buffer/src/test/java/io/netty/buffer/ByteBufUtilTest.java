@@ -707,4 +707,103 @@ public class ByteBufUtilTest {
             buffer.release();
         }
     }
+
+    @Test
+    public void testIndexOfNeedleMatchesNaiveSearch() {
+        Random random = new Random(42);
+        for (int run = 0; run < 20000; run++) {
+            // Small alphabets produce periodic needles and many partial matches.
+            int alphabet = 1 + random.nextInt(3);
+            byte[] haystack = randomBytes(random, random.nextInt(64), alphabet);
+            byte[] needle = randomBytes(random, 1 + random.nextInt(8), alphabet);
+            int expected = naiveIndexOf(needle, haystack);
+            ByteBuf haystackBuf = Unpooled.buffer(haystack.length + 3).writeZero(3).writeBytes(haystack);
+            haystackBuf.skipBytes(3);
+            ByteBuf needleBuf = Unpooled.wrappedBuffer(needle);
+            assertEquals(Arrays.toString(needle) + " in " + Arrays.toString(haystack),
+                         expected == -1 ? -1 : expected + 3, ByteBufUtil.indexOf(needleBuf, haystackBuf));
+        }
+    }
+
+    @Test
+    public void testIndexOfEmptyAndTooLongNeedle() {
+        ByteBuf haystack = Unpooled.copiedBuffer("abc", CharsetUtil.US_ASCII).skipBytes(1);
+        assertEquals(1, ByteBufUtil.indexOf(Unpooled.EMPTY_BUFFER, haystack));
+        assertEquals(-1, ByteBufUtil.indexOf(Unpooled.copiedBuffer("abc", CharsetUtil.US_ASCII), haystack));
+        assertEquals(1, ByteBufUtil.indexOf(Unpooled.copiedBuffer("bc", CharsetUtil.US_ASCII), haystack));
+    }
+
+    @Test
+    public void testFirstIndexOfByteAtEveryPosition() {
+        testFirstIndexOfByteAtEveryPosition(Unpooled.buffer(64));
+        testFirstIndexOfByteAtEveryPosition(Unpooled.directBuffer(64));
+        testFirstIndexOfByteAtEveryPosition(Unpooled.compositeBuffer()
+                .addComponents(true, Unpooled.buffer(20).writeZero(20), Unpooled.directBuffer(44).writeZero(44)));
+    }
+
+    private static void testFirstIndexOfByteAtEveryPosition(ByteBuf buffer) {
+        try {
+            buffer.setIndex(0, 0).writeZero(64);
+            for (int i = 0; i < 64; i++) {
+                buffer.setByte(i, '\n');
+                for (int from = 0; from <= i; from++) {
+                    assertEquals(i, buffer.indexOf(from, 64, (byte) '\n'));
+                    assertEquals(-1, buffer.indexOf(from, i, (byte) '\n'));
+                }
+                assertEquals(-1, buffer.indexOf(i + 1, 64, (byte) '\n'));
+                buffer.setByte(i, 0);
+            }
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void testIndexOfBytePairAtEveryPosition() {
+        testIndexOfBytePairAtEveryPosition(Unpooled.buffer(64));
+        testIndexOfBytePairAtEveryPosition(Unpooled.directBuffer(64));
+        testIndexOfBytePairAtEveryPosition(unreleasableBuffer(Unpooled.buffer(64)));
+    }
+
+    private static void testIndexOfBytePairAtEveryPosition(ByteBuf buffer) {
+        try {
+            buffer.setIndex(0, 0).writeZero(64);
+            for (int i = 0; i < 63; i++) {
+                // A lone first byte in front of the pair must not match.
+                if (i > 0) {
+                    buffer.setByte(i - 1, '\r');
+                }
+                buffer.setByte(i, '\r');
+                buffer.setByte(i + 1, '\n');
+                for (int from = 0; from <= i; from++) {
+                    assertEquals(i, ByteBufUtil.indexOf(buffer, from, 64, (byte) '\r', (byte) '\n'));
+                    assertEquals(-1, ByteBufUtil.indexOf(buffer, from, i + 1, (byte) '\r', (byte) '\n'));
+                }
+                assertEquals(-1, ByteBufUtil.indexOf(buffer, i + 1, 64, (byte) '\r', (byte) '\n'));
+                buffer.setZero(0, 64);
+            }
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private static byte[] randomBytes(Random random, int length, int alphabet) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) ('a' + random.nextInt(alphabet));
+        }
+        return bytes;
+    }
+
+    private static int naiveIndexOf(byte[] needle, byte[] haystack) {
+        outer: for (int i = 0; i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
 }
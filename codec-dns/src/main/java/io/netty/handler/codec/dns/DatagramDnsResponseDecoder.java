@@ -15,11 +15,9 @@
  */
 package io.netty.handler.codec.dns;
 
-import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.socket.DatagramPacket;
-import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.handler.codec.MessageToMessageDecoder;
 import io.netty.util.internal.UnstableApi;
 
@@ -52,68 +50,9 @@ public class DatagramDnsResponseDecoder extends MessageToMessageDecoder<Datagram
 
     @Override
     protected void decode(ChannelHandlerContext ctx, DatagramPacket packet, List<Object> out) throws Exception {
-        final ByteBuf buf = packet.content();
-
-        final DnsResponse response = newResponse(packet, buf);
-        boolean success = false;
-        try {
-            final int questionCount = buf.readUnsignedShort();
-            final int answerCount = buf.readUnsignedShort();
-            final int authorityRecordCount = buf.readUnsignedShort();
-            final int additionalRecordCount = buf.readUnsignedShort();
-
-            decodeQuestions(response, buf, questionCount);
-            decodeRecords(response, DnsSection.ANSWER, buf, answerCount);
-            decodeRecords(response, DnsSection.AUTHORITY, buf, authorityRecordCount);
-            decodeRecords(response, DnsSection.ADDITIONAL, buf, additionalRecordCount);
-
-            out.add(response);
-            success = true;
-        } finally {
-            if (!success) {
-                response.release();
-            }
-        }
-    }
-
-    private static DnsResponse newResponse(DatagramPacket packet, ByteBuf buf) {
-        final int id = buf.readUnsignedShort();
-
-        final int flags = buf.readUnsignedShort();
-        if (flags >> 15 == 0) {
-            throw new CorruptedFrameException("not a response");
-        }
-
-        final DnsResponse response = new DatagramDnsResponse(
-            packet.sender(),
-            packet.recipient(),
-            id,
-            DnsOpCode.valueOf((byte) (flags >> 11 & 0xf)), DnsResponseCode.valueOf((byte) (flags & 0xf)));
-
-        response.setRecursionDesired((flags >> 8 & 1) == 1);
-        response.setAuthoritativeAnswer((flags >> 10 & 1) == 1);
-        response.setTruncated((flags >> 9 & 1) == 1);
-        response.setRecursionAvailable((flags >> 7 & 1) == 1);
-        response.setZ(flags >> 4 & 0x7);
-        return response;
-    }
-
-    private void decodeQuestions(DnsResponse response, ByteBuf buf, int questionCount) throws Exception {
-        for (int i = questionCount; i > 0; i --) {
-            response.addRecord(DnsSection.QUESTION, recordDecoder.decodeQuestion(buf));
-        }
-    }
-
-    private void decodeRecords(
-            DnsResponse response, DnsSection section, ByteBuf buf, int count) throws Exception {
-        for (int i = count; i > 0; i --) {
-            final DnsRecord r = recordDecoder.decodeRecord(buf);
-            if (r == null) {
-                // Truncated response
-                break;
-            }
-
-            response.addRecord(section, r);
-        }
+        DnsResponse response = DnsMessageUtil.decodeDnsResponse(recordDecoder, packet.content(),
+                (id, opCode, responseCode) ->
+                        new DatagramDnsResponse(packet.sender(), packet.recipient(), id, opCode, responseCode));
+        out.add(response);
     }
 }
@@ -15,7 +15,9 @@
  */
 package io.netty.handler.codec.dns;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.AddressedEnvelope;
+import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.util.internal.StringUtil;
 
 import java.net.SocketAddress;
@@ -177,5 +179,163 @@ final class DnsMessageUtil {
         }
     }
 
+    static DnsQuery decodeDnsQuery(DnsRecordDecoder decoder, ByteBuf buf, DnsQueryFactory supplier) throws Exception {
+        DnsQuery query = newQuery(buf, supplier);
+        boolean success = false;
+        try {
+            decodeRecords(decoder, query, buf);
+            success = true;
+            return query;
+        } finally {
+            if (!success) {
+                query.release();
+            }
+        }
+    }
+
+    static DnsResponse decodeDnsResponse(DnsRecordDecoder decoder, ByteBuf buf, DnsResponseFactory supplier)
+            throws Exception {
+        DnsResponse response = newResponse(buf, supplier);
+        boolean success = false;
+        try {
+            decodeRecords(decoder, response, buf);
+            success = true;
+            return response;
+        } finally {
+            if (!success) {
+                response.release();
+            }
+        }
+    }
+
+    private static DnsQuery newQuery(ByteBuf buf, DnsQueryFactory supplier) {
+        int id = buf.readUnsignedShort();
+        int flags = buf.readUnsignedShort();
+        if (flags >> 15 == 1) {
+            throw new CorruptedFrameException("not a query");
+        }
+
+        DnsQuery query = supplier.newQuery(id, DnsOpCode.valueOf((byte) (flags >> 11 & 0xf)));
+        query.setRecursionDesired((flags >> 8 & 1) == 1);
+        query.setZ(flags >> 4 & 0x7);
+        return query;
+    }
+
+    private static DnsResponse newResponse(ByteBuf buf, DnsResponseFactory supplier) {
+        int id = buf.readUnsignedShort();
+        int flags = buf.readUnsignedShort();
+        if (flags >> 15 == 0) {
+            throw new CorruptedFrameException("not a response");
+        }
+
+        DnsResponse response = supplier.newResponse(
+                id, DnsOpCode.valueOf((byte) (flags >> 11 & 0xf)), DnsResponseCode.valueOf((byte) (flags & 0xf)));
+        response.setRecursionDesired((flags >> 8 & 1) == 1);
+        response.setAuthoritativeAnswer((flags >> 10 & 1) == 1);
+        response.setTruncated((flags >> 9 & 1) == 1);
+        response.setRecursionAvailable((flags >> 7 & 1) == 1);
+        response.setZ(flags >> 4 & 0x7);
+        return response;
+    }
+
+    private static void decodeRecords(DnsRecordDecoder decoder, DnsMessage message, ByteBuf buf)
+            throws Exception {
+        int questionCount = buf.readUnsignedShort();
+        int answerCount = buf.readUnsignedShort();
+        int authorityRecordCount = buf.readUnsignedShort();
+        int additionalRecordCount = buf.readUnsignedShort();
+
+        for (int i = questionCount; i > 0; i--) {
+            message.addRecord(DnsSection.QUESTION, decoder.decodeQuestion(buf));
+        }
+        decodeRecords(decoder, message, DnsSection.ANSWER, buf, answerCount);
+        decodeRecords(decoder, message, DnsSection.AUTHORITY, buf, authorityRecordCount);
+        decodeRecords(decoder, message, DnsSection.ADDITIONAL, buf, additionalRecordCount);
+    }
+
+    private static void decodeRecords(
+            DnsRecordDecoder decoder, DnsMessage message, DnsSection section, ByteBuf buf, int count)
+            throws Exception {
+        for (int i = count; i > 0; i--) {
+            DnsRecord r = decoder.decodeRecord(buf);
+            if (r == null) {
+                // Truncated response
+                break;
+            }
+            message.addRecord(section, r);
+        }
+    }
+
+    static void encodeDnsQuery(DnsRecordEncoder encoder, DnsQuery query, ByteBuf buf) throws Exception {
+        buf.writeShort(query.id());
+        int flags = 0;
+        flags |= (query.opCode().byteValue() & 0xFF) << 11;
+        if (query.isRecursionDesired()) {
+            flags |= 1 << 8;
+        }
+        buf.writeShort(flags);
+        buf.writeShort(query.count(DnsSection.QUESTION));
+        buf.writeShort(0); // answerCount
+        buf.writeShort(0); // authorityResourceCount
+        buf.writeShort(query.count(DnsSection.ADDITIONAL));
+
+        encodeQuestions(encoder, query, buf);
+        encodeRecords(encoder, query, DnsSection.ADDITIONAL, buf);
+    }
+
+    static void encodeDnsResponse(DnsRecordEncoder encoder, DnsResponse response, ByteBuf buf) throws Exception {
+        buf.writeShort(response.id());
+        int flags = 32768;
+        flags |= (response.opCode().byteValue() & 0xFF) << 11;
+        if (response.isAuthoritativeAnswer()) {
+            flags |= 1 << 10;
+        }
+        if (response.isTruncated()) {
+            flags |= 1 << 9;
+        }
+        if (response.isRecursionDesired()) {
+            flags |= 1 << 8;
+        }
+        if (response.isRecursionAvailable()) {
+            flags |= 1 << 7;
+        }
+        flags |= response.z() << 4;
+        flags |= response.code().intValue();
+        buf.writeShort(flags);
+        buf.writeShort(response.count(DnsSection.QUESTION));
+        buf.writeShort(response.count(DnsSection.ANSWER));
+        buf.writeShort(response.count(DnsSection.AUTHORITY));
+        buf.writeShort(response.count(DnsSection.ADDITIONAL));
+
+        encodeQuestions(encoder, response, buf);
+        encodeRecords(encoder, response, DnsSection.ANSWER, buf);
+        encodeRecords(encoder, response, DnsSection.AUTHORITY, buf);
+        encodeRecords(encoder, response, DnsSection.ADDITIONAL, buf);
+    }
+
+    private static void encodeQuestions(DnsRecordEncoder encoder, DnsMessage message, ByteBuf buf)
+            throws Exception {
+        int count = message.count(DnsSection.QUESTION);
+        for (int i = 0; i < count; i++) {
+            encoder.encodeQuestion(message.recordAt(DnsSection.QUESTION, i), buf);
+        }
+    }
+
+    private static void encodeRecords(DnsRecordEncoder encoder, DnsMessage message, DnsSection section, ByteBuf buf)
+            throws Exception {
+        int count = message.count(section);
+        for (int i = 0; i < count; i++) {
+            encoder.encodeRecord(message.recordAt(section, i), buf);
+        }
+    }
+
+    interface DnsQueryFactory {
+        DnsQuery newQuery(int id, DnsOpCode opCode);
+    }
+
+    interface DnsResponseFactory {
+        DnsResponse newResponse(int id, DnsOpCode opCode, DnsResponseCode responseCode);
+    }
+
     private DnsMessageUtil() { }
 }
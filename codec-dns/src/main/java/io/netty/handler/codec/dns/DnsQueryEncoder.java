@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.dns;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Encodes a {@link DnsQuery} into a {@link ByteBuf} which contains the DNS message without any framing, as it is
+ * sent in the body of a request to a DNS over HTTPS server as defined in
+ * <a href="https://tools.ietf.org/html/rfc8484">RFC8484</a>.
+ */
+@UnstableApi
+@ChannelHandler.Sharable
+public final class DnsQueryEncoder extends MessageToMessageEncoder<DnsQuery> {
+
+    private final DnsRecordEncoder recordEncoder;
+
+    /**
+     * Creates a new encoder with {@linkplain DnsRecordEncoder#DEFAULT the default record encoder}.
+     */
+    public DnsQueryEncoder() {
+        this(DnsRecordEncoder.DEFAULT);
+    }
+
+    /**
+     * Creates a new encoder with the specified {@code recordEncoder}.
+     */
+    public DnsQueryEncoder(DnsRecordEncoder recordEncoder) {
+        this.recordEncoder = requireNonNull(recordEncoder, "recordEncoder");
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, DnsQuery query, List<Object> out) throws Exception {
+        ByteBuf buf = ctx.alloc().ioBuffer(1024);
+        boolean success = false;
+        try {
+            DnsMessageUtil.encodeDnsQuery(recordEncoder, query, buf);
+            success = true;
+        } finally {
+            if (!success) {
+                buf.release();
+            }
+        }
+        out.add(buf);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.dns;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decodes a {@link ByteBuf} which contains a single DNS message without any framing, as it is received in the body
+ * of a response from a DNS over HTTPS server as defined in <a href="https://tools.ietf.org/html/rfc8484">RFC8484</a>,
+ * into a {@link DnsResponse}.
+ */
+@UnstableApi
+@ChannelHandler.Sharable
+public final class DnsResponseDecoder extends MessageToMessageDecoder<ByteBuf> {
+
+    private final DnsRecordDecoder recordDecoder;
+
+    /**
+     * Creates a new decoder with {@linkplain DnsRecordDecoder#DEFAULT the default record decoder}.
+     */
+    public DnsResponseDecoder() {
+        this(DnsRecordDecoder.DEFAULT);
+    }
+
+    /**
+     * Creates a new decoder with the specified {@code recordDecoder}.
+     */
+    public DnsResponseDecoder(DnsRecordDecoder recordDecoder) {
+        this.recordDecoder = requireNonNull(recordDecoder, "recordDecoder");
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
+        out.add(DnsMessageUtil.decodeDnsResponse(recordDecoder, msg, DefaultDnsResponse::new));
+    }
+}
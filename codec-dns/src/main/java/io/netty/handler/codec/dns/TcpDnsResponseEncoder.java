@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.dns;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.util.internal.UnstableApi;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Encodes a {@link DnsResponse} into the length-prefixed format used for DNS over TCP as defined in
+ * <a href="https://tools.ietf.org/html/rfc1035#section-4.2.2">RFC1035 4.2.2</a>.
+ */
+@UnstableApi
+@ChannelHandler.Sharable
+public final class TcpDnsResponseEncoder extends MessageToByteEncoder<DnsResponse> {
+
+    private final DnsRecordEncoder recordEncoder;
+
+    /**
+     * Creates a new encoder with {@linkplain DnsRecordEncoder#DEFAULT the default record encoder}.
+     */
+    public TcpDnsResponseEncoder() {
+        this(DnsRecordEncoder.DEFAULT);
+    }
+
+    /**
+     * Creates a new encoder with the specified {@code recordEncoder}.
+     */
+    public TcpDnsResponseEncoder(DnsRecordEncoder recordEncoder) {
+        this.recordEncoder = requireNonNull(recordEncoder, "recordEncoder");
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, DnsResponse msg, ByteBuf out) throws Exception {
+        // Reserve the two bytes for the length prefix and fill them in once the size of the message is known.
+        int lengthIndex = out.writerIndex();
+        out.writeShort(0);
+        DnsMessageUtil.encodeDnsResponse(recordEncoder, msg, out);
+        out.setShort(lengthIndex, out.writerIndex() - lengthIndex - 2);
+    }
+}
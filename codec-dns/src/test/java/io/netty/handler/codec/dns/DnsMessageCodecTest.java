@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.dns;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.NetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DnsMessageCodecTest {
+
+    @Test
+    public void testQueryIsNotFramed() {
+        EmbeddedChannel tcp = new EmbeddedChannel(new TcpDnsQueryEncoder());
+        EmbeddedChannel unframed = new EmbeddedChannel(new DnsQueryEncoder());
+        assertTrue(tcp.writeOutbound(newQuery()));
+        assertTrue(unframed.writeOutbound(newQuery()));
+
+        ByteBuf framed = tcp.readOutbound();
+        ByteBuf encoded = unframed.readOutbound();
+        try {
+            assertEquals(framed.skipBytes(2), encoded);
+        } finally {
+            framed.release();
+            encoded.release();
+        }
+        assertFalse(tcp.finish());
+        assertFalse(unframed.finish());
+    }
+
+    @Test
+    public void testDecodeResponse() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new TcpDnsResponseEncoder());
+        EmbeddedChannel decoder = new EmbeddedChannel(new DnsResponseDecoder());
+
+        DnsResponse response = new DefaultDnsResponse(7);
+        response.addRecord(DnsSection.QUESTION, new DefaultDnsQuestion("netty.io.", DnsRecordType.A));
+        response.addRecord(DnsSection.ANSWER, new DefaultDnsRawRecord("netty.io.", DnsRecordType.A, 60,
+                Unpooled.wrappedBuffer(NetUtil.createByteArrayFromIpAddressString("10.0.0.1"))));
+        assertTrue(encoder.writeOutbound(response));
+        ByteBuf framed = encoder.readOutbound();
+        assertTrue(decoder.writeInbound(framed.skipBytes(2)));
+
+        DnsResponse decoded = decoder.readInbound();
+        try {
+            assertEquals(7, decoded.id());
+            assertEquals(1, decoded.count(DnsSection.QUESTION));
+            assertEquals(1, decoded.count(DnsSection.ANSWER));
+            DnsRawRecord record = decoded.recordAt(DnsSection.ANSWER);
+            assertEquals(1, record.content().getByte(record.content().readerIndex() + 3));
+        } finally {
+            decoded.release();
+        }
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+
+    private static DnsQuery newQuery() {
+        DnsQuery query = new DefaultDnsQuery(7);
+        query.setRecursionDesired(true);
+        query.addRecord(DnsSection.QUESTION, new DefaultDnsQuestion("netty.io.", DnsRecordType.AAAA));
+        return query;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.dns;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.NetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TcpDnsTest {
+
+    @Test
+    public void testQueryRoundTrip() {
+        EmbeddedChannel channel = new EmbeddedChannel(new TcpDnsQueryEncoder(), new TcpDnsQueryDecoder());
+        DnsQuery query = new DefaultDnsQuery(7);
+        query.setRecursionDesired(true);
+        query.addRecord(DnsSection.QUESTION, new DefaultDnsQuestion("netty.io.", DnsRecordType.TXT));
+        assertTrue(channel.writeOutbound(query));
+
+        ByteBuf encoded = channel.readOutbound();
+        assertEquals(encoded.readableBytes() - 2, encoded.getUnsignedShort(encoded.readerIndex()));
+        assertTrue(channel.writeInbound(encoded));
+
+        DnsQuery decoded = channel.readInbound();
+        try {
+            assertEquals(7, decoded.id());
+            assertTrue(decoded.isRecursionDesired());
+            assertEquals(1, decoded.count(DnsSection.QUESTION));
+            DnsQuestion question = decoded.recordAt(DnsSection.QUESTION);
+            assertEquals("netty.io.", question.name());
+            assertEquals(DnsRecordType.TXT, question.type());
+        } finally {
+            decoded.release();
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testPipelinedResponsesInFragments() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new TcpDnsResponseEncoder());
+        EmbeddedChannel decoder = new EmbeddedChannel(new TcpDnsResponseDecoder());
+
+        ByteBuf stream = Unpooled.buffer();
+        for (int id = 1; id <= 3; id++) {
+            DnsResponse response = new DefaultDnsResponse(id);
+            response.setTruncated(id == 2);
+            response.addRecord(DnsSection.QUESTION, new DefaultDnsQuestion("netty.io.", DnsRecordType.A));
+            response.addRecord(DnsSection.ANSWER, new DefaultDnsRawRecord("netty.io.", DnsRecordType.A, 60,
+                    Unpooled.wrappedBuffer(NetUtil.createByteArrayFromIpAddressString("10.0.0." + id))));
+            assertTrue(encoder.writeOutbound(response));
+            ByteBuf encoded = encoder.readOutbound();
+            stream.writeBytes(encoded);
+            encoded.release();
+        }
+
+        // Feed the stream a few bytes at a time so frames are split across reads.
+        while (stream.isReadable()) {
+            decoder.writeInbound(stream.readRetainedSlice(Math.min(5, stream.readableBytes())));
+        }
+        stream.release();
+
+        for (int id = 1; id <= 3; id++) {
+            DnsResponse response = decoder.readInbound();
+            try {
+                assertEquals(id, response.id());
+                assertEquals(id == 2, response.isTruncated());
+                assertEquals(1, response.count(DnsSection.ANSWER));
+                DnsRawRecord record = response.recordAt(DnsSection.ANSWER);
+                assertEquals(id, record.content().getByte(record.content().readerIndex() + 3));
+            } finally {
+                response.release();
+            }
+        }
+        assertNull(decoder.readInbound());
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+}
@@ -25,7 +25,6 @@ import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.DecoderResult;
 import io.netty.handler.codec.PrematureChannelClosureException;
 import io.netty.handler.codec.TooLongFrameException;
-import io.netty.util.ByteProcessor;
 import io.netty.util.internal.AppendableCharSequence;
 
 import java.util.List;
@@ -773,7 +772,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         return 0;
     }
 
-    private static class HeaderParser implements ByteProcessor {
+    private static class HeaderParser {
         private final AppendableCharSequence seq;
         private final int maxLength;
         private int size;
@@ -786,39 +785,45 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         public AppendableCharSequence parse(ByteBuf buffer) {
             final int oldSize = size;
             seq.reset();
-            int i = buffer.forEachByte(this);
-            if (i == -1) {
+            final int readerIndex = buffer.readerIndex();
+            final int writerIndex = buffer.writerIndex();
+            // Find the end of the line first, which is searched eight bytes at a time.
+            final int lfIndex = buffer.indexOf(readerIndex, writerIndex, HttpConstants.LF);
+            if (lfIndex == -1) {
+                // Fail before the rest of the line was received if it is too long already.
+                if (size + buffer.readableBytes() > maxLength) {
+                    append(buffer, readerIndex, writerIndex);
+                }
                 size = oldSize;
+                seq.reset();
                 return null;
             }
-            buffer.readerIndex(i + 1);
+            append(buffer, readerIndex, lfIndex);
+            buffer.readerIndex(lfIndex + 1);
             return seq;
         }
 
-        public void reset() {
-            size = 0;
-        }
+        private void append(ByteBuf buffer, int fromIndex, int toIndex) {
+            for (int i = fromIndex; i < toIndex; i++) {
+                char nextByte = (char) (buffer.getByte(i) & 0xFF);
+                if (nextByte == HttpConstants.CR) {
+                    continue;
+                }
 
-        @Override
-        public boolean process(byte value) throws Exception {
-            char nextByte = (char) (value & 0xFF);
-            if (nextByte == HttpConstants.CR) {
-                return true;
-            }
-            if (nextByte == HttpConstants.LF) {
-                return false;
-            }
+                if (++ size > maxLength) {
+                    // TODO: Respond with Bad Request and discard the traffic
+                    //    or close the connection.
+                    //       No need to notify the upstream handlers - just log.
+                    //       If decoding a response, just throw an exception.
+                    throw newException(maxLength);
+                }
 
-            if (++ size > maxLength) {
-                // TODO: Respond with Bad Request and discard the traffic
-                //    or close the connection.
-                //       No need to notify the upstream handlers - just log.
-                //       If decoding a response, just throw an exception.
-                throw newException(maxLength);
+                seq.append(nextByte);
             }
+        }
 
-            seq.append(nextByte);
-            return true;
+        public void reset() {
+            size = 0;
         }
 
         protected TooLongFrameException newException(int maxLength) {
@@ -16,7 +16,10 @@
 
 package io.netty.handler.codec.mqtt;
 
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.DecoderException;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
 
 final class MqttCodecUtil {
 
@@ -24,6 +27,25 @@ final class MqttCodecUtil {
     private static final int MIN_CLIENT_ID_LENGTH = 1;
     private static final int MAX_CLIENT_ID_LENGTH = 23;
 
+    /**
+     * The protocol version of a connection, as announced by its CONNECT message. The encoding of all other messages
+     * depends on it, so the decoder and the encoder set it when they see the CONNECT message.
+     */
+    static final AttributeKey<MqttVersion> MQTT_VERSION_KEY = AttributeKey.valueOf("NETTY_CODEC_MQTT_VERSION");
+
+    static MqttVersion getMqttVersion(ChannelHandlerContext ctx) {
+        return getMqttVersion(ctx.channel().attr(MQTT_VERSION_KEY));
+    }
+
+    static MqttVersion getMqttVersion(Attribute<MqttVersion> mqttVersionAttr) {
+        MqttVersion version = mqttVersionAttr.get();
+        return version != null ? version : MqttVersion.MQTT_3_1_1;
+    }
+
+    static void setMqttVersion(ChannelHandlerContext ctx, MqttVersion version) {
+        ctx.channel().attr(MQTT_VERSION_KEY).set(version);
+    }
+
     static boolean isValidPublishTopicName(String topicName) {
         // publish topic name must not contain any wildcard
         for (char c : TOPIC_WILDCARDS) {
@@ -43,7 +65,7 @@ final class MqttCodecUtil {
             return clientId != null && clientId.length() >= MIN_CLIENT_ID_LENGTH &&
                 clientId.length() <= MAX_CLIENT_ID_LENGTH;
         }
-        if (mqttVersion == MqttVersion.MQTT_3_1_1) {
+        if (mqttVersion == MqttVersion.MQTT_3_1_1 || mqttVersion == MqttVersion.MQTT_5) {
             // In 3.1.3.1 Client Identifier of MQTT 3.1.1 specification, The Server MAY allow ClientId’s
             // that contain more than 23 encoded bytes. And, The Server MAY allow zero-length ClientId.
             return clientId != null;
@@ -76,6 +98,7 @@ final class MqttCodecUtil {
             case PINGREQ:
             case PINGRESP:
             case DISCONNECT:
+            case AUTH:
                 if (mqttFixedHeader.isDup() ||
                         mqttFixedHeader.qosLevel() != MqttQoS.AT_MOST_ONCE ||
                         mqttFixedHeader.isRetain()) {
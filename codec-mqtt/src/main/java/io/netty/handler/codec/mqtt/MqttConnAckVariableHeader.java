@@ -18,6 +18,8 @@ package io.netty.handler.codec.mqtt;
 
 import io.netty.util.internal.StringUtil;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * Variable header of {@link MqttConnectMessage}
  */
@@ -27,9 +29,17 @@ public final class MqttConnAckVariableHeader {
 
     private final boolean sessionPresent;
 
+    private final MqttProperties properties;
+
     public MqttConnAckVariableHeader(MqttConnectReturnCode connectReturnCode, boolean sessionPresent) {
+        this(connectReturnCode, sessionPresent, MqttProperties.NO_PROPERTIES);
+    }
+
+    public MqttConnAckVariableHeader(MqttConnectReturnCode connectReturnCode, boolean sessionPresent,
+                                     MqttProperties properties) {
         this.connectReturnCode = connectReturnCode;
         this.sessionPresent = sessionPresent;
+        this.properties = requireNonNull(properties, "properties");
     }
 
     public MqttConnectReturnCode connectReturnCode() {
@@ -40,12 +50,17 @@ public final class MqttConnAckVariableHeader {
         return sessionPresent;
     }
 
+    public MqttProperties properties() {
+        return properties;
+    }
+
     @Override
     public String toString() {
         return new StringBuilder(StringUtil.simpleClassName(this))
             .append('[')
             .append("connectReturnCode=").append(connectReturnCode)
             .append(", sessionPresent=").append(sessionPresent)
+            .append(", properties=").append(properties)
             .append(']')
             .toString();
     }
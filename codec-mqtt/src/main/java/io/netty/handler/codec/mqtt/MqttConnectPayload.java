@@ -19,12 +19,15 @@ package io.netty.handler.codec.mqtt;
 import io.netty.util.CharsetUtil;
 import io.netty.util.internal.StringUtil;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * Payload of {@link MqttConnectMessage}
  */
 public final class MqttConnectPayload {
 
     private final String clientIdentifier;
+    private final MqttProperties willProperties;
     private final String willTopic;
     private final byte[] willMessage;
     private final String userName;
@@ -54,7 +57,18 @@ public final class MqttConnectPayload {
             byte[] willMessage,
             String userName,
             byte[] password) {
+        this(clientIdentifier, MqttProperties.NO_PROPERTIES, willTopic, willMessage, userName, password);
+    }
+
+    public MqttConnectPayload(
+            String clientIdentifier,
+            MqttProperties willProperties,
+            String willTopic,
+            byte[] willMessage,
+            String userName,
+            byte[] password) {
         this.clientIdentifier = clientIdentifier;
+        this.willProperties = requireNonNull(willProperties, "willProperties");
         this.willTopic = willTopic;
         this.willMessage = willMessage;
         this.userName = userName;
@@ -65,6 +79,10 @@ public final class MqttConnectPayload {
         return clientIdentifier;
     }
 
+    public MqttProperties willProperties() {
+        return willProperties;
+    }
+
     public String willTopic() {
         return willTopic;
     }
@@ -102,6 +120,7 @@ public final class MqttConnectPayload {
         return new StringBuilder(StringUtil.simpleClassName(this))
             .append('[')
             .append("clientIdentifier=").append(clientIdentifier)
+            .append(", willProperties=").append(willProperties)
             .append(", willTopic=").append(willTopic)
             .append(", willMessage=").append(willMessage)
             .append(", userName=").append(userName)
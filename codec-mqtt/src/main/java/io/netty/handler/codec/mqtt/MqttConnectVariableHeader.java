@@ -18,6 +18,8 @@ package io.netty.handler.codec.mqtt;
 
 import io.netty.util.internal.StringUtil;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * Variable Header for the {@link MqttConnectMessage}
  */
@@ -32,6 +34,7 @@ public final class MqttConnectVariableHeader {
     private final boolean isWillFlag;
     private final boolean isCleanSession;
     private final int keepAliveTimeSeconds;
+    private final MqttProperties properties;
 
     public MqttConnectVariableHeader(
             String name,
@@ -43,6 +46,21 @@ public final class MqttConnectVariableHeader {
             boolean isWillFlag,
             boolean isCleanSession,
             int keepAliveTimeSeconds) {
+        this(name, version, hasUserName, hasPassword, isWillRetain, willQos, isWillFlag, isCleanSession,
+             keepAliveTimeSeconds, MqttProperties.NO_PROPERTIES);
+    }
+
+    public MqttConnectVariableHeader(
+            String name,
+            int version,
+            boolean hasUserName,
+            boolean hasPassword,
+            boolean isWillRetain,
+            int willQos,
+            boolean isWillFlag,
+            boolean isCleanSession,
+            int keepAliveTimeSeconds,
+            MqttProperties properties) {
         this.name = name;
         this.version = version;
         this.hasUserName = hasUserName;
@@ -52,6 +70,7 @@ public final class MqttConnectVariableHeader {
         this.isWillFlag = isWillFlag;
         this.isCleanSession = isCleanSession;
         this.keepAliveTimeSeconds = keepAliveTimeSeconds;
+        this.properties = requireNonNull(properties, "properties");
     }
 
     public String name() {
@@ -90,6 +109,10 @@ public final class MqttConnectVariableHeader {
         return keepAliveTimeSeconds;
     }
 
+    public MqttProperties properties() {
+        return properties;
+    }
+
     @Override
     public String toString() {
         return new StringBuilder(StringUtil.simpleClassName(this))
@@ -102,6 +125,7 @@ public final class MqttConnectVariableHeader {
             .append(", isWillFlag=").append(isWillFlag)
             .append(", isCleanSession=").append(isCleanSession)
             .append(", keepAliveTimeSeconds=").append(keepAliveTimeSeconds)
+            .append(", properties=").append(properties)
             .append(']')
             .toString();
     }
@@ -21,11 +21,14 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.DecoderException;
 import io.netty.handler.codec.ReplayingDecoder;
 import io.netty.handler.codec.mqtt.MqttDecoder.DecoderState;
+import io.netty.util.Attribute;
 import io.netty.util.CharsetUtil;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import static io.netty.handler.codec.mqtt.MqttCodecUtil.MQTT_VERSION_KEY;
+import static io.netty.handler.codec.mqtt.MqttCodecUtil.getMqttVersion;
 import static io.netty.handler.codec.mqtt.MqttCodecUtil.isValidClientId;
 import static io.netty.handler.codec.mqtt.MqttCodecUtil.isValidMessageId;
 import static io.netty.handler.codec.mqtt.MqttCodecUtil.isValidPublishTopicName;
@@ -35,7 +38,9 @@ import static io.netty.handler.codec.mqtt.MqttCodecUtil.validateFixedHeader;
 /**
  * Decodes Mqtt messages from bytes, following
  * <a href="http://public.dhe.ibm.com/software/dw/webservices/ws-mqtt/mqtt-v3r1.html">
- *     the MQTT protocol specification v3.1</a>
+ *     the MQTT protocol specification v3.1</a> or
+ * <a href="https://docs.oasis-open.org/mqtt/mqtt/v5.0/mqtt-v5.0.html">the MQTT protocol specification v5.0</a>,
+ * depending on the protocol version of the CONNECT message of the connection.
  */
 public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
 
@@ -56,6 +61,7 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
     private MqttFixedHeader mqttFixedHeader;
     private Object variableHeader;
     private int bytesRemainingInVariablePart;
+    private Attribute<MqttVersion> mqttVersionAttr;
 
     private final int maxBytesInMessage;
 
@@ -70,6 +76,9 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf buffer, List<Object> out) throws Exception {
+        if (mqttVersionAttr == null) {
+            mqttVersionAttr = ctx.channel().attr(MQTT_VERSION_KEY);
+        }
         switch (state()) {
             case READ_FIXED_HEADER: try {
                 mqttFixedHeader = decodeFixedHeader(buffer);
@@ -82,7 +91,8 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
             }
 
             case READ_VARIABLE_HEADER:  try {
-                final Result<?> decodedVariableHeader = decodeVariableHeader(buffer, mqttFixedHeader);
+                final Result<?> decodedVariableHeader =
+                        decodeVariableHeader(mqttVersionAttr, buffer, mqttFixedHeader, null);
                 variableHeader = decodedVariableHeader.value;
                 if (bytesRemainingInVariablePart > maxBytesInMessage) {
                     throw new DecoderException("too large message: " + bytesRemainingInVariablePart + " bytes");
@@ -99,6 +109,7 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
                 final Result<?> decodedPayload =
                         decodePayload(
                                 buffer,
+                                getMqttVersion(mqttVersionAttr),
                                 mqttFixedHeader.messageType(),
                                 bytesRemainingInVariablePart,
                                 variableHeader);
@@ -172,41 +183,59 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
 
     /**
      * Decodes the variable header (if any)
+     * @param mqttVersionAttr the protocol version of the connection, which is set when decoding a CONNECT message
      * @param buffer the buffer to decode from
      * @param mqttFixedHeader MqttFixedHeader of the same message
+     * @param topicNames the cache to look up the topic name of a PUBLISH message in, or {@code null}
      * @return the variable header
      */
-    private static Result<?> decodeVariableHeader(ByteBuf buffer, MqttFixedHeader mqttFixedHeader) {
-        switch (mqttFixedHeader.messageType()) {
-            case CONNECT:
-                return decodeConnectionVariableHeader(buffer);
+    static Result<?> decodeVariableHeader(
+            Attribute<MqttVersion> mqttVersionAttr, ByteBuf buffer, MqttFixedHeader mqttFixedHeader,
+            MqttTopicNameCache topicNames) {
+        MqttMessageType messageType = mqttFixedHeader.messageType();
+        if (messageType == MqttMessageType.CONNECT) {
+            return decodeConnectionVariableHeader(mqttVersionAttr, buffer);
+        }
 
+        final MqttVersion mqttVersion = getMqttVersion(mqttVersionAttr);
+        final int bytesRemainingInVariablePart = mqttFixedHeader.remainingLength();
+        switch (messageType) {
             case CONNACK:
-                return decodeConnAckVariableHeader(buffer);
+                return decodeConnAckVariableHeader(buffer, mqttVersion);
 
             case SUBSCRIBE:
             case UNSUBSCRIBE:
             case SUBACK:
             case UNSUBACK:
+                return decodeMessageIdAndPropertiesVariableHeader(buffer, mqttVersion);
+
             case PUBACK:
             case PUBREC:
             case PUBCOMP:
             case PUBREL:
-                return decodeMessageIdVariableHeader(buffer);
+                return decodePubReplyMessage(buffer, mqttVersion, bytesRemainingInVariablePart);
 
             case PUBLISH:
-                return decodePublishVariableHeader(buffer, mqttFixedHeader);
+                return decodePublishVariableHeader(buffer, mqttFixedHeader, mqttVersion, topicNames);
+
+            case AUTH:
+                if (mqttVersion != MqttVersion.MQTT_5) {
+                    throw new DecoderException("AUTH message is only supported with MQTT 5 (" + mqttVersion + ')');
+                }
+                // fall through
+            case DISCONNECT:
+                return decodeReasonCodeAndPropertiesVariableHeader(buffer, mqttVersion, bytesRemainingInVariablePart);
 
             case PINGREQ:
             case PINGRESP:
-            case DISCONNECT:
                 // Empty variable header
                 return new Result<>(null, 0);
         }
         return new Result<>(null, 0); //should never reach here
     }
 
-    private static Result<MqttConnectVariableHeader> decodeConnectionVariableHeader(ByteBuf buffer) {
+    private static Result<MqttConnectVariableHeader> decodeConnectionVariableHeader(
+            Attribute<MqttVersion> mqttVersionAttr, ByteBuf buffer) {
         final Result<String> protoString = decodeString(buffer);
         int numberOfBytesConsumed = protoString.numberOfBytesConsumed;
 
@@ -227,7 +256,7 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
         final int willQos = (b1 & 0x18) >> 3;
         final boolean willFlag = (b1 & 0x04) == 0x04;
         final boolean cleanSession = (b1 & 0x02) == 0x02;
-        if (mqttVersion == MqttVersion.MQTT_3_1_1) {
+        if (mqttVersion == MqttVersion.MQTT_3_1_1 || mqttVersion == MqttVersion.MQTT_5) {
             final boolean zeroReservedFlag = (b1 & 0x01) == 0x0;
             if (!zeroReservedFlag) {
                 // MQTT v3.1.1: The Server MUST validate that the reserved flag in the CONNECT Control Packet is
@@ -237,6 +266,15 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
             }
         }
 
+        MqttProperties properties = MqttProperties.NO_PROPERTIES;
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            final Result<MqttProperties> decodedProperties = decodeProperties(buffer);
+            properties = decodedProperties.value;
+            numberOfBytesConsumed += decodedProperties.numberOfBytesConsumed;
+        }
+        // All other messages of the connection are decoded according to its protocol version.
+        mqttVersionAttr.set(mqttVersion);
+
         final MqttConnectVariableHeader mqttConnectVariableHeader = new MqttConnectVariableHeader(
                 mqttVersion.protocolName(),
                 mqttVersion.protocolLevel(),
@@ -246,30 +284,98 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
                 willQos,
                 willFlag,
                 cleanSession,
-                keepAlive.value);
+                keepAlive.value,
+                properties);
         return new Result<>(mqttConnectVariableHeader, numberOfBytesConsumed);
     }
 
-    private static Result<MqttConnAckVariableHeader> decodeConnAckVariableHeader(ByteBuf buffer) {
+    private static Result<MqttConnAckVariableHeader> decodeConnAckVariableHeader(
+            ByteBuf buffer, MqttVersion mqttVersion) {
         final boolean sessionPresent = (buffer.readUnsignedByte() & 0x01) == 0x01;
         byte returnCode = buffer.readByte();
-        final int numberOfBytesConsumed = 2;
+        int numberOfBytesConsumed = 2;
+        MqttProperties properties = MqttProperties.NO_PROPERTIES;
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            final Result<MqttProperties> decodedProperties = decodeProperties(buffer);
+            properties = decodedProperties.value;
+            numberOfBytesConsumed += decodedProperties.numberOfBytesConsumed;
+        }
         final MqttConnAckVariableHeader mqttConnAckVariableHeader =
-                new MqttConnAckVariableHeader(MqttConnectReturnCode.valueOf(returnCode), sessionPresent);
+                new MqttConnAckVariableHeader(MqttConnectReturnCode.valueOf(returnCode), sessionPresent, properties);
         return new Result<>(mqttConnAckVariableHeader, numberOfBytesConsumed);
     }
 
-    private static Result<MqttMessageIdVariableHeader> decodeMessageIdVariableHeader(ByteBuf buffer) {
+    private static Result<MqttMessageIdVariableHeader> decodeMessageIdAndPropertiesVariableHeader(
+            ByteBuf buffer, MqttVersion mqttVersion) {
         final Result<Integer> messageId = decodeMessageId(buffer);
+        if (mqttVersion != MqttVersion.MQTT_5) {
+            return new Result<>(
+                    MqttMessageIdVariableHeader.from(messageId.value),
+                    messageId.numberOfBytesConsumed);
+        }
+        final Result<MqttProperties> decodedProperties = decodeProperties(buffer);
         return new Result<>(
-                MqttMessageIdVariableHeader.from(messageId.value),
-                messageId.numberOfBytesConsumed);
+                new MqttMessageIdAndPropertiesVariableHeader(messageId.value, decodedProperties.value),
+                messageId.numberOfBytesConsumed + decodedProperties.numberOfBytesConsumed);
+    }
+
+    private static Result<MqttMessageIdVariableHeader> decodePubReplyMessage(
+            ByteBuf buffer, MqttVersion mqttVersion, int bytesRemainingInVariablePart) {
+        final Result<Integer> messageId = decodeMessageId(buffer);
+        if (mqttVersion != MqttVersion.MQTT_5) {
+            return new Result<>(
+                    MqttMessageIdVariableHeader.from(messageId.value),
+                    messageId.numberOfBytesConsumed);
+        }
+        // The reason code and the properties may be left out if the reason code is 0 or there are no properties.
+        int numberOfBytesConsumed = messageId.numberOfBytesConsumed;
+        byte reasonCode = MqttPubReplyMessageVariableHeader.REASON_CODE_OK;
+        MqttProperties properties = MqttProperties.NO_PROPERTIES;
+        if (bytesRemainingInVariablePart > numberOfBytesConsumed) {
+            reasonCode = buffer.readByte();
+            numberOfBytesConsumed++;
+        }
+        if (bytesRemainingInVariablePart > numberOfBytesConsumed) {
+            final Result<MqttProperties> decodedProperties = decodeProperties(buffer);
+            properties = decodedProperties.value;
+            numberOfBytesConsumed += decodedProperties.numberOfBytesConsumed;
+        }
+        return new Result<>(
+                new MqttPubReplyMessageVariableHeader(messageId.value, reasonCode, properties),
+                numberOfBytesConsumed);
+    }
+
+    private static Result<MqttReasonCodeAndPropertiesVariableHeader> decodeReasonCodeAndPropertiesVariableHeader(
+            ByteBuf buffer, MqttVersion mqttVersion, int bytesRemainingInVariablePart) {
+        if (mqttVersion != MqttVersion.MQTT_5) {
+            // Empty variable header
+            return new Result<>(null, 0);
+        }
+        // The reason code and the properties may be left out if the reason code is 0 or there are no properties.
+        int numberOfBytesConsumed = 0;
+        byte reasonCode = MqttReasonCodeAndPropertiesVariableHeader.REASON_CODE_OK;
+        MqttProperties properties = MqttProperties.NO_PROPERTIES;
+        if (bytesRemainingInVariablePart > numberOfBytesConsumed) {
+            reasonCode = buffer.readByte();
+            numberOfBytesConsumed++;
+        }
+        if (bytesRemainingInVariablePart > numberOfBytesConsumed) {
+            final Result<MqttProperties> decodedProperties = decodeProperties(buffer);
+            properties = decodedProperties.value;
+            numberOfBytesConsumed += decodedProperties.numberOfBytesConsumed;
+        }
+        return new Result<>(
+                new MqttReasonCodeAndPropertiesVariableHeader(reasonCode, properties),
+                numberOfBytesConsumed);
     }
 
     private static Result<MqttPublishVariableHeader> decodePublishVariableHeader(
             ByteBuf buffer,
-            MqttFixedHeader mqttFixedHeader) {
-        final Result<String> decodedTopic = decodeString(buffer);
+            MqttFixedHeader mqttFixedHeader,
+            MqttVersion mqttVersion,
+            MqttTopicNameCache topicNames) {
+        final Result<String> decodedTopic = topicNames == null ? decodeString(buffer) :
+                decodeString(buffer, topicNames);
         if (!isValidPublishTopicName(decodedTopic.value)) {
             throw new DecoderException("invalid publish topic name: " + decodedTopic.value + " (contains wildcards)");
         }
@@ -281,8 +387,18 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
             messageId = decodedMessageId.value;
             numberOfBytesConsumed += decodedMessageId.numberOfBytesConsumed;
         }
+        MqttProperties properties = MqttProperties.NO_PROPERTIES;
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            final Result<MqttProperties> decodedProperties = decodeProperties(buffer);
+            properties = decodedProperties.value;
+            numberOfBytesConsumed += decodedProperties.numberOfBytesConsumed;
+            // An empty topic name refers to the topic name which was last sent with the same topic alias.
+            if (decodedTopic.value.isEmpty() && !properties.contains(MqttProperties.TOPIC_ALIAS)) {
+                throw new DecoderException("empty publish topic name without a topic alias");
+            }
+        }
         final MqttPublishVariableHeader mqttPublishVariableHeader =
-                new MqttPublishVariableHeader(decodedTopic.value, messageId);
+                new MqttPublishVariableHeader(decodedTopic.value, messageId, properties);
         return new Result<>(mqttPublishVariableHeader, numberOfBytesConsumed);
     }
 
@@ -298,13 +414,15 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
      * Decodes the payload.
      *
      * @param buffer the buffer to decode from
+     * @param mqttVersion the protocol version of the connection
      * @param messageType  type of the message being decoded
      * @param bytesRemainingInVariablePart bytes remaining
      * @param variableHeader variable header of the same message
      * @return the payload
      */
-    private static Result<?> decodePayload(
+    static Result<?> decodePayload(
             ByteBuf buffer,
+            MqttVersion mqttVersion,
             MqttMessageType messageType,
             int bytesRemainingInVariablePart,
             Object variableHeader) {
@@ -313,14 +431,20 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
                 return decodeConnectionPayload(buffer, (MqttConnectVariableHeader) variableHeader);
 
             case SUBSCRIBE:
-                return decodeSubscribePayload(buffer, bytesRemainingInVariablePart);
+                return decodeSubscribePayload(buffer, mqttVersion, bytesRemainingInVariablePart);
 
             case SUBACK:
-                return decodeSubackPayload(buffer, bytesRemainingInVariablePart);
+                return decodeSubackPayload(buffer, mqttVersion, bytesRemainingInVariablePart);
 
             case UNSUBSCRIBE:
                 return decodeUnsubscribePayload(buffer, bytesRemainingInVariablePart);
 
+            case UNSUBACK:
+                if (mqttVersion != MqttVersion.MQTT_5) {
+                    return new Result<>(null, 0);
+                }
+                return decodeUnsubAckPayload(buffer, bytesRemainingInVariablePart);
+
             case PUBLISH:
                 return decodePublishPayload(buffer, bytesRemainingInVariablePart);
 
@@ -342,9 +466,15 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
         }
         int numberOfBytesConsumed = decodedClientId.numberOfBytesConsumed;
 
+        MqttProperties willProperties = MqttProperties.NO_PROPERTIES;
         Result<String> decodedWillTopic = null;
         Result<byte[]> decodedWillMessage = null;
         if (mqttConnectVariableHeader.isWillFlag()) {
+            if (mqttVersion == MqttVersion.MQTT_5) {
+                final Result<MqttProperties> decodedWillProperties = decodeProperties(buffer);
+                willProperties = decodedWillProperties.value;
+                numberOfBytesConsumed += decodedWillProperties.numberOfBytesConsumed;
+            }
             decodedWillTopic = decodeString(buffer, 0, 32767);
             numberOfBytesConsumed += decodedWillTopic.numberOfBytesConsumed;
             decodedWillMessage = decodeByteArray(buffer);
@@ -364,6 +494,7 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
         final MqttConnectPayload mqttConnectPayload =
                 new MqttConnectPayload(
                         decodedClientId.value,
+                        willProperties,
                         decodedWillTopic != null ? decodedWillTopic.value : null,
                         decodedWillMessage != null ? decodedWillMessage.value : null,
                         decodedUserName != null ? decodedUserName.value : null,
@@ -373,27 +504,39 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
 
     private static Result<MqttSubscribePayload> decodeSubscribePayload(
             ByteBuf buffer,
+            MqttVersion mqttVersion,
             int bytesRemainingInVariablePart) {
         final List<MqttTopicSubscription> subscribeTopics = new ArrayList<>();
         int numberOfBytesConsumed = 0;
         while (numberOfBytesConsumed < bytesRemainingInVariablePart) {
             final Result<String> decodedTopicName = decodeString(buffer);
             numberOfBytesConsumed += decodedTopicName.numberOfBytesConsumed;
-            int qos = buffer.readUnsignedByte() & 0x03;
+            short options = buffer.readUnsignedByte();
             numberOfBytesConsumed++;
-            subscribeTopics.add(new MqttTopicSubscription(decodedTopicName.value, MqttQoS.valueOf(qos)));
+            if (mqttVersion == MqttVersion.MQTT_5) {
+                if ((options & 0xC0) != 0) {
+                    throw new DecoderException("non-zero reserved subscription options: " + options);
+                }
+                subscribeTopics.add(new MqttTopicSubscription(
+                        decodedTopicName.value, MqttSubscriptionOption.valueOf(options)));
+            } else {
+                subscribeTopics.add(new MqttTopicSubscription(
+                        decodedTopicName.value, MqttQoS.valueOf(options & 0x03)));
+            }
         }
         return new Result<>(new MqttSubscribePayload(subscribeTopics), numberOfBytesConsumed);
     }
 
     private static Result<MqttSubAckPayload> decodeSubackPayload(
             ByteBuf buffer,
+            MqttVersion mqttVersion,
             int bytesRemainingInVariablePart) {
         final List<Integer> grantedQos = new ArrayList<>();
         int numberOfBytesConsumed = 0;
         while (numberOfBytesConsumed < bytesRemainingInVariablePart) {
             int qos = buffer.readUnsignedByte();
-            if (qos != MqttQoS.FAILURE.value()) {
+            // MQTT 5 has several reason codes for failures, which all start at 0x80.
+            if (mqttVersion == MqttVersion.MQTT_5 ? qos < 0x80 : qos != MqttQoS.FAILURE.value()) {
                 qos &= 0x03;
             }
             numberOfBytesConsumed++;
@@ -417,6 +560,18 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
                 numberOfBytesConsumed);
     }
 
+    private static Result<MqttUnsubAckPayload> decodeUnsubAckPayload(
+            ByteBuf buffer,
+            int bytesRemainingInVariablePart) {
+        final List<Short> reasonCodes = new ArrayList<>(bytesRemainingInVariablePart);
+        int numberOfBytesConsumed = 0;
+        while (numberOfBytesConsumed < bytesRemainingInVariablePart) {
+            reasonCodes.add(buffer.readUnsignedByte());
+            numberOfBytesConsumed++;
+        }
+        return new Result<>(new MqttUnsubAckPayload(reasonCodes), numberOfBytesConsumed);
+    }
+
     private static Result<ByteBuf> decodePublishPayload(ByteBuf buffer, int bytesRemainingInVariablePart) {
         ByteBuf b = buffer.readRetainedSlice(bytesRemainingInVariablePart);
         return new Result<>(b, bytesRemainingInVariablePart);
@@ -426,6 +581,18 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
         return decodeString(buffer, 0, Integer.MAX_VALUE);
     }
 
+    private static Result<String> decodeString(ByteBuf buffer, MqttTopicNameCache topicNames) {
+        final Result<Integer> decodedSize = decodeMsbLsb(buffer);
+        int size = decodedSize.value;
+        // The cache reads the memory of the buffer without bounds checks, so the size must be checked first.
+        if (size > buffer.readableBytes()) {
+            throw new DecoderException("topic name length exceeds the message: " + size + " bytes");
+        }
+        String s = topicNames.get(buffer, buffer.readerIndex(), size);
+        buffer.skipBytes(size);
+        return new Result<>(s, decodedSize.numberOfBytesConsumed + size);
+    }
+
     private static Result<String> decodeString(ByteBuf buffer, int minBytes, int maxBytes) {
         final Result<Integer> decodedSize = decodeMsbLsb(buffer);
         int size = decodedSize.value;
@@ -449,6 +616,40 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
         return new Result<>(bytes, decodedSize.numberOfBytesConsumed + size);
     }
 
+    /**
+     * Decodes the properties of an MQTT 5 message. They are only checked to be well-formed and copied, and parsed
+     * when they are looked up.
+     */
+    private static Result<MqttProperties> decodeProperties(ByteBuf buffer) {
+        final Result<Integer> decodedLength = decodeVariableByteInteger(buffer);
+        int length = decodedLength.value;
+        if (length == 0) {
+            return new Result<>(MqttProperties.NO_PROPERTIES, decodedLength.numberOfBytesConsumed);
+        }
+        MqttProperties.validate(buffer, buffer.readerIndex(), length);
+        byte[] bytes = new byte[length];
+        buffer.readBytes(bytes);
+        return new Result<>(MqttProperties.wrap(bytes), decodedLength.numberOfBytesConsumed + length);
+    }
+
+    private static Result<Integer> decodeVariableByteInteger(ByteBuf buffer) {
+        int result = 0;
+        int multiplier = 1;
+        short digit;
+        int loops = 0;
+        do {
+            digit = buffer.readUnsignedByte();
+            result += (digit & 127) * multiplier;
+            multiplier *= 128;
+            loops++;
+        } while ((digit & 128) != 0 && loops < 4);
+
+        if (loops == 4 && (digit & 128) != 0) {
+            throw new DecoderException("variable byte integer exceeds 4 digits");
+        }
+        return new Result<>(result, loops);
+    }
+
     private static Result<Integer> decodeMsbLsb(ByteBuf buffer) {
         return decodeMsbLsb(buffer, 0, 65535);
     }
@@ -464,10 +665,10 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
         return new Result<>(result, numberOfBytesConsumed);
     }
 
-    private static final class Result<T> {
+    static final class Result<T> {
 
-        private final T value;
-        private final int numberOfBytesConsumed;
+        final T value;
+        final int numberOfBytesConsumed;
 
         Result(T value, int numberOfBytesConsumed) {
             this.value = value;
@@ -21,6 +21,7 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToMessageEncoder;
 import io.netty.util.CharsetUtil;
 import io.netty.util.internal.EmptyArrays;
@@ -32,6 +33,8 @@ import static io.netty.handler.codec.mqtt.MqttCodecUtil.*;
 /**
  * Encodes Mqtt messages into bytes following the protocol specification v3.1
  * as described here <a href="http://public.dhe.ibm.com/software/dw/webservices/ws-mqtt/mqtt-v3r1.html">MQTTV3.1</a>
+ * or v5.0 as described here <a href="https://docs.oasis-open.org/mqtt/mqtt/v5.0/mqtt-v5.0.html">MQTTV5.0</a>,
+ * depending on the protocol version of the CONNECT message of the connection.
  */
 @ChannelHandler.Sharable
 public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
@@ -42,11 +45,19 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
 
     @Override
     protected void encode(ChannelHandlerContext ctx, MqttMessage msg, List<Object> out) throws Exception {
-        out.add(doEncode(ctx.alloc(), msg));
+        final MqttVersion mqttVersion;
+        if (msg.fixedHeader().messageType() == MqttMessageType.CONNECT) {
+            mqttVersion = connectMessageVersion((MqttConnectMessage) msg);
+            // All other messages of the connection are encoded according to its protocol version.
+            setMqttVersion(ctx, mqttVersion);
+        } else {
+            mqttVersion = getMqttVersion(ctx);
+        }
+        out.add(doEncode(ctx.alloc(), mqttVersion, msg));
     }
 
     /**
-     * This is the main encoding method.
+     * Encodes a message of an MQTT 3.1.1 connection, or a CONNECT message of any version.
      * It's only visible for testing.
      *
      * @param byteBufAllocator Allocates ByteBuf
@@ -54,36 +65,66 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
      * @return ByteBuf with encoded bytes
      */
     static ByteBuf doEncode(ByteBufAllocator byteBufAllocator, MqttMessage message) {
+        return doEncode(byteBufAllocator, MqttVersion.MQTT_3_1_1, message);
+    }
+
+    /**
+     * This is the main encoding method.
+     * It's only visible for testing.
+     *
+     * @param byteBufAllocator Allocates ByteBuf
+     * @param mqttVersion the protocol version of the connection, which is ignored for a CONNECT message
+     * @param message MQTT message to encode
+     * @return ByteBuf with encoded bytes
+     */
+    static ByteBuf doEncode(ByteBufAllocator byteBufAllocator, MqttVersion mqttVersion, MqttMessage message) {
 
         switch (message.fixedHeader().messageType()) {
             case CONNECT:
                 return encodeConnectMessage(byteBufAllocator, (MqttConnectMessage) message);
 
             case CONNACK:
-                return encodeConnAckMessage(byteBufAllocator, (MqttConnAckMessage) message);
+                return encodeConnAckMessage(byteBufAllocator, mqttVersion, (MqttConnAckMessage) message);
 
             case PUBLISH:
-                return encodePublishMessage(byteBufAllocator, (MqttPublishMessage) message);
+                return encodePublishMessage(byteBufAllocator, mqttVersion, (MqttPublishMessage) message);
 
             case SUBSCRIBE:
-                return encodeSubscribeMessage(byteBufAllocator, (MqttSubscribeMessage) message);
+                return encodeSubscribeMessage(byteBufAllocator, mqttVersion, (MqttSubscribeMessage) message);
 
             case UNSUBSCRIBE:
-                return encodeUnsubscribeMessage(byteBufAllocator, (MqttUnsubscribeMessage) message);
+                return encodeUnsubscribeMessage(byteBufAllocator, mqttVersion, (MqttUnsubscribeMessage) message);
 
             case SUBACK:
-                return encodeSubAckMessage(byteBufAllocator, (MqttSubAckMessage) message);
+                return encodeSubAckMessage(byteBufAllocator, mqttVersion, (MqttSubAckMessage) message);
 
             case UNSUBACK:
+                if (mqttVersion == MqttVersion.MQTT_5) {
+                    return encodeUnsubAckMessage(byteBufAllocator, (MqttUnsubAckMessage) message);
+                }
+                return encodeMessageWithOnlySingleByteFixedHeaderAndMessageId(byteBufAllocator, message);
+
             case PUBACK:
             case PUBREC:
             case PUBREL:
             case PUBCOMP:
+                if (mqttVersion == MqttVersion.MQTT_5) {
+                    return encodePubReplyMessage(byteBufAllocator, message);
+                }
                 return encodeMessageWithOnlySingleByteFixedHeaderAndMessageId(byteBufAllocator, message);
 
+            case DISCONNECT:
+            case AUTH:
+                if (mqttVersion == MqttVersion.MQTT_5) {
+                    return encodeReasonCodeAndPropertiesMessage(byteBufAllocator, message);
+                }
+                if (message.fixedHeader().messageType() == MqttMessageType.AUTH) {
+                    throw new EncoderException("AUTH message is only supported with MQTT 5 (" + mqttVersion + ')');
+                }
+                return encodeMessageWithOnlySingleByteFixedHeader(byteBufAllocator, message);
+
             case PINGREQ:
             case PINGRESP:
-            case DISCONNECT:
                 return encodeMessageWithOnlySingleByteFixedHeader(byteBufAllocator, message);
 
             default:
@@ -100,8 +141,7 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         MqttFixedHeader mqttFixedHeader = message.fixedHeader();
         MqttConnectVariableHeader variableHeader = message.variableHeader();
         MqttConnectPayload payload = message.payload();
-        MqttVersion mqttVersion = MqttVersion.fromProtocolNameAndLevel(variableHeader.name(),
-                (byte) variableHeader.version());
+        MqttVersion mqttVersion = connectMessageVersion(message);
 
         // as MQTT 3.1 & 3.1.1 spec, If the User Name Flag is set to 0, the Password Flag MUST be set to 0
         if (!variableHeader.hasUserName() && variableHeader.hasPassword()) {
@@ -116,12 +156,16 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         byte[] clientIdentifierBytes = encodeStringUtf8(clientIdentifier);
         payloadBufferSize += 2 + clientIdentifierBytes.length;
 
-        // Will topic and message
+        // Will properties, topic and message
+        MqttProperties willProperties = payload.willProperties();
         String willTopic = payload.willTopic();
         byte[] willTopicBytes = willTopic != null ? encodeStringUtf8(willTopic) : EmptyArrays.EMPTY_BYTES;
         byte[] willMessage = payload.willMessageInBytes();
         byte[] willMessageBytes = willMessage != null ? willMessage : EmptyArrays.EMPTY_BYTES;
         if (variableHeader.isWillFlag()) {
+            if (mqttVersion == MqttVersion.MQTT_5) {
+                payloadBufferSize += getPropertiesLength(willProperties);
+            }
             payloadBufferSize += 2 + willTopicBytes.length;
             payloadBufferSize += 2 + willMessageBytes.length;
         }
@@ -141,6 +185,10 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         // Fixed header
         byte[] protocolNameBytes = mqttVersion.protocolNameBytes();
         int variableHeaderBufferSize = 2 + protocolNameBytes.length + 4;
+        MqttProperties properties = variableHeader.properties();
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            variableHeaderBufferSize += getPropertiesLength(properties);
+        }
         int variablePartSize = variableHeaderBufferSize + payloadBufferSize;
         int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
         ByteBuf buf = byteBufAllocator.buffer(fixedHeaderBufferSize + variablePartSize);
@@ -153,11 +201,17 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         buf.writeByte(variableHeader.version());
         buf.writeByte(getConnVariableHeaderFlag(variableHeader));
         buf.writeShort(variableHeader.keepAliveTimeSeconds());
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            writeProperties(buf, properties);
+        }
 
         // Payload
         buf.writeShort(clientIdentifierBytes.length);
         buf.writeBytes(clientIdentifierBytes, 0, clientIdentifierBytes.length);
         if (variableHeader.isWillFlag()) {
+            if (mqttVersion == MqttVersion.MQTT_5) {
+                writeProperties(buf, willProperties);
+            }
             buf.writeShort(willTopicBytes.length);
             buf.writeBytes(willTopicBytes, 0, willTopicBytes.length);
             buf.writeShort(willMessageBytes.length);
@@ -195,20 +249,36 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         return flagByte;
     }
 
+    private static MqttVersion connectMessageVersion(MqttConnectMessage message) {
+        MqttConnectVariableHeader variableHeader = message.variableHeader();
+        return MqttVersion.fromProtocolNameAndLevel(variableHeader.name(), (byte) variableHeader.version());
+    }
+
     private static ByteBuf encodeConnAckMessage(
             ByteBufAllocator byteBufAllocator,
+            MqttVersion mqttVersion,
             MqttConnAckMessage message) {
-        ByteBuf buf = byteBufAllocator.buffer(4);
+        MqttProperties properties = message.variableHeader().properties();
+        int variablePartSize = 2;
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            variablePartSize += getPropertiesLength(properties);
+        }
+        int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
+        ByteBuf buf = byteBufAllocator.buffer(fixedHeaderBufferSize + variablePartSize);
         buf.writeByte(getFixedHeaderByte1(message.fixedHeader()));
-        buf.writeByte(2);
+        writeVariableLengthInt(buf, variablePartSize);
         buf.writeByte(message.variableHeader().isSessionPresent() ? 0x01 : 0x00);
         buf.writeByte(message.variableHeader().connectReturnCode().byteValue());
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            writeProperties(buf, properties);
+        }
 
         return buf;
     }
 
     private static ByteBuf encodeSubscribeMessage(
             ByteBufAllocator byteBufAllocator,
+            MqttVersion mqttVersion,
             MqttSubscribeMessage message) {
         int variableHeaderBufferSize = 2;
         int payloadBufferSize = 0;
@@ -216,6 +286,10 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         MqttFixedHeader mqttFixedHeader = message.fixedHeader();
         MqttMessageIdVariableHeader variableHeader = message.variableHeader();
         MqttSubscribePayload payload = message.payload();
+        MqttProperties properties = messageIdVariableHeaderProperties(variableHeader);
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            variableHeaderBufferSize += getPropertiesLength(properties);
+        }
 
         for (MqttTopicSubscription topic : payload.topicSubscriptions()) {
             String topicName = topic.topicName();
@@ -234,6 +308,9 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         // Variable Header
         int messageId = variableHeader.messageId();
         buf.writeShort(messageId);
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            writeProperties(buf, properties);
+        }
 
         // Payload
         for (MqttTopicSubscription topic : payload.topicSubscriptions()) {
@@ -241,7 +318,11 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
             byte[] topicNameBytes = encodeStringUtf8(topicName);
             buf.writeShort(topicNameBytes.length);
             buf.writeBytes(topicNameBytes, 0, topicNameBytes.length);
-            buf.writeByte(topic.qualityOfService().value());
+            if (mqttVersion == MqttVersion.MQTT_5) {
+                buf.writeByte(topic.option().value());
+            } else {
+                buf.writeByte(topic.qualityOfService().value());
+            }
         }
 
         return buf;
@@ -249,6 +330,7 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
 
     private static ByteBuf encodeUnsubscribeMessage(
             ByteBufAllocator byteBufAllocator,
+            MqttVersion mqttVersion,
             MqttUnsubscribeMessage message) {
         int variableHeaderBufferSize = 2;
         int payloadBufferSize = 0;
@@ -256,6 +338,10 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         MqttFixedHeader mqttFixedHeader = message.fixedHeader();
         MqttMessageIdVariableHeader variableHeader = message.variableHeader();
         MqttUnsubscribePayload payload = message.payload();
+        MqttProperties properties = messageIdVariableHeaderProperties(variableHeader);
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            variableHeaderBufferSize += getPropertiesLength(properties);
+        }
 
         for (String topicName : payload.topics()) {
             byte[] topicNameBytes = encodeStringUtf8(topicName);
@@ -272,6 +358,9 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         // Variable Header
         int messageId = variableHeader.messageId();
         buf.writeShort(messageId);
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            writeProperties(buf, properties);
+        }
 
         // Payload
         for (String topicName : payload.topics()) {
@@ -285,8 +374,13 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
 
     private static ByteBuf encodeSubAckMessage(
             ByteBufAllocator byteBufAllocator,
+            MqttVersion mqttVersion,
             MqttSubAckMessage message) {
         int variableHeaderBufferSize = 2;
+        MqttProperties properties = messageIdVariableHeaderProperties(message.variableHeader());
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            variableHeaderBufferSize += getPropertiesLength(properties);
+        }
         int payloadBufferSize = message.payload().grantedQoSLevels().size();
         int variablePartSize = variableHeaderBufferSize + payloadBufferSize;
         int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
@@ -294,6 +388,9 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         buf.writeByte(getFixedHeaderByte1(message.fixedHeader()));
         writeVariableLengthInt(buf, variablePartSize);
         buf.writeShort(message.variableHeader().messageId());
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            writeProperties(buf, properties);
+        }
         for (int qos : message.payload().grantedQoSLevels()) {
             buf.writeByte(qos);
         }
@@ -301,8 +398,32 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         return buf;
     }
 
+    private static ByteBuf encodeUnsubAckMessage(
+            ByteBufAllocator byteBufAllocator,
+            MqttUnsubAckMessage message) {
+        MqttProperties properties = messageIdVariableHeaderProperties(message.variableHeader());
+        MqttUnsubAckPayload payload = message.payload();
+        int variableHeaderBufferSize = 2 + getPropertiesLength(properties);
+        int payloadBufferSize = payload != null ? payload.unsubscribeReasonCodes().size() : 0;
+        int variablePartSize = variableHeaderBufferSize + payloadBufferSize;
+        int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
+        ByteBuf buf = byteBufAllocator.buffer(fixedHeaderBufferSize + variablePartSize);
+        buf.writeByte(getFixedHeaderByte1(message.fixedHeader()));
+        writeVariableLengthInt(buf, variablePartSize);
+        buf.writeShort(message.variableHeader().messageId());
+        writeProperties(buf, properties);
+        if (payload != null) {
+            for (short reasonCode : payload.unsubscribeReasonCodes()) {
+                buf.writeByte(reasonCode);
+            }
+        }
+
+        return buf;
+    }
+
     private static ByteBuf encodePublishMessage(
             ByteBufAllocator byteBufAllocator,
+            MqttVersion mqttVersion,
             MqttPublishMessage message) {
         MqttFixedHeader mqttFixedHeader = message.fixedHeader();
         MqttPublishVariableHeader variableHeader = message.variableHeader();
@@ -310,9 +431,13 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
 
         String topicName = variableHeader.topicName();
         byte[] topicNameBytes = encodeStringUtf8(topicName);
+        MqttProperties properties = variableHeader.properties();
 
         int variableHeaderBufferSize = 2 + topicNameBytes.length +
                 (mqttFixedHeader.qosLevel().value() > 0 ? 2 : 0);
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            variableHeaderBufferSize += getPropertiesLength(properties);
+        }
         int payloadBufferSize = payload.readableBytes();
         int variablePartSize = variableHeaderBufferSize + payloadBufferSize;
         int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
@@ -323,7 +448,10 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         buf.writeShort(topicNameBytes.length);
         buf.writeBytes(topicNameBytes);
         if (mqttFixedHeader.qosLevel().value() > 0) {
-            buf.writeShort(variableHeader.messageId());
+            buf.writeShort(variableHeader.packetId());
+        }
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            writeProperties(buf, properties);
         }
         buf.writeBytes(payload);
 
@@ -347,6 +475,89 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         return buf;
     }
 
+    private static ByteBuf encodePubReplyMessage(ByteBufAllocator byteBufAllocator, MqttMessage message) {
+        MqttMessageIdVariableHeader variableHeader = (MqttMessageIdVariableHeader) message.variableHeader();
+        if (!(variableHeader instanceof MqttPubReplyMessageVariableHeader)) {
+            return encodeMessageWithOnlySingleByteFixedHeaderAndMessageId(byteBufAllocator, message);
+        }
+        MqttPubReplyMessageVariableHeader pubReplyVariableHeader = (MqttPubReplyMessageVariableHeader) variableHeader;
+        byte reasonCode = pubReplyVariableHeader.reasonCode();
+        MqttProperties properties = pubReplyVariableHeader.properties();
+
+        // The reason code and the properties may be left out if the reason code is 0 or there are no properties.
+        int variablePartSize = 2;
+        if (!properties.isEmpty()) {
+            variablePartSize += 1 + getPropertiesLength(properties);
+        } else if (reasonCode != MqttPubReplyMessageVariableHeader.REASON_CODE_OK) {
+            variablePartSize += 1;
+        }
+        int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
+        ByteBuf buf = byteBufAllocator.buffer(fixedHeaderBufferSize + variablePartSize);
+        buf.writeByte(getFixedHeaderByte1(message.fixedHeader()));
+        writeVariableLengthInt(buf, variablePartSize);
+        buf.writeShort(variableHeader.messageId());
+        if (variablePartSize > 2) {
+            buf.writeByte(reasonCode);
+        }
+        if (!properties.isEmpty()) {
+            writeProperties(buf, properties);
+        }
+
+        return buf;
+    }
+
+    private static ByteBuf encodeReasonCodeAndPropertiesMessage(ByteBufAllocator byteBufAllocator,
+                                                                MqttMessage message) {
+        Object variableHeader = message.variableHeader();
+        if (!(variableHeader instanceof MqttReasonCodeAndPropertiesVariableHeader)) {
+            return encodeMessageWithOnlySingleByteFixedHeader(byteBufAllocator, message);
+        }
+        MqttReasonCodeAndPropertiesVariableHeader reasonCodeVariableHeader =
+                (MqttReasonCodeAndPropertiesVariableHeader) variableHeader;
+        byte reasonCode = reasonCodeVariableHeader.reasonCode();
+        MqttProperties properties = reasonCodeVariableHeader.properties();
+
+        // The reason code and the properties may be left out if the reason code is 0 or there are no properties.
+        int variablePartSize = 0;
+        if (!properties.isEmpty()) {
+            variablePartSize += 1 + getPropertiesLength(properties);
+        } else if (reasonCode != MqttReasonCodeAndPropertiesVariableHeader.REASON_CODE_OK) {
+            variablePartSize += 1;
+        }
+        int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
+        ByteBuf buf = byteBufAllocator.buffer(fixedHeaderBufferSize + variablePartSize);
+        buf.writeByte(getFixedHeaderByte1(message.fixedHeader()));
+        writeVariableLengthInt(buf, variablePartSize);
+        if (variablePartSize > 0) {
+            buf.writeByte(reasonCode);
+        }
+        if (!properties.isEmpty()) {
+            writeProperties(buf, properties);
+        }
+
+        return buf;
+    }
+
+    private static MqttProperties messageIdVariableHeaderProperties(MqttMessageIdVariableHeader variableHeader) {
+        if (variableHeader instanceof MqttMessageIdAndPropertiesVariableHeader) {
+            return ((MqttMessageIdAndPropertiesVariableHeader) variableHeader).properties();
+        }
+        return MqttProperties.NO_PROPERTIES;
+    }
+
+    /**
+     * Returns the number of bytes of the given properties including their length prefix.
+     */
+    private static int getPropertiesLength(MqttProperties properties) {
+        int length = properties.encodedLength();
+        return getVariableLengthInt(length) + length;
+    }
+
+    private static void writeProperties(ByteBuf buf, MqttProperties properties) {
+        writeVariableLengthInt(buf, properties.encodedLength());
+        properties.writeTo(buf);
+    }
+
     private static ByteBuf encodeMessageWithOnlySingleByteFixedHeader(
             ByteBufAllocator byteBufAllocator,
             MqttMessage message) {
@@ -371,7 +582,7 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         return ret;
     }
 
-    private static void writeVariableLengthInt(ByteBuf buf, int num) {
+    static void writeVariableLengthInt(ByteBuf buf, int num) {
         do {
             int digit = num % 128;
             num /= 128;
@@ -382,7 +593,7 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         } while (num > 0);
     }
 
-    private static int getVariableLengthInt(int num) {
+    static int getVariableLengthInt(int num) {
         int count = 0;
         do {
             num /= 128;
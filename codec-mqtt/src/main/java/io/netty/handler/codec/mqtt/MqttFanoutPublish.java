@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.netty.handler.codec.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.CharsetUtil;
+
+import static io.netty.handler.codec.mqtt.MqttEncoder.getVariableLengthInt;
+import static io.netty.handler.codec.mqtt.MqttEncoder.writeVariableLengthInt;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A PUBLISH message which is forwarded to many subscribers, whose encodings only differ in their QoS and packet id.
+ * <p>
+ * The parts of the message which are the same for all subscribers are serialized once when this is created, and the
+ * payload is retained instead of being copied. {@link #encode(ByteBufAllocator, MqttVersion, MqttQoS, int)} then
+ * only writes a small prefix per subscriber, which holds the fixed header, the topic name, the packet id and the
+ * properties, and composes it with the shared payload. So the payload is never copied per subscriber, and a transport
+ * which supports gathering writes writes it straight from the buffer it was received in.
+ * <p>
+ * The {@link MqttProperties#TOPIC_ALIAS} and {@link MqttProperties#SUBSCRIPTION_IDENTIFIER} properties of the
+ * message only apply to the connection it was received on, so they are not forwarded. Properties which differ per
+ * subscriber, such as the subscription identifiers matching its subscriptions, are passed to
+ * {@link #encode(ByteBufAllocator, MqttVersion, MqttQoS, int, MqttProperties)} instead.
+ * <p>
+ * The encoded messages are {@link ByteBuf}s, which {@link MqttEncoder} passes on unchanged. This must be released
+ * once all subscribers were written to, the encoded messages hold their own reference to the payload.
+ */
+public final class MqttFanoutPublish extends AbstractReferenceCounted {
+
+    private final boolean retain;
+    // The length-prefixed topic name.
+    private final ByteBuf topic;
+    // The properties shared by all subscribers, which are only written with MQTT 5.
+    private final MqttProperties properties;
+    private final ByteBuf payload;
+
+    /**
+     * Creates a new instance for the given message, which is left unchanged. The payload of the message is retained.
+     *
+     * @throws IllegalArgumentException if the topic name of the message is empty, as it is if the sender used a
+     *                                  topic alias. Use {@link #MqttFanoutPublish(MqttPublishMessage, String)} with
+     *                                  the topic name the alias was resolved to instead.
+     */
+    public MqttFanoutPublish(MqttPublishMessage message) {
+        this(message, message.variableHeader().topicName());
+    }
+
+    /**
+     * Creates a new instance for the given message with the given topic name instead of the one of the message, which
+     * is left unchanged. The payload of the message is retained.
+     *
+     * @param message the message to forward
+     * @param topicName the topic name to forward the message with, which is the topic name a topic alias of the
+     *                  message was resolved to
+     * @throws IllegalArgumentException if {@code topicName} is empty
+     */
+    public MqttFanoutPublish(MqttPublishMessage message, String topicName) {
+        requireNonNull(topicName, "topicName");
+        if (topicName.isEmpty()) {
+            throw new IllegalArgumentException("empty topicName, a topic alias must be resolved before forwarding");
+        }
+        retain = message.fixedHeader().isRetain();
+
+        byte[] topicNameBytes = topicName.getBytes(CharsetUtil.UTF_8);
+        topic = Unpooled.buffer(2 + topicNameBytes.length);
+        topic.writeShort(topicNameBytes.length);
+        topic.writeBytes(topicNameBytes);
+
+        properties = message.variableHeader().properties()
+                .without(MqttProperties.TOPIC_ALIAS, MqttProperties.SUBSCRIPTION_IDENTIFIER);
+
+        payload = message.payload().retainedDuplicate();
+    }
+
+    /**
+     * Encodes the message for a subscriber on the given {@link Channel}, according to the protocol version of its
+     * connection.
+     *
+     * @see #encode(ByteBufAllocator, MqttVersion, MqttQoS, int)
+     */
+    public ByteBuf encode(Channel channel, MqttQoS qos, int packetId) {
+        return encode(channel, qos, packetId, MqttProperties.NO_PROPERTIES);
+    }
+
+    /**
+     * Encodes the message for a subscriber on the given {@link Channel}, according to the protocol version of its
+     * connection.
+     *
+     * @see #encode(ByteBufAllocator, MqttVersion, MqttQoS, int, MqttProperties)
+     */
+    public ByteBuf encode(Channel channel, MqttQoS qos, int packetId, MqttProperties subscriberProperties) {
+        MqttVersion mqttVersion = channel.attr(MqttCodecUtil.MQTT_VERSION_KEY).get();
+        return encode(channel.alloc(), mqttVersion != null ? mqttVersion : MqttVersion.MQTT_3_1_1, qos, packetId,
+                      subscriberProperties);
+    }
+
+    /**
+     * Encodes the message for a subscriber.
+     *
+     * @see #encode(ByteBufAllocator, MqttVersion, MqttQoS, int, MqttProperties)
+     */
+    public ByteBuf encode(ByteBufAllocator byteBufAllocator, MqttVersion mqttVersion, MqttQoS qos, int packetId) {
+        return encode(byteBufAllocator, mqttVersion, qos, packetId, MqttProperties.NO_PROPERTIES);
+    }
+
+    /**
+     * Encodes the message for a subscriber, with properties which only apply to this subscriber in addition to the
+     * properties of the message.
+     *
+     * @param byteBufAllocator allocates the prefix of the encoded message
+     * @param mqttVersion the protocol version of the connection of the subscriber
+     * @param qos the QoS with which the message is delivered to the subscriber
+     * @param packetId the packet id of the message, which is ignored if {@code qos} is {@link MqttQoS#AT_MOST_ONCE}
+     * @param subscriberProperties the properties which only apply to this subscriber, such as the
+     *                             {@link MqttProperties#SUBSCRIPTION_IDENTIFIER}s of its matching subscriptions.
+     *                             They are only written with MQTT 5.
+     * @return the encoded message, which holds its own reference to the payload
+     */
+    public ByteBuf encode(ByteBufAllocator byteBufAllocator, MqttVersion mqttVersion, MqttQoS qos, int packetId,
+                          MqttProperties subscriberProperties) {
+        requireNonNull(subscriberProperties, "subscriberProperties");
+        boolean hasPacketId = qos.value() > 0;
+        if (hasPacketId) {
+            MqttMessageIdVariableHeader.checkMessageId(packetId);
+        }
+        boolean hasProperties = mqttVersion == MqttVersion.MQTT_5;
+        int propertiesLength = hasProperties ? properties.encodedLength() + subscriberProperties.encodedLength() : 0;
+
+        int variableHeaderBufferSize = topic.readableBytes() + (hasPacketId ? 2 : 0) +
+                (hasProperties ? getVariableLengthInt(propertiesLength) + propertiesLength : 0);
+        int payloadBufferSize = payload.readableBytes();
+        int variablePartSize = variableHeaderBufferSize + payloadBufferSize;
+        int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
+
+        ByteBuf buf = byteBufAllocator.buffer(fixedHeaderBufferSize + variableHeaderBufferSize);
+        buf.writeByte(MqttMessageType.PUBLISH.value() << 4 | qos.value() << 1 | (retain ? 0x01 : 0x00));
+        writeVariableLengthInt(buf, variablePartSize);
+        buf.writeBytes(topic, topic.readerIndex(), topic.readableBytes());
+        if (hasPacketId) {
+            buf.writeShort(packetId);
+        }
+        if (hasProperties) {
+            writeVariableLengthInt(buf, propertiesLength);
+            properties.writeTo(buf);
+            subscriberProperties.writeTo(buf);
+        }
+        if (payloadBufferSize == 0) {
+            return buf;
+        }
+        return byteBufAllocator.compositeBuffer(2).addComponents(true, buf, payload.retainedDuplicate());
+    }
+
+    @Override
+    public MqttFanoutPublish touch(Object hint) {
+        payload.touch(hint);
+        return this;
+    }
+
+    @Override
+    protected void deallocate() {
+        payload.release();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.mqtt.MqttDecoder.Result;
+import io.netty.util.Attribute;
+
+import java.util.List;
+
+import static io.netty.handler.codec.mqtt.MqttCodecUtil.MQTT_VERSION_KEY;
+import static io.netty.handler.codec.mqtt.MqttCodecUtil.getMqttVersion;
+import static io.netty.handler.codec.mqtt.MqttCodecUtil.resetUnusedFields;
+import static io.netty.handler.codec.mqtt.MqttCodecUtil.validateFixedHeader;
+
+/**
+ * Decodes Mqtt messages from bytes, like {@link MqttDecoder}, but without replaying the decoding of a message which
+ * was only received partially.
+ * <p>
+ * The fixed header of a message is decoded as soon as it was received and the remaining length it announces is kept,
+ * and the rest of the message is only decoded once all of it was received. So a large message which arrives in many
+ * reads is decoded once instead of once per read, and decoding it does not go through the bounds checks of
+ * {@link io.netty.handler.codec.ReplayingDecoder}. The payload of a PUBLISH message is a slice of the received bytes,
+ * and topic names of PUBLISH messages are looked up in a cache which is shared by all decoders.
+ */
+public final class MqttIncrementalDecoder extends ByteToMessageDecoder {
+
+    private static final int DEFAULT_MAX_BYTES_IN_MESSAGE = 8092;
+
+    private final int maxBytesInMessage;
+    // The fixed header of the message which is being received, or null if its fixed header was not received yet.
+    private MqttFixedHeader mqttFixedHeader;
+    private boolean badMessage;
+    // Looked up once, as it's needed for every message.
+    private Attribute<MqttVersion> mqttVersionAttr;
+
+    public MqttIncrementalDecoder() {
+        this(DEFAULT_MAX_BYTES_IN_MESSAGE);
+    }
+
+    public MqttIncrementalDecoder(int maxBytesInMessage) {
+        this.maxBytesInMessage = maxBytesInMessage;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf buffer, List<Object> out) throws Exception {
+        if (badMessage) {
+            // Keep discarding until disconnection.
+            buffer.skipBytes(buffer.readableBytes());
+            return;
+        }
+        if (mqttVersionAttr == null) {
+            mqttVersionAttr = ctx.channel().attr(MQTT_VERSION_KEY);
+        }
+
+        if (mqttFixedHeader == null) {
+            try {
+                mqttFixedHeader = decodeFixedHeader(buffer);
+                if (mqttFixedHeader == null) {
+                    return;
+                }
+                if (mqttFixedHeader.remainingLength() > maxBytesInMessage) {
+                    throw new DecoderException("too large message: " + mqttFixedHeader.remainingLength() + " bytes");
+                }
+            } catch (Exception cause) {
+                out.add(invalidMessage(buffer, null, cause));
+                return;
+            }
+        }
+
+        int remainingLength = mqttFixedHeader.remainingLength();
+        if (buffer.readableBytes() < remainingLength) {
+            return;
+        }
+
+        // Decode from a slice, so a malformed message can't be decoded into the bytes of the next one.
+        ByteBuf message = buffer.readSlice(remainingLength);
+        Object variableHeader = null;
+        try {
+            final Result<?> decodedVariableHeader =
+                    MqttDecoder.decodeVariableHeader(
+                            mqttVersionAttr, message, mqttFixedHeader, MqttTopicNameCache.SHARED);
+            variableHeader = decodedVariableHeader.value;
+            final Result<?> decodedPayload = MqttDecoder.decodePayload(
+                    message, getMqttVersion(mqttVersionAttr), mqttFixedHeader.messageType(), message.readableBytes(),
+                    variableHeader);
+            if (message.isReadable()) {
+                throw new DecoderException(
+                        "non-zero remaining payload bytes: " +
+                                message.readableBytes() + " (" + mqttFixedHeader.messageType() + ')');
+            }
+            out.add(MqttMessageFactory.newMessage(mqttFixedHeader, variableHeader, decodedPayload.value));
+            mqttFixedHeader = null;
+        } catch (Exception cause) {
+            out.add(invalidMessage(buffer, variableHeader, cause));
+        }
+    }
+
+    private MqttMessage invalidMessage(ByteBuf buffer, Object variableHeader, Throwable cause) {
+        badMessage = true;
+        buffer.skipBytes(buffer.readableBytes());
+        return MqttMessageFactory.newInvalidMessage(mqttFixedHeader, variableHeader, cause);
+    }
+
+    /**
+     * Decodes the fixed header, or returns {@code null} without consuming anything if it was not received completely.
+     * It's one byte for the flags and then variable bytes for the remaining length.
+     *
+     * @param buffer the buffer to decode from
+     * @return the fixed header
+     */
+    private static MqttFixedHeader decodeFixedHeader(ByteBuf buffer) {
+        int index = buffer.readerIndex();
+        int writerIndex = buffer.writerIndex();
+        if (writerIndex - index < 2) {
+            return null;
+        }
+        short b1 = buffer.getUnsignedByte(index++);
+
+        MqttMessageType messageType = MqttMessageType.valueOf(b1 >> 4);
+        boolean dupFlag = (b1 & 0x08) == 0x08;
+        int qosLevel = (b1 & 0x06) >> 1;
+        boolean retain = (b1 & 0x01) != 0;
+
+        int remainingLength = 0;
+        int shift = 0;
+        short digit;
+        do {
+            // MQTT protocol limits Remaining Length to 4 bytes
+            if (shift == 28) {
+                throw new DecoderException("remaining length exceeds 4 digits (" + messageType + ')');
+            }
+            if (index == writerIndex) {
+                return null;
+            }
+            digit = buffer.getUnsignedByte(index++);
+            remainingLength |= (digit & 127) << shift;
+            shift += 7;
+        } while ((digit & 128) != 0);
+
+        buffer.readerIndex(index);
+        MqttFixedHeader decodedFixedHeader =
+                new MqttFixedHeader(messageType, dupFlag, MqttQoS.valueOf(qosLevel), retain, remainingLength);
+        return validateFixedHeader(resetUnusedFields(decodedFixedHeader));
+    }
+}
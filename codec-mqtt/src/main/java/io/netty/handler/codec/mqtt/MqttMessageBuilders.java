@@ -30,6 +30,7 @@ public final class MqttMessageBuilders {
         private MqttQoS qos;
         private ByteBuf payload;
         private int messageId;
+        private MqttProperties properties = MqttProperties.NO_PROPERTIES;
 
         PublishBuilder() {
         }
@@ -59,9 +60,18 @@ public final class MqttMessageBuilders {
             return this;
         }
 
+        /**
+         * Sets the MQTT 5 properties, such as a {@link MqttProperties#TOPIC_ALIAS}.
+         */
+        public PublishBuilder properties(MqttProperties properties) {
+            this.properties = properties;
+            return this;
+        }
+
         public MqttPublishMessage build() {
             MqttFixedHeader mqttFixedHeader = new MqttFixedHeader(MqttMessageType.PUBLISH, false, qos, retained, 0);
-            MqttPublishVariableHeader mqttVariableHeader = new MqttPublishVariableHeader(topic, messageId);
+            MqttPublishVariableHeader mqttVariableHeader =
+                    new MqttPublishVariableHeader(topic, messageId, properties);
             return new MqttPublishMessage(mqttFixedHeader, mqttVariableHeader, Unpooled.buffer().writeBytes(payload));
         }
     }
@@ -81,6 +91,8 @@ public final class MqttMessageBuilders {
         private byte[] willMessage;
         private String username;
         private byte[] password;
+        private MqttProperties properties = MqttProperties.NO_PROPERTIES;
+        private MqttProperties willProperties = MqttProperties.NO_PROPERTIES;
 
         ConnectBuilder() {
         }
@@ -170,6 +182,22 @@ public final class MqttMessageBuilders {
             return this;
         }
 
+        /**
+         * Sets the MQTT 5 properties.
+         */
+        public ConnectBuilder properties(MqttProperties properties) {
+            this.properties = properties;
+            return this;
+        }
+
+        /**
+         * Sets the MQTT 5 properties of the will message.
+         */
+        public ConnectBuilder willProperties(MqttProperties willProperties) {
+            this.willProperties = willProperties;
+            return this;
+        }
+
         public MqttConnectMessage build() {
             MqttFixedHeader mqttFixedHeader =
                     new MqttFixedHeader(MqttMessageType.CONNECT, false, MqttQoS.AT_MOST_ONCE, false, 0);
@@ -183,9 +211,10 @@ public final class MqttMessageBuilders {
                             willQos.value(),
                             willFlag,
                             cleanSession,
-                            keepAliveSecs);
+                            keepAliveSecs,
+                            properties);
             MqttConnectPayload mqttConnectPayload =
-                    new MqttConnectPayload(clientId, willTopic, willMessage, username, password);
+                    new MqttConnectPayload(clientId, willProperties, willTopic, willMessage, username, password);
             return new MqttConnectMessage(mqttFixedHeader, mqttConnectVariableHeader, mqttConnectPayload);
         }
     }
@@ -194,15 +223,24 @@ public final class MqttMessageBuilders {
 
         private List<MqttTopicSubscription> subscriptions;
         private int messageId;
+        private MqttProperties properties = MqttProperties.NO_PROPERTIES;
 
         SubscribeBuilder() {
         }
 
         public SubscribeBuilder addSubscription(MqttQoS qos, String topic) {
+            return addSubscription(topic, MqttSubscriptionOption.onlyFromQos(qos));
+        }
+
+        /**
+         * Adds a subscription with MQTT 5 subscription options. Shared subscriptions use a topic filter of the form
+         * {@code $share/<group>/<filter>}.
+         */
+        public SubscribeBuilder addSubscription(String topic, MqttSubscriptionOption option) {
             if (subscriptions == null) {
                 subscriptions = new ArrayList<>(5);
             }
-            subscriptions.add(new MqttTopicSubscription(topic, qos));
+            subscriptions.add(new MqttTopicSubscription(topic, option));
             return this;
         }
 
@@ -211,10 +249,18 @@ public final class MqttMessageBuilders {
             return this;
         }
 
+        /**
+         * Sets the MQTT 5 properties, such as a {@link MqttProperties#SUBSCRIPTION_IDENTIFIER}.
+         */
+        public SubscribeBuilder properties(MqttProperties properties) {
+            this.properties = properties;
+            return this;
+        }
+
         public MqttSubscribeMessage build() {
             MqttFixedHeader mqttFixedHeader =
                     new MqttFixedHeader(MqttMessageType.SUBSCRIBE, false, MqttQoS.AT_LEAST_ONCE, false, 0);
-            MqttMessageIdVariableHeader mqttVariableHeader = MqttMessageIdVariableHeader.from(messageId);
+            MqttMessageIdVariableHeader mqttVariableHeader = messageIdVariableHeader(messageId, properties);
             MqttSubscribePayload mqttSubscribePayload = new MqttSubscribePayload(subscriptions);
             return new MqttSubscribeMessage(mqttFixedHeader, mqttVariableHeader, mqttSubscribePayload);
         }
@@ -224,6 +270,7 @@ public final class MqttMessageBuilders {
 
         private List<String> topicFilters;
         private int messageId;
+        private MqttProperties properties = MqttProperties.NO_PROPERTIES;
 
         UnsubscribeBuilder() {
         }
@@ -241,10 +288,18 @@ public final class MqttMessageBuilders {
             return this;
         }
 
+        /**
+         * Sets the MQTT 5 properties.
+         */
+        public UnsubscribeBuilder properties(MqttProperties properties) {
+            this.properties = properties;
+            return this;
+        }
+
         public MqttUnsubscribeMessage build() {
             MqttFixedHeader mqttFixedHeader =
                     new MqttFixedHeader(MqttMessageType.UNSUBSCRIBE, false, MqttQoS.AT_LEAST_ONCE, false, 0);
-            MqttMessageIdVariableHeader mqttVariableHeader = MqttMessageIdVariableHeader.from(messageId);
+            MqttMessageIdVariableHeader mqttVariableHeader = messageIdVariableHeader(messageId, properties);
             MqttUnsubscribePayload mqttSubscribePayload = new MqttUnsubscribePayload(topicFilters);
             return new MqttUnsubscribeMessage(mqttFixedHeader, mqttVariableHeader, mqttSubscribePayload);
         }
@@ -254,6 +309,7 @@ public final class MqttMessageBuilders {
 
         private MqttConnectReturnCode returnCode;
         private boolean sessionPresent;
+        private MqttProperties properties = MqttProperties.NO_PROPERTIES;
 
         ConnAckBuilder() {
         }
@@ -268,15 +324,105 @@ public final class MqttMessageBuilders {
             return this;
         }
 
+        /**
+         * Sets the MQTT 5 properties, such as the {@link MqttProperties#TOPIC_ALIAS_MAXIMUM}.
+         */
+        public ConnAckBuilder properties(MqttProperties properties) {
+            this.properties = properties;
+            return this;
+        }
+
         public MqttConnAckMessage build() {
             MqttFixedHeader mqttFixedHeader =
                     new MqttFixedHeader(MqttMessageType.CONNACK, false, MqttQoS.AT_MOST_ONCE, false, 0);
             MqttConnAckVariableHeader mqttConnAckVariableHeader =
-                    new MqttConnAckVariableHeader(returnCode, sessionPresent);
+                    new MqttConnAckVariableHeader(returnCode, sessionPresent, properties);
             return new MqttConnAckMessage(mqttFixedHeader, mqttConnAckVariableHeader);
         }
     }
 
+    public static final class PubAckBuilder {
+
+        private int packetId;
+        private byte reasonCode = MqttPubReplyMessageVariableHeader.REASON_CODE_OK;
+        private MqttProperties properties = MqttProperties.NO_PROPERTIES;
+
+        PubAckBuilder() {
+        }
+
+        public PubAckBuilder packetId(int packetId) {
+            this.packetId = packetId;
+            return this;
+        }
+
+        /**
+         * Sets the MQTT 5 reason code.
+         */
+        public PubAckBuilder reasonCode(byte reasonCode) {
+            this.reasonCode = reasonCode;
+            return this;
+        }
+
+        /**
+         * Sets the MQTT 5 properties.
+         */
+        public PubAckBuilder properties(MqttProperties properties) {
+            this.properties = properties;
+            return this;
+        }
+
+        public MqttPubAckMessage build() {
+            MqttFixedHeader mqttFixedHeader =
+                    new MqttFixedHeader(MqttMessageType.PUBACK, false, MqttQoS.AT_MOST_ONCE, false, 0);
+            MqttPubReplyMessageVariableHeader mqttPubAckVariableHeader =
+                    new MqttPubReplyMessageVariableHeader(packetId, reasonCode, properties);
+            return new MqttPubAckMessage(mqttFixedHeader, mqttPubAckVariableHeader);
+        }
+    }
+
+    /**
+     * Builds an MQTT 5 DISCONNECT or AUTH message, which carry a reason code and properties.
+     */
+    public static final class ReasonCodeAndPropertiesBuilder {
+
+        private final MqttMessageType messageType;
+        private byte reasonCode = MqttReasonCodeAndPropertiesVariableHeader.REASON_CODE_OK;
+        private MqttProperties properties = MqttProperties.NO_PROPERTIES;
+
+        ReasonCodeAndPropertiesBuilder(MqttMessageType messageType) {
+            this.messageType = messageType;
+        }
+
+        public ReasonCodeAndPropertiesBuilder reasonCode(byte reasonCode) {
+            this.reasonCode = reasonCode;
+            return this;
+        }
+
+        /**
+         * Sets the properties, such as the {@link MqttProperties#AUTHENTICATION_METHOD} and
+         * {@link MqttProperties#AUTHENTICATION_DATA} of an AUTH message.
+         */
+        public ReasonCodeAndPropertiesBuilder properties(MqttProperties properties) {
+            this.properties = properties;
+            return this;
+        }
+
+        public MqttMessage build() {
+            MqttFixedHeader mqttFixedHeader =
+                    new MqttFixedHeader(messageType, false, MqttQoS.AT_MOST_ONCE, false, 0);
+            MqttReasonCodeAndPropertiesVariableHeader mqttVariableHeader =
+                    new MqttReasonCodeAndPropertiesVariableHeader(reasonCode, properties);
+            return new MqttMessage(mqttFixedHeader, mqttVariableHeader);
+        }
+    }
+
+    private static MqttMessageIdVariableHeader messageIdVariableHeader(int messageId, MqttProperties properties) {
+        if (properties.isEmpty()) {
+            return MqttMessageIdVariableHeader.from(messageId);
+        }
+        return new MqttMessageIdAndPropertiesVariableHeader(messageId, properties);
+    }
+
     public static ConnectBuilder connect() {
         return new ConnectBuilder();
     }
@@ -297,6 +443,18 @@ public final class MqttMessageBuilders {
         return new UnsubscribeBuilder();
     }
 
+    public static PubAckBuilder pubAck() {
+        return new PubAckBuilder();
+    }
+
+    public static ReasonCodeAndPropertiesBuilder disconnect() {
+        return new ReasonCodeAndPropertiesBuilder(MqttMessageType.DISCONNECT);
+    }
+
+    public static ReasonCodeAndPropertiesBuilder auth() {
+        return new ReasonCodeAndPropertiesBuilder(MqttMessageType.AUTH);
+    }
+
     private MqttMessageBuilders() {
     }
 }
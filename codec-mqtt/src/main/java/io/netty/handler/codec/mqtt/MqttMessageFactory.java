@@ -50,7 +50,8 @@ public final class MqttMessageFactory {
             case UNSUBACK:
                 return new MqttUnsubAckMessage(
                         mqttFixedHeader,
-                        (MqttMessageIdVariableHeader) variableHeader);
+                        (MqttMessageIdVariableHeader) variableHeader,
+                        (MqttUnsubAckPayload) payload);
 
             case UNSUBSCRIBE:
                 return new MqttUnsubscribeMessage(
@@ -73,9 +74,13 @@ public final class MqttMessageFactory {
 
             case PINGREQ:
             case PINGRESP:
-            case DISCONNECT:
                 return new MqttMessage(mqttFixedHeader);
 
+            case DISCONNECT:
+            case AUTH:
+                // The variable header is only present with MQTT 5.
+                return new MqttMessage(mqttFixedHeader, variableHeader);
+
             default:
                 throw new IllegalArgumentException("unknown message type: " + mqttFixedHeader.messageType());
         }
@@ -22,21 +22,25 @@ import io.netty.util.internal.StringUtil;
  * Variable Header containing only Message Id
  * See <a href="http://public.dhe.ibm.com/software/dw/webservices/ws-mqtt/mqtt-v3r1.html#msg-id">MQTTV3.1/msg-id</a>
  */
-public final class MqttMessageIdVariableHeader {
+public class MqttMessageIdVariableHeader {
 
     private final int messageId;
 
     public static MqttMessageIdVariableHeader from(int messageId) {
-      if (messageId < 1 || messageId > 0xffff) {
-        throw new IllegalArgumentException("messageId: " + messageId + " (expected: 1 ~ 65535)");
-      }
-      return new MqttMessageIdVariableHeader(messageId);
+      return new MqttMessageIdVariableHeader(checkMessageId(messageId));
     }
 
-    private MqttMessageIdVariableHeader(int messageId) {
+    MqttMessageIdVariableHeader(int messageId) {
         this.messageId = messageId;
     }
 
+    static int checkMessageId(int messageId) {
+      if (messageId < 1 || messageId > 0xffff) {
+        throw new IllegalArgumentException("messageId: " + messageId + " (expected: 1 ~ 65535)");
+      }
+      return messageId;
+    }
+
     public int messageId() {
         return messageId;
     }
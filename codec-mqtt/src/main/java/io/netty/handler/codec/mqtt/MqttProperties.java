@@ -0,0 +1,512 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.netty.handler.codec.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.EmptyArrays;
+import io.netty.util.internal.StringUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Properties of an MQTT 5 message, see
+ * <a href="https://docs.oasis-open.org/mqtt/mqtt/v5.0/os/mqtt-v5.0-os.html#_Toc3901027">MQTT 5 Properties</a>.
+ * <p>
+ * The properties are kept in their encoded form and only parsed when one of them is looked up, so a broker which
+ * routes messages by their topic and forwards them as they are does not pay for parsing properties it never looks at.
+ * A lookup scans the encoded properties, which is cheap as messages only carry a few of them.
+ */
+public final class MqttProperties {
+
+    public static final MqttProperties NO_PROPERTIES = new MqttProperties(EmptyArrays.EMPTY_BYTES);
+
+    public static final int PAYLOAD_FORMAT_INDICATOR = 0x01;
+    public static final int MESSAGE_EXPIRY_INTERVAL = 0x02;
+    public static final int CONTENT_TYPE = 0x03;
+    public static final int RESPONSE_TOPIC = 0x08;
+    public static final int CORRELATION_DATA = 0x09;
+    public static final int SUBSCRIPTION_IDENTIFIER = 0x0B;
+    public static final int SESSION_EXPIRY_INTERVAL = 0x11;
+    public static final int ASSIGNED_CLIENT_IDENTIFIER = 0x12;
+    public static final int SERVER_KEEP_ALIVE = 0x13;
+    public static final int AUTHENTICATION_METHOD = 0x15;
+    public static final int AUTHENTICATION_DATA = 0x16;
+    public static final int REQUEST_PROBLEM_INFORMATION = 0x17;
+    public static final int WILL_DELAY_INTERVAL = 0x18;
+    public static final int REQUEST_RESPONSE_INFORMATION = 0x19;
+    public static final int RESPONSE_INFORMATION = 0x1A;
+    public static final int SERVER_REFERENCE = 0x1C;
+    public static final int REASON_STRING = 0x1F;
+    public static final int RECEIVE_MAXIMUM = 0x21;
+    public static final int TOPIC_ALIAS_MAXIMUM = 0x22;
+    public static final int TOPIC_ALIAS = 0x23;
+    public static final int MAXIMUM_QOS = 0x24;
+    public static final int RETAIN_AVAILABLE = 0x25;
+    public static final int USER_PROPERTY = 0x26;
+    public static final int MAXIMUM_PACKET_SIZE = 0x27;
+    public static final int WILDCARD_SUBSCRIPTION_AVAILABLE = 0x28;
+    public static final int SUBSCRIPTION_IDENTIFIER_AVAILABLE = 0x29;
+    public static final int SHARED_SUBSCRIPTION_AVAILABLE = 0x2A;
+
+    private enum Type {
+        BYTE,
+        TWO_BYTE_INTEGER,
+        FOUR_BYTE_INTEGER,
+        VARIABLE_BYTE_INTEGER,
+        STRING,
+        BINARY,
+        STRING_PAIR
+    }
+
+    private final byte[] bytes;
+
+    private MqttProperties(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Returns the properties of the given encoded bytes, which are not copied.
+     */
+    static MqttProperties wrap(byte[] bytes) {
+        return bytes.length == 0 ? NO_PROPERTIES : new MqttProperties(bytes);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean isEmpty() {
+        return bytes.length == 0;
+    }
+
+    /**
+     * Returns {@code true} if the property with the given identifier is present.
+     */
+    public boolean contains(int id) {
+        return indexOf(id, 0) >= 0;
+    }
+
+    /**
+     * Returns the value of the byte or integer property with the given identifier, or {@code defaultValue} if it is
+     * not present.
+     */
+    public int intValue(int id, int defaultValue) {
+        Type type = integerType(id);
+        int index = indexOf(id, 0);
+        return index < 0 ? defaultValue : readInt(type, index);
+    }
+
+    /**
+     * Returns all values of the integer property with the given identifier, which may be present more than once, such
+     * as {@link #SUBSCRIPTION_IDENTIFIER}.
+     */
+    public List<Integer> intValues(int id) {
+        Type type = integerType(id);
+        List<Integer> values = new ArrayList<>(1);
+        for (int index = indexOf(id, 0); index >= 0; index = indexOf(id, index + valueLength(type, index))) {
+            values.add(readInt(type, index));
+        }
+        return values;
+    }
+
+    /**
+     * Returns the value of the UTF-8 string property with the given identifier, or {@code null} if it is not present.
+     */
+    public String stringValue(int id) {
+        checkType(id, Type.STRING);
+        int index = indexOf(id, 0);
+        return index < 0 ? null : readString(index);
+    }
+
+    /**
+     * Returns a copy of the value of the binary property with the given identifier, or {@code null} if it is not
+     * present.
+     */
+    public byte[] binaryValue(int id) {
+        checkType(id, Type.BINARY);
+        int index = indexOf(id, 0);
+        if (index < 0) {
+            return null;
+        }
+        int length = readUnsignedShort(index);
+        byte[] value = new byte[length];
+        System.arraycopy(bytes, index + 2, value, 0, length);
+        return value;
+    }
+
+    /**
+     * Returns the user properties in the order in which they are present.
+     */
+    public List<UserProperty> userProperties() {
+        List<UserProperty> properties = new ArrayList<>();
+        for (int index = indexOf(USER_PROPERTY, 0); index >= 0;
+             index = indexOf(USER_PROPERTY, index + valueLength(Type.STRING_PAIR, index))) {
+            String key = readString(index);
+            String value = readString(index + 2 + readUnsignedShort(index));
+            properties.add(new UserProperty(key, value));
+        }
+        return Collections.unmodifiableList(properties);
+    }
+
+    /**
+     * Returns the length of the encoded properties, without their length prefix.
+     */
+    int encodedLength() {
+        return bytes.length;
+    }
+
+    /**
+     * Writes the encoded properties, without their length prefix.
+     */
+    void writeTo(ByteBuf buf) {
+        buf.writeBytes(bytes);
+    }
+
+    /**
+     * Returns these properties without the properties with any of the given identifiers.
+     */
+    MqttProperties without(int... ids) {
+        byte[] remaining = new byte[bytes.length];
+        int length = 0;
+        int index = 0;
+        while (index < bytes.length) {
+            int start = index;
+            int propertyId = bytes[index++] & 0xFF;
+            index += valueLength(typeOf(propertyId), index);
+            if (!isAnyOf(propertyId, ids)) {
+                System.arraycopy(bytes, start, remaining, length, index - start);
+                length += index - start;
+            }
+        }
+        return length == bytes.length ? this : wrap(Arrays.copyOf(remaining, length));
+    }
+
+    private static boolean isAnyOf(int id, int[] ids) {
+        for (int i: ids) {
+            if (i == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the index of the value of the first property with the given identifier at or after {@code start}, or
+     * {@code -1} if there is none.
+     */
+    private int indexOf(int id, int start) {
+        int index = start;
+        while (index < bytes.length) {
+            int propertyId = bytes[index++] & 0xFF;
+            if (propertyId == id) {
+                return index;
+            }
+            index += valueLength(typeOf(propertyId), index);
+        }
+        return -1;
+    }
+
+    private int valueLength(Type type, int index) {
+        switch (type) {
+            case BYTE:
+                return 1;
+            case TWO_BYTE_INTEGER:
+                return 2;
+            case FOUR_BYTE_INTEGER:
+                return 4;
+            case VARIABLE_BYTE_INTEGER:
+                int length = 1;
+                while ((bytes[index++] & 0x80) != 0) {
+                    length++;
+                }
+                return length;
+            case STRING:
+            case BINARY:
+                return 2 + readUnsignedShort(index);
+            case STRING_PAIR:
+                int keyLength = 2 + readUnsignedShort(index);
+                return keyLength + 2 + readUnsignedShort(index + keyLength);
+            default:
+                throw new Error();
+        }
+    }
+
+    private int readInt(Type type, int index) {
+        switch (type) {
+            case BYTE:
+                return bytes[index] & 0xFF;
+            case TWO_BYTE_INTEGER:
+                return readUnsignedShort(index);
+            case FOUR_BYTE_INTEGER:
+                return (bytes[index] & 0xFF) << 24 | (bytes[index + 1] & 0xFF) << 16 |
+                       (bytes[index + 2] & 0xFF) << 8 | bytes[index + 3] & 0xFF;
+            case VARIABLE_BYTE_INTEGER:
+                int value = 0;
+                int shift = 0;
+                byte digit;
+                do {
+                    digit = bytes[index++];
+                    value |= (digit & 0x7F) << shift;
+                    shift += 7;
+                } while ((digit & 0x80) != 0);
+                return value;
+            default:
+                throw new Error();
+        }
+    }
+
+    private int readUnsignedShort(int index) {
+        return (bytes[index] & 0xFF) << 8 | bytes[index + 1] & 0xFF;
+    }
+
+    private String readString(int index) {
+        return new String(bytes, index + 2, readUnsignedShort(index), CharsetUtil.UTF_8);
+    }
+
+    private static Type typeOf(int id) {
+        switch (id) {
+            case PAYLOAD_FORMAT_INDICATOR:
+            case REQUEST_PROBLEM_INFORMATION:
+            case REQUEST_RESPONSE_INFORMATION:
+            case MAXIMUM_QOS:
+            case RETAIN_AVAILABLE:
+            case WILDCARD_SUBSCRIPTION_AVAILABLE:
+            case SUBSCRIPTION_IDENTIFIER_AVAILABLE:
+            case SHARED_SUBSCRIPTION_AVAILABLE:
+                return Type.BYTE;
+            case SERVER_KEEP_ALIVE:
+            case RECEIVE_MAXIMUM:
+            case TOPIC_ALIAS_MAXIMUM:
+            case TOPIC_ALIAS:
+                return Type.TWO_BYTE_INTEGER;
+            case MESSAGE_EXPIRY_INTERVAL:
+            case SESSION_EXPIRY_INTERVAL:
+            case WILL_DELAY_INTERVAL:
+            case MAXIMUM_PACKET_SIZE:
+                return Type.FOUR_BYTE_INTEGER;
+            case SUBSCRIPTION_IDENTIFIER:
+                return Type.VARIABLE_BYTE_INTEGER;
+            case CONTENT_TYPE:
+            case RESPONSE_TOPIC:
+            case ASSIGNED_CLIENT_IDENTIFIER:
+            case AUTHENTICATION_METHOD:
+            case RESPONSE_INFORMATION:
+            case SERVER_REFERENCE:
+            case REASON_STRING:
+                return Type.STRING;
+            case CORRELATION_DATA:
+            case AUTHENTICATION_DATA:
+                return Type.BINARY;
+            case USER_PROPERTY:
+                return Type.STRING_PAIR;
+            default:
+                return null;
+        }
+    }
+
+    private static Type integerType(int id) {
+        Type type = typeOf(id);
+        if (type != Type.BYTE && type != Type.TWO_BYTE_INTEGER && type != Type.FOUR_BYTE_INTEGER &&
+            type != Type.VARIABLE_BYTE_INTEGER) {
+            throw new IllegalArgumentException("not a byte or integer property: " + id);
+        }
+        return type;
+    }
+
+    private static void checkType(int id, Type expected) {
+        Type type = typeOf(id);
+        if (type != expected) {
+            throw new IllegalArgumentException("property " + id + " is of type " + type + " (expected: " +
+                                               expected + ')');
+        }
+    }
+
+    /**
+     * Checks that the given encoded properties are well-formed, which only walks over them without parsing their
+     * values. So a malformed message is still rejected by the decoder, instead of failing when a property is looked
+     * up later.
+     */
+    static void validate(ByteBuf buffer, int index, int length) {
+        int end = index + length;
+        while (index < end) {
+            short id = buffer.getUnsignedByte(index++);
+            Type type = typeOf(id);
+            if (type == null) {
+                throw new DecoderException("unknown property identifier: " + id);
+            }
+            switch (type) {
+                case BYTE:
+                    index += 1;
+                    break;
+                case TWO_BYTE_INTEGER:
+                    index += 2;
+                    break;
+                case FOUR_BYTE_INTEGER:
+                    index += 4;
+                    break;
+                case VARIABLE_BYTE_INTEGER:
+                    int digits = 0;
+                    byte digit;
+                    do {
+                        if (index == end || ++digits > 4) {
+                            throw new DecoderException("malformed properties");
+                        }
+                        digit = buffer.getByte(index++);
+                    } while ((digit & 0x80) != 0);
+                    break;
+                case STRING:
+                case BINARY:
+                    index = skipLengthPrefixed(buffer, index, end);
+                    break;
+                case STRING_PAIR:
+                    index = skipLengthPrefixed(buffer, skipLengthPrefixed(buffer, index, end), end);
+                    break;
+                default:
+                    throw new Error();
+            }
+        }
+        if (index != end) {
+            throw new DecoderException("malformed properties");
+        }
+    }
+
+    private static int skipLengthPrefixed(ByteBuf buffer, int index, int end) {
+        if (end - index < 2) {
+            throw new DecoderException("malformed properties");
+        }
+        return index + 2 + buffer.getUnsignedShort(index);
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(StringUtil.simpleClassName(this))
+            .append('[')
+            .append(ByteBufUtil.hexDump(bytes))
+            .append(']')
+            .toString();
+    }
+
+    /**
+     * A user property, which is a name and value pair defined by the application.
+     */
+    public static final class UserProperty {
+
+        private final String key;
+        private final String value;
+
+        public UserProperty(String key, String value) {
+            this.key = requireNonNull(key, "key");
+            this.value = requireNonNull(value, "value");
+        }
+
+        public String key() {
+            return key;
+        }
+
+        public String value() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return key + '=' + value;
+        }
+    }
+
+    /**
+     * Encodes {@link MqttProperties}.
+     */
+    public static final class Builder {
+
+        private final ByteBuf buf = Unpooled.buffer();
+
+        Builder() {
+        }
+
+        /**
+         * Adds a byte or integer property.
+         */
+        public Builder add(int id, int value) {
+            Type type = integerType(id);
+            buf.writeByte(id);
+            switch (type) {
+                case BYTE:
+                    buf.writeByte(value);
+                    break;
+                case TWO_BYTE_INTEGER:
+                    buf.writeShort(value);
+                    break;
+                case FOUR_BYTE_INTEGER:
+                    buf.writeInt(value);
+                    break;
+                case VARIABLE_BYTE_INTEGER:
+                    MqttEncoder.writeVariableLengthInt(buf, value);
+                    break;
+                default:
+                    throw new Error();
+            }
+            return this;
+        }
+
+        /**
+         * Adds a UTF-8 string property.
+         */
+        public Builder add(int id, String value) {
+            checkType(id, Type.STRING);
+            buf.writeByte(id);
+            writeString(value);
+            return this;
+        }
+
+        /**
+         * Adds a binary property.
+         */
+        public Builder add(int id, byte[] value) {
+            checkType(id, Type.BINARY);
+            buf.writeByte(id);
+            buf.writeShort(value.length);
+            buf.writeBytes(value);
+            return this;
+        }
+
+        public Builder addUserProperty(String key, String value) {
+            buf.writeByte(USER_PROPERTY);
+            writeString(requireNonNull(key, "key"));
+            writeString(requireNonNull(value, "value"));
+            return this;
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(CharsetUtil.UTF_8);
+            buf.writeShort(bytes.length);
+            buf.writeBytes(bytes);
+        }
+
+        public MqttProperties build() {
+            return wrap(ByteBufUtil.getBytes(buf));
+        }
+    }
+}
@@ -18,6 +18,8 @@ package io.netty.handler.codec.mqtt;
 
 import io.netty.util.internal.StringUtil;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * Variable Header of the {@link MqttPublishMessage}
  */
@@ -25,10 +27,20 @@ public final class MqttPublishVariableHeader {
 
     private final String topicName;
     private final int packetId;
+    private final MqttProperties properties;
 
     public MqttPublishVariableHeader(String topicName, int packetId) {
+        this(topicName, packetId, MqttProperties.NO_PROPERTIES);
+    }
+
+    /**
+     * Creates a new instance. With MQTT 5 the topic name may be empty if the {@link MqttProperties#TOPIC_ALIAS}
+     * property is present, in which case the receiver maps the alias back to the topic name it was last sent with.
+     */
+    public MqttPublishVariableHeader(String topicName, int packetId, MqttProperties properties) {
         this.topicName = topicName;
         this.packetId = packetId;
+        this.properties = requireNonNull(properties, "properties");
     }
 
     public String topicName() {
@@ -47,12 +59,17 @@ public final class MqttPublishVariableHeader {
         return packetId;
     }
 
+    public MqttProperties properties() {
+        return properties;
+    }
+
     @Override
     public String toString() {
         return new StringBuilder(StringUtil.simpleClassName(this))
             .append('[')
             .append("topicName=").append(topicName)
             .append(", packetId=").append(packetId)
+            .append(", properties=").append(properties)
             .append(']')
             .toString();
     }
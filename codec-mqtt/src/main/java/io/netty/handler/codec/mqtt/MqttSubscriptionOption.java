@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.netty.handler.codec.mqtt;
+
+import io.netty.util.internal.StringUtil;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Options of a subscription, which are only the {@link MqttQoS} before MQTT 5. See
+ * <a href="https://docs.oasis-open.org/mqtt/mqtt/v5.0/os/mqtt-v5.0-os.html#_Toc3901169">MQTT 5 Subscription
+ * Options</a>.
+ */
+public final class MqttSubscriptionOption {
+
+    /**
+     * Whether retained messages are sent when a subscription is established.
+     */
+    public enum RetainedHandlingPolicy {
+        SEND_AT_SUBSCRIBE(0),
+        SEND_AT_SUBSCRIBE_IF_NOT_YET_EXISTS(1),
+        DONT_SEND_AT_SUBSCRIBE(2);
+
+        private final int value;
+
+        RetainedHandlingPolicy(int value) {
+            this.value = value;
+        }
+
+        public int value() {
+            return value;
+        }
+
+        public static RetainedHandlingPolicy valueOf(int value) {
+            for (RetainedHandlingPolicy policy: values()) {
+                if (policy.value == value) {
+                    return policy;
+                }
+            }
+            throw new IllegalArgumentException("invalid RetainedHandlingPolicy: " + value);
+        }
+    }
+
+    private final MqttQoS qos;
+    private final boolean noLocal;
+    private final boolean retainAsPublished;
+    private final RetainedHandlingPolicy retainHandling;
+
+    public MqttSubscriptionOption(MqttQoS qos, boolean noLocal, boolean retainAsPublished,
+                                  RetainedHandlingPolicy retainHandling) {
+        this.qos = requireNonNull(qos, "qos");
+        this.noLocal = noLocal;
+        this.retainAsPublished = retainAsPublished;
+        this.retainHandling = requireNonNull(retainHandling, "retainHandling");
+    }
+
+    public static MqttSubscriptionOption onlyFromQos(MqttQoS qos) {
+        return new MqttSubscriptionOption(qos, false, false, RetainedHandlingPolicy.SEND_AT_SUBSCRIBE);
+    }
+
+    public MqttQoS qos() {
+        return qos;
+    }
+
+    public boolean isNoLocal() {
+        return noLocal;
+    }
+
+    public boolean isRetainAsPublished() {
+        return retainAsPublished;
+    }
+
+    public RetainedHandlingPolicy retainHandling() {
+        return retainHandling;
+    }
+
+    int value() {
+        int value = qos.value();
+        if (noLocal) {
+            value |= 0x04;
+        }
+        if (retainAsPublished) {
+            value |= 0x08;
+        }
+        return value | retainHandling.value() << 4;
+    }
+
+    static MqttSubscriptionOption valueOf(int value) {
+        return new MqttSubscriptionOption(
+                MqttQoS.valueOf(value & 0x03),
+                (value & 0x04) != 0,
+                (value & 0x08) != 0,
+                RetainedHandlingPolicy.valueOf((value & 0x30) >> 4));
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(StringUtil.simpleClassName(this))
+            .append('[')
+            .append("qos=").append(qos)
+            .append(", noLocal=").append(noLocal)
+            .append(", retainAsPublished=").append(retainAsPublished)
+            .append(", retainHandling=").append(retainHandling)
+            .append(']')
+            .toString();
+    }
+}
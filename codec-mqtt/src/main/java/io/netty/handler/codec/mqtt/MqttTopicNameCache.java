@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.PlatformDependent;
+
+import static io.netty.util.internal.MathUtil.isOutOfBounds;
+
+/**
+ * Cache of topic names which maps their UTF-8 bytes to a shared {@link String}, so decoding the topic name of a
+ * PUBLISH message neither allocates nor decodes anything if the same topic was seen before. This pays off for brokers
+ * which receive many messages on few topics, such as many devices reporting to the same topic.
+ * <p>
+ * The cache is a fixed size table without any locking which is shared by all decoders. A slot holds the last topic
+ * name which hashed to it, so a topic name may be evicted by another one at any time. As an {@link Entry} is
+ * immutable, a decoder always sees either a complete entry or none at all.
+ */
+final class MqttTopicNameCache {
+
+    static final MqttTopicNameCache SHARED = new MqttTopicNameCache(4096);
+
+    // Longer topic names are unlikely to be repeated often enough to be worth it.
+    private static final int MAX_CACHED_LENGTH = 256;
+    // The bytes are read eight at a time, which needs unaligned access.
+    private static final boolean UNALIGNED = PlatformDependent.isUnaligned();
+
+    private final Entry[] entries;
+    private final int mask;
+
+    MqttTopicNameCache(int size) {
+        assert Integer.bitCount(size) == 1;
+        entries = new Entry[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Returns the topic name of the given UTF-8 bytes, without changing the indexes of {@code buffer}.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are not within the readable bytes of {@code buffer}
+     */
+    String get(ByteBuf buffer, int index, int length) {
+        // The memory of the buffer is read without the bounds checks of the buffer below.
+        if (index < buffer.readerIndex() || isOutOfBounds(index, length, buffer.writerIndex())) {
+            throw new IndexOutOfBoundsException(
+                    "index: " + index + ", length: " + length + " (expected: range(" + buffer.readerIndex() + ", " +
+                    buffer.writerIndex() + "))");
+        }
+        if (length > MAX_CACHED_LENGTH || !UNALIGNED) {
+            return buffer.toString(index, length, CharsetUtil.UTF_8);
+        }
+        // Hashing and comparing byte by byte through the bounds checks of a ByteBuf, which is usually a slice, costs
+        // more than decoding the topic name. So read the memory of the buffer directly, eight bytes at a time.
+        final byte[] array;
+        final long address;
+        final int offset;
+        if (buffer.hasArray()) {
+            array = buffer.array();
+            address = 0;
+            offset = buffer.arrayOffset() + index;
+        } else if (buffer.hasMemoryAddress()) {
+            array = null;
+            address = buffer.memoryAddress() + index;
+            offset = 0;
+        } else {
+            array = ByteBufUtil.getBytes(buffer, index, length, false);
+            address = 0;
+            offset = 0;
+        }
+
+        int hash = length;
+        int i = 0;
+        for (; i <= length - 8; i += 8) {
+            long word = longAt(array, address, offset + i);
+            hash = 31 * hash + (int) (word ^ word >>> 32);
+        }
+        for (; i < length; i++) {
+            hash = 31 * hash + byteAt(array, address, offset + i);
+        }
+        hash ^= hash >>> 16;
+
+        int slot = hash & mask;
+        Entry entry = entries[slot];
+        if (entry != null && entry.hash == hash && entry.contentEquals(array, address, offset, length)) {
+            return entry.name;
+        }
+        String name = buffer.toString(index, length, CharsetUtil.UTF_8);
+        entries[slot] = new Entry(hash, ByteBufUtil.getBytes(buffer, index, length), name);
+        return name;
+    }
+
+    private static long longAt(byte[] array, long address, int index) {
+        return array != null ? PlatformDependent.getLong(array, index) : PlatformDependent.getLong(address + index);
+    }
+
+    private static byte byteAt(byte[] array, long address, int index) {
+        return array != null ? array[index] : PlatformDependent.getByte(address + index);
+    }
+
+    private static final class Entry {
+        final int hash;
+        final byte[] bytes;
+        final String name;
+
+        Entry(int hash, byte[] bytes, String name) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.name = name;
+        }
+
+        boolean contentEquals(byte[] array, long address, int offset, int length) {
+            if (bytes.length != length) {
+                return false;
+            }
+            int i = 0;
+            for (; i <= length - 8; i += 8) {
+                if (PlatformDependent.getLong(bytes, i) != longAt(array, address, offset + i)) {
+                    return false;
+                }
+            }
+            for (; i < length; i++) {
+                if (bytes[i] != byteAt(array, address, offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -18,18 +18,24 @@ package io.netty.handler.codec.mqtt;
 
 import io.netty.util.internal.StringUtil;
 
+import static java.util.Objects.requireNonNull;
+
 /**
- * Contains a topic name and Qos Level.
+ * Contains a topic name and Qos Level, as well as the other {@link MqttSubscriptionOption}s of MQTT 5.
  * This is part of the {@link MqttSubscribePayload}
  */
 public final class MqttTopicSubscription {
 
     private final String topicFilter;
-    private final MqttQoS qualityOfService;
+    private final MqttSubscriptionOption option;
 
     public MqttTopicSubscription(String topicFilter, MqttQoS qualityOfService) {
+        this(topicFilter, MqttSubscriptionOption.onlyFromQos(qualityOfService));
+    }
+
+    public MqttTopicSubscription(String topicFilter, MqttSubscriptionOption option) {
         this.topicFilter = topicFilter;
-        this.qualityOfService = qualityOfService;
+        this.option = requireNonNull(option, "option");
     }
 
     public String topicName() {
@@ -37,7 +43,11 @@ public final class MqttTopicSubscription {
     }
 
     public MqttQoS qualityOfService() {
-        return qualityOfService;
+        return option.qos();
+    }
+
+    public MqttSubscriptionOption option() {
+        return option;
     }
 
     @Override
@@ -45,7 +55,7 @@ public final class MqttTopicSubscription {
         return new StringBuilder(StringUtil.simpleClassName(this))
             .append('[')
             .append("topicFilter=").append(topicFilter)
-            .append(", qualityOfService=").append(qualityOfService)
+            .append(", option=").append(option)
             .append(']')
             .toString();
     }
@@ -25,7 +25,8 @@ import io.netty.util.CharsetUtil;
  */
 public enum MqttVersion {
     MQTT_3_1("MQIsdp", (byte) 3),
-    MQTT_3_1_1("MQTT", (byte) 4);
+    MQTT_3_1_1("MQTT", (byte) 4),
+    MQTT_5("MQTT", (byte) 5);
 
     private final String name;
     private final byte level;
@@ -48,16 +49,20 @@ public enum MqttVersion {
     }
 
     public static MqttVersion fromProtocolNameAndLevel(String protocolName, byte protocolLevel) {
+        boolean knownName = false;
         for (MqttVersion mv : values()) {
             if (mv.name.equals(protocolName)) {
                 if (mv.level == protocolLevel) {
                     return mv;
-                } else {
-                    throw new MqttUnacceptableProtocolVersionException(protocolName + " and " +
-                            protocolLevel + " are not match");
                 }
+                // Several versions share the same protocol name, so keep looking.
+                knownName = true;
             }
         }
+        if (knownName) {
+            throw new MqttUnacceptableProtocolVersionException(protocolName + " and " +
+                    protocolLevel + " are not match");
+        }
         throw new MqttUnacceptableProtocolVersionException(protocolName + "is unknown protocol name");
     }
 }
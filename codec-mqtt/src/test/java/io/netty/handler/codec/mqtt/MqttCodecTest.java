@@ -18,11 +18,15 @@ package io.netty.handler.codec.mqtt;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.EncoderException;
+import io.netty.util.Attribute;
 import io.netty.util.CharsetUtil;
+import io.netty.util.DefaultAttributeMap;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -56,6 +60,9 @@ public class MqttCodecTest {
     @Mock
     private final Channel channel = mock(Channel.class);
 
+    private final Attribute<MqttVersion> versionAttr =
+            new DefaultAttributeMap().attr(MqttCodecUtil.MQTT_VERSION_KEY);
+
     private final MqttDecoder mqttDecoder = new MqttDecoder();
 
     /**
@@ -67,6 +74,7 @@ public class MqttCodecTest {
     public void setup() {
         MockitoAnnotations.initMocks(this);
         when(ctx.channel()).thenReturn(channel);
+        when(channel.attr(MqttCodecUtil.MQTT_VERSION_KEY)).thenReturn(versionAttr);
     }
 
     @Test
@@ -285,8 +293,8 @@ public class MqttCodecTest {
         final MqttMessage message = createMessageWithFixedHeader(MqttMessageType.PINGREQ);
         ByteBuf byteBuf = MqttEncoder.doEncode(ALLOCATOR, message);
         try {
-            // setting an invalid message type (15, reserved and forbidden by MQTT 3.1.1 spec)
-            byteBuf.setByte(0, 0xF0);
+            // setting an invalid message type (0, reserved and forbidden by MQTT 3.1.1 and MQTT 5 spec)
+            byteBuf.setByte(0, 0x00);
             final List<Object> out = new LinkedList<>();
             mqttDecoder.decode(ctx, byteBuf, out);
 
@@ -296,12 +304,283 @@ public class MqttCodecTest {
             assertTrue(decodedMessage.decoderResult().isFailure());
             Throwable cause = decodedMessage.decoderResult().cause();
             assertTrue(cause instanceof IllegalArgumentException);
-            assertEquals("unknown message type: 15", cause.getMessage());
+            assertEquals("unknown message type: 0", cause.getMessage());
+        } finally {
+            byteBuf.release();
+        }
+    }
+
+    @Test
+    public void testAuthMessageForMqtt311() throws Exception {
+        final MqttMessage message = createMessageWithFixedHeader(MqttMessageType.AUTH);
+        try {
+            MqttEncoder.doEncode(ALLOCATOR, message);
+            fail();
+        } catch (EncoderException expected) {
+            // expected
+        }
+
+        ByteBuf byteBuf = MqttEncoder.doEncode(ALLOCATOR, createMessageWithFixedHeader(MqttMessageType.DISCONNECT));
+        try {
+            byteBuf.setByte(0, 0xF0);
+            final List<Object> out = new LinkedList<>();
+            mqttDecoder.decode(ctx, byteBuf, out);
+
+            assertEquals("Expected one object but got " + out.size(), 1, out.size());
+            final MqttMessage decodedMessage = (MqttMessage) out.get(0);
+            assertTrue(decodedMessage.decoderResult().isFailure());
+            assertTrue(decodedMessage.decoderResult().cause() instanceof DecoderException);
         } finally {
             byteBuf.release();
         }
     }
 
+    @Test
+    public void testConnectMessageForMqtt5() throws Exception {
+        final MqttConnectMessage message = MqttMessageBuilders.connect()
+                .clientId(CLIENT_ID)
+                .protocolVersion(MqttVersion.MQTT_5)
+                .username(USER_NAME)
+                .password(PASSWORD.getBytes(CharsetUtil.UTF_8))
+                .willFlag(true)
+                .willTopic(WILL_TOPIC)
+                .willMessage(WILL_MESSAGE.getBytes(CharsetUtil.UTF_8))
+                .willProperties(MqttProperties.builder()
+                        .add(MqttProperties.WILL_DELAY_INTERVAL, 30)
+                        .add(MqttProperties.CONTENT_TYPE, "text/plain")
+                        .build())
+                .keepAlive(KEEP_ALIVE_SECONDS)
+                .properties(MqttProperties.builder()
+                        .add(MqttProperties.SESSION_EXPIRY_INTERVAL, 3600)
+                        .add(MqttProperties.TOPIC_ALIAS_MAXIMUM, 16)
+                        .addUserProperty("region", "eu")
+                        .build())
+                .build();
+        ByteBuf byteBuf = MqttEncoder.doEncode(ALLOCATOR, message);
+
+        final List<Object> out = new LinkedList<>();
+        mqttDecoder.decode(ctx, byteBuf, out);
+
+        assertEquals("Expected one object but got " + out.size(), 1, out.size());
+
+        final MqttConnectMessage decodedMessage = (MqttConnectMessage) out.get(0);
+        validateFixedHeaders(message.fixedHeader(), decodedMessage.fixedHeader());
+        validateConnectVariableHeader(message.variableHeader(), decodedMessage.variableHeader());
+        validateConnectPayload(message.payload(), decodedMessage.payload());
+        assertEquals(MqttVersion.MQTT_5, versionAttr.get());
+
+        MqttProperties properties = decodedMessage.variableHeader().properties();
+        assertEquals(3600, properties.intValue(MqttProperties.SESSION_EXPIRY_INTERVAL, 0));
+        assertEquals(16, properties.intValue(MqttProperties.TOPIC_ALIAS_MAXIMUM, 0));
+        assertEquals(-1, properties.intValue(MqttProperties.RECEIVE_MAXIMUM, -1));
+        assertEquals(1, properties.userProperties().size());
+        assertEquals("region", properties.userProperties().get(0).key());
+        assertEquals("eu", properties.userProperties().get(0).value());
+
+        MqttProperties willProperties = decodedMessage.payload().willProperties();
+        assertEquals(30, willProperties.intValue(MqttProperties.WILL_DELAY_INTERVAL, 0));
+        assertEquals("text/plain", willProperties.stringValue(MqttProperties.CONTENT_TYPE));
+    }
+
+    @Test
+    public void testConnAckMessageForMqtt5() throws Exception {
+        final MqttConnAckMessage message = MqttMessageBuilders.connAck()
+                .returnCode(MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_BUSY)
+                .properties(MqttProperties.builder()
+                        .add(MqttProperties.REASON_STRING, "try later")
+                        .build())
+                .build();
+
+        final MqttConnAckMessage decodedMessage = (MqttConnAckMessage) encodeAndDecode(MqttVersion.MQTT_5, message);
+        validateFixedHeaders(message.fixedHeader(), decodedMessage.fixedHeader());
+        validateConnAckVariableHeader(message.variableHeader(), decodedMessage.variableHeader());
+        assertEquals("try later",
+                     decodedMessage.variableHeader().properties().stringValue(MqttProperties.REASON_STRING));
+    }
+
+    @Test
+    public void testPublishMessageWithTopicAliasForMqtt5() throws Exception {
+        final MqttPublishMessage message = MqttMessageBuilders.publish()
+                .topicName("")
+                .qos(MqttQoS.AT_LEAST_ONCE)
+                .messageId(1234)
+                .payload(Unpooled.copiedBuffer("whatever", CharsetUtil.UTF_8))
+                .properties(MqttProperties.builder()
+                        .add(MqttProperties.TOPIC_ALIAS, 5)
+                        .add(MqttProperties.SUBSCRIPTION_IDENTIFIER, 1)
+                        .add(MqttProperties.SUBSCRIPTION_IDENTIFIER, 300000)
+                        .add(MqttProperties.CORRELATION_DATA, new byte[] { 1, 2, 3 })
+                        .build())
+                .build();
+
+        final MqttPublishMessage decodedMessage = (MqttPublishMessage) encodeAndDecode(MqttVersion.MQTT_5, message);
+        try {
+            validateFixedHeaders(message.fixedHeader(), decodedMessage.fixedHeader());
+            validatePublishVariableHeader(message.variableHeader(), decodedMessage.variableHeader());
+            validatePublishPayload(message.payload(), decodedMessage.payload());
+
+            MqttProperties properties = decodedMessage.variableHeader().properties();
+            assertEquals(5, properties.intValue(MqttProperties.TOPIC_ALIAS, 0));
+            assertEquals(Arrays.asList(1, 300000), properties.intValues(MqttProperties.SUBSCRIPTION_IDENTIFIER));
+            assertArrayEquals(new byte[] { 1, 2, 3 }, properties.binaryValue(MqttProperties.CORRELATION_DATA));
+            assertNull(properties.stringValue(MqttProperties.RESPONSE_TOPIC));
+        } finally {
+            message.release();
+            decodedMessage.release();
+        }
+    }
+
+    @Test
+    public void testPublishMessageWithEmptyTopicForMqtt5() throws Exception {
+        final MqttPublishMessage message = MqttMessageBuilders.publish()
+                .topicName("")
+                .qos(MqttQoS.AT_MOST_ONCE)
+                .payload(Unpooled.EMPTY_BUFFER)
+                .build();
+
+        final MqttMessage decodedMessage = encodeAndDecode(MqttVersion.MQTT_5, message);
+        message.release();
+        assertTrue(decodedMessage.decoderResult().isFailure());
+        assertTrue(decodedMessage.decoderResult().cause() instanceof DecoderException);
+    }
+
+    @Test
+    public void testPubAckMessageForMqtt5() throws Exception {
+        final MqttPubAckMessage message = MqttMessageBuilders.pubAck()
+                .packetId(12345)
+                .reasonCode((byte) 0x10)
+                .properties(MqttProperties.builder()
+                        .add(MqttProperties.REASON_STRING, "no matching subscribers")
+                        .build())
+                .build();
+
+        final MqttPubAckMessage decodedMessage = (MqttPubAckMessage) encodeAndDecode(MqttVersion.MQTT_5, message);
+        validateFixedHeaders(message.fixedHeader(), decodedMessage.fixedHeader());
+        validateMessageIdVariableHeader(message.variableHeader(), decodedMessage.variableHeader());
+        MqttPubReplyMessageVariableHeader variableHeader =
+                (MqttPubReplyMessageVariableHeader) decodedMessage.variableHeader();
+        assertEquals(0x10, variableHeader.reasonCode());
+        assertEquals("no matching subscribers",
+                     variableHeader.properties().stringValue(MqttProperties.REASON_STRING));
+    }
+
+    @Test
+    public void testPubAckMessageWithoutReasonCodeForMqtt5() throws Exception {
+        final MqttPubAckMessage message = MqttMessageBuilders.pubAck().packetId(12345).build();
+        ByteBuf byteBuf = MqttEncoder.doEncode(ALLOCATOR, MqttVersion.MQTT_5, message);
+        // The reason code and the properties are left out.
+        assertEquals(4, byteBuf.readableBytes());
+
+        versionAttr.set(MqttVersion.MQTT_5);
+        final List<Object> out = new LinkedList<>();
+        mqttDecoder.decode(ctx, byteBuf, out);
+
+        assertEquals("Expected one object but got " + out.size(), 1, out.size());
+        MqttPubReplyMessageVariableHeader variableHeader =
+                (MqttPubReplyMessageVariableHeader) ((MqttMessage) out.get(0)).variableHeader();
+        assertEquals(12345, variableHeader.messageId());
+        assertEquals(MqttPubReplyMessageVariableHeader.REASON_CODE_OK, variableHeader.reasonCode());
+        assertTrue(variableHeader.properties().isEmpty());
+    }
+
+    @Test
+    public void testSubscribeMessageForMqtt5() throws Exception {
+        final MqttSubscribeMessage message = MqttMessageBuilders.subscribe()
+                .messageId(12345)
+                .addSubscription("$share/group/sensors/+", new MqttSubscriptionOption(
+                        MqttQoS.EXACTLY_ONCE, true, true,
+                        MqttSubscriptionOption.RetainedHandlingPolicy.DONT_SEND_AT_SUBSCRIBE))
+                .addSubscription(MqttQoS.AT_LEAST_ONCE, "/abc")
+                .properties(MqttProperties.builder()
+                        .add(MqttProperties.SUBSCRIPTION_IDENTIFIER, 42)
+                        .build())
+                .build();
+
+        final MqttSubscribeMessage decodedMessage =
+                (MqttSubscribeMessage) encodeAndDecode(MqttVersion.MQTT_5, message);
+        validateFixedHeaders(message.fixedHeader(), decodedMessage.fixedHeader());
+        validateMessageIdVariableHeader(message.variableHeader(), decodedMessage.variableHeader());
+        validateSubscribePayload(message.payload(), decodedMessage.payload());
+
+        MqttSubscriptionOption option = decodedMessage.payload().topicSubscriptions().get(0).option();
+        assertTrue(option.isNoLocal());
+        assertTrue(option.isRetainAsPublished());
+        assertEquals(MqttSubscriptionOption.RetainedHandlingPolicy.DONT_SEND_AT_SUBSCRIBE, option.retainHandling());
+        assertEquals(42, ((MqttMessageIdAndPropertiesVariableHeader) decodedMessage.variableHeader())
+                .properties().intValue(MqttProperties.SUBSCRIPTION_IDENTIFIER, 0));
+    }
+
+    @Test
+    public void testUnsubAckMessageForMqtt5() throws Exception {
+        final MqttUnsubAckMessage message = new MqttUnsubAckMessage(
+                new MqttFixedHeader(MqttMessageType.UNSUBACK, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                MqttMessageIdVariableHeader.from(12345),
+                new MqttUnsubAckPayload((short) 0x00, (short) 0x11));
+
+        final MqttUnsubAckMessage decodedMessage = (MqttUnsubAckMessage) encodeAndDecode(MqttVersion.MQTT_5, message);
+        validateFixedHeaders(message.fixedHeader(), decodedMessage.fixedHeader());
+        validateMessageIdVariableHeader(message.variableHeader(), decodedMessage.variableHeader());
+        assertEquals(message.payload().unsubscribeReasonCodes(), decodedMessage.payload().unsubscribeReasonCodes());
+    }
+
+    @Test
+    public void testAuthMessageForMqtt5() throws Exception {
+        final MqttMessage message = MqttMessageBuilders.auth()
+                .reasonCode((byte) 0x18)
+                .properties(MqttProperties.builder()
+                        .add(MqttProperties.AUTHENTICATION_METHOD, "SCRAM-SHA-1")
+                        .add(MqttProperties.AUTHENTICATION_DATA, new byte[] { 4, 5 })
+                        .build())
+                .build();
+
+        final MqttMessage decodedMessage = encodeAndDecode(MqttVersion.MQTT_5, message);
+        validateFixedHeaders(message.fixedHeader(), decodedMessage.fixedHeader());
+        MqttReasonCodeAndPropertiesVariableHeader variableHeader =
+                (MqttReasonCodeAndPropertiesVariableHeader) decodedMessage.variableHeader();
+        assertEquals(0x18, variableHeader.reasonCode());
+        assertEquals("SCRAM-SHA-1", variableHeader.properties().stringValue(MqttProperties.AUTHENTICATION_METHOD));
+        assertArrayEquals(new byte[] { 4, 5 },
+                          variableHeader.properties().binaryValue(MqttProperties.AUTHENTICATION_DATA));
+    }
+
+    @Test
+    public void testDisconnectMessageForMqtt5() throws Exception {
+        final MqttMessage message = MqttMessageBuilders.disconnect().build();
+        ByteBuf byteBuf = MqttEncoder.doEncode(ALLOCATOR, MqttVersion.MQTT_5, message);
+        // The reason code and the properties are left out.
+        assertEquals(2, byteBuf.readableBytes());
+        byteBuf.release();
+
+        final MqttMessage decodedMessage = encodeAndDecode(MqttVersion.MQTT_5, MqttMessageBuilders.disconnect()
+                .reasonCode((byte) 0x04)
+                .build());
+        MqttReasonCodeAndPropertiesVariableHeader variableHeader =
+                (MqttReasonCodeAndPropertiesVariableHeader) decodedMessage.variableHeader();
+        assertEquals(0x04, variableHeader.reasonCode());
+        assertTrue(variableHeader.properties().isEmpty());
+    }
+
+    @Test
+    public void testMalformedPropertiesForMqtt5() throws Exception {
+        final MqttMessage message = MqttMessageBuilders.disconnect()
+                .properties(MqttProperties.builder()
+                        .add(MqttProperties.REASON_STRING, "bye")
+                        .build())
+                .build();
+        ByteBuf byteBuf = MqttEncoder.doEncode(ALLOCATOR, MqttVersion.MQTT_5, message);
+        // Replace the identifier of the property by an unknown one.
+        byteBuf.setByte(4, 0x7F);
+
+        versionAttr.set(MqttVersion.MQTT_5);
+        final List<Object> out = new LinkedList<>();
+        mqttDecoder.decode(ctx, byteBuf, out);
+
+        assertEquals("Expected one object but got " + out.size(), 1, out.size());
+        final MqttMessage decodedMessage = (MqttMessage) out.get(0);
+        assertTrue(decodedMessage.decoderResult().isFailure());
+        assertEquals("unknown property identifier: 127", decodedMessage.decoderResult().cause().getMessage());
+    }
+
     @Test
     public void testConnectMessageForMqtt31TooLarge() throws Exception {
         final MqttConnectMessage message = createConnectMessage(MqttVersion.MQTT_3_1);
@@ -481,6 +760,17 @@ public class MqttCodecTest {
                 (MqttMessageIdVariableHeader) decodedMessage.variableHeader());
     }
 
+    private MqttMessage encodeAndDecode(MqttVersion mqttVersion, MqttMessage message) throws Exception {
+        ByteBuf byteBuf = MqttEncoder.doEncode(ALLOCATOR, mqttVersion, message);
+        versionAttr.set(mqttVersion);
+
+        final List<Object> out = new LinkedList<>();
+        mqttDecoder.decode(ctx, byteBuf, out);
+
+        assertEquals("Expected one object but got " + out.size(), 1, out.size());
+        return (MqttMessage) out.get(0);
+    }
+
     // Factory methods of different MQTT
     // Message types to help testing
 
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.netty.handler.codec.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MqttFanoutPublishTest {
+
+    private static final ByteBufAllocator ALLOCATOR = UnpooledByteBufAllocator.DEFAULT;
+
+    @Test
+    public void testEncodesLikeMqttEncoder() {
+        MqttProperties properties = MqttProperties.builder()
+                .add(MqttProperties.CONTENT_TYPE, "text/plain")
+                .addUserProperty("key", "value")
+                .build();
+        ByteBuf payload = Unpooled.copiedBuffer("payload", CharsetUtil.UTF_8);
+        MqttPublishMessage message = publish(MqttQoS.EXACTLY_ONCE, 1, true, properties, payload);
+        MqttFanoutPublish fanout = new MqttFanoutPublish(message);
+        message.release();
+        try {
+            for (MqttVersion version: new MqttVersion[] { MqttVersion.MQTT_3_1_1, MqttVersion.MQTT_5 }) {
+                for (MqttQoS qos: new MqttQoS[] { MqttQoS.AT_MOST_ONCE, MqttQoS.AT_LEAST_ONCE }) {
+                    MqttPublishMessage expectedMessage = publish(qos, 42, true, properties, payload.retain());
+                    ByteBuf expected = MqttEncoder.doEncode(ALLOCATOR, version, expectedMessage);
+                    expectedMessage.release();
+                    ByteBuf actual = fanout.encode(ALLOCATOR, version, qos, 42);
+                    try {
+                        assertEquals(version + " " + qos, expected, actual);
+                    } finally {
+                        expected.release();
+                        actual.release();
+                    }
+                }
+            }
+        } finally {
+            assertTrue(fanout.release());
+        }
+        assertEquals(0, payload.refCnt());
+    }
+
+    @Test
+    public void testSharesPayload() {
+        ByteBuf payload = Unpooled.directBuffer().writeBytes(new byte[1024]);
+        MqttPublishMessage message = publish(MqttQoS.AT_MOST_ONCE, 0, false, MqttProperties.NO_PROPERTIES, payload);
+        MqttFanoutPublish fanout = new MqttFanoutPublish(message);
+        message.release();
+        assertEquals(1, payload.refCnt());
+
+        ByteBuf first = fanout.encode(ALLOCATOR, MqttVersion.MQTT_3_1_1, MqttQoS.AT_MOST_ONCE, 0);
+        ByteBuf second = fanout.encode(ALLOCATOR, MqttVersion.MQTT_3_1_1, MqttQoS.AT_LEAST_ONCE, 1);
+        assertEquals(3, payload.refCnt());
+        assertTrue(fanout.release());
+        assertEquals(2, payload.refCnt());
+
+        CompositeByteBuf composite = (CompositeByteBuf) first;
+        assertEquals(2, composite.numComponents());
+        assertEquals(payload.memoryAddress(), composite.internalComponent(1).memoryAddress());
+        assertTrue(first.release());
+        assertTrue(second.release());
+        assertEquals(0, payload.refCnt());
+    }
+
+    @Test
+    public void testEncodesForChannelVersion() {
+        MqttProperties properties = MqttProperties.builder().add(MqttProperties.CONTENT_TYPE, "text/plain").build();
+        MqttPublishMessage message = publish(MqttQoS.AT_MOST_ONCE, 0, false, properties, Unpooled.EMPTY_BUFFER);
+        MqttFanoutPublish fanout = new MqttFanoutPublish(message);
+        message.release();
+        EmbeddedChannel channel = new EmbeddedChannel(MqttEncoder.INSTANCE);
+        try {
+            ByteBuf v3 = fanout.encode(channel, MqttQoS.AT_MOST_ONCE, 0);
+            MqttCodecUtil.setMqttVersion(channel.pipeline().firstContext(), MqttVersion.MQTT_5);
+            ByteBuf v5 = fanout.encode(channel, MqttQoS.AT_MOST_ONCE, 0);
+            // The properties are only written with MQTT 5.
+            assertEquals(v3.readableBytes() + 1 + properties.encodedLength(), v5.readableBytes());
+
+            // The encoder passes the encoded message on unchanged.
+            assertTrue(channel.writeOutbound(v5));
+            ByteBuf written = channel.readOutbound();
+            assertEquals(v5, written);
+            written.release();
+            v3.release();
+        } finally {
+            fanout.release();
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testDoesNotForwardConnectionProperties() {
+        MqttProperties properties = MqttProperties.builder()
+                .add(MqttProperties.TOPIC_ALIAS, 3)
+                .add(MqttProperties.CONTENT_TYPE, "text/plain")
+                .add(MqttProperties.SUBSCRIPTION_IDENTIFIER, 1)
+                .add(MqttProperties.SUBSCRIPTION_IDENTIFIER, 200000)
+                .build();
+        MqttPublishMessage message = publish(MqttQoS.AT_MOST_ONCE, 0, false, properties, Unpooled.EMPTY_BUFFER);
+        MqttFanoutPublish fanout = new MqttFanoutPublish(message);
+        message.release();
+
+        MqttProperties forwardedProperties = MqttProperties.builder()
+                .add(MqttProperties.CONTENT_TYPE, "text/plain")
+                .build();
+        assertEncodes(MqttVersion.MQTT_5,
+                      publish(MqttQoS.AT_MOST_ONCE, 0, false, forwardedProperties, Unpooled.EMPTY_BUFFER),
+                      fanout.encode(ALLOCATOR, MqttVersion.MQTT_5, MqttQoS.AT_MOST_ONCE, 0));
+        assertTrue(fanout.release());
+    }
+
+    @Test
+    public void testSubscriberProperties() {
+        MqttProperties properties = MqttProperties.builder()
+                .add(MqttProperties.CONTENT_TYPE, "text/plain")
+                .build();
+        ByteBuf payload = Unpooled.directBuffer().writeBytes(new byte[1024]);
+        MqttPublishMessage message = publish(MqttQoS.AT_LEAST_ONCE, 1, false, properties, payload);
+        MqttFanoutPublish fanout = new MqttFanoutPublish(message);
+        message.release();
+
+        MqttProperties subscriberProperties = MqttProperties.builder()
+                .add(MqttProperties.SUBSCRIPTION_IDENTIFIER, 7)
+                .add(MqttProperties.SUBSCRIPTION_IDENTIFIER, 300)
+                .build();
+        MqttProperties expectedProperties = MqttProperties.builder()
+                .add(MqttProperties.CONTENT_TYPE, "text/plain")
+                .add(MqttProperties.SUBSCRIPTION_IDENTIFIER, 7)
+                .add(MqttProperties.SUBSCRIPTION_IDENTIFIER, 300)
+                .build();
+        ByteBuf actual = fanout.encode(ALLOCATOR, MqttVersion.MQTT_5, MqttQoS.AT_LEAST_ONCE, 42, subscriberProperties);
+        // The payload is still shared.
+        assertEquals(payload.memoryAddress(), ((CompositeByteBuf) actual).internalComponent(1).memoryAddress());
+        assertEncodes(MqttVersion.MQTT_5,
+                      publish(MqttQoS.AT_LEAST_ONCE, 42, false, expectedProperties, payload.retain()), actual);
+
+        // Properties are only written with MQTT 5.
+        assertEncodes(MqttVersion.MQTT_3_1_1,
+                      publish(MqttQoS.AT_LEAST_ONCE, 42, false, MqttProperties.NO_PROPERTIES, payload.retain()),
+                      fanout.encode(ALLOCATOR, MqttVersion.MQTT_3_1_1, MqttQoS.AT_LEAST_ONCE, 42,
+                                    subscriberProperties));
+        assertTrue(fanout.release());
+        assertEquals(0, payload.refCnt());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyTopicName() {
+        MqttProperties properties = MqttProperties.builder().add(MqttProperties.TOPIC_ALIAS, 3).build();
+        MqttPublishMessage message = publish("", MqttQoS.AT_MOST_ONCE, 0, false, properties, Unpooled.EMPTY_BUFFER);
+        try {
+            new MqttFanoutPublish(message);
+        } finally {
+            message.release();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyResolvedTopicName() {
+        MqttPublishMessage message = publish(
+                MqttQoS.AT_MOST_ONCE, 0, false, MqttProperties.NO_PROPERTIES, Unpooled.EMPTY_BUFFER);
+        try {
+            new MqttFanoutPublish(message, "");
+        } finally {
+            message.release();
+        }
+    }
+
+    @Test
+    public void testResolvedTopicName() {
+        MqttProperties properties = MqttProperties.builder().add(MqttProperties.TOPIC_ALIAS, 3).build();
+        MqttPublishMessage message = publish("", MqttQoS.AT_MOST_ONCE, 0, false, properties, Unpooled.EMPTY_BUFFER);
+        MqttFanoutPublish fanout = new MqttFanoutPublish(message, "/resolved");
+        message.release();
+
+        assertEncodes(MqttVersion.MQTT_5,
+                      publish("/resolved", MqttQoS.AT_MOST_ONCE, 0, false, MqttProperties.NO_PROPERTIES,
+                              Unpooled.EMPTY_BUFFER),
+                      fanout.encode(ALLOCATOR, MqttVersion.MQTT_5, MqttQoS.AT_MOST_ONCE, 0));
+        assertTrue(fanout.release());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPacketId() {
+        MqttPublishMessage message = publish(
+                MqttQoS.AT_MOST_ONCE, 0, false, MqttProperties.NO_PROPERTIES, Unpooled.EMPTY_BUFFER);
+        MqttFanoutPublish fanout = new MqttFanoutPublish(message);
+        try {
+            fanout.encode(ALLOCATOR, MqttVersion.MQTT_3_1_1, MqttQoS.AT_LEAST_ONCE, 0);
+        } finally {
+            fanout.release();
+        }
+    }
+
+    private static void assertEncodes(MqttVersion version, MqttPublishMessage expectedMessage, ByteBuf actual) {
+        ByteBuf expected = MqttEncoder.doEncode(ALLOCATOR, version, expectedMessage);
+        expectedMessage.release();
+        try {
+            assertEquals(expected, actual);
+        } finally {
+            expected.release();
+            actual.release();
+        }
+    }
+
+    private static MqttPublishMessage publish(MqttQoS qos, int packetId, boolean retain, MqttProperties properties,
+                                              ByteBuf payload) {
+        return publish("/fan/out", qos, packetId, retain, properties, payload);
+    }
+
+    private static MqttPublishMessage publish(String topicName, MqttQoS qos, int packetId, boolean retain,
+                                              MqttProperties properties, ByteBuf payload) {
+        return new MqttPublishMessage(new MqttFixedHeader(MqttMessageType.PUBLISH, false, qos, retain, 0),
+                                      new MqttPublishVariableHeader(topicName, packetId, properties), payload);
+    }
+}
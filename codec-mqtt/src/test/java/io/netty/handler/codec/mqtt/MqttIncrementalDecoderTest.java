@@ -0,0 +1,276 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MqttIncrementalDecoderTest {
+
+    private static final ByteBufAllocator ALLOCATOR = UnpooledByteBufAllocator.DEFAULT;
+
+    @Test
+    public void testDecodesLikeMqttDecoder() {
+        MqttMessage[] messages = {
+                MqttMessageBuilders.connect()
+                        .clientId("client")
+                        .protocolVersion(MqttVersion.MQTT_3_1_1)
+                        .username("user")
+                        .password("password")
+                        .willFlag(true)
+                        .willTopic("/will")
+                        .willMessage("gone")
+                        .keepAlive(60)
+                        .build(),
+                MqttMessageBuilders.connAck()
+                        .returnCode(MqttConnectReturnCode.CONNECTION_ACCEPTED)
+                        .sessionPresent(true)
+                        .build(),
+                publish("/abc", 1024),
+                MqttMessageBuilders.subscribe()
+                        .messageId(1)
+                        .addSubscription(MqttQoS.AT_LEAST_ONCE, "/abc")
+                        .addSubscription(MqttQoS.EXACTLY_ONCE, "/def/#")
+                        .build(),
+                new MqttSubAckMessage(
+                        new MqttFixedHeader(MqttMessageType.SUBACK, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                        MqttMessageIdVariableHeader.from(1), new MqttSubAckPayload(1, 2, 0x80)),
+                MqttMessageBuilders.unsubscribe()
+                        .messageId(2)
+                        .addTopicFilter("/abc")
+                        .build(),
+                new MqttMessage(new MqttFixedHeader(MqttMessageType.PUBREL, false, MqttQoS.AT_LEAST_ONCE, false, 0),
+                        MqttMessageIdVariableHeader.from(3)),
+                new MqttMessage(new MqttFixedHeader(MqttMessageType.PINGREQ, false, MqttQoS.AT_MOST_ONCE, false, 0)),
+        };
+        for (MqttMessage message: messages) {
+            ByteBuf encoded = MqttEncoder.doEncode(ALLOCATOR, message);
+            try {
+                MqttMessage expected = decode(new MqttDecoder(), encoded, encoded.readableBytes());
+                try {
+                    for (int fragmentSize: new int[] { 1, 3, encoded.readableBytes() }) {
+                        MqttMessage actual = decode(new MqttIncrementalDecoder(), encoded, fragmentSize);
+                        try {
+                            assertSameMessage(expected, actual);
+                        } finally {
+                            ReferenceCountUtil.release(actual);
+                        }
+                    }
+                } finally {
+                    ReferenceCountUtil.release(expected);
+                }
+            } finally {
+                encoded.release();
+            }
+        }
+    }
+
+    private static MqttMessage decode(ChannelHandler decoder, ByteBuf encoded, int fragmentSize) {
+        EmbeddedChannel channel = new EmbeddedChannel(decoder);
+        for (int i = 0; i < encoded.readableBytes(); i += fragmentSize) {
+            int length = Math.min(fragmentSize, encoded.readableBytes() - i);
+            channel.writeInbound(encoded.retainedSlice(encoded.readerIndex() + i, length));
+        }
+        MqttMessage message = channel.readInbound();
+        assertFalse(channel.finish());
+        return message;
+    }
+
+    private static void assertSameMessage(MqttMessage expected, MqttMessage actual) {
+        assertTrue(actual.decoderResult().isSuccess());
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.fixedHeader().toString(), actual.fixedHeader().toString());
+        assertEquals(String.valueOf(expected.variableHeader()), String.valueOf(actual.variableHeader()));
+        if (expected.payload() instanceof ByteBuf) {
+            assertEquals(expected.payload(), actual.payload());
+        } else if (expected.payload() instanceof MqttConnectPayload) {
+            MqttConnectPayload expectedPayload = (MqttConnectPayload) expected.payload();
+            MqttConnectPayload actualPayload = (MqttConnectPayload) actual.payload();
+            assertEquals(expectedPayload.clientIdentifier(), actualPayload.clientIdentifier());
+            assertEquals(expectedPayload.willTopic(), actualPayload.willTopic());
+            assertArrayEquals(expectedPayload.willMessageInBytes(), actualPayload.willMessageInBytes());
+            assertEquals(expectedPayload.userName(), actualPayload.userName());
+            assertArrayEquals(expectedPayload.passwordInBytes(), actualPayload.passwordInBytes());
+        } else {
+            assertEquals(String.valueOf(expected.payload()), String.valueOf(actual.payload()));
+        }
+    }
+
+    @Test
+    public void testMultipleMessagesInOneBuffer() {
+        ByteBuf encoded = Unpooled.buffer();
+        for (int i = 0; i < 3; i++) {
+            ByteBuf message = MqttEncoder.doEncode(ALLOCATOR, publish("/topic", i));
+            encoded.writeBytes(message);
+            message.release();
+        }
+        EmbeddedChannel channel = new EmbeddedChannel(new MqttIncrementalDecoder());
+        assertTrue(channel.writeInbound(encoded));
+        for (int i = 0; i < 3; i++) {
+            MqttPublishMessage message = channel.readInbound();
+            try {
+                assertEquals(i, message.payload().readableBytes());
+            } finally {
+                message.release();
+            }
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testTopicNameIsShared() {
+        ByteBuf first = MqttEncoder.doEncode(ALLOCATOR, publish("/shared/topic", 4));
+        ByteBuf second = MqttEncoder.doEncode(ALLOCATOR, publish("/shared/topic", 4));
+        EmbeddedChannel channel1 = new EmbeddedChannel(new MqttIncrementalDecoder());
+        EmbeddedChannel channel2 = new EmbeddedChannel(new MqttIncrementalDecoder());
+        assertTrue(channel1.writeInbound(first));
+        assertTrue(channel2.writeInbound(second));
+        MqttPublishMessage message1 = channel1.readInbound();
+        MqttPublishMessage message2 = channel2.readInbound();
+        try {
+            assertEquals("/shared/topic", message1.variableHeader().topicName());
+            assertSame(message1.variableHeader().topicName(), message2.variableHeader().topicName());
+        } finally {
+            message1.release();
+            message2.release();
+        }
+        assertFalse(channel1.finish());
+        assertFalse(channel2.finish());
+    }
+
+    @Test
+    public void testDecodesAndEncodesMqtt5AfterConnect() {
+        MqttConnectMessage connect = MqttMessageBuilders.connect()
+                .clientId("client")
+                .protocolVersion(MqttVersion.MQTT_5)
+                .properties(MqttProperties.builder().add(MqttProperties.TOPIC_ALIAS_MAXIMUM, 8).build())
+                .build();
+        MqttPublishMessage publish = MqttMessageBuilders.publish()
+                .topicName("")
+                .qos(MqttQoS.AT_LEAST_ONCE)
+                .messageId(7)
+                .payload(Unpooled.wrappedBuffer(new byte[] { 1, 2, 3 }))
+                .properties(MqttProperties.builder().add(MqttProperties.TOPIC_ALIAS, 3).build())
+                .build();
+        ByteBuf encoded = Unpooled.wrappedBuffer(
+                MqttEncoder.doEncode(ALLOCATOR, connect),
+                MqttEncoder.doEncode(ALLOCATOR, MqttVersion.MQTT_5, publish));
+        publish.release();
+
+        // The MQTT 5 CONNECT message switches both the decoder and the encoder of the connection to MQTT 5.
+        EmbeddedChannel channel = new EmbeddedChannel(new MqttIncrementalDecoder(), MqttEncoder.INSTANCE);
+        assertTrue(channel.writeInbound(encoded));
+        MqttConnectMessage decodedConnect = channel.readInbound();
+        assertEquals(8, decodedConnect.variableHeader().properties()
+                                      .intValue(MqttProperties.TOPIC_ALIAS_MAXIMUM, 0));
+        MqttPublishMessage decodedPublish = channel.readInbound();
+        try {
+            assertEquals("", decodedPublish.variableHeader().topicName());
+            assertEquals(3, decodedPublish.variableHeader().properties().intValue(MqttProperties.TOPIC_ALIAS, 0));
+            assertEquals(3, decodedPublish.payload().readableBytes());
+        } finally {
+            decodedPublish.release();
+        }
+
+        MqttPubAckMessage pubAck = MqttMessageBuilders.pubAck()
+                .packetId(7)
+                .reasonCode((byte) 0x10)
+                .build();
+        assertTrue(channel.writeOutbound(pubAck));
+        ByteBuf encodedPubAck = channel.readOutbound();
+        ByteBuf expected = MqttEncoder.doEncode(ALLOCATOR, MqttVersion.MQTT_5, pubAck);
+        try {
+            assertEquals(expected, encodedPubAck);
+            assertEquals(5, encodedPubAck.readableBytes());
+        } finally {
+            encodedPubAck.release();
+            expected.release();
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testTooLargeMessage() {
+        ByteBuf encoded = MqttEncoder.doEncode(ALLOCATOR, publish("/abc", 100));
+        EmbeddedChannel channel = new EmbeddedChannel(new MqttIncrementalDecoder(50));
+        // Fails as soon as the fixed header was received, without waiting for the rest of the message.
+        assertTrue(channel.writeInbound(encoded.readRetainedSlice(2)));
+        MqttMessage message = channel.readInbound();
+        assertTrue(message.decoderResult().isFailure());
+        assertTrue(message.decoderResult().cause() instanceof DecoderException);
+        assertEquals(MqttMessageType.PUBLISH, message.fixedHeader().messageType());
+
+        // Everything is discarded afterwards.
+        assertFalse(channel.writeInbound(encoded));
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testRemainingLengthTooLong() {
+        ByteBuf encoded = Unpooled.wrappedBuffer(new byte[] { 0x30, -1, -1, -1, -1 });
+        EmbeddedChannel channel = new EmbeddedChannel(new MqttIncrementalDecoder(Integer.MAX_VALUE));
+        assertTrue(channel.writeInbound(encoded));
+        MqttMessage message = channel.readInbound();
+        assertTrue(message.decoderResult().isFailure());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testTopicNameLongerThanMessage() {
+        // A PUBLISH message of 4 bytes whose topic name claims to be 200 bytes long, followed by more bytes which
+        // must not be read as part of it.
+        byte[] bytes = new byte[256];
+        bytes[0] = 0x30;
+        bytes[1] = 4;
+        bytes[3] = (byte) 200;
+        bytes[4] = 'a';
+        bytes[5] = 'b';
+        EmbeddedChannel channel = new EmbeddedChannel(new MqttIncrementalDecoder());
+        assertTrue(channel.writeInbound(Unpooled.directBuffer().writeBytes(bytes)));
+        MqttMessage message = channel.readInbound();
+        assertTrue(message.decoderResult().isFailure());
+        assertTrue(message.decoderResult().cause() instanceof DecoderException);
+        assertFalse(channel.finish());
+    }
+
+    private static MqttPublishMessage publish(String topic, int payloadSize) {
+        byte[] payload = new byte[payloadSize];
+        Arrays.fill(payload, (byte) 'a');
+        return MqttMessageBuilders.publish()
+                .topicName(topic)
+                .qos(MqttQoS.AT_LEAST_ONCE)
+                .messageId(1)
+                .payload(Unpooled.wrappedBuffer(payload))
+                .build();
+    }
+}
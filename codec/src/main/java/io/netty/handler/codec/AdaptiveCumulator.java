@@ -0,0 +1,176 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.handler.codec.ByteToMessageDecoder.Cumulator;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * A {@link Cumulator} which decides for every read whether to copy the received bytes into the cumulation, as
+ * {@link ByteToMessageDecoder#MERGE_CUMULATOR} does, or to add them as a component, as
+ * {@link ByteToMessageDecoder#COMPOSITE_CUMULATOR} does.
+ * <p>
+ * Buffers of at least {@code composeThreshold} bytes are added as a component, copying them costs more than the
+ * indirection of a {@link CompositeByteBuf}. The same is done if the cumulation is read-only and would need to be
+ * copied as a whole to append to it. Smaller buffers are copied, once the cumulation is a {@link CompositeByteBuf}
+ * they are merged into its last component (see {@link CompositeByteBuf#consolidationThreshold(int)}).
+ * <p>
+ * If the decoder knows the length of the frame it waits for, as {@link LengthFieldBasedFrameDecoder} does, capacity
+ * for the whole frame is reserved when the cumulation needs to be reallocated, so the rest of the frame is copied
+ * into it without growing it again. At most {@code maxReservedBytes} are reserved, so a peer can not make the decoder
+ * allocate large buffers by only announcing a large frame.
+ * <p>
+ * The counters of an instance are thread-safe, so one instance may be shared by many decoders.
+ *
+ * @see ByteToMessageDecoder#setFrameLengthHint(int)
+ */
+public final class AdaptiveCumulator implements Cumulator {
+
+    private static final int DEFAULT_COMPOSE_THRESHOLD = 4096;
+    private static final int DEFAULT_MAX_RESERVED_BYTES = 65536;
+
+    private final int composeThreshold;
+    private final int maxReservedBytes;
+    private final LongAdder copiedBytes = new LongAdder();
+    private final LongAdder avoidedCopyBytes = new LongAdder();
+
+    /**
+     * Creates a new instance which adds buffers of at least {@code 4096} bytes as a component and reserves at most
+     * {@code 65536} bytes for a frame.
+     */
+    public AdaptiveCumulator() {
+        this(DEFAULT_COMPOSE_THRESHOLD, DEFAULT_MAX_RESERVED_BYTES);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param composeThreshold the number of readable bytes from which on a buffer is added as a component instead
+     *                         of being copied.
+     * @param maxReservedBytes the maximum capacity which is reserved for a frame whose length is known.
+     */
+    public AdaptiveCumulator(int composeThreshold, int maxReservedBytes) {
+        this.composeThreshold = checkPositive(composeThreshold, "composeThreshold");
+        this.maxReservedBytes = checkPositiveOrZero(maxReservedBytes, "maxReservedBytes");
+    }
+
+    /**
+     * Returns the number of bytes which were copied. When a small buffer is merged into the last component of a
+     * {@link CompositeByteBuf}, only the bytes of that buffer are counted, not the bytes of the last component which
+     * the {@link CompositeByteBuf} may copy along when it starts a new merged component.
+     */
+    public long copiedBytes() {
+        return copiedBytes.sum();
+    }
+
+    /**
+     * Returns the number of bytes which {@link ByteToMessageDecoder#MERGE_CUMULATOR} would have copied but this
+     * {@link Cumulator} did not. These are the bytes which were added as a component, the bytes of the cumulation
+     * which would have been copied to make room for them, and the bytes which were already read from the cumulation
+     * when it was reallocated.
+     */
+    public long avoidedCopyBytes() {
+        return avoidedCopyBytes.sum();
+    }
+
+    @Override
+    public ByteBuf cumulate(ByteBufAllocator alloc, ByteBuf cumulation, ByteBuf in) {
+        return cumulate(alloc, cumulation, in, -1);
+    }
+
+    @Override
+    public ByteBuf cumulate(ByteBufAllocator alloc, ByteBuf cumulation, ByteBuf in, int frameLengthHint) {
+        try {
+            final int readable = in.readableBytes();
+            if (cumulation.refCnt() > 1) {
+                // The cumulation is shared, which may happen when the user use slice().retain() or
+                // duplicate().retain(), so it must not be modified.
+                return expand(alloc, cumulation, in, frameLengthHint);
+            }
+            if (cumulation instanceof CompositeByteBuf) {
+                CompositeByteBuf composite = (CompositeByteBuf) cumulation;
+                final int components = composite.numComponents();
+                composite.addComponent(true, in);
+                in = null;
+                // The buffer was only copied if it was merged into the last component, which depends on the size of
+                // that component as well, so look at the result instead of guessing.
+                if (composite.numComponents() == components) {
+                    copiedBytes.add(readable);
+                } else {
+                    avoidedCopyBytes.add(readable);
+                }
+                return composite;
+            }
+
+            final boolean mustExpand = cumulation.isReadOnly()
+                    || cumulation.writerIndex() > cumulation.maxCapacity() - readable;
+            final boolean grows = mustExpand || cumulation.writableBytes() < readable;
+            if (readable >= composeThreshold || cumulation.isReadOnly() && grows) {
+                // Growing the cumulation would copy all of its bytes as well.
+                final long avoided = grows ? (long) readable + cumulation.writerIndex() : readable;
+                CompositeByteBuf composite = alloc.compositeBuffer(Integer.MAX_VALUE);
+                composite.addComponent(true, cumulation);
+                composite.addComponent(true, in);
+                in = null;
+                // Only merge the small buffers which are received from now on.
+                composite.consolidationThreshold(composeThreshold);
+                avoidedCopyBytes.add(avoided);
+                return composite;
+            }
+            if (!grows) {
+                cumulation.writeBytes(in);
+                copiedBytes.add(readable);
+                return cumulation;
+            }
+            if (!mustExpand) {
+                // Growing in place would copy the bytes which were read already as well.
+                avoidedCopyBytes.add(cumulation.readerIndex());
+            }
+            return expand(alloc, cumulation, in, frameLengthHint);
+        } finally {
+            if (in != null) {
+                // We must release if the ownership was not transferred as otherwise it may produce a leak if
+                // writeBytes(...) throw for whatever release (for example because of OutOfMemoryError).
+                in.release();
+            }
+        }
+    }
+
+    private ByteBuf expand(ByteBufAllocator alloc, ByteBuf cumulation, ByteBuf in, int frameLengthHint) {
+        final int required = cumulation.readableBytes() + in.readableBytes();
+        int capacity = alloc.calculateNewCapacity(required, Integer.MAX_VALUE);
+        if (frameLengthHint > capacity) {
+            capacity = Math.max(capacity, Math.min(frameLengthHint, maxReservedBytes));
+        }
+        ByteBuf buffer = alloc.buffer(capacity);
+        try {
+            buffer.writeBytes(cumulation).writeBytes(in);
+        } catch (Throwable cause) {
+            buffer.release();
+            throw cause;
+        }
+        cumulation.release();
+        copiedBytes.add(required);
+        return buffer;
+    }
+}
@@ -160,6 +160,7 @@ public abstract class ByteToMessageDecoder extends ChannelHandlerAdapter impleme
     private byte decodeState = STATE_INIT;
     private int discardAfterReads = 16;
     private int numReads;
+    private int frameLengthHint = -1;
 
     protected ByteToMessageDecoder() {
         ensureNotSharable();
@@ -193,6 +194,26 @@ public abstract class ByteToMessageDecoder extends ChannelHandlerAdapter impleme
         this.cumulator = cumulator;
     }
 
+    /**
+     * Hint the number of readable bytes the cumulative buffer needs to contain before the next message can be
+     * decoded, or {@code -1} if it is unknown. Sub-classes which know the length of the frame they wait for, once
+     * they decoded its header, should call this so the {@link Cumulator} can reserve the capacity for it at once.
+     * The hint is kept until it is changed again, so it should be reset to {@code -1} once the frame was decoded.
+     */
+    protected final void setFrameLengthHint(int frameLengthHint) {
+        if (frameLengthHint < -1) {
+            throw new IllegalArgumentException("frameLengthHint: " + frameLengthHint + " (expected: >= -1)");
+        }
+        this.frameLengthHint = frameLengthHint;
+    }
+
+    /**
+     * Returns the hint set via {@link #setFrameLengthHint(int)}, or {@code -1} if there is none.
+     */
+    protected final int frameLengthHint() {
+        return frameLengthHint;
+    }
+
     /**
      * Set the number of reads after which {@link ByteBuf#discardSomeReadBytes()} are called and so free up memory.
      * The default is {@code 16}.
@@ -267,7 +288,7 @@ public abstract class ByteToMessageDecoder extends ChannelHandlerAdapter impleme
                 if (first) {
                     cumulation = data;
                 } else {
-                    cumulation = cumulator.cumulate(ctx.alloc(), cumulation, data);
+                    cumulation = cumulator.cumulate(ctx.alloc(), cumulation, data, frameLengthHint);
                 }
                 callDecode(ctx, cumulation, out);
             } catch (DecoderException e) {
@@ -536,5 +557,16 @@ public abstract class ByteToMessageDecoder extends ChannelHandlerAdapter impleme
          * call {@link ByteBuf#release()} if a {@link ByteBuf} is fully consumed.
          */
         ByteBuf cumulate(ByteBufAllocator alloc, ByteBuf cumulation, ByteBuf in);
+
+        /**
+         * Cumulate the given {@link ByteBuf}s like {@link #cumulate(ByteBufAllocator, ByteBuf, ByteBuf)}.
+         * {@code frameLengthHint} is the number of readable bytes the decoder needs before it can decode the next
+         * message, or {@code -1} if it is unknown.
+         *
+         * @see ByteToMessageDecoder#setFrameLengthHint(int)
+         */
+        default ByteBuf cumulate(ByteBufAllocator alloc, ByteBuf cumulation, ByteBuf in, int frameLengthHint) {
+            return cumulate(alloc, cumulation, in);
+        }
     }
 }
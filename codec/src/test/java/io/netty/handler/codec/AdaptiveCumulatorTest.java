@@ -0,0 +1,184 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveCumulatorTest {
+
+    private static final ByteBufAllocator ALLOC = UnpooledByteBufAllocator.DEFAULT;
+
+    @Test
+    public void testSmallBuffersAreCopied() {
+        AdaptiveCumulator cumulator = new AdaptiveCumulator(16, 1024);
+        ByteBuf cumulation = Unpooled.buffer(4, 4).writeInt(1);
+        ByteBuf in = Unpooled.buffer().writeInt(2);
+
+        ByteBuf result = cumulator.cumulate(ALLOC, cumulation, in);
+        assertThat(result, not(instanceOf(CompositeByteBuf.class)));
+        assertEquals(0, in.refCnt());
+        assertEquals(0, cumulation.refCnt());
+        assertEquals(8, cumulator.copiedBytes());
+        assertEquals(0, cumulator.avoidedCopyBytes());
+
+        in = Unpooled.buffer().writeInt(3);
+        assertTrue(result.writableBytes() >= 4);
+        ByteBuf result2 = cumulator.cumulate(ALLOC, result, in);
+        assertEquals(result, result2);
+        assertEquals(12, cumulator.copiedBytes());
+        assertEquals(1, result2.readInt());
+        assertEquals(2, result2.readInt());
+        assertEquals(3, result2.readInt());
+        result2.release();
+    }
+
+    @Test
+    public void testLargeBuffersAreComposed() {
+        AdaptiveCumulator cumulator = new AdaptiveCumulator(16, 1024);
+        ByteBuf cumulation = Unpooled.buffer(4, 4).writeInt(1);
+        ByteBuf in = Unpooled.buffer().writeBytes(new byte[32]);
+
+        ByteBuf result = cumulator.cumulate(ALLOC, cumulation, in);
+        assertThat(result, instanceOf(CompositeByteBuf.class));
+        CompositeByteBuf composite = (CompositeByteBuf) result;
+        assertEquals(2, composite.numComponents());
+        assertEquals(36, composite.readableBytes());
+        assertEquals(0, cumulator.copiedBytes());
+        // Merging would have grown the cumulation.
+        assertEquals(36, cumulator.avoidedCopyBytes());
+
+        // Small buffers are merged into the last component from now on.
+        for (int i = 0; i < 4; i++) {
+            result = cumulator.cumulate(ALLOC, result, Unpooled.buffer().writeInt(i));
+        }
+        assertEquals(3, composite.numComponents());
+        assertEquals(52, composite.readableBytes());
+        // The first one did not fit into the last component and was added as a component of its own.
+        assertEquals(12, cumulator.copiedBytes());
+        assertEquals(40, cumulator.avoidedCopyBytes());
+        composite.skipBytes(36);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, composite.readInt());
+        }
+        composite.release();
+    }
+
+    @Test
+    public void testSmallBufferIsAppendedWithoutCopy() {
+        AdaptiveCumulator cumulator = new AdaptiveCumulator(16, 1024);
+        CompositeByteBuf composite = ALLOC.compositeBuffer().consolidationThreshold(16);
+        composite.addComponent(true, Unpooled.buffer().writeBytes(new byte[14]));
+
+        // Too large to be merged into the last component, so it is added as a component without being copied.
+        ByteBuf in = Unpooled.buffer().writeInt(1);
+        ByteBuf result = cumulator.cumulate(ALLOC, composite, in);
+        assertEquals(composite, result);
+        assertEquals(2, composite.numComponents());
+        assertEquals(1, in.refCnt());
+        assertEquals(0, cumulator.copiedBytes());
+        assertEquals(4, cumulator.avoidedCopyBytes());
+
+        // Small enough to be merged into the last component.
+        result = cumulator.cumulate(ALLOC, result, Unpooled.buffer().writeInt(2));
+        assertEquals(2, composite.numComponents());
+        assertEquals(0, in.refCnt());
+        assertEquals(4, cumulator.copiedBytes());
+        assertEquals(4, cumulator.avoidedCopyBytes());
+
+        composite.skipBytes(14);
+        assertEquals(1, composite.readInt());
+        assertEquals(2, composite.readInt());
+        composite.release();
+    }
+
+    @Test
+    public void testReadOnlyCumulationIsNotCopied() {
+        AdaptiveCumulator cumulator = new AdaptiveCumulator(16, 1024);
+        ByteBuf cumulation = Unpooled.buffer().writeInt(1).asReadOnly();
+        ByteBuf in = Unpooled.buffer().writeInt(2);
+
+        ByteBuf result = cumulator.cumulate(ALLOC, cumulation, in);
+        assertThat(result, instanceOf(CompositeByteBuf.class));
+        assertEquals(2, ((CompositeByteBuf) result).numComponents());
+        assertEquals(0, cumulator.copiedBytes());
+        assertEquals(1, result.readInt());
+        assertEquals(2, result.readInt());
+        result.release();
+    }
+
+    @Test
+    public void testSharedCumulationIsNotModified() {
+        AdaptiveCumulator cumulator = new AdaptiveCumulator(16, 1024);
+        ByteBuf cumulation = Unpooled.buffer(8).writeInt(1);
+        ByteBuf retained = cumulation.retainedDuplicate();
+        ByteBuf in = Unpooled.buffer().writeInt(2);
+
+        ByteBuf result = cumulator.cumulate(ALLOC, cumulation, in);
+        assertThat(result, not(instanceOf(CompositeByteBuf.class)));
+        assertEquals(8, result.readableBytes());
+        assertEquals(4, retained.readableBytes());
+        assertEquals(4, cumulation.writerIndex());
+        retained.release();
+        result.release();
+        assertEquals(0, cumulation.refCnt());
+    }
+
+    @Test
+    public void testFrameLengthHintReservesCapacity() {
+        AdaptiveCumulator cumulator = new AdaptiveCumulator(4096, 1024);
+        ByteBuf cumulation = Unpooled.buffer(4, 4).writeInt(1);
+        ByteBuf result = cumulator.cumulate(ALLOC, cumulation, Unpooled.buffer().writeInt(2), 1000);
+        assertEquals(1000, result.capacity());
+
+        // No further reallocation is needed until the frame is complete.
+        ByteBuf result2 = cumulator.cumulate(ALLOC, result, Unpooled.buffer().writeBytes(new byte[992]), 1000);
+        assertEquals(result, result2);
+        assertEquals(1000, result2.readableBytes());
+        result2.release();
+    }
+
+    @Test
+    public void testFrameLengthHintIsCapped() {
+        AdaptiveCumulator cumulator = new AdaptiveCumulator(4096, 1024);
+        ByteBuf cumulation = Unpooled.buffer(4, 4).writeInt(1);
+        ByteBuf result = cumulator.cumulate(ALLOC, cumulation, Unpooled.buffer().writeInt(2), 1 << 30);
+        assertEquals(1024, result.capacity());
+        result.release();
+    }
+
+    @Test
+    public void testReadBytesAreNotCopied() {
+        AdaptiveCumulator cumulator = new AdaptiveCumulator(4096, 1024);
+        ByteBuf cumulation = Unpooled.buffer(8).writeLong(1);
+        cumulation.skipBytes(6);
+        ByteBuf result = cumulator.cumulate(ALLOC, cumulation, Unpooled.buffer().writeInt(2));
+        assertEquals(6, result.readableBytes());
+        assertEquals(6, cumulator.copiedBytes());
+        assertEquals(6, cumulator.avoidedCopyBytes());
+        result.release();
+    }
+}
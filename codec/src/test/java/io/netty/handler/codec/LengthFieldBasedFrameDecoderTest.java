@@ -16,6 +16,7 @@
 package io.netty.handler.codec;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
 import org.junit.Assert;
@@ -83,4 +84,42 @@ public class LengthFieldBasedFrameDecoderTest {
 
         buf.release();
     }
+
+    @Test
+    public void testFrameLengthHint() {
+        final int[] hints = new int[2];
+        LengthFieldBasedFrameDecoder decoder = new LengthFieldBasedFrameDecoder(1024, 0, 4);
+        decoder.setCumulator(new ByteToMessageDecoder.Cumulator() {
+            private int i;
+
+            @Override
+            public ByteBuf cumulate(ByteBufAllocator alloc, ByteBuf cumulation, ByteBuf in) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public ByteBuf cumulate(ByteBufAllocator alloc, ByteBuf cumulation, ByteBuf in, int frameLengthHint) {
+                hints[i++] = frameLengthHint;
+                return ByteToMessageDecoder.MERGE_CUMULATOR.cumulate(alloc, cumulation, in);
+            }
+        });
+        EmbeddedChannel channel = new EmbeddedChannel(decoder);
+
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeInt(8).writeLong(1).writeInt(8).writeLong(2);
+        Assert.assertFalse(channel.writeInbound(buf.readRetainedSlice(2)));
+        Assert.assertFalse(channel.writeInbound(buf.readRetainedSlice(4)));
+        Assert.assertTrue(channel.writeInbound(buf.readRetainedSlice(6)));
+        Assert.assertTrue(channel.writeInbound(buf.readRetainedSlice(12)));
+        buf.release();
+
+        // The length field is only complete after the second read, the fourth one starts a new cumulation.
+        Assert.assertArrayEquals(new int[] { -1, 12 }, hints);
+        for (int i = 0; i < 2; i++) {
+            ByteBuf frame = channel.readInbound();
+            Assert.assertEquals(12, frame.readableBytes());
+            frame.release();
+        }
+        Assert.assertFalse(channel.finish());
+    }
 }
@@ -17,6 +17,10 @@ package io.netty.util;
 
 import static java.util.Objects.requireNonNull;
 
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
@@ -24,31 +28,62 @@ import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 /**
  * Default {@link AttributeMap} implementation which use simple synchronization per bucket to keep the memory overhead
  * as low as possible.
+ * <p>
+ * If {@code -Dio.netty.attributeMap.compact=true} is set, the attributes are instead kept in an array sorted by the
+ * {@link AttributeKey#id()}, which is replaced by a copy on every addition or removal. Lookups are then a lock-free
+ * binary search and a map with a few attributes needs a fraction of the memory of the buckets, at the cost of
+ * copying the array when attributes are added or removed, which is rare compared to lookups.
  */
 public class DefaultAttributeMap implements AttributeMap {
 
-    @SuppressWarnings("rawtypes")
-    private static final AtomicReferenceFieldUpdater<DefaultAttributeMap, AtomicReferenceArray> updater =
-            AtomicReferenceFieldUpdater.newUpdater(DefaultAttributeMap.class, AtomicReferenceArray.class, "attributes");
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(DefaultAttributeMap.class);
+
+    private static final AtomicReferenceFieldUpdater<DefaultAttributeMap, Object> updater =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultAttributeMap.class, Object.class, "attributes");
 
     private static final int BUCKET_SIZE = 4;
     private static final int MASK = BUCKET_SIZE  - 1;
 
-    // Initialize lazily to reduce memory consumption; updated by AtomicReferenceFieldUpdater above.
+    private static final boolean COMPACT = SystemPropertyUtil.getBoolean("io.netty.attributeMap.compact", false);
+    private static final CompactAttribute<?>[] EMPTY_ATTRIBUTES = new CompactAttribute<?>[0];
+
+    static {
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.attributeMap.compact: {}", COMPACT);
+        }
+    }
+
+    // Either an AtomicReferenceArray of buckets which is initialized lazily to reduce memory consumption, or a
+    // CompactAttribute[] in compact mode. Updated by AtomicReferenceFieldUpdater above.
     @SuppressWarnings("UnusedDeclaration")
-    private volatile AtomicReferenceArray<DefaultAttribute<?>> attributes;
+    private volatile Object attributes;
+
+    public DefaultAttributeMap() {
+        this(COMPACT);
+    }
+
+    DefaultAttributeMap(boolean compact) {
+        if (compact) {
+            attributes = EMPTY_ATTRIBUTES;
+        }
+    }
 
     @SuppressWarnings("unchecked")
     @Override
     public <T> Attribute<T> attr(AttributeKey<T> key) {
         requireNonNull(key, "key");
-        AtomicReferenceArray<DefaultAttribute<?>> attributes = this.attributes;
+        Object attributesOrArray = this.attributes;
+        if (attributesOrArray instanceof CompactAttribute[]) {
+            return compactAttr(key);
+        }
+        AtomicReferenceArray<DefaultAttribute<?>> attributes =
+                (AtomicReferenceArray<DefaultAttribute<?>>) attributesOrArray;
         if (attributes == null) {
             // Not using ConcurrentHashMap due to high memory consumption.
             attributes = new AtomicReferenceArray<>(BUCKET_SIZE);
 
             if (!updater.compareAndSet(this, null, attributes)) {
-                attributes = this.attributes;
+                attributes = (AtomicReferenceArray<DefaultAttribute<?>>) this.attributes;
             }
         }
 
@@ -88,10 +123,83 @@ public class DefaultAttributeMap implements AttributeMap {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private <T> Attribute<T> compactAttr(AttributeKey<T> key) {
+        CompactAttribute<T> newAttr = null;
+        for (;;) {
+            CompactAttribute<?>[] attributes = (CompactAttribute<?>[]) this.attributes;
+            int i = searchAttribute(attributes, key);
+            if (i >= 0) {
+                return (Attribute<T>) attributes[i];
+            }
+            if (newAttr == null) {
+                newAttr = new CompactAttribute<>(this, key);
+            }
+            int insertionPoint = -(i + 1);
+            CompactAttribute<?>[] newAttributes = new CompactAttribute<?>[attributes.length + 1];
+            System.arraycopy(attributes, 0, newAttributes, 0, insertionPoint);
+            newAttributes[insertionPoint] = newAttr;
+            System.arraycopy(attributes, insertionPoint, newAttributes, insertionPoint + 1,
+                             attributes.length - insertionPoint);
+            if (updater.compareAndSet(this, attributes, newAttributes)) {
+                return newAttr;
+            }
+        }
+    }
+
+    private void removeCompactAttribute(CompactAttribute<?> attr) {
+        for (;;) {
+            CompactAttribute<?>[] attributes = (CompactAttribute<?>[]) this.attributes;
+            int i = searchAttribute(attributes, attr.key);
+            if (i < 0 || attributes[i] != attr) {
+                // Removed before.
+                return;
+            }
+            final CompactAttribute<?>[] newAttributes;
+            if (attributes.length == 1) {
+                newAttributes = EMPTY_ATTRIBUTES;
+            } else {
+                newAttributes = new CompactAttribute<?>[attributes.length - 1];
+                System.arraycopy(attributes, 0, newAttributes, 0, i);
+                System.arraycopy(attributes, i + 1, newAttributes, i, newAttributes.length - i);
+            }
+            if (updater.compareAndSet(this, attributes, newAttributes)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the attribute for {@code key} like {@link java.util.Arrays#binarySearch(int[], int)}.
+     */
+    private static int searchAttribute(CompactAttribute<?>[] attributes, AttributeKey<?> key) {
+        int id = key.id();
+        int low = 0;
+        int high = attributes.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = attributes[mid].key.id();
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    @SuppressWarnings("unchecked")
     @Override
     public <T> boolean hasAttr(AttributeKey<T> key) {
         requireNonNull(key, "key");
-        AtomicReferenceArray<DefaultAttribute<?>> attributes = this.attributes;
+        Object attributesOrArray = this.attributes;
+        if (attributesOrArray instanceof CompactAttribute[]) {
+            return searchAttribute((CompactAttribute<?>[]) attributesOrArray, key) >= 0;
+        }
+        AtomicReferenceArray<DefaultAttribute<?>> attributes =
+                (AtomicReferenceArray<DefaultAttribute<?>>) attributesOrArray;
         if (attributes == null) {
             // no attribute exists
             return false;
@@ -200,4 +308,47 @@ public class DefaultAttributeMap implements AttributeMap {
             }
         }
     }
+
+    @SuppressWarnings("serial")
+    private static final class CompactAttribute<T> extends AtomicReference<T> implements Attribute<T> {
+
+        private static final long serialVersionUID = 3206467137893787233L;
+
+        private final DefaultAttributeMap map;
+        private final AttributeKey<T> key;
+
+        CompactAttribute(DefaultAttributeMap map, AttributeKey<T> key) {
+            this.map = map;
+            this.key = key;
+        }
+
+        @Override
+        public AttributeKey<T> key() {
+            return key;
+        }
+
+        @Override
+        public T setIfAbsent(T value) {
+            while (!compareAndSet(null, value)) {
+                T old = get();
+                if (old != null) {
+                    return old;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public T getAndRemove() {
+            T oldValue = getAndSet(null);
+            map.removeCompactAttribute(this);
+            return oldValue;
+        }
+
+        @Override
+        public void remove() {
+            set(null);
+            map.removeCompactAttribute(this);
+        }
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.util.internal.StringUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.netty.util.DomainNameMapping.normalizeHostname;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Immutable mapping from a domain name to its associated value object, which stores the domain name patterns in a
+ * trie of their reversed labels. Looking up a host name so only costs one hash lookup per label of the host name,
+ * regardless of how many patterns are mapped, while {@link DomainNameMapping} checks every pattern in turn.
+ * <p>
+ * DNS wildcards are supported as in {@link DomainNameMapping}, so {@code *.netty.io} matches {@code netty.io} and
+ * {@code downloads.netty.io}. Unlike {@link DomainNameMapping}, the most specific pattern wins if multiple patterns
+ * match: an exact match is preferred over a wildcard, and {@code *.downloads.netty.io} is preferred over
+ * {@code *.netty.io}.
+ * </p>
+ * Use {@link DomainNameTrieMappingBuilder} to create instances.
+ *
+ * @param <V> concrete type of value objects
+ */
+public final class DomainNameTrieMapping<V> implements Mapping<String, V> {
+
+    private final V defaultValue;
+    private final Node<V> root;
+    private final int size;
+
+    DomainNameTrieMapping(V defaultValue, Map<String, V> map) {
+        this.defaultValue = requireNonNull(defaultValue, "defaultValue");
+        root = new Node<>();
+        for (Map.Entry<String, V> entry : map.entrySet()) {
+            add(root, normalizeHostname(entry.getKey()), entry.getValue());
+        }
+        size = map.size();
+    }
+
+    private static <V> void add(Node<V> root, String hostname, V value) {
+        boolean wildcard = hostname.startsWith("*.");
+        String name = wildcard ? hostname.substring(2) : hostname;
+        Node<V> node = root;
+        int end = name.length();
+        while (end > 0) {
+            int start = name.lastIndexOf('.', end - 1) + 1;
+            String label = name.substring(start, end);
+            Node<V> child = node.children.get(label);
+            if (child == null) {
+                child = new Node<>();
+                node.children.put(label, child);
+            }
+            node = child;
+            end = start - 1;
+        }
+        // If the same pattern was added multiple times (e.g. with different cases) the first one wins.
+        if (wildcard) {
+            if (node.wildcardValue == null) {
+                node.wildcardValue = value;
+            }
+        } else if (node.value == null) {
+            node.value = value;
+        }
+    }
+
+    @Override
+    public V map(String hostname) {
+        if (hostname == null) {
+            return defaultValue;
+        }
+        String name = normalizeHostname(hostname);
+        V match = defaultValue;
+        Node<V> node = root;
+        int end = name.length();
+        while (end > 0) {
+            int start = name.lastIndexOf('.', end - 1) + 1;
+            node = node.children.get(name.substring(start, end));
+            if (node == null) {
+                return match;
+            }
+            if (node.wildcardValue != null) {
+                match = node.wildcardValue;
+            }
+            end = start - 1;
+        }
+        return node.value != null ? node.value : match;
+    }
+
+    /**
+     * Returns the number of patterns in this mapping.
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(default: " + defaultValue + ", size: " + size + ')';
+    }
+
+    private static final class Node<V> {
+        final Map<String, Node<V>> children = new HashMap<>(4);
+        V value;
+        V wildcardValue;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Builder for immutable {@link DomainNameTrieMapping} instances.
+ *
+ * @param <V> concrete type of value objects
+ */
+public final class DomainNameTrieMappingBuilder<V> {
+
+    private final V defaultValue;
+    private final Map<String, V> map;
+
+    /**
+     * Constructor with default initial capacity of the map holding the mappings
+     *
+     * @param defaultValue the default value for {@link DomainNameTrieMapping#map(String)} to return
+     *                     when nothing matches the input
+     */
+    public DomainNameTrieMappingBuilder(V defaultValue) {
+        this(4, defaultValue);
+    }
+
+    /**
+     * Constructor with initial capacity of the map holding the mappings
+     *
+     * @param initialCapacity initial capacity for the internal map
+     * @param defaultValue    the default value for {@link DomainNameTrieMapping#map(String)} to return
+     *                        when nothing matches the input
+     */
+    public DomainNameTrieMappingBuilder(int initialCapacity, V defaultValue) {
+        this.defaultValue = requireNonNull(defaultValue, "defaultValue");
+        map = new LinkedHashMap<>(initialCapacity);
+    }
+
+    /**
+     * Adds a mapping that maps the specified (optionally wildcard) host name to the specified output value.
+     * Null values are forbidden for both hostnames and values.
+     * <p>
+     * <a href="http://en.wikipedia.org/wiki/Wildcard_DNS_record">DNS wildcard</a> is supported as hostname.
+     * For example, you can use {@code *.netty.io} to match {@code netty.io} and {@code downloads.netty.io}.
+     * </p>
+     *
+     * @param hostname the host name (optionally wildcard)
+     * @param output   the output value that will be returned by {@link DomainNameTrieMapping#map(String)}
+     *                 when the specified host name matches the specified input host name
+     */
+    public DomainNameTrieMappingBuilder<V> add(String hostname, V output) {
+        map.put(requireNonNull(hostname, "hostname"), requireNonNull(output, "output"));
+        return this;
+    }
+
+    /**
+     * Creates a new instance of immutable {@link DomainNameTrieMapping}.
+     *
+     * @return new {@link DomainNameTrieMapping} instance
+     */
+    public DomainNameTrieMapping<V> build() {
+        return new DomainNameTrieMapping<>(defaultValue, map);
+    }
+}
@@ -0,0 +1,672 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.netty.util.internal.StringUtil.simpleClassName;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link Timer} which keeps its timeouts in a hierarchy of timing wheels, for applications which keep a large
+ * number of long timeouts, such as idle connection timeouts.
+ *
+ * <h3>Comparison with {@link HashedWheelTimer}</h3>
+ *
+ * Like {@link HashedWheelTimer} this timer is approximated: a {@link TimerTask} is executed on the first tick after
+ * its deadline. {@link HashedWheelTimer} has a single wheel, so a timeout which is longer than one rotation of the
+ * wheel is visited on every rotation until its deadline is reached. This timer has several wheels instead, each
+ * bucket of a wheel spanning one full rotation of the wheel below it. A timeout is added to the lowest wheel which
+ * can hold its deadline and is only moved down to a lower wheel (cascaded) once its bucket is reached, so it is
+ * visited at most once per wheel. The wheels above the first one are only created once a timeout needs them.
+ *
+ * <h3>Cancellation</h3>
+ *
+ * Timeouts are kept in doubly linked lists, so a cancelled timeout is removed in constant time. Cancellations from
+ * {@link TimerTask}s take effect immediately, cancellations from other threads are handed over to the worker thread
+ * and processed in one batch on the next tick.
+ *
+ * <h3>Monitoring</h3>
+ *
+ * {@link #pendingTimeouts()} returns the number of timeouts which are neither expired nor cancelled, and
+ * {@link #tickLagNanos()} how late the worker thread processed the last tick. If the worker thread falls behind,
+ * for example because of long running {@link TimerTask}s, all ticks which passed are processed in one batch.
+ *
+ * <h3>Do not create many instances.</h3>
+ *
+ * Like {@link HashedWheelTimer} each instance creates its own thread once started, so only a few instances should be
+ * created and shared across the application.
+ */
+public class HierarchicalWheelTimer implements Timer {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(HierarchicalWheelTimer.class);
+
+    private static final long MILLISECOND_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int WORKER_STATE_INIT = 0;
+    private static final int WORKER_STATE_STARTED = 1;
+    private static final int WORKER_STATE_SHUTDOWN = 2;
+    private static final AtomicIntegerFieldUpdater<HierarchicalWheelTimer> WORKER_STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(HierarchicalWheelTimer.class, "workerState");
+
+    private final Worker worker = new Worker();
+    private final Thread workerThread;
+    private final long tickDuration;
+    private final int wheelBits;
+    private final int mask;
+    // Only accessed by the worker thread, wheels above the first one are created on demand.
+    private final Bucket[][] wheels;
+    private final CountDownLatch startTimeInitialized = new CountDownLatch(1);
+    private final Queue<WheelTimeout> timeouts = PlatformDependent.newMpscQueue();
+    private final Queue<WheelTimeout> cancelledTimeouts = PlatformDependent.newMpscQueue();
+    private final AtomicLong pendingTimeouts = new AtomicLong();
+    private final long maxPendingTimeouts;
+
+    @SuppressWarnings({ "unused", "FieldMayBeFinal" })
+    private volatile int workerState;
+    private volatile long startTime;
+    private volatile long tickLag;
+
+    /**
+     * Creates a new timer with the default thread factory ({@link Executors#defaultThreadFactory()}), a tick
+     * duration of 100 milliseconds and 256 ticks per wheel.
+     */
+    public HierarchicalWheelTimer() {
+        this(Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Creates a new timer with the default thread factory ({@link Executors#defaultThreadFactory()}) and 256 ticks
+     * per wheel.
+     *
+     * @param tickDuration   the duration between tick
+     * @param unit           the time unit of the {@code tickDuration}
+     * @throws NullPointerException     if {@code unit} is {@code null}
+     * @throws IllegalArgumentException if {@code tickDuration} is &lt;= 0
+     */
+    public HierarchicalWheelTimer(long tickDuration, TimeUnit unit) {
+        this(Executors.defaultThreadFactory(), tickDuration, unit);
+    }
+
+    /**
+     * Creates a new timer with a tick duration of 100 milliseconds and 256 ticks per wheel.
+     *
+     * @param threadFactory  a {@link ThreadFactory} that creates a background {@link Thread} which is dedicated to
+     *                       {@link TimerTask} execution.
+     * @throws NullPointerException if {@code threadFactory} is {@code null}
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory) {
+        this(threadFactory, 100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new timer with 256 ticks per wheel.
+     *
+     * @param threadFactory  a {@link ThreadFactory} that creates a background {@link Thread} which is dedicated to
+     *                       {@link TimerTask} execution.
+     * @param tickDuration   the duration between tick
+     * @param unit           the time unit of the {@code tickDuration}
+     * @throws NullPointerException     if either of {@code threadFactory} and {@code unit} is {@code null}
+     * @throws IllegalArgumentException if {@code tickDuration} is &lt;= 0
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit) {
+        this(threadFactory, tickDuration, unit, 256);
+    }
+
+    /**
+     * Creates a new timer.
+     *
+     * @param threadFactory  a {@link ThreadFactory} that creates a background {@link Thread} which is dedicated to
+     *                       {@link TimerTask} execution.
+     * @param tickDuration   the duration between tick
+     * @param unit           the time unit of the {@code tickDuration}
+     * @param ticksPerWheel  the size of each wheel, rounded up to a power of two
+     * @throws NullPointerException     if either of {@code threadFactory} and {@code unit} is {@code null}
+     * @throws IllegalArgumentException if {@code tickDuration} is &lt;= 0 or {@code ticksPerWheel} is &lt; 2
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        this(threadFactory, tickDuration, unit, ticksPerWheel, -1);
+    }
+
+    /**
+     * Creates a new timer.
+     *
+     * @param threadFactory       a {@link ThreadFactory} that creates a background {@link Thread} which is
+     *                            dedicated to {@link TimerTask} execution.
+     * @param tickDuration        the duration between tick
+     * @param unit                the time unit of the {@code tickDuration}
+     * @param ticksPerWheel       the size of each wheel, rounded up to a power of two
+     * @param maxPendingTimeouts  The maximum number of pending timeouts after which call to {@code newTimeout} will
+     *                            result in {@link RejectedExecutionException} being thrown. No maximum pending
+     *                            timeouts limit is assumed if this value is 0 or negative.
+     * @throws NullPointerException     if either of {@code threadFactory} and {@code unit} is {@code null}
+     * @throws IllegalArgumentException if {@code tickDuration} is &lt;= 0 or {@code ticksPerWheel} is &lt; 2
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel,
+                                  long maxPendingTimeouts) {
+        requireNonNull(threadFactory, "threadFactory");
+        requireNonNull(unit, "unit");
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+        }
+        if (ticksPerWheel < 2 || ticksPerWheel > 65536) {
+            throw new IllegalArgumentException("ticksPerWheel: " + ticksPerWheel + " (expected: 2-65536)");
+        }
+
+        wheelBits = 32 - Integer.numberOfLeadingZeros(ticksPerWheel - 1);
+        mask = (1 << wheelBits) - 1;
+        // Enough wheels to hold any positive tick.
+        wheels = new Bucket[62 / wheelBits + 1][];
+        wheels[0] = createWheel(mask + 1);
+
+        long duration = unit.toNanos(tickDuration);
+        if (duration < MILLISECOND_NANOS) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Configured tickDuration {} smaller then {}, using 1ms.", tickDuration, MILLISECOND_NANOS);
+            }
+            this.tickDuration = MILLISECOND_NANOS;
+        } else {
+            this.tickDuration = duration;
+        }
+        this.maxPendingTimeouts = maxPendingTimeouts;
+        workerThread = threadFactory.newThread(worker);
+    }
+
+    private static Bucket[] createWheel(int ticksPerWheel) {
+        Bucket[] wheel = new Bucket[ticksPerWheel];
+        for (int i = 0; i < wheel.length; i ++) {
+            wheel[i] = new Bucket();
+        }
+        return wheel;
+    }
+
+    /**
+     * Starts the background thread explicitly.  The background thread will start automatically on demand even if
+     * you did not call this method.
+     *
+     * @throws IllegalStateException if this timer has been {@linkplain #stop() stopped} already
+     */
+    public void start() {
+        switch (WORKER_STATE_UPDATER.get(this)) {
+            case WORKER_STATE_INIT:
+                if (WORKER_STATE_UPDATER.compareAndSet(this, WORKER_STATE_INIT, WORKER_STATE_STARTED)) {
+                    workerThread.start();
+                }
+                break;
+            case WORKER_STATE_STARTED:
+                break;
+            case WORKER_STATE_SHUTDOWN:
+                throw new IllegalStateException("cannot be started once stopped");
+            default:
+                throw new Error("Invalid WorkerState");
+        }
+
+        // Wait until the startTime is initialized by the worker.
+        while (startTime == 0) {
+            try {
+                startTimeInitialized.await();
+            } catch (InterruptedException ignore) {
+                // Ignore - it will be ready very soon.
+            }
+        }
+    }
+
+    @Override
+    public Set<Timeout> stop() {
+        if (Thread.currentThread() == workerThread) {
+            throw new IllegalStateException(
+                    HierarchicalWheelTimer.class.getSimpleName() + ".stop() cannot be called from " +
+                    TimerTask.class.getSimpleName());
+        }
+
+        if (!WORKER_STATE_UPDATER.compareAndSet(this, WORKER_STATE_STARTED, WORKER_STATE_SHUTDOWN)) {
+            // workerState can be 0 or 2 at this moment - let it always be 2.
+            WORKER_STATE_UPDATER.set(this, WORKER_STATE_SHUTDOWN);
+            return Collections.emptySet();
+        }
+
+        boolean interrupted = false;
+        while (workerThread.isAlive()) {
+            workerThread.interrupt();
+            try {
+                workerThread.join(100);
+            } catch (InterruptedException ignored) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return worker.unprocessedTimeouts();
+    }
+
+    @Override
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        requireNonNull(task, "task");
+        requireNonNull(unit, "unit");
+
+        long pendingTimeoutsCount = pendingTimeouts.incrementAndGet();
+        if (maxPendingTimeouts > 0 && pendingTimeoutsCount > maxPendingTimeouts) {
+            pendingTimeouts.decrementAndGet();
+            throw new RejectedExecutionException("Number of pending timeouts ("
+                + pendingTimeoutsCount + ") is greater than or equal to maximum allowed pending "
+                + "timeouts (" + maxPendingTimeouts + ")");
+        }
+
+        try {
+            start();
+        } catch (IllegalStateException e) {
+            pendingTimeouts.decrementAndGet();
+            throw e;
+        }
+
+        // Add the timeout to the timeout queue which will be processed on the next tick.
+        long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+
+        // Guard against overflow.
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
+        }
+        WheelTimeout timeout = new WheelTimeout(this, task, deadline);
+        timeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of timeouts of this {@link Timer} which are neither expired nor cancelled.
+     */
+    public long pendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * Returns by how many nanoseconds the worker thread was late when it processed the last tick. A value which stays
+     * well above the tick duration means {@link TimerTask}s take too long or the worker thread does not get enough
+     * CPU time.
+     */
+    public long tickLagNanos() {
+        return tickLag;
+    }
+
+    private final class Worker implements Runnable {
+        private final Set<Timeout> unprocessedTimeouts = new HashSet<>();
+
+        // The next tick to process.
+        private long tick;
+
+        @Override
+        public void run() {
+            // Initialize the startTime.
+            startTime = System.nanoTime();
+            if (startTime == 0) {
+                // We use 0 as an indicator for the uninitialized value here, so make sure it's not 0 when initialized.
+                startTime = 1;
+            }
+
+            // Notify the other threads waiting for the initialization at start().
+            startTimeInitialized.countDown();
+
+            do {
+                final long currentTime = waitForNextTick();
+                if (currentTime > 0) {
+                    processCancelledTimeouts();
+                    transferTimeouts();
+                    processTicks(currentTime);
+                }
+            } while (WORKER_STATE_UPDATER.get(HierarchicalWheelTimer.this) == WORKER_STATE_STARTED);
+
+            // Fill the unprocessedTimeouts so we can return them from stop() method.
+            for (Bucket[] wheel: wheels) {
+                if (wheel != null) {
+                    for (Bucket bucket: wheel) {
+                        bucket.clearTimeouts(unprocessedTimeouts);
+                    }
+                }
+            }
+            for (;;) {
+                WheelTimeout timeout = timeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (!timeout.isCancelled()) {
+                    unprocessedTimeouts.add(timeout);
+                }
+            }
+            processCancelledTimeouts();
+        }
+
+        private void processCancelledTimeouts() {
+            for (;;) {
+                WheelTimeout timeout = cancelledTimeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                timeout.remove();
+            }
+        }
+
+        private void transferTimeouts() {
+            // Transfer only max. 100000 timeouts per tick to prevent a thread to stale the workerThread when it just
+            // adds new timeouts in a loop.
+            for (int i = 0; i < 100000; i++) {
+                WheelTimeout timeout = timeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (!timeout.isCancelled()) {
+                    schedule(timeout);
+                }
+            }
+        }
+
+        /**
+         * Processes all ticks which ended before {@code currentTime} in one batch, which is more than one if the
+         * worker thread fell behind.
+         */
+        private void processTicks(long currentTime) {
+            tickLag = currentTime - tickDuration * (tick + 1);
+            final long lastTick = currentTime / tickDuration - 1;
+            do {
+                cascade();
+                Bucket bucket = wheels[0][(int) tick & mask];
+                for (;;) {
+                    WheelTimeout timeout = bucket.poll();
+                    if (timeout == null) {
+                        break;
+                    }
+                    timeout.expire();
+                }
+                tick++;
+            } while (tick <= lastTick);
+        }
+
+        /**
+         * Moves the timeouts of the buckets of the upper wheels which start at the current tick down to the lower
+         * wheels, starting with the uppermost one.
+         */
+        private void cascade() {
+            if ((tick & mask) != 0) {
+                // The current tick is not the start of a bucket of an upper wheel.
+                return;
+            }
+            int level = Math.min(Long.numberOfTrailingZeros(tick) / wheelBits, wheels.length - 1);
+            for (; level > 0; level--) {
+                Bucket[] wheel = wheels[level];
+                if (wheel == null) {
+                    continue;
+                }
+                Bucket bucket = wheel[(int) (tick >>> wheelBits * level) & mask];
+                for (;;) {
+                    WheelTimeout timeout = bucket.poll();
+                    if (timeout == null) {
+                        break;
+                    }
+                    if (!timeout.isCancelled()) {
+                        schedule(timeout);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds the timeout to the lowest wheel whose current rotation contains its deadline.
+         */
+        private void schedule(WheelTimeout timeout) {
+            // Ensure we don't schedule for past.
+            final long deadlineTick = Math.max(timeout.deadline / tickDuration, tick);
+            // The highest bit in which the deadline differs from the current tick decides the wheel.
+            final long diff = deadlineTick ^ tick;
+            final int level = diff == 0 ? 0 : (63 - Long.numberOfLeadingZeros(diff)) / wheelBits;
+            Bucket[] wheel = wheels[level];
+            if (wheel == null) {
+                wheel = wheels[level] = createWheel(mask + 1);
+            }
+            wheel[(int) (deadlineTick >>> wheelBits * level) & mask].addTimeout(timeout);
+        }
+
+        /**
+         * calculate goal nanoTime from startTime and current tick number,
+         * then wait until that goal has been reached.
+         * @return Long.MIN_VALUE if received a shutdown request,
+         * current time otherwise (with Long.MIN_VALUE changed by +1)
+         */
+        private long waitForNextTick() {
+            long deadline = tickDuration * (tick + 1);
+
+            for (;;) {
+                final long currentTime = System.nanoTime() - startTime;
+                long sleepTimeMs = (deadline - currentTime + 999999) / 1000000;
+
+                if (sleepTimeMs <= 0) {
+                    if (currentTime == Long.MIN_VALUE) {
+                        return -Long.MAX_VALUE;
+                    } else {
+                        return currentTime;
+                    }
+                }
+
+                // See HashedWheelTimer.
+                if (PlatformDependent.isWindows()) {
+                    sleepTimeMs = sleepTimeMs / 10 * 10;
+                }
+
+                try {
+                    Thread.sleep(sleepTimeMs);
+                } catch (InterruptedException ignored) {
+                    if (WORKER_STATE_UPDATER.get(HierarchicalWheelTimer.this) == WORKER_STATE_SHUTDOWN) {
+                        return Long.MIN_VALUE;
+                    }
+                }
+            }
+        }
+
+        Set<Timeout> unprocessedTimeouts() {
+            return Collections.unmodifiableSet(unprocessedTimeouts);
+        }
+    }
+
+    private static final class WheelTimeout implements Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+        private final HierarchicalWheelTimer timer;
+        private final TimerTask task;
+        private final long deadline;
+
+        @SuppressWarnings({"unused", "FieldMayBeFinal", "RedundantFieldInitialization" })
+        private volatile int state = ST_INIT;
+
+        // Links of the Bucket the timeout was added to. Only accessed by the worker thread.
+        WheelTimeout next;
+        WheelTimeout prev;
+        Bucket bucket;
+
+        WheelTimeout(HierarchicalWheelTimer timer, TimerTask task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Timer timer() {
+            return timer;
+        }
+
+        @Override
+        public TimerTask task() {
+            return task;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            timer.pendingTimeouts.decrementAndGet();
+            if (Thread.currentThread() == timer.workerThread) {
+                remove();
+            } else {
+                // Only the worker thread may touch the buckets, it removes the timeout on the next tick.
+                timer.cancelledTimeouts.add(this);
+            }
+            return true;
+        }
+
+        void remove() {
+            Bucket bucket = this.bucket;
+            if (bucket != null) {
+                bucket.remove(this);
+            }
+            // Otherwise it was not transferred to a bucket yet, or was removed from it already.
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        void expire() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            timer.pendingTimeouts.decrementAndGet();
+
+            try {
+                task.run(this);
+            } catch (Throwable t) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("An exception was thrown by " + TimerTask.class.getSimpleName() + '.', t);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            final long currentTime = System.nanoTime();
+            long remaining = deadline - currentTime + timer.startTime;
+
+            StringBuilder buf = new StringBuilder(192)
+               .append(simpleClassName(this))
+               .append('(')
+               .append("deadline: ");
+            if (remaining > 0) {
+                buf.append(remaining)
+                   .append(" ns later");
+            } else if (remaining < 0) {
+                buf.append(-remaining)
+                   .append(" ns ago");
+            } else {
+                buf.append("now");
+            }
+
+            if (isCancelled()) {
+                buf.append(", cancelled");
+            }
+
+            return buf.append(", task: ")
+                      .append(task())
+                      .append(')')
+                      .toString();
+        }
+    }
+
+    /**
+     * Doubly linked list of {@link WheelTimeout}s, which act as the nodes themselves.
+     */
+    private static final class Bucket {
+        private WheelTimeout head;
+        private WheelTimeout tail;
+
+        void addTimeout(WheelTimeout timeout) {
+            assert timeout.bucket == null;
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(WheelTimeout timeout) {
+            WheelTimeout next = timeout.next;
+            WheelTimeout prev = timeout.prev;
+            if (prev == null) {
+                head = next;
+            } else {
+                prev.next = next;
+            }
+            if (next == null) {
+                tail = prev;
+            } else {
+                next.prev = prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        /**
+         * Removes and returns the first {@link WheelTimeout}. Expiring or cascading timeouts one by one keeps the
+         * list consistent if a {@link TimerTask} cancels another timeout of the same bucket.
+         */
+        WheelTimeout poll() {
+            WheelTimeout head = this.head;
+            if (head != null) {
+                remove(head);
+            }
+            return head;
+        }
+
+        /**
+         * Clear this bucket and add all not expired / cancelled {@link Timeout}s to the given {@link Set}.
+         */
+        void clearTimeouts(Set<Timeout> set) {
+            for (;;) {
+                WheelTimeout timeout = poll();
+                if (timeout == null) {
+                    return;
+                }
+                if (!timeout.isExpired() && !timeout.isCancelled()) {
+                    set.add(timeout);
+                }
+            }
+        }
+    }
+}
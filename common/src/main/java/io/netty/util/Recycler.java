@@ -17,15 +17,18 @@
 package io.netty.util;
 
 import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
+import org.jctools.queues.MessagePassingQueue;
 
 import java.lang.ref.WeakReference;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import static io.netty.util.internal.MathUtil.safeFindNextPositivePowerOfTwo;
 import static java.lang.Math.max;
@@ -33,6 +36,12 @@ import static java.lang.Math.min;
 
 /**
  * Light-weight object pool based on a thread-local stack.
+ * <p>
+ * Objects which are recycled by another thread than the one which got them are handed back through per-thread
+ * {@code WeakOrderQueue}s by default. If {@code -Dio.netty.recycler.useMpscQueue=true} is set, every thread owns a
+ * bounded MPSC queue instead, which objects are recycled to directly from any thread. This is cheaper if objects are
+ * often recycled by other threads, for example if buffers allocated on an event loop are released by a separate
+ * thread pool.
  *
  * @param <T> the type of the pooled object
  */
@@ -53,6 +62,8 @@ public abstract class Recycler<T> {
     private static final int MAX_DELAYED_QUEUES_PER_THREAD;
     private static final int LINK_CAPACITY;
     private static final int RATIO;
+    private static final boolean USE_MPSC_QUEUE;
+    private static final int CHUNK_SIZE;
 
     static {
         // In the future, we might have different maxCapacity for different object types.
@@ -83,17 +94,26 @@ public abstract class Recycler<T> {
         // bursts.
         RATIO = safeFindNextPositivePowerOfTwo(SystemPropertyUtil.getInt("io.netty.recycler.ratio", 8));
 
+        USE_MPSC_QUEUE = SystemPropertyUtil.getBoolean("io.netty.recycler.useMpscQueue", false);
+
+        // The MPSC queues grow in chunks of this size up to maxCapacityPerThread.
+        CHUNK_SIZE = max(2, SystemPropertyUtil.getInt("io.netty.recycler.chunkSize", 32));
+
         if (logger.isDebugEnabled()) {
             if (DEFAULT_MAX_CAPACITY_PER_THREAD == 0) {
                 logger.debug("-Dio.netty.recycler.maxCapacityPerThread: disabled");
                 logger.debug("-Dio.netty.recycler.maxSharedCapacityFactor: disabled");
                 logger.debug("-Dio.netty.recycler.linkCapacity: disabled");
                 logger.debug("-Dio.netty.recycler.ratio: disabled");
+                logger.debug("-Dio.netty.recycler.useMpscQueue: disabled");
+                logger.debug("-Dio.netty.recycler.chunkSize: disabled");
             } else {
                 logger.debug("-Dio.netty.recycler.maxCapacityPerThread: {}", DEFAULT_MAX_CAPACITY_PER_THREAD);
                 logger.debug("-Dio.netty.recycler.maxSharedCapacityFactor: {}", MAX_SHARED_CAPACITY_FACTOR);
                 logger.debug("-Dio.netty.recycler.linkCapacity: {}", LINK_CAPACITY);
                 logger.debug("-Dio.netty.recycler.ratio: {}", RATIO);
+                logger.debug("-Dio.netty.recycler.useMpscQueue: {}", USE_MPSC_QUEUE);
+                logger.debug("-Dio.netty.recycler.chunkSize: {}", CHUNK_SIZE);
             }
         }
 
@@ -105,23 +125,9 @@ public abstract class Recycler<T> {
     private final int ratioMask;
     private final int maxDelayedQueuesPerThread;
 
-    private final FastThreadLocal<Stack<T>> threadLocal = new FastThreadLocal<Stack<T>>() {
-        @Override
-        protected Stack<T> initialValue() {
-            return new Stack<>(Recycler.this, Thread.currentThread(), maxCapacityPerThread, maxSharedCapacityFactor,
-                    ratioMask, maxDelayedQueuesPerThread);
-        }
-
-        @Override
-        protected void onRemoval(Stack<T> value) {
-            // Let us remove the WeakOrderQueue from the WeakHashMap directly if its safe to remove some overhead
-            if (value.threadRef.get() == Thread.currentThread()) {
-               if (DELAYED_RECYCLED.isSet()) {
-                   DELAYED_RECYCLED.get().remove(value);
-               }
-            }
-        }
-    };
+    // Only one of both is used, depending on the implementation in use.
+    private final FastThreadLocal<Stack<T>> threadLocal;
+    private final FastThreadLocal<LocalPool<T>> localPool;
 
     protected Recycler() {
         this(DEFAULT_MAX_CAPACITY_PER_THREAD);
@@ -137,6 +143,11 @@ public abstract class Recycler<T> {
 
     protected Recycler(int maxCapacityPerThread, int maxSharedCapacityFactor,
                        int ratio, int maxDelayedQueuesPerThread) {
+        this(maxCapacityPerThread, maxSharedCapacityFactor, ratio, maxDelayedQueuesPerThread, USE_MPSC_QUEUE);
+    }
+
+    Recycler(int maxCapacityPerThread, int maxSharedCapacityFactor,
+             int ratio, int maxDelayedQueuesPerThread, boolean useMpscQueue) {
         ratioMask = safeFindNextPositivePowerOfTwo(ratio) - 1;
         if (maxCapacityPerThread <= 0) {
             this.maxCapacityPerThread = 0;
@@ -147,6 +158,35 @@ public abstract class Recycler<T> {
             this.maxSharedCapacityFactor = max(1, maxSharedCapacityFactor);
             this.maxDelayedQueuesPerThread = max(0, maxDelayedQueuesPerThread);
         }
+        if (useMpscQueue) {
+            threadLocal = null;
+            localPool = new FastThreadLocal<LocalPool<T>>() {
+                @Override
+                protected LocalPool<T> initialValue() {
+                    return new LocalPool<>(Recycler.this, Recycler.this.maxCapacityPerThread, ratioMask);
+                }
+            };
+        } else {
+            localPool = null;
+            threadLocal = new FastThreadLocal<Stack<T>>() {
+                @Override
+                protected Stack<T> initialValue() {
+                    return new Stack<>(Recycler.this, Thread.currentThread(), Recycler.this.maxCapacityPerThread,
+                            Recycler.this.maxSharedCapacityFactor, ratioMask, Recycler.this.maxDelayedQueuesPerThread);
+                }
+
+                @Override
+                protected void onRemoval(Stack<T> value) {
+                    // Let us remove the WeakOrderQueue from the WeakHashMap directly if its safe to remove some
+                    // overhead
+                    if (value.threadRef.get() == Thread.currentThread()) {
+                       if (DELAYED_RECYCLED.isSet()) {
+                           DELAYED_RECYCLED.get().remove(value);
+                       }
+                    }
+                }
+            };
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -154,6 +194,18 @@ public abstract class Recycler<T> {
         if (maxCapacityPerThread == 0) {
             return newObject((Handle<T>) NOOP_HANDLE);
         }
+        if (localPool != null) {
+            LocalPool<T> pool = localPool.get();
+            PooledHandle<T> handle = pool.claim();
+            if (handle == null) {
+                handle = pool.newHandle();
+                if (handle == null) {
+                    return newObject((Handle<T>) NOOP_HANDLE);
+                }
+                handle.value = newObject(handle);
+            }
+            return handle.value;
+        }
         Stack<T> stack = threadLocal.get();
         DefaultHandle<T> handle = stack.pop();
         if (handle == null) {
@@ -172,20 +224,32 @@ public abstract class Recycler<T> {
             return false;
         }
 
-        DefaultHandle<T> h = (DefaultHandle<T>) handle;
-        if (h.stack.parent != this) {
-            return false;
+        if (handle instanceof PooledHandle) {
+            if (((PooledHandle<T>) handle).pool.parent != this) {
+                return false;
+            }
+        } else {
+            DefaultHandle<T> h = (DefaultHandle<T>) handle;
+            if (h.stack.parent != this) {
+                return false;
+            }
         }
 
-        h.recycle(o);
+        handle.recycle(o);
         return true;
     }
 
     final int threadLocalCapacity() {
+        if (localPool != null) {
+            return localPool.get().pooledHandles.capacity();
+        }
         return threadLocal.get().elements.length;
     }
 
     final int threadLocalSize() {
+        if (localPool != null) {
+            return localPool.get().pooledHandles.size();
+        }
         return threadLocal.get().size;
     }
 
@@ -223,6 +287,87 @@ public abstract class Recycler<T> {
         }
     }
 
+    static final class PooledHandle<T> implements Handle<T> {
+        private static final int STATE_CLAIMED = 0;
+        private static final int STATE_AVAILABLE = 1;
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<PooledHandle> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(PooledHandle.class, "state");
+
+        // A new handle is claimed as its object is handed out right away.
+        @SuppressWarnings("unused")
+        private volatile int state;
+
+        final LocalPool<T> pool;
+        private T value;
+
+        PooledHandle(LocalPool<T> pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void recycle(T object) {
+            if (object != value) {
+                throw new IllegalArgumentException("object does not belong to handle");
+            }
+            pool.release(this);
+        }
+
+        void toClaimed() {
+            assert state == STATE_AVAILABLE;
+            // Only the thread which owns the pool claims handles, and it already saw the state when polling.
+            STATE_UPDATER.lazySet(this, STATE_CLAIMED);
+        }
+
+        void toAvailable() {
+            if (!STATE_UPDATER.compareAndSet(this, STATE_CLAIMED, STATE_AVAILABLE)) {
+                throw new IllegalStateException("recycled already");
+            }
+        }
+    }
+
+    /**
+     * The pool of a thread when MPSC queues are used. Any thread may recycle into it, but only the thread which
+     * owns it takes objects out of it, so no other bookkeeping is needed for objects which are recycled by another
+     * thread.
+     */
+    static final class LocalPool<T> {
+        final Recycler<T> parent;
+        final MessagePassingQueue<PooledHandle<T>> pooledHandles;
+        private final int ratioMask;
+        private int handleCount = -1; // Start with -1 so the first one will be pooled.
+
+        LocalPool(Recycler<T> parent, int maxCapacity, int ratioMask) {
+            this.parent = parent;
+            this.ratioMask = ratioMask;
+            int capacity = max(maxCapacity, 4);
+            pooledHandles = (MessagePassingQueue<PooledHandle<T>>) PlatformDependent.<PooledHandle<T>>newMpscQueue(
+                    min(CHUNK_SIZE, capacity >>> 1), capacity);
+        }
+
+        PooledHandle<T> claim() {
+            PooledHandle<T> handle = pooledHandles.relaxedPoll();
+            if (handle != null) {
+                handle.toClaimed();
+            }
+            return handle;
+        }
+
+        void release(PooledHandle<T> handle) {
+            handle.toAvailable();
+            // Drop the object if the pool is full already.
+            pooledHandles.relaxedOffer(handle);
+        }
+
+        /**
+         * Returns a new handle, or {@code null} if the object should not be pooled. Only a fraction of the new
+         * objects is pooled, so a burst of allocations does not fill up the pool at once.
+         */
+        PooledHandle<T> newHandle() {
+            return (++handleCount & ratioMask) == 0 ? new PooledHandle<>(this) : null;
+        }
+    }
+
     private static final FastThreadLocal<Map<Stack<?>, WeakOrderQueue>> DELAYED_RECYCLED =
             new FastThreadLocal<Map<Stack<?>, WeakOrderQueue>>() {
         @Override
@@ -22,6 +22,7 @@ import org.jctools.queues.MpscChunkedArrayQueue;
 import org.jctools.queues.MpscUnboundedArrayQueue;
 import org.jctools.queues.SpscLinkedQueue;
 import org.jctools.queues.atomic.MpscAtomicArrayQueue;
+import org.jctools.queues.atomic.MpscChunkedAtomicArrayQueue;
 import org.jctools.queues.atomic.MpscGrowableAtomicArrayQueue;
 import org.jctools.queues.atomic.MpscUnboundedAtomicArrayQueue;
 import org.jctools.queues.atomic.SpscLinkedAtomicQueue;
@@ -367,6 +368,22 @@ public final class PlatformDependent {
         return PlatformDependent0.getLong(address);
     }
 
+    /**
+     * Reads an {@code int} from the given off-heap address with volatile semantics, which makes it usable for memory
+     * which is shared with other threads or processes.
+     */
+    public static int getIntVolatile(long address) {
+        return PlatformDependent0.getIntVolatile(address);
+    }
+
+    /**
+     * Reads a {@code long} from the given off-heap address with volatile semantics, see
+     * {@link #getIntVolatile(long)}.
+     */
+    public static long getLongVolatile(long address) {
+        return PlatformDependent0.getLongVolatile(address);
+    }
+
     public static byte getByte(byte[] data, int index) {
         return PlatformDependent0.getByte(data, index);
     }
@@ -495,6 +512,21 @@ public final class PlatformDependent {
         PlatformDependent0.putLong(address, value);
     }
 
+    /**
+     * Writes an {@code int} to the given off-heap address with volatile semantics, see {@link #getIntVolatile(long)}.
+     */
+    public static void putIntVolatile(long address, int value) {
+        PlatformDependent0.putIntVolatile(address, value);
+    }
+
+    /**
+     * Writes a {@code long} to the given off-heap address with volatile semantics, see
+     * {@link #getIntVolatile(long)}.
+     */
+    public static void putLongVolatile(long address, long value) {
+        PlatformDependent0.putLongVolatile(address, value);
+    }
+
     public static void putByte(byte[] data, int index, byte value) {
         PlatformDependent0.putByte(data, index, value);
     }
@@ -771,6 +803,11 @@ public final class PlatformDependent {
             return USE_MPSC_CHUNKED_ARRAY_QUEUE ? new MpscUnboundedArrayQueue<>(MPSC_CHUNK_SIZE)
                                                 : new MpscUnboundedAtomicArrayQueue<>(MPSC_CHUNK_SIZE);
         }
+
+        static <T> Queue<T> newMpscQueue(final int chunkSize, final int maxCapacity) {
+            return USE_MPSC_CHUNKED_ARRAY_QUEUE ? new MpscChunkedArrayQueue<>(chunkSize, maxCapacity)
+                                                : new MpscChunkedAtomicArrayQueue<>(chunkSize, maxCapacity);
+        }
     }
 
     /**
@@ -790,6 +827,16 @@ public final class PlatformDependent {
         return Mpsc.newMpscQueue(maxCapacity);
     }
 
+    /**
+     * Create a new {@link Queue} which is safe to use for multiple producers (different threads) and a single
+     * consumer (one thread!). The queue grows in chunks of {@code chunkSize} elements up to {@code maxCapacity}
+     * elements, both are rounded up to the next power of two. {@code chunkSize} must be at least {@code 2} and
+     * smaller than {@code maxCapacity}.
+     */
+    public static <T> Queue<T> newMpscQueue(final int chunkSize, final int maxCapacity) {
+        return Mpsc.newMpscQueue(chunkSize, maxCapacity);
+    }
+
     /**
      * Create a new {@link Queue} which is safe to use for single producer (one thread!) and a single
      * consumer (one thread!).
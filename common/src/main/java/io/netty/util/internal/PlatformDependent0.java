@@ -467,6 +467,14 @@ final class PlatformDependent0 {
         return UNSAFE.getLong(address);
     }
 
+    static int getIntVolatile(long address) {
+        return UNSAFE.getIntVolatile(null, address);
+    }
+
+    static long getLongVolatile(long address) {
+        return UNSAFE.getLongVolatile(null, address);
+    }
+
     static byte getByte(byte[] data, int index) {
         return UNSAFE.getByte(data, BYTE_ARRAY_BASE_OFFSET + index);
     }
@@ -499,6 +507,14 @@ final class PlatformDependent0 {
         UNSAFE.putLong(address, value);
     }
 
+    static void putIntVolatile(long address, int value) {
+        UNSAFE.putIntVolatile(null, address, value);
+    }
+
+    static void putLongVolatile(long address, long value) {
+        UNSAFE.putLongVolatile(null, address, value);
+    }
+
     static void putByte(byte[] data, int index, byte value) {
         UNSAFE.putByte(data, BYTE_ARRAY_BASE_OFFSET + index, value);
     }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+/**
+ * Utility methods to search bytes in a {@code long} holding eight of them, a technique known as SIMD within a
+ * register (SWAR). This allows to compare eight bytes per step without any branch per byte.
+ */
+public final class SWARUtil {
+
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long LOW_BYTES = 0x0101010101010101L;
+
+    private SWARUtil() { }
+
+    /**
+     * Returns a {@code long} with each of its eight bytes set to {@code value}, to be passed to
+     * {@link #applyPattern(long, long)}.
+     */
+    public static long compilePattern(byte value) {
+        return (value & 0xFFL) * LOW_BYTES;
+    }
+
+    /**
+     * Returns a {@code long} which has the highest bit of a byte set if and only if the same byte of {@code word}
+     * matches the byte of the {@code pattern}, and all other bits cleared. Unlike the well known
+     * {@code (x - 0x01..) & ~x & 0x80..} trick this never reports false positives, as no carry crosses a byte.
+     */
+    public static long applyPattern(long word, long pattern) {
+        long input = word ^ pattern;
+        long tmp = (input & LOW_SEVEN_BITS) + LOW_SEVEN_BITS;
+        return ~(tmp | input | LOW_SEVEN_BITS);
+    }
+
+    /**
+     * Returns the index of the first matching byte in the result of {@link #applyPattern(long, long)}, which must
+     * not be {@code 0}.
+     *
+     * @param result the result of {@link #applyPattern(long, long)}.
+     * @param isBigEndian {@code true} if the first byte is the most significant byte of the {@code long}, as for
+     *                    {@code ByteBuf.getLong(int)}, and {@code false} if it is the least significant byte, as
+     *                    for {@code ByteBuf.getLongLE(int)}.
+     */
+    public static int getIndex(long result, boolean isBigEndian) {
+        return isBigEndian ? Long.numberOfLeadingZeros(result) >>> 3 : Long.numberOfTrailingZeros(result) >>> 3;
+    }
+
+    /**
+     * Returns a {@code long} which has the highest bit of a byte set if and only if that byte matched the first
+     * pattern and the byte following it matched the second pattern, given the results of
+     * {@link #applyPattern(long, long)} for both patterns. The last byte of {@code word} never matches, as the
+     * byte following it is not part of the {@code word}.
+     */
+    public static long combineAdjacent(long firstResult, long secondResult, boolean isBigEndian) {
+        return firstResult & (isBigEndian ? secondResult << 8 : secondResult >>> 8);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompactAttributeMapTest extends DefaultAttributeMapTest {
+
+    @Override
+    protected DefaultAttributeMap newMap() {
+        return new DefaultAttributeMap(true);
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentAttr() throws Exception {
+        final DefaultAttributeMap map = newMap();
+        final int threads = 4;
+        final int keysPerThread = 100;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            final int offset = t * keysPerThread;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < keysPerThread; i++) {
+                    AttributeKey<Integer> key = AttributeKey.valueOf("concurrent" + (offset + i));
+                    map.attr(key).set(offset + i);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker: workers) {
+            worker.join();
+        }
+
+        for (int i = 0; i < threads * keysPerThread; i++) {
+            AttributeKey<Integer> key = AttributeKey.valueOf("concurrent" + i);
+            assertTrue(map.hasAttr(key));
+            assertEquals(Integer.valueOf(i), map.attr(key).get());
+        }
+    }
+
+    @Test
+    public void testRemoveTwice() {
+        AttributeKey<String> key = AttributeKey.valueOf("removeTwice");
+        DefaultAttributeMap map = newMap();
+        Attribute<String> attr = map.attr(key);
+        attr.set("value");
+        attr.remove();
+        Attribute<String> attr2 = map.attr(key);
+        attr2.set("value2");
+
+        // Removing the stale attribute again must not remove the new one.
+        attr.remove();
+        assertSame(attr2, map.attr(key));
+        assertEquals("value2", attr2.get());
+    }
+}
@@ -26,7 +26,11 @@ public class DefaultAttributeMapTest {
 
     @Before
     public void setup() {
-        map = new DefaultAttributeMap();
+        map = newMap();
+    }
+
+    protected DefaultAttributeMap newMap() {
+        return new DefaultAttributeMap(false);
     }
 
     @Test
@@ -96,4 +100,41 @@ public class DefaultAttributeMapTest {
         assertSame(2, attr2.get());
         assertSame(attr, attr2);
     }
+
+    @Test
+    public void testHasAttr() {
+        AttributeKey<Integer> key = AttributeKey.valueOf("hasAttr");
+        assertFalse(map.hasAttr(key));
+
+        Attribute<Integer> attr = map.attr(key);
+        assertTrue(map.hasAttr(key));
+
+        attr.remove();
+        assertFalse(map.hasAttr(key));
+    }
+
+    @Test
+    public void testManyAttributes() {
+        AttributeKey<?>[] keys = new AttributeKey<?>[64];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = AttributeKey.valueOf("many" + i);
+        }
+        // Add in an order which differs from the order of the ids.
+        for (int i = keys.length - 1; i >= 0; i -= 2) {
+            map.attr(keys[i]);
+        }
+        for (int i = 0; i < keys.length; i += 2) {
+            map.attr(keys[i]);
+        }
+        for (AttributeKey<?> key: keys) {
+            assertTrue(map.hasAttr(key));
+            assertSame(key, map.attr(key).key());
+        }
+        for (int i = 0; i < keys.length; i += 3) {
+            map.attr(keys[i]).remove();
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i % 3 != 0, map.hasAttr(keys[i]));
+        }
+    }
 }
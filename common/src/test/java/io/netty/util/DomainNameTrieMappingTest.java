@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DomainNameTrieMappingTest {
+
+    @Test
+    public void testExactAndWildcardMatches() {
+        DomainNameTrieMapping<String> mapping = new DomainNameTrieMappingBuilder<>("NotFound")
+                .add("netty.io", "Netty")
+                .add("downloads.netty.io", "Netty-Downloads")
+                .add("*.netty.io", "Netty-Wildcard")
+                .add("*.downloads.netty.io", "Netty-Downloads-Wildcard")
+                .add("example.com", "Example")
+                .build();
+
+        assertEquals(5, mapping.size());
+        assertEquals("Netty", mapping.map("netty.io"));
+        assertEquals("Netty-Downloads", mapping.map("downloads.netty.io"));
+        assertEquals("Netty-Wildcard", mapping.map("www.netty.io"));
+        assertEquals("Netty-Wildcard", mapping.map("a.b.netty.io"));
+        assertEquals("Netty-Downloads-Wildcard", mapping.map("x.downloads.netty.io"));
+        assertEquals("Example", mapping.map("EXAMPLE.com"));
+        assertEquals("NotFound", mapping.map("www.example.com"));
+        assertEquals("NotFound", mapping.map("io"));
+        assertEquals("NotFound", mapping.map(null));
+    }
+
+    @Test
+    public void testWildcardMatchesApex() {
+        DomainNameTrieMapping<String> mapping = new DomainNameTrieMappingBuilder<>("NotFound")
+                .add("*.netty.io", "Netty")
+                .build();
+
+        assertEquals("Netty", mapping.map("netty.io"));
+        assertEquals("Netty", mapping.map("downloads.netty.io"));
+        assertEquals("NotFound", mapping.map("nettyio"));
+        assertEquals("NotFound", mapping.map("netty.com"));
+    }
+
+    @Test
+    public void testIdnNormalization() {
+        DomainNameTrieMapping<String> mapping = new DomainNameTrieMappingBuilder<>("NotFound")
+                .add("*.äöü.com", "Umlaut")
+                .build();
+
+        assertEquals("Umlaut", mapping.map("www.xn--4ca0bs.com"));
+        assertEquals("Umlaut", mapping.map("www.ÄÖÜ.com"));
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HierarchicalWheelTimerTest {
+
+    @Test
+    public void testScheduleTimeoutShouldNotRunBeforeDelay() throws InterruptedException {
+        final Timer timer = new HierarchicalWheelTimer();
+        final CountDownLatch barrier = new CountDownLatch(1);
+        final Timeout timeout = timer.newTimeout(timeout1 -> barrier.countDown(), 10, TimeUnit.SECONDS);
+        assertFalse(barrier.await(3, TimeUnit.SECONDS));
+        assertFalse("timer should not expire", timeout.isExpired());
+        timer.stop();
+    }
+
+    @Test
+    public void testScheduleTimeoutShouldRunAfterDelay() throws InterruptedException {
+        final Timer timer = new HierarchicalWheelTimer();
+        final CountDownLatch barrier = new CountDownLatch(1);
+        final Timeout timeout = timer.newTimeout(timeout1 -> barrier.countDown(), 2, TimeUnit.SECONDS);
+        assertTrue(barrier.await(3, TimeUnit.SECONDS));
+        assertTrue("timer should expire", timeout.isExpired());
+        timer.stop();
+    }
+
+    @Test(timeout = 5000)
+    public void testTimeoutsCascadeThroughWheels() throws InterruptedException {
+        // With 4 ticks per wheel of 10 ms these timeouts are spread over the first four wheels.
+        final HierarchicalWheelTimer timer = new HierarchicalWheelTimer(
+                Executors.defaultThreadFactory(), 10, TimeUnit.MILLISECONDS, 4);
+        final int[] delays = { 5, 30, 70, 150, 330, 650, 1300 };
+        final BlockingQueue<Long> queue = new LinkedBlockingQueue<>();
+        for (final int delay: delays) {
+            final long start = System.nanoTime();
+            timer.newTimeout(timeout -> queue.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) - delay),
+                             delay, TimeUnit.MILLISECONDS);
+        }
+        for (int i = 0; i < delays.length; i++) {
+            long late = queue.take();
+            assertTrue("expired " + late + " ms late", late >= 0 && late < 200);
+        }
+        assertEquals(0, timer.pendingTimeouts());
+        timer.stop();
+    }
+
+    @Test
+    public void testExecutionOnTime() throws InterruptedException {
+        int tickDuration = 200;
+        int timeout = 125;
+        int maxTimeout = 2 * (tickDuration + timeout);
+        final HierarchicalWheelTimer timer = new HierarchicalWheelTimer(tickDuration, TimeUnit.MILLISECONDS);
+        final BlockingQueue<Long> queue = new LinkedBlockingQueue<>();
+
+        int scheduledTasks = 100000;
+        for (int i = 0; i < scheduledTasks; i++) {
+            final long start = System.nanoTime();
+            timer.newTimeout(timeout1 -> queue.add(
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)), timeout, TimeUnit.MILLISECONDS);
+        }
+
+        for (int i = 0; i < scheduledTasks; i++) {
+            long delay = queue.take();
+            assertTrue("Timeout + " + scheduledTasks + " delay " + delay + " must be " + timeout + " < " + maxTimeout,
+                delay >= timeout && delay < maxTimeout);
+        }
+
+        timer.stop();
+    }
+
+    @Test(timeout = 3000)
+    public void testStopTimer() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(3);
+        final Timer timerProcessed = new HierarchicalWheelTimer();
+        for (int i = 0; i < 3; i ++) {
+            timerProcessed.newTimeout(timeout -> latch.countDown(), 1, TimeUnit.MILLISECONDS);
+        }
+
+        latch.await();
+        assertEquals("Number of unprocessed timeouts should be 0", 0, timerProcessed.stop().size());
+
+        final Timer timerUnprocessed = new HierarchicalWheelTimer();
+        for (int i = 0; i < 5; i ++) {
+            timerUnprocessed.newTimeout(timeout -> {
+            }, 5, TimeUnit.MINUTES);
+        }
+        Timeout cancelled = timerUnprocessed.newTimeout(timeout -> {
+        }, 5, TimeUnit.MINUTES);
+        assertTrue(cancelled.cancel());
+        Thread.sleep(500L);
+        assertEquals(5, timerUnprocessed.stop().size());
+    }
+
+    @Test(timeout = 3000)
+    public void testTimerShouldThrowExceptionAfterShutdownForNewTimeouts() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(3);
+        final HierarchicalWheelTimer timer = new HierarchicalWheelTimer();
+        for (int i = 0; i < 3; i ++) {
+            timer.newTimeout(timeout -> latch.countDown(), 1, TimeUnit.MILLISECONDS);
+        }
+
+        latch.await();
+        timer.stop();
+
+        try {
+            timer.newTimeout(createNoOpTimerTask(), 1, TimeUnit.MILLISECONDS);
+            fail("Expected exception didn't occur.");
+        } catch (IllegalStateException ignored) {
+            // expected
+        }
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    @Test(timeout = 5000)
+    public void testCancelFromTimerTask() throws InterruptedException {
+        final HierarchicalWheelTimer timer = new HierarchicalWheelTimer(10, TimeUnit.MILLISECONDS);
+        final AtomicReference<Timeout> other = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        // Both timeouts end up in the same bucket, the first one cancels the second one while the bucket is expired.
+        timer.newTimeout(timeout -> {
+            assertTrue(other.get().cancel());
+            latch.countDown();
+        }, 100, TimeUnit.MILLISECONDS);
+        other.set(timer.newTimeout(timeout -> fail("cancelled timeout must not run"), 100, TimeUnit.MILLISECONDS));
+
+        latch.await();
+        Thread.sleep(100);
+        assertTrue(other.get().isCancelled());
+        assertEquals(0, timer.pendingTimeouts());
+        assertTrue(timer.stop().isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void testCancelManyLongTimeouts() throws InterruptedException {
+        final HierarchicalWheelTimer timer = new HierarchicalWheelTimer(10, TimeUnit.MILLISECONDS);
+        List<Timeout> timeouts = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            timeouts.add(timer.newTimeout(createNoOpTimerTask(), 10 + i, TimeUnit.MINUTES));
+        }
+        assertEquals(10000, timer.pendingTimeouts());
+        for (Timeout timeout: timeouts) {
+            assertTrue(timeout.cancel());
+            assertFalse(timeout.cancel());
+        }
+        assertEquals(0, timer.pendingTimeouts());
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        timer.newTimeout(createCountDownLatchTimerTask(latch), 50, TimeUnit.MILLISECONDS);
+        latch.await();
+        assertTrue(timer.stop().isEmpty());
+    }
+
+    @Test
+    public void testRejectedExecutionExceptionWhenTooManyTimeoutsAreAddedBackToBack() {
+        HierarchicalWheelTimer timer = new HierarchicalWheelTimer(Executors.defaultThreadFactory(), 100,
+            TimeUnit.MILLISECONDS, 32, 2);
+        timer.newTimeout(createNoOpTimerTask(), 5, TimeUnit.SECONDS);
+        Timeout timeout = timer.newTimeout(createNoOpTimerTask(), 5, TimeUnit.SECONDS);
+        try {
+            timer.newTimeout(createNoOpTimerTask(), 1, TimeUnit.MILLISECONDS);
+            fail("Timer allowed adding 3 timeouts when maxPendingTimeouts was 2");
+        } catch (RejectedExecutionException e) {
+            // Expected
+        }
+        timeout.cancel();
+        timer.newTimeout(createNoOpTimerTask(), 1, TimeUnit.MILLISECONDS);
+        timer.stop();
+    }
+
+    @Test(timeout = 5000)
+    public void testTickLag() throws InterruptedException {
+        final HierarchicalWheelTimer timer = new HierarchicalWheelTimer(10, TimeUnit.MILLISECONDS);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        timer.newTimeout(timeout -> {
+            Thread.sleep(300);
+            blocked.countDown();
+        }, 10, TimeUnit.MILLISECONDS);
+        // Expires while the worker thread is blocked, so it is processed in the batch which catches up.
+        timer.newTimeout(createCountDownLatchTimerTask(latch), 100, TimeUnit.MILLISECONDS);
+
+        blocked.await();
+        latch.await();
+        assertTrue(timer.tickLagNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+        timer.stop();
+    }
+
+    @Test
+    public void testOverflow() throws InterruptedException  {
+        final HierarchicalWheelTimer timer = new HierarchicalWheelTimer();
+        final CountDownLatch latch = new CountDownLatch(1);
+        Timeout timeout = timer.newTimeout(timeout1 -> latch.countDown(), Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        assertFalse(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(timeout.cancel());
+        assertTrue(timer.stop().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTicksPerWheelTooSmall() {
+        new HierarchicalWheelTimer(Executors.defaultThreadFactory(), 100, TimeUnit.MILLISECONDS, 1);
+    }
+
+    private static TimerTask createNoOpTimerTask() {
+        return timeout -> {
+        };
+    }
+
+    private static TimerTask createCountDownLatchTimerTask(final CountDownLatch latch) {
+        return timeout -> latch.countDown();
+    }
+}
@@ -36,6 +36,16 @@ public class RecyclerTest {
         };
     }
 
+    private static Recycler<HandledObject> newMpscRecycler(int max, int ratio) {
+        return new Recycler<HandledObject>(max, 2, ratio, 0, true) {
+            @Override
+            protected HandledObject newObject(
+                    Recycler.Handle<HandledObject> handle) {
+                return new HandledObject(handle);
+            }
+        };
+    }
+
     @Test(timeout = 5000L)
     public void testThreadCanBeCollectedEvenIfHandledObjectIsReferenced() throws Exception {
         final Recycler<HandledObject> recycler = newRecycler(1024);
@@ -266,6 +276,79 @@ public class RecyclerTest {
                 " internally", array.length - maxCapacity / 2 <= instancesCount.get());
     }
 
+    @Test
+    public void testMpscRecycle() {
+        Recycler<HandledObject> recycler = newMpscRecycler(1024, 8);
+        HandledObject object = recycler.get();
+        object.recycle();
+        HandledObject object2 = recycler.get();
+        assertSame(object, object2);
+        object2.recycle();
+    }
+
+    @Test
+    public void testMpscRecycleAtDifferentThread() throws Exception {
+        Recycler<HandledObject> recycler = newMpscRecycler(1024, 8);
+        final HandledObject object = recycler.get();
+        Thread thread = new Thread(object::recycle);
+        thread.start();
+        thread.join();
+
+        assertSame(object, recycler.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMpscMultipleRecycle() {
+        Recycler<HandledObject> recycler = newMpscRecycler(1024, 8);
+        HandledObject object = recycler.get();
+        object.recycle();
+        object.recycle();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMpscMultipleRecycleAtDifferentThread() throws Exception {
+        Recycler<HandledObject> recycler = newMpscRecycler(1024, 8);
+        final HandledObject object = recycler.get();
+        Thread thread = new Thread(object::recycle);
+        thread.start();
+        thread.join();
+
+        object.recycle();
+    }
+
+    @Test
+    public void testMpscMaxCapacity() {
+        Recycler<HandledObject> recycler = newMpscRecycler(300, 1);
+        HandledObject[] objects = new HandledObject[1000];
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = recycler.get();
+        }
+        for (HandledObject object: objects) {
+            object.recycle();
+        }
+
+        // The capacity is rounded up to the next power of two.
+        assertEquals(512, recycler.threadLocalCapacity());
+        assertEquals(512, recycler.threadLocalSize());
+    }
+
+    @Test
+    public void testMpscRatio() {
+        Recycler<HandledObject> recycler = newMpscRecycler(1024, 8);
+        HandledObject[] objects = new HandledObject[16];
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = recycler.get();
+        }
+        for (HandledObject object: objects) {
+            object.recycle();
+        }
+
+        // Only every 8th new object is pooled.
+        assertEquals(2, recycler.threadLocalSize());
+        assertSame(objects[0], recycler.get());
+        assertSame(objects[8], recycler.get());
+    }
+
     static final class HandledObject {
         Recycler.Handle<HandledObject> handle;
 
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link OpenSslSessionStore} which keeps its values in direct memory and evicts the least recently used entry
+ * once more than {@code maxEntries} entries are stored.
+ * <p>
+ * This implementation is local to the JVM and so is mostly useful to share state between multiple
+ * {@link OpenSslSessionContext}s of the same process, or as a near-cache in front of a remote store.
+ * {@link #close()} must be called once the store is not used anymore to release the direct memory.
+ */
+public final class OffHeapLruOpenSslSessionStore implements OpenSslSessionStore, AutoCloseable {
+
+    private final ByteBufAllocator allocator;
+    private final int maxEntries;
+    private final Map<ByteBuffer, ByteBuf> entries;
+    private boolean closed;
+
+    /**
+     * Creates a new instance which stores at most {@code maxEntries} entries.
+     */
+    public OffHeapLruOpenSslSessionStore(int maxEntries) {
+        this(UnpooledByteBufAllocator.DEFAULT, maxEntries);
+    }
+
+    /**
+     * Creates a new instance which stores at most {@code maxEntries} entries and allocates direct buffers for the
+     * values via the given {@link ByteBufAllocator}.
+     */
+    public OffHeapLruOpenSslSessionStore(ByteBufAllocator allocator, int maxEntries) {
+        this.allocator = requireNonNull(allocator, "allocator");
+        this.maxEntries = checkPositive(maxEntries, "maxEntries");
+        entries = new LinkedHashMap<ByteBuffer, ByteBuf>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, ByteBuf> eldest) {
+                if (size() > OffHeapLruOpenSslSessionStore.this.maxEntries) {
+                    eldest.getValue().release();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public synchronized byte[] get(byte[] key) {
+        ByteBuf value = entries.get(ByteBuffer.wrap(requireNonNull(key, "key")));
+        return value == null ? null : toArray(value);
+    }
+
+    @Override
+    public synchronized byte[] putIfAbsent(byte[] key, byte[] value) {
+        requireNonNull(key, "key");
+        requireNonNull(value, "value");
+        if (closed) {
+            throw new IllegalStateException("store closed");
+        }
+        ByteBuffer wrappedKey = ByteBuffer.wrap(key.clone());
+        ByteBuf old = entries.get(wrappedKey);
+        if (old != null) {
+            return toArray(old);
+        }
+        ByteBuf buf = allocator.directBuffer(value.length, value.length);
+        buf.writeBytes(value);
+        entries.put(wrappedKey, buf);
+        return null;
+    }
+
+    @Override
+    public synchronized void remove(byte[] key) {
+        ByteBuf value = entries.remove(ByteBuffer.wrap(requireNonNull(key, "key")));
+        if (value != null) {
+            value.release();
+        }
+    }
+
+    /**
+     * Returns the number of entries that are currently stored.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all entries and releases the direct memory that was used by them. Further calls to
+     * {@link #putIfAbsent(byte[], byte[])} will fail.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        Iterator<ByteBuf> it = entries.values().iterator();
+        while (it.hasNext()) {
+            it.next().release();
+            it.remove();
+        }
+    }
+
+    private static byte[] toArray(ByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.getBytes(buf.readerIndex(), bytes);
+        return bytes;
+    }
+}
@@ -23,16 +23,25 @@ import io.netty.internal.tcnative.SessionTicketKey;
 
 import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSessionContext;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
 /**
  * OpenSSL specific {@link SSLSessionContext} implementation.
  */
 public abstract class OpenSslSessionContext implements SSLSessionContext {
     private static final Enumeration<byte[]> EMPTY = new EmptyEnumeration();
+    private static final byte[] TICKET_KEY_PREFIX = "netty-ticket-key-".getBytes(StandardCharsets.US_ASCII);
+    private static final SecureRandom RANDOM = new SecureRandom();
 
     private final OpenSslSessionStats stats;
 
@@ -43,6 +52,15 @@ public abstract class OpenSslSessionContext implements SSLSessionContext {
 
     final ReferenceCountedOpenSslContext context;
 
+    // Guarded by this, except for rotationFuture which is also read in destroy(). destroy() is called while holding
+    // the ctxLock and so must not synchronize on this as rotateTicketKeys() acquires the locks in the opposite order.
+    private OpenSslSessionStore store;
+    private volatile ScheduledFuture<?> rotationFuture;
+    private long rotationPeriodMillis;
+    private long currentEpoch = -1;
+    private SessionTicketKey currentKey;
+    private SessionTicketKey previousKey;
+
     // IMPORTANT: We take the OpenSslContext and not just the long (which points the native instance) to prevent
     //            the GC to collect OpenSslContext as this would also free the pointer and so could result in a
     //            segfault when the user calls any of the methods here that try to pass the pointer down to the native
@@ -112,6 +130,117 @@ public abstract class OpenSslSessionContext implements SSLSessionContext {
         }
     }
 
+    /**
+     * Sets the {@link OpenSslSessionStore} which is consulted to agree on session ticket keys with other contexts
+     * that share the same store, or {@code null} if the keys should only be known to this context.
+     */
+    public synchronized void setSessionStore(OpenSslSessionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Returns the {@link OpenSslSessionStore} that is used by this context or {@code null} if none is used.
+     */
+    public synchronized OpenSslSessionStore sessionStore() {
+        return store;
+    }
+
+    /**
+     * Rotates the session ticket keys of this context every {@code period}, using the given
+     * {@link ScheduledExecutorService}. The keys are rotated once before this method returns.
+     * <p>
+     * Time is divided into epochs of {@code period} length. The key of the current epoch is used to issue new
+     * tickets while the key of the previous epoch is still accepted, so a ticket stays valid for at least one
+     * {@code period}. If a {@link OpenSslSessionStore} is set, the key of each epoch is looked up in the store and
+     * only generated (and published) if no other context did so before. Contexts sharing a store will so use the
+     * same keys as long as their clocks are roughly in sync.
+     * <p>
+     * Calling this method again replaces the previous schedule. The schedule is cancelled automatically once the
+     * {@link ReferenceCountedOpenSslContext} is destroyed.
+     *
+     * @return the {@link ScheduledFuture} which can be used to cancel the rotation.
+     */
+    public synchronized ScheduledFuture<?> scheduleTicketKeyRotation(
+            ScheduledExecutorService executor, long period, TimeUnit unit) {
+        requireNonNull(executor, "executor");
+        requireNonNull(unit, "unit");
+        long periodMillis = checkPositive(unit.toMillis(period), "period (in millis)");
+        if (rotationFuture != null) {
+            rotationFuture.cancel(false);
+        }
+        rotationPeriodMillis = periodMillis;
+        currentEpoch = -1;
+        rotateTicketKeys();
+
+        // Wake up at the start of the next epoch so all contexts sharing the same store switch roughly together.
+        long delay = periodMillis - System.currentTimeMillis() % periodMillis;
+        ScheduledFuture<?> future = executor.scheduleAtFixedRate(this::rotateTicketKeys, delay, periodMillis,
+                TimeUnit.MILLISECONDS);
+        rotationFuture = future;
+        return future;
+    }
+
+    /**
+     * Rotates the session ticket keys for the current epoch now. This method does nothing if
+     * {@link #scheduleTicketKeyRotation(ScheduledExecutorService, long, TimeUnit)} was never called.
+     */
+    public synchronized void rotateTicketKeys() {
+        if (rotationPeriodMillis == 0) {
+            return;
+        }
+        long epoch = System.currentTimeMillis() / rotationPeriodMillis;
+        if (epoch == currentEpoch) {
+            return;
+        }
+        previousKey = epoch - 1 == currentEpoch ? currentKey : ticketKey(epoch - 1);
+        currentKey = ticketKey(epoch);
+        currentEpoch = epoch;
+
+        Lock writerLock = context.ctxLock.writeLock();
+        writerLock.lock();
+        try {
+            // The context may have been destroyed in the meantime, in which case we must not touch the pointer.
+            if (context.ctx != 0) {
+                SSLContext.clearOptions(context.ctx, SSL.SSL_OP_NO_TICKET);
+                SSLContext.setSessionTicketKeys(context.ctx, new SessionTicketKey[] { currentKey, previousKey });
+                stats.incrementTicketKeyRotations();
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    private SessionTicketKey ticketKey(long epoch) {
+        byte[] encoded = new byte[SessionTicketKey.TICKET_KEY_SIZE];
+        RANDOM.nextBytes(encoded);
+        OpenSslSessionStore store = this.store;
+        if (store != null) {
+            byte[] storeKey = ticketStoreKey(epoch);
+            byte[] stored = store.get(storeKey);
+            if (stored == null) {
+                stored = store.putIfAbsent(storeKey, encoded);
+            }
+            if (stored != null && stored.length == SessionTicketKey.TICKET_KEY_SIZE) {
+                stats.incrementStoreHits();
+                encoded = stored;
+            } else {
+                stats.incrementStoreMisses();
+            }
+        }
+        int nameEnd = SessionTicketKey.NAME_SIZE;
+        int hmacEnd = nameEnd + SessionTicketKey.HMAC_KEY_SIZE;
+        return new SessionTicketKey(Arrays.copyOfRange(encoded, 0, nameEnd),
+                Arrays.copyOfRange(encoded, nameEnd, hmacEnd),
+                Arrays.copyOfRange(encoded, hmacEnd, hmacEnd + SessionTicketKey.AES_KEY_SIZE));
+    }
+
+    private static byte[] ticketStoreKey(long epoch) {
+        byte[] epochBytes = Long.toString(epoch).getBytes(StandardCharsets.US_ASCII);
+        byte[] key = Arrays.copyOf(TICKET_KEY_PREFIX, TICKET_KEY_PREFIX.length + epochBytes.length);
+        System.arraycopy(epochBytes, 0, key, TICKET_KEY_PREFIX.length, epochBytes.length);
+        return key;
+    }
+
     /**
      * Enable or disable caching of SSL sessions.
      */
@@ -130,6 +259,10 @@ public abstract class OpenSslSessionContext implements SSLSessionContext {
     }
 
     final void destroy() {
+        ScheduledFuture<?> rotationFuture = this.rotationFuture;
+        if (rotationFuture != null) {
+            rotationFuture.cancel(false);
+        }
         if (provider != null) {
             provider.destroy();
         }
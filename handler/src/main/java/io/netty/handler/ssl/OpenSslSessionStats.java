@@ -18,6 +18,7 @@ package io.netty.handler.ssl;
 
 import io.netty.internal.tcnative.SSLContext;
 
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 
 /**
@@ -28,6 +29,9 @@ import java.util.concurrent.locks.Lock;
 public final class OpenSslSessionStats {
 
     private final ReferenceCountedOpenSslContext context;
+    private final LongAdder storeHits = new LongAdder();
+    private final LongAdder storeMisses = new LongAdder();
+    private final LongAdder ticketKeyRotations = new LongAdder();
 
     // IMPORTANT: We take the OpenSslContext and not just the long (which points the native instance) to prevent
     //            the GC to collect OpenSslContext as this would also free the pointer and so could result in a
@@ -250,4 +254,39 @@ public final class OpenSslSessionStats {
             readerLock.unlock();
         }
     }
+
+    /**
+     * Returns the number of session ticket keys that were found in the {@link OpenSslSessionStore}, which means
+     * another context sharing the same store published them first.
+     */
+    public long storeHits() {
+        return storeHits.sum();
+    }
+
+    /**
+     * Returns the number of session ticket keys that were not found in the {@link OpenSslSessionStore} and so were
+     * generated and published by this context.
+     */
+    public long storeMisses() {
+        return storeMisses.sum();
+    }
+
+    /**
+     * Returns the number of times the session ticket keys were rotated.
+     */
+    public long ticketKeyRotations() {
+        return ticketKeyRotations.sum();
+    }
+
+    void incrementStoreHits() {
+        storeHits.increment();
+    }
+
+    void incrementStoreMisses() {
+        storeMisses.increment();
+    }
+
+    void incrementTicketKeyRotations() {
+        ticketKeyRotations.increment();
+    }
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+/**
+ * A key / value store which may be shared between multiple {@link OpenSslSessionContext}s, possibly living in
+ * different processes or on different hosts, to allow sessions established by one of them to be resumed by another.
+ * <p>
+ * The {@link OpenSslSessionContext} uses the store to agree on the session ticket keys used for each rotation
+ * period (see {@link OpenSslSessionContext#scheduleTicketKeyRotation(java.util.concurrent.ScheduledExecutorService,
+ * long, java.util.concurrent.TimeUnit)}), so a ticket issued by one process can be decrypted by all of them.
+ * <p>
+ * Implementations must be thread-safe, as the store may be consulted by multiple contexts concurrently. Keys and
+ * values passed to and returned by the store must not be modified afterwards.
+ */
+public interface OpenSslSessionStore {
+
+    /**
+     * Returns the value that is stored for the given {@code key}, or {@code null} if there is none.
+     */
+    byte[] get(byte[] key);
+
+    /**
+     * Stores the given {@code value} for the {@code key} if there is no value stored yet.
+     *
+     * @return the value which was stored before, or {@code null} if the given {@code value} was stored.
+     */
+    byte[] putIfAbsent(byte[] key, byte[] value);
+
+    /**
+     * Removes the value stored for the given {@code key}, if any.
+     */
+    void remove(byte[] key);
+}
@@ -34,6 +34,9 @@ import io.netty.util.internal.PlatformDependent;
  * support SNI, the server could have multiple host name bound on a single IP.
  * The client will send host name in the handshake data so server could decide
  * which certificate to choose for the host name.</p>
+ *
+ * <p>If there are too many certificates to load all of them upfront, use a {@link SslContextCache} as
+ * {@link AsyncMapping} to load them lazily.</p>
  */
 public class SniHandler extends AbstractSniHandler<SslContext> {
     private static final Selection EMPTY_SELECTION = new Selection(null, null);
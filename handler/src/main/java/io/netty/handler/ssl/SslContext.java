@@ -25,6 +25,7 @@ import io.netty.handler.ssl.ApplicationProtocolConfig.Protocol;
 import io.netty.handler.ssl.ApplicationProtocolConfig.SelectedListenerFailureBehavior;
 import io.netty.handler.ssl.ApplicationProtocolConfig.SelectorFailureBehavior;
 import io.netty.util.internal.EmptyArrays;
+import io.netty.util.internal.UnstableApi;
 
 import java.security.Provider;
 import javax.net.ssl.KeyManager;
@@ -97,6 +98,7 @@ public abstract class SslContext {
     }
 
     private final boolean startTls;
+    private volatile SslHandlerMetrics metrics;
 
     /**
      * Returns the default server-side implementation provider currently in use.
@@ -815,6 +817,34 @@ public abstract class SslContext {
         this.startTls = startTls;
     }
 
+    /**
+     * Sets the {@link SslHandlerMetrics} all {@link SslHandler}s created by this context from now on record into, or
+     * {@code null} to disable recording for new handlers.
+     *
+     * @see SslHandler#setMetrics(SslHandlerMetrics)
+     */
+    @UnstableApi
+    public final void setMetrics(SslHandlerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the {@link SslHandlerMetrics} new {@link SslHandler}s created by this context record into, or
+     * {@code null} if none.
+     */
+    @UnstableApi
+    public final SslHandlerMetrics metrics() {
+        return metrics;
+    }
+
+    private SslHandler withMetrics(SslHandler handler) {
+        SslHandlerMetrics metrics = this.metrics;
+        if (metrics != null) {
+            handler.setMetrics(metrics);
+        }
+        return handler;
+    }
+
     /**
      * Returns {@code true} if and only if this context is for server-side.
      */
@@ -885,7 +915,7 @@ public abstract class SslContext {
      * @see #newHandler(ByteBufAllocator, Executor)
      */
     public final SslHandler newHandler(ByteBufAllocator alloc) {
-        return newHandler(alloc, startTls);
+        return withMetrics(newHandler(alloc, startTls));
     }
 
     /**
@@ -922,7 +952,7 @@ public abstract class SslContext {
      * @return a new {@link SslHandler}
      */
     public SslHandler newHandler(ByteBufAllocator alloc, Executor delegatedTaskExecutor) {
-        return newHandler(alloc, startTls, delegatedTaskExecutor);
+        return withMetrics(newHandler(alloc, startTls, delegatedTaskExecutor));
     }
 
     /**
@@ -939,7 +969,7 @@ public abstract class SslContext {
      * @see #newHandler(ByteBufAllocator, String, int, Executor)
      */
     public final SslHandler newHandler(ByteBufAllocator alloc, String peerHost, int peerPort) {
-        return newHandler(alloc, peerHost, peerPort, startTls);
+        return withMetrics(newHandler(alloc, peerHost, peerPort, startTls));
     }
 
     /**
@@ -980,7 +1010,7 @@ public abstract class SslContext {
      */
     public SslHandler newHandler(ByteBufAllocator alloc, String peerHost, int peerPort,
                                  Executor delegatedTaskExecutor) {
-        return newHandler(alloc, peerHost, peerPort, startTls, delegatedTaskExecutor);
+        return withMetrics(newHandler(alloc, peerHost, peerPort, startTls, delegatedTaskExecutor));
     }
 
     protected SslHandler newHandler(ByteBufAllocator alloc, String peerHost, int peerPort, boolean startTls,
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.util.AsyncMapping;
+import io.netty.util.DomainNameTrieMapping;
+import io.netty.util.Mapping;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.PromiseNotifier;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link AsyncMapping} which can be used with {@link SniHandler} to lazily load the {@link SslContext} for a host
+ * name and cache it for a limited time, which is useful if there are too many certificates to load all of them
+ * upfront.
+ * <p>
+ * Host names are first mapped to a {@link Source} (for example via a {@link DomainNameTrieMapping}, which supports
+ * wildcards without scanning all patterns). The {@link SslContext}s are cached per {@link Source}, so all host names
+ * matching the same wildcard share the same {@link SslContext}. {@link Source}s are loaded on the given
+ * {@link Executor} so reading the key material does not block the event loop, and concurrent lookups for a
+ * {@link Source} that is still loading share the same load.
+ * <p>
+ * Once more than {@code maxSize} {@link SslContext}s are cached, expired ones or the least recently used one out of a
+ * small sample of entries are evicted. Evicted {@link SslContext}s are not released, as they may still be in use by
+ * existing connections.
+ */
+public final class SslContextCache implements AsyncMapping<String, SslContext> {
+
+    private static final int EVICTION_SAMPLE_SIZE = 8;
+
+    /**
+     * Loads a {@link SslContext}. Implementations must implement {@link Object#equals(Object)} and
+     * {@link Object#hashCode()} so that {@link Source}s which load the same {@link SslContext} are equal.
+     */
+    public interface Source {
+        /**
+         * Loads the {@link SslContext}. This is called on the {@link Executor} given to the {@link SslContextCache}.
+         */
+        SslContext load() throws Exception;
+    }
+
+    private final Mapping<? super String, ? extends Source> sources;
+    private final Executor loadExecutor;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ConcurrentMap<Source, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loadTimeNanos = new LongAdder();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param sources the {@link Mapping} from host name to the {@link Source} of its {@link SslContext}.
+     * @param loadExecutor the {@link Executor} on which {@link Source#load()} is called.
+     * @param maxSize the maximum number of {@link SslContext}s to cache.
+     * @param ttl the time after which a loaded {@link SslContext} is loaded again.
+     * @param unit the {@link TimeUnit} of {@code ttl}.
+     */
+    public SslContextCache(Mapping<? super String, ? extends Source> sources, Executor loadExecutor,
+                           int maxSize, long ttl, TimeUnit unit) {
+        this.sources = requireNonNull(sources, "sources");
+        this.loadExecutor = requireNonNull(loadExecutor, "loadExecutor");
+        this.maxSize = checkPositive(maxSize, "maxSize");
+        ttlNanos = requireNonNull(unit, "unit").toNanos(checkPositive(ttl, "ttl"));
+    }
+
+    /**
+     * Returns a {@link Source} which loads a server {@link SslContext} from a PEM encoded X.509 certificate chain
+     * file and a PKCS#8 private key file.
+     *
+     * @param keyCertChainFile an X.509 certificate chain file in PEM format
+     * @param keyFile a PKCS#8 private key file in PEM format
+     * @param keyPassword the password of the {@code keyFile}, or {@code null} if it's not password-protected
+     */
+    public static Source pemSource(File keyCertChainFile, File keyFile, String keyPassword) {
+        return new PemSource(requireNonNull(keyCertChainFile, "keyCertChainFile"),
+                requireNonNull(keyFile, "keyFile"), keyPassword);
+    }
+
+    @Override
+    public Future<SslContext> map(String hostname, Promise<SslContext> promise) {
+        final Source source;
+        try {
+            source = sources.map(hostname);
+        } catch (Throwable cause) {
+            return promise.setFailure(cause);
+        }
+        if (source == null) {
+            return promise.setFailure(new IllegalArgumentException("No SslContext source for: " + hostname));
+        }
+
+        long now = System.nanoTime();
+        Entry entry = entries.get(source);
+        if (entry != null) {
+            if (!entry.isExpired(now, ttlNanos)) {
+                hits.increment();
+                entry.lastAccessNanos = now;
+                return notify(entry.promise, promise);
+            }
+            entries.remove(source, entry);
+        }
+
+        misses.increment();
+        Entry newEntry = new Entry(now);
+        entry = entries.putIfAbsent(source, newEntry);
+        if (entry != null) {
+            // Someone else started to load the same source in the meantime.
+            return notify(entry.promise, promise);
+        }
+        evictIfNeeded(now);
+        load(source, newEntry);
+        return notify(newEntry.promise, promise);
+    }
+
+    private static Future<SslContext> notify(Promise<SslContext> source, Promise<SslContext> promise) {
+        if (source.isDone()) {
+            return source.isSuccess() ? promise.setSuccess(source.getNow()) : promise.setFailure(source.cause());
+        }
+        source.addListener(new PromiseNotifier<>(promise));
+        return promise;
+    }
+
+    private void load(final Source source, final Entry entry) {
+        try {
+            loadExecutor.execute(() -> {
+                long start = System.nanoTime();
+                final SslContext context;
+                try {
+                    context = source.load();
+                } catch (Throwable cause) {
+                    loadFailed(source, entry, cause);
+                    return;
+                }
+                long end = System.nanoTime();
+                loadTimeNanos.add(end - start);
+                entry.loadedNanos = end;
+                entry.promise.setSuccess(context);
+            });
+        } catch (Throwable cause) {
+            loadFailed(source, entry, cause);
+        }
+    }
+
+    private void loadFailed(Source source, Entry entry, Throwable cause) {
+        loadFailures.increment();
+        // Don't cache failures so the next lookup retries.
+        entries.remove(source, entry);
+        entry.promise.setFailure(cause);
+    }
+
+    private void evictIfNeeded(long now) {
+        while (entries.size() > maxSize) {
+            Map.Entry<Source, Entry> victim = null;
+            Iterator<Map.Entry<Source, Entry>> it = entries.entrySet().iterator();
+            for (int i = 0; i < EVICTION_SAMPLE_SIZE && it.hasNext(); i++) {
+                Map.Entry<Source, Entry> candidate = it.next();
+                Entry entry = candidate.getValue();
+                if (!entry.promise.isDone()) {
+                    // Never evict entries that are still loading.
+                    continue;
+                }
+                if (entry.isExpired(now, ttlNanos)) {
+                    victim = candidate;
+                    break;
+                }
+                if (victim == null || entry.lastAccessNanos - victim.getValue().lastAccessNanos < 0) {
+                    victim = candidate;
+                }
+            }
+            if (victim == null) {
+                return;
+            }
+            if (entries.remove(victim.getKey(), victim.getValue())) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes the cached {@link SslContext} for the given host name, so it will be loaded again on the next lookup.
+     */
+    public void invalidate(String hostname) {
+        Source source = sources.map(hostname);
+        if (source != null) {
+            entries.remove(source);
+        }
+    }
+
+    /**
+     * Removes all cached {@link SslContext}s.
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of cached (or currently loading) {@link SslContext}s.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups which were served from the cache.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups which were not served from the cache and so triggered a load.
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of loads that failed.
+     */
+    public long loadFailures() {
+        return loadFailures.sum();
+    }
+
+    /**
+     * Returns the number of {@link SslContext}s that were evicted because the cache was full.
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the total time spent in successful {@link Source#load()} calls, in nanoseconds.
+     */
+    public long totalLoadTimeNanos() {
+        return loadTimeNanos.sum();
+    }
+
+    private static final class Entry {
+        final Promise<SslContext> promise = ImmediateEventExecutor.INSTANCE.newPromise();
+        volatile long lastAccessNanos;
+        // Only valid once the promise was completed successfully.
+        volatile long loadedNanos;
+
+        Entry(long now) {
+            lastAccessNanos = now;
+        }
+
+        boolean isExpired(long now, long ttlNanos) {
+            return promise.isSuccess() && now - loadedNanos >= ttlNanos;
+        }
+    }
+
+    private static final class PemSource implements Source {
+        private final File keyCertChainFile;
+        private final File keyFile;
+        private final String keyPassword;
+
+        PemSource(File keyCertChainFile, File keyFile, String keyPassword) {
+            this.keyCertChainFile = keyCertChainFile;
+            this.keyFile = keyFile;
+            this.keyPassword = keyPassword;
+        }
+
+        @Override
+        public SslContext load() throws Exception {
+            return SslContextBuilder.forServer(keyCertChainFile, keyFile, keyPassword).build();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PemSource)) {
+                return false;
+            }
+            PemSource that = (PemSource) o;
+            return keyCertChainFile.equals(that.keyCertChainFile) && keyFile.equals(that.keyFile) &&
+                    Objects.equals(keyPassword, that.keyPassword);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * keyCertChainFile.hashCode() + keyFile.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "PemSource(" + keyCertChainFile + ", " + keyFile + ')';
+        }
+    }
+}
@@ -72,6 +72,8 @@ import javax.net.ssl.SSLSession;
 
 import static io.netty.buffer.ByteBufUtil.ensureWritableSuccess;
 import static io.netty.handler.ssl.SslUtils.getEncryptedPacketLength;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -418,6 +420,21 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
     private volatile long closeNotifyFlushTimeoutMillis = 3000;
     private volatile long closeNotifyReadTimeoutMillis;
     volatile int wrapDataSize = MAX_PLAINTEXT_LENGTH;
+    private volatile int dynamicRecordSize;
+    private volatile long dynamicRecordThreshold;
+    private volatile long dynamicRecordIdleNanos;
+
+    /**
+     * Number of plaintext bytes wrapped since the connection was last considered idle, and the time of the last wrap.
+     * Only used if dynamic record sizing is enabled and only accessed from the event loop.
+     */
+    private long dynamicRecordBytes;
+    private long lastWrapNanos;
+
+    private volatile SslHandlerMetrics metrics;
+    // Start of the current handshake, only used if metrics are enabled and only accessed from the event loop.
+    private long handshakeStartNanos;
+    private long handshakeStartMillis;
 
     /**
      * Creates a new instance which runs all delegated tasks directly on the {@link EventExecutor}.
@@ -513,6 +530,54 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         this.wrapDataSize = wrapDataSize;
     }
 
+    /**
+     * Enables dynamic TLS record sizing, or disables it if {@code initialRecordSize <= 0}.
+     * <p>
+     * A TLS record can only be decrypted once it was received completely, so a full record which spans multiple
+     * TCP segments delays the first byte the peer can process while the congestion window is still small. When
+     * dynamic record sizing is enabled, records carry at most {@code initialRecordSize} bytes of plaintext (ideally
+     * small enough to fit a single TCP segment, e.g. {@code 1400}) until {@code fullRecordThreshold} bytes were
+     * written (e.g. 1 MB). After that the records grow to the size configured via {@link #setWrapDataSize(int)}.
+     * If nothing was written for {@code idleTimeout} (e.g. 1 second) the connection is considered idle and records
+     * start out small again.
+     * <p>
+     * This has no effect if {@link #setWrapDataSize(int)} was set to a value {@code <= 0}.
+     *
+     * @param initialRecordSize the maximum number of plaintext bytes per record at the start of the connection.
+     * @param fullRecordThreshold the number of bytes after which full records will be used.
+     * @param idleTimeout the time without any writes after which small records will be used again.
+     * @param unit the {@link TimeUnit} of {@code idleTimeout}.
+     */
+    @UnstableApi
+    public final void setDynamicRecordSizing(int initialRecordSize, long fullRecordThreshold,
+                                             long idleTimeout, TimeUnit unit) {
+        requireNonNull(unit, "unit");
+        if (initialRecordSize > 0) {
+            checkPositiveOrZero(fullRecordThreshold, "fullRecordThreshold");
+            dynamicRecordThreshold = fullRecordThreshold;
+            dynamicRecordIdleNanos = unit.toNanos(checkPositive(idleTimeout, "idleTimeout"));
+        }
+        dynamicRecordSize = initialRecordSize;
+    }
+
+    /**
+     * Sets the {@link SslHandlerMetrics} this handler records its handshake and throughput statistics into, or
+     * {@code null} to disable recording. This should be called before the handler is added to the pipeline so the
+     * initial handshake is measured as well.
+     */
+    @UnstableApi
+    public final void setMetrics(SslHandlerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the {@link SslHandlerMetrics} this handler records into, or {@code null} if none.
+     */
+    @UnstableApi
+    public final SslHandlerMetrics metrics() {
+        return metrics;
+    }
+
     /**
      * @deprecated use {@link #getCloseNotifyFlushTimeoutMillis()}
      */
@@ -824,7 +889,7 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
             outer: while (!ctx.isRemoved()) {
                 promise = ctx.newPromise();
                 buf = wrapDataSize > 0 ?
-                        pendingUnencryptedWrites.remove(alloc, wrapDataSize, promise) :
+                        pendingUnencryptedWrites.remove(alloc, recordDataSize(wrapDataSize), promise) :
                         pendingUnencryptedWrites.removeFirst(promise);
                 if (buf == null) {
                     break;
@@ -835,6 +900,7 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                 }
 
                 SSLEngineResult result = wrap(alloc, engine, buf, out);
+                dynamicRecordBytes += result.bytesConsumed();
 
                 if (result.getStatus() == Status.CLOSED) {
                     buf.release();
@@ -893,6 +959,24 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         }
     }
 
+    /**
+     * Returns the number of plaintext bytes that should be put into the next record, taking dynamic record sizing
+     * into account.
+     */
+    private int recordDataSize(int wrapDataSize) {
+        int dynamicRecordSize = this.dynamicRecordSize;
+        if (dynamicRecordSize <= 0 || dynamicRecordSize >= wrapDataSize) {
+            return wrapDataSize;
+        }
+        long now = System.nanoTime();
+        if (now - lastWrapNanos >= dynamicRecordIdleNanos) {
+            // The congestion window may have collapsed while we were idle, so start with small records again.
+            dynamicRecordBytes = 0;
+        }
+        lastWrapNanos = now;
+        return dynamicRecordBytes < dynamicRecordThreshold ? dynamicRecordSize : wrapDataSize;
+    }
+
     private void finishWrap(ChannelHandlerContext ctx, ByteBuf out, ChannelPromise promise, boolean inUnwrap,
             boolean needUnwrap) {
         if (out == null) {
@@ -1042,6 +1126,10 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                 SSLEngineResult result = engine.wrap(in0, out0);
                 in.skipBytes(result.bytesConsumed());
                 out.writerIndex(out.writerIndex() + result.bytesProduced());
+                SslHandlerMetrics metrics = this.metrics;
+                if (metrics != null) {
+                    metrics.recordWrap(result.bytesConsumed(), result.bytesProduced());
+                }
 
                 switch (result.getStatus()) {
                 case BUFFER_OVERFLOW:
@@ -1328,6 +1416,10 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                 final HandshakeStatus handshakeStatus = result.getHandshakeStatus();
                 final int produced = result.bytesProduced();
                 final int consumed = result.bytesConsumed();
+                final SslHandlerMetrics metrics = this.metrics;
+                if (metrics != null) {
+                    metrics.recordUnwrap(consumed, produced);
+                }
 
                 // Update indexes for the next iteration
                 offset += consumed;
@@ -1487,13 +1579,29 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         return executor instanceof EventExecutor && ((EventExecutor) executor).inEventLoop();
     }
 
-    private static void runAllDelegatedTasks(SSLEngine engine) {
-        for (;;) {
-            Runnable task = engine.getDelegatedTask();
-            if (task == null) {
-                return;
+    private static void runAllDelegatedTasks(SSLEngine engine, SslHandlerMetrics metrics) {
+        if (metrics == null) {
+            for (;;) {
+                Runnable task = engine.getDelegatedTask();
+                if (task == null) {
+                    return;
+                }
+                task.run();
             }
-            task.run();
+        }
+        long start = System.nanoTime();
+        int tasks = 0;
+        try {
+            for (;;) {
+                Runnable task = engine.getDelegatedTask();
+                if (task == null) {
+                    return;
+                }
+                tasks++;
+                task.run();
+            }
+        } finally {
+            metrics.recordDelegatedTasks(tasks, System.nanoTime() - start);
         }
     }
 
@@ -1507,7 +1615,7 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
     private boolean runDelegatedTasks(boolean inUnwrap) {
         if (delegatedTaskExecutor == ImmediateExecutor.INSTANCE || inEventLoop(delegatedTaskExecutor)) {
             // We should run the task directly in the EventExecutor thread and not offload at all.
-            runAllDelegatedTasks(engine);
+            runAllDelegatedTasks(engine, metrics);
             return true;
         } else {
             executeDelegatedTasks(inUnwrap);
@@ -1675,7 +1783,7 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         @Override
         public void run() {
             try {
-                runAllDelegatedTasks(engine);
+                runAllDelegatedTasks(engine, metrics);
 
                 // All tasks were processed.
                 assert engine.getHandshakeStatus() != HandshakeStatus.NEED_TASK;
@@ -1726,7 +1834,9 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
      * Notify all the handshake futures about the successfully handshake
      */
     private void setHandshakeSuccess() {
-        handshakePromise.trySuccess(ctx.channel());
+        if (handshakePromise.trySuccess(ctx.channel())) {
+            recordHandshake(true);
+        }
 
         if (logger.isDebugEnabled()) {
             logger.debug("{} HANDSHAKEN: {}", ctx.channel(), engine.getSession().getCipherSuite());
@@ -1774,7 +1884,11 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                     }
                 }
             }
-            if (handshakePromise.tryFailure(cause) || alwaysFlushAndClose) {
+            boolean failed = handshakePromise.tryFailure(cause);
+            if (failed) {
+                recordHandshake(false);
+            }
+            if (failed || alwaysFlushAndClose) {
                 SslUtils.handleHandshakeFailure(ctx, cause, notify);
             }
         } finally {
@@ -1860,6 +1974,7 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
     private void startHandshakeProcessing() {
         if (!handshakeStarted) {
             handshakeStarted = true;
+            markHandshakeStart();
             if (engine.getUseClientMode()) {
                 // Begin the initial handshake.
                 // channelActive() event has been fired already, which means this.channelActive() will
@@ -1911,11 +2026,37 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
             oldHandshakePromise.addListener(new PromiseNotifier<>(newHandshakePromise));
         } else {
             handshakePromise = newHandshakePromise;
+            markHandshakeStart();
             handshake();
             applyHandshakeTimeout();
         }
     }
 
+    private void markHandshakeStart() {
+        if (metrics != null) {
+            handshakeStartNanos = System.nanoTime();
+            handshakeStartMillis = System.currentTimeMillis();
+        }
+    }
+
+    private void recordHandshake(boolean success) {
+        SslHandlerMetrics metrics = this.metrics;
+        if (metrics == null || handshakeStartNanos == 0) {
+            return;
+        }
+        long duration = System.nanoTime() - handshakeStartNanos;
+        handshakeStartNanos = 0;
+        metrics.recordHandshake(success, success && isSessionResumed(), duration);
+    }
+
+    private boolean isSessionResumed() {
+        // A resumed session was created before the handshake started. OpenSSL only stores the creation time in
+        // seconds, so compare it to the start of the second the handshake started in. This never counts a full
+        // handshake as resumed, but misses the resumption of a session which was created in that same second.
+        long startSecondMillis = handshakeStartMillis - handshakeStartMillis % 1000;
+        return engine.getSession().getCreationTime() < startSecondMillis;
+    }
+
     /**
      * Performs TLS (re)negotiation.
      */
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.net.ssl.SSLEngine;
+
+/**
+ * Collects handshake and throughput statistics for all {@link SslHandler}s it is attached to, either directly via
+ * {@link SslHandler#setMetrics(SslHandlerMetrics)} or for all handlers created by a {@link SslContext} via
+ * {@link SslContext#setMetrics(SslHandlerMetrics)}.
+ * <p>
+ * Each thread that records into an instance (usually an event loop, or a thread of the delegated task
+ * {@link java.util.concurrent.Executor}) gets its own recorder which only this thread writes to, so recording
+ * never contends and never takes a lock. {@link #snapshot()} sums all recorders and may be called from any thread.
+ * <p>
+ * Record sizes are tracked per {@link javax.net.ssl.SSLEngine#wrap wrap} / {@link javax.net.ssl.SSLEngine#unwrap
+ * unwrap} call and bucketed by powers of two, see {@link #recordSizeBucketUpperBound(int)}. For engines that
+ * process a single record per call this is the TLS record size including its header and MAC.
+ */
+@UnstableApi
+public final class SslHandlerMetrics {
+
+    /**
+     * The number of buckets in the record size histograms.
+     */
+    public static final int RECORD_SIZE_BUCKETS = 8;
+
+    private static final int MIN_BUCKET_SHIFT = 8;
+
+    private static final int HANDSHAKES = 0;
+    private static final int RESUMED_HANDSHAKES = 1;
+    private static final int FAILED_HANDSHAKES = 2;
+    private static final int HANDSHAKE_TIME_NANOS = 3;
+    private static final int WRAP_CALLS = 4;
+    private static final int WRAP_BYTES_CONSUMED = 5;
+    private static final int WRAP_BYTES_PRODUCED = 6;
+    private static final int UNWRAP_CALLS = 7;
+    private static final int UNWRAP_BYTES_CONSUMED = 8;
+    private static final int UNWRAP_BYTES_PRODUCED = 9;
+    private static final int DELEGATED_TASKS = 10;
+    private static final int DELEGATED_TASK_TIME_NANOS = 11;
+    private static final int OUTBOUND_RECORD_SIZES = 12;
+    private static final int INBOUND_RECORD_SIZES = OUTBOUND_RECORD_SIZES + RECORD_SIZE_BUCKETS;
+    private static final int COUNTERS = INBOUND_RECORD_SIZES + RECORD_SIZE_BUCKETS;
+
+    private final List<Recorder> recorders = new CopyOnWriteArrayList<>();
+    private final FastThreadLocal<Recorder> recorder = new FastThreadLocal<Recorder>() {
+        @Override
+        protected Recorder initialValue() {
+            Recorder recorder = new Recorder();
+            recorders.add(recorder);
+            return recorder;
+        }
+    };
+
+    /**
+     * Returns the upper bound (inclusive) of the record sizes counted in the histogram bucket with the given index,
+     * or {@link Integer#MAX_VALUE} for the last bucket.
+     */
+    public static int recordSizeBucketUpperBound(int bucket) {
+        if (bucket < 0 || bucket >= RECORD_SIZE_BUCKETS) {
+            throw new IndexOutOfBoundsException(
+                    "bucket: " + bucket + " (expected: 0-" + (RECORD_SIZE_BUCKETS - 1) + ')');
+        }
+        return bucket == RECORD_SIZE_BUCKETS - 1 ? Integer.MAX_VALUE : 1 << MIN_BUCKET_SHIFT + bucket;
+    }
+
+    static int recordSizeBucket(int size) {
+        if (size <= 1 << MIN_BUCKET_SHIFT) {
+            return 0;
+        }
+        int bucket = Integer.SIZE - Integer.numberOfLeadingZeros(size - 1) - MIN_BUCKET_SHIFT;
+        return Math.min(RECORD_SIZE_BUCKETS - 1, bucket);
+    }
+
+    void recordHandshake(boolean success, boolean resumed, long durationNanos) {
+        Recorder recorder = this.recorder.get();
+        if (success) {
+            recorder.increment(HANDSHAKES, 1);
+            if (resumed) {
+                recorder.increment(RESUMED_HANDSHAKES, 1);
+            }
+            recorder.increment(HANDSHAKE_TIME_NANOS, durationNanos);
+        } else {
+            recorder.increment(FAILED_HANDSHAKES, 1);
+        }
+    }
+
+    void recordWrap(int bytesConsumed, int bytesProduced) {
+        Recorder recorder = this.recorder.get();
+        recorder.increment(WRAP_CALLS, 1);
+        recorder.increment(WRAP_BYTES_CONSUMED, bytesConsumed);
+        if (bytesProduced > 0) {
+            recorder.increment(WRAP_BYTES_PRODUCED, bytesProduced);
+            recorder.increment(OUTBOUND_RECORD_SIZES + recordSizeBucket(bytesProduced), 1);
+        }
+    }
+
+    void recordUnwrap(int bytesConsumed, int bytesProduced) {
+        Recorder recorder = this.recorder.get();
+        recorder.increment(UNWRAP_CALLS, 1);
+        recorder.increment(UNWRAP_BYTES_PRODUCED, bytesProduced);
+        if (bytesConsumed > 0) {
+            recorder.increment(UNWRAP_BYTES_CONSUMED, bytesConsumed);
+            recorder.increment(INBOUND_RECORD_SIZES + recordSizeBucket(bytesConsumed), 1);
+        }
+    }
+
+    void recordDelegatedTasks(int tasks, long durationNanos) {
+        Recorder recorder = this.recorder.get();
+        recorder.increment(DELEGATED_TASKS, tasks);
+        recorder.increment(DELEGATED_TASK_TIME_NANOS, durationNanos);
+    }
+
+    /**
+     * Returns a point-in-time view of the statistics recorded so far. Counters of different threads are read one
+     * after another, so a snapshot taken while traffic is flowing is not necessarily consistent across counters.
+     */
+    public Snapshot snapshot() {
+        long[] values = new long[COUNTERS];
+        for (Recorder recorder: recorders) {
+            for (int i = 0; i < COUNTERS; i++) {
+                values[i] += recorder.counters.get(i);
+            }
+        }
+        return new Snapshot(values);
+    }
+
+    /**
+     * Counters owned by a single thread. Only the owner writes, so a plain read followed by an ordered write is
+     * enough and avoids the cost of an atomic read-modify-write.
+     */
+    private static final class Recorder {
+        final AtomicLongArray counters = new AtomicLongArray(COUNTERS);
+
+        void increment(int index, long delta) {
+            counters.lazySet(index, counters.get(index) + delta);
+        }
+    }
+
+    /**
+     * An immutable view of the statistics of a {@link SslHandlerMetrics}.
+     */
+    public static final class Snapshot {
+        private final long[] values;
+
+        Snapshot(long[] values) {
+            this.values = values;
+        }
+
+        /**
+         * Returns the number of handshakes that completed successfully.
+         */
+        public long handshakes() {
+            return values[HANDSHAKES];
+        }
+
+        /**
+         * Returns the number of successful handshakes that resumed a previous session. A handshake counts as resumed if
+         * its session was created before the second in which the handshake started, as the {@link SSLEngine} of
+         * OpenSSL only tells the creation time in seconds. So resuming a session within the second it was created in
+         * counts as a full handshake.
+         */
+        public long resumedHandshakes() {
+            return values[RESUMED_HANDSHAKES];
+        }
+
+        /**
+         * Returns the number of successful handshakes that negotiated a new session.
+         */
+        public long fullHandshakes() {
+            return values[HANDSHAKES] - values[RESUMED_HANDSHAKES];
+        }
+
+        /**
+         * Returns the number of handshakes that failed or timed out.
+         */
+        public long failedHandshakes() {
+            return values[FAILED_HANDSHAKES];
+        }
+
+        /**
+         * Returns the total time in nanoseconds spent in successful handshakes, measured from the start of the
+         * handshake until its completion and so including network round trips.
+         */
+        public long handshakeTimeNanos() {
+            return values[HANDSHAKE_TIME_NANOS];
+        }
+
+        /**
+         * Returns the number of calls to {@link javax.net.ssl.SSLEngine#wrap}.
+         */
+        public long wrapCalls() {
+            return values[WRAP_CALLS];
+        }
+
+        /**
+         * Returns the number of plaintext bytes consumed by {@link javax.net.ssl.SSLEngine#wrap}.
+         */
+        public long wrapBytesConsumed() {
+            return values[WRAP_BYTES_CONSUMED];
+        }
+
+        /**
+         * Returns the number of encrypted bytes produced by {@link javax.net.ssl.SSLEngine#wrap}.
+         */
+        public long wrapBytesProduced() {
+            return values[WRAP_BYTES_PRODUCED];
+        }
+
+        /**
+         * Returns the number of calls to {@link javax.net.ssl.SSLEngine#unwrap}.
+         */
+        public long unwrapCalls() {
+            return values[UNWRAP_CALLS];
+        }
+
+        /**
+         * Returns the number of encrypted bytes consumed by {@link javax.net.ssl.SSLEngine#unwrap}.
+         */
+        public long unwrapBytesConsumed() {
+            return values[UNWRAP_BYTES_CONSUMED];
+        }
+
+        /**
+         * Returns the number of plaintext bytes produced by {@link javax.net.ssl.SSLEngine#unwrap}.
+         */
+        public long unwrapBytesProduced() {
+            return values[UNWRAP_BYTES_PRODUCED];
+        }
+
+        /**
+         * Returns the number of delegated tasks that were run.
+         */
+        public long delegatedTasks() {
+            return values[DELEGATED_TASKS];
+        }
+
+        /**
+         * Returns the total time in nanoseconds spent running delegated tasks, regardless of the thread they ran on.
+         */
+        public long delegatedTaskTimeNanos() {
+            return values[DELEGATED_TASK_TIME_NANOS];
+        }
+
+        /**
+         * Returns the histogram of the sizes of outbound records.
+         *
+         * @see SslHandlerMetrics#recordSizeBucketUpperBound(int)
+         */
+        public long[] outboundRecordSizes() {
+            return Arrays.copyOfRange(values, OUTBOUND_RECORD_SIZES, OUTBOUND_RECORD_SIZES + RECORD_SIZE_BUCKETS);
+        }
+
+        /**
+         * Returns the histogram of the sizes of inbound records.
+         *
+         * @see SslHandlerMetrics#recordSizeBucketUpperBound(int)
+         */
+        public long[] inboundRecordSizes() {
+            return Arrays.copyOfRange(values, INBOUND_RECORD_SIZES, INBOUND_RECORD_SIZES + RECORD_SIZE_BUCKETS);
+        }
+
+        @Override
+        public String toString() {
+            return "SslHandlerMetrics.Snapshot(handshakes: " + handshakes() +
+                    ", resumed: " + resumedHandshakes() +
+                    ", failed: " + failedHandshakes() +
+                    ", handshakeTimeNanos: " + handshakeTimeNanos() +
+                    ", wrapCalls: " + wrapCalls() +
+                    ", wrapBytes: " + wrapBytesConsumed() + '/' + wrapBytesProduced() +
+                    ", unwrapCalls: " + unwrapCalls() +
+                    ", unwrapBytes: " + unwrapBytesConsumed() + '/' + unwrapBytesProduced() +
+                    ", delegatedTasks: " + delegatedTasks() +
+                    ", delegatedTaskTimeNanos: " + delegatedTaskTimeNanos() +
+                    ", outboundRecordSizes: " + Arrays.toString(outboundRecordSizes()) +
+                    ", inboundRecordSizes: " + Arrays.toString(inboundRecordSizes()) + ')';
+        }
+    }
+}
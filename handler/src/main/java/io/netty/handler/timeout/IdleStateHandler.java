@@ -27,6 +27,8 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.EventExecutor;
 
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -343,7 +345,12 @@ public class IdleStateHandler extends ChannelDuplexHandler {
      * This method is visible for testing!
      */
     ScheduledFuture<?> schedule(ChannelHandlerContext ctx, Runnable task, long delay, TimeUnit unit) {
-        return ctx.executor().schedule(task, delay, unit);
+        EventExecutor executor = ctx.executor();
+        if (executor instanceof EventLoop) {
+            // Idle timeouts are rescheduled all the time and do not need to be precise.
+            return ((EventLoop) executor).scheduleApproximately(task, delay, unit);
+        }
+        return executor.schedule(task, delay, unit);
     }
 
     private void destroy() {
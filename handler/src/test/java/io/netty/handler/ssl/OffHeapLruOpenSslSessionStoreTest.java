@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+public class OffHeapLruOpenSslSessionStoreTest {
+
+    @Test
+    public void testPutIfAbsent() {
+        try (OffHeapLruOpenSslSessionStore store = new OffHeapLruOpenSslSessionStore(4)) {
+            assertNull(store.putIfAbsent(new byte[] { 1 }, new byte[] { 1, 2, 3 }));
+            assertArrayEquals(new byte[] { 1, 2, 3 }, store.putIfAbsent(new byte[] { 1 }, new byte[] { 4 }));
+            assertArrayEquals(new byte[] { 1, 2, 3 }, store.get(new byte[] { 1 }));
+            assertNull(store.get(new byte[] { 2 }));
+
+            store.remove(new byte[] { 1 });
+            assertNull(store.get(new byte[] { 1 }));
+            assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        try (OffHeapLruOpenSslSessionStore store = new OffHeapLruOpenSslSessionStore(2)) {
+            store.putIfAbsent(new byte[] { 1 }, new byte[] { 1 });
+            store.putIfAbsent(new byte[] { 2 }, new byte[] { 2 });
+            // Access 1 so 2 becomes the eldest entry.
+            store.get(new byte[] { 1 });
+            store.putIfAbsent(new byte[] { 3 }, new byte[] { 3 });
+
+            assertEquals(2, store.size());
+            assertArrayEquals(new byte[] { 1 }, store.get(new byte[] { 1 }));
+            assertNull(store.get(new byte[] { 2 }));
+            assertArrayEquals(new byte[] { 3 }, store.get(new byte[] { 3 }));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPutAfterClose() {
+        OffHeapLruOpenSslSessionStore store = new OffHeapLruOpenSslSessionStore(2);
+        store.close();
+        store.putIfAbsent(new byte[] { 1 }, new byte[] { 1 });
+    }
+
+    @Test
+    public void testTicketKeysSharedBetweenContexts() throws Exception {
+        assumeTrue(OpenSsl.isAvailable());
+        SelfSignedCertificate cert = new SelfSignedCertificate();
+        EventExecutor executor = new SingleThreadEventExecutor();
+        SslContext first = null;
+        SslContext second = null;
+        try (OffHeapLruOpenSslSessionStore store = new OffHeapLruOpenSslSessionStore(16)) {
+            first = SslContextBuilder.forServer(cert.certificate(), cert.privateKey())
+                    .sslProvider(SslProvider.OPENSSL_REFCNT).build();
+            second = SslContextBuilder.forServer(cert.certificate(), cert.privateKey())
+                    .sslProvider(SslProvider.OPENSSL_REFCNT).build();
+
+            // Both contexts act like two processes behind a load balancer which share the same store.
+            OpenSslSessionContext firstSessions = (OpenSslSessionContext) first.sessionContext();
+            OpenSslSessionContext secondSessions = (OpenSslSessionContext) second.sessionContext();
+            firstSessions.setSessionStore(store);
+            secondSessions.setSessionStore(store);
+
+            firstSessions.scheduleTicketKeyRotation(executor, 1, TimeUnit.HOURS);
+            secondSessions.scheduleTicketKeyRotation(executor, 1, TimeUnit.HOURS);
+
+            assertEquals(1, firstSessions.stats().ticketKeyRotations());
+            assertEquals(1, secondSessions.stats().ticketKeyRotations());
+            // The first context published the keys for the current and previous epoch, the second one reused them.
+            assertEquals(2, firstSessions.stats().storeMisses());
+            assertEquals(2, secondSessions.stats().storeHits());
+            assertEquals(0, secondSessions.stats().storeMisses());
+            assertEquals(2, store.size());
+        } finally {
+            ReferenceCountUtil.release(first);
+            ReferenceCountUtil.release(second);
+            executor.shutdownGracefully();
+            cert.delete();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.util.DomainNameTrieMapping;
+import io.netty.util.DomainNameTrieMappingBuilder;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.ImmediateExecutor;
+import io.netty.util.internal.ResourcesUtil;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SslContextCacheTest {
+
+    @Test
+    public void testWildcardMatchesShareContext() throws Exception {
+        CountingSource netty = new CountingSource();
+        CountingSource fallback = new CountingSource();
+        DomainNameTrieMapping<SslContextCache.Source> mapping =
+                new DomainNameTrieMappingBuilder<SslContextCache.Source>(fallback)
+                        .add("*.netty.io", netty)
+                        .build();
+        SslContextCache cache = new SslContextCache(mapping, ImmediateExecutor.INSTANCE, 16, 1, TimeUnit.HOURS);
+
+        SslContext first = lookup(cache, "www.netty.io");
+        SslContext second = lookup(cache, "downloads.netty.io");
+        SslContext other = lookup(cache, "example.com");
+
+        assertSame(first, second);
+        assertFalse(first == other);
+        assertEquals(1, netty.loads.get());
+        assertEquals(1, fallback.loads.get());
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testExpiredContextIsReloaded() throws Exception {
+        CountingSource source = new CountingSource();
+        SslContextCache cache = new SslContextCache(
+                hostname -> source, ImmediateExecutor.INSTANCE, 16, 1, TimeUnit.NANOSECONDS);
+
+        lookup(cache, "netty.io");
+        Thread.sleep(1);
+        lookup(cache, "netty.io");
+
+        assertEquals(2, source.loads.get());
+        assertEquals(0, cache.hits());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void testFailureIsNotCached() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        SslContextCache cache = new SslContextCache(hostname -> () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException();
+        }, ImmediateExecutor.INSTANCE, 16, 1, TimeUnit.HOURS);
+
+        for (int i = 0; i < 2; i++) {
+            Future<SslContext> future = cache.map("netty.io", ImmediateEventExecutor.INSTANCE.newPromise());
+            assertTrue(future.cause() instanceof IllegalStateException);
+        }
+        assertEquals(2, attempts.get());
+        assertEquals(2, cache.loadFailures());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        List<CountingSource> sources = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            sources.add(new CountingSource());
+        }
+        SslContextCache cache = new SslContextCache(hostname -> sources.get(Integer.parseInt(hostname)),
+                ImmediateExecutor.INSTANCE, 2, 1, TimeUnit.HOURS);
+
+        for (int i = 0; i < sources.size(); i++) {
+            lookup(cache, String.valueOf(i));
+        }
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.evictions());
+    }
+
+    @Test
+    public void testPemSource() throws Exception {
+        File keyFile = ResourcesUtil.getFile(getClass(), "test_unencrypted.pem");
+        File crtFile = ResourcesUtil.getFile(getClass(), "test.crt");
+
+        assertEquals(SslContextCache.pemSource(crtFile, keyFile, null),
+                SslContextCache.pemSource(crtFile, keyFile, null));
+        SslContextCache cache = new SslContextCache(hostname -> SslContextCache.pemSource(crtFile, keyFile, null),
+                ImmediateExecutor.INSTANCE, 16, 1, TimeUnit.HOURS);
+        SslContext context = lookup(cache, "netty.io");
+        assertTrue(context.isServer());
+        assertSame(context, lookup(cache, "netty.io"));
+        assertTrue(cache.totalLoadTimeNanos() > 0);
+    }
+
+    private static SslContext lookup(SslContextCache cache, String hostname) {
+        SslContext context = cache.map(hostname, ImmediateEventExecutor.INSTANCE.<SslContext>newPromise())
+                .syncUninterruptibly().getNow();
+        assertNotNull(context);
+        return context;
+    }
+
+    private static final class CountingSource implements SslContextCache.Source {
+        final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        public SslContext load() throws Exception {
+            loads.incrementAndGet();
+            return SslContextBuilder.forClient().sslProvider(SslProvider.JDK).build();
+        }
+    }
+}
@@ -82,7 +82,9 @@ import static io.netty.buffer.Unpooled.wrappedBuffer;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
@@ -245,6 +247,198 @@ public class SslHandlerTest {
         assertThat(promise.cause(), is(instanceOf(SSLException.class)));
     }
 
+    @Test
+    public void testDynamicRecordSizing() throws Exception {
+        SelfSignedCertificate cert = new SelfSignedCertificate();
+        SslContext serverCtx = SslContextBuilder.forServer(cert.certificate(), cert.privateKey())
+                .sslProvider(SslProvider.JDK).protocols(SslUtils.PROTOCOL_TLS_V1_2).build();
+        SslContext clientCtx = SslContextBuilder.forClient().trustManager(InsecureTrustManagerFactory.INSTANCE)
+                .sslProvider(SslProvider.JDK).protocols(SslUtils.PROTOCOL_TLS_V1_2).build();
+        SslHandler clientHandler = clientCtx.newHandler(UnpooledByteBufAllocator.DEFAULT);
+        EmbeddedChannel client = new EmbeddedChannel(clientHandler);
+        EmbeddedChannel server = new EmbeddedChannel(serverCtx.newHandler(UnpooledByteBufAllocator.DEFAULT));
+        try {
+            while (!clientHandler.handshakeFuture().isDone()) {
+                forward(client, server);
+                forward(server, client);
+            }
+            assertTrue(clientHandler.handshakeFuture().isSuccess());
+
+            clientHandler.setDynamicRecordSizing(512, 2048, 1, TimeUnit.HOURS);
+            assertTrue(client.writeOutbound(Unpooled.buffer(4096).writeZero(4096)));
+
+            // Four records carrying 512 bytes each until the threshold of 2048 bytes is reached, then one
+            // record carrying the remaining 2048 bytes.
+            assertEquals(5, countApplicationDataRecords(client));
+
+            assertTrue(client.writeOutbound(Unpooled.buffer(4096).writeZero(4096)));
+            assertEquals(1, countApplicationDataRecords(client));
+        } finally {
+            client.finishAndReleaseAll();
+            server.finishAndReleaseAll();
+            cert.delete();
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        SelfSignedCertificate cert = new SelfSignedCertificate();
+        SslContext serverCtx = SslContextBuilder.forServer(cert.certificate(), cert.privateKey())
+                .sslProvider(SslProvider.JDK).protocols(SslUtils.PROTOCOL_TLS_V1_2).build();
+        SslContext clientCtx = SslContextBuilder.forClient().trustManager(InsecureTrustManagerFactory.INSTANCE)
+                .sslProvider(SslProvider.JDK).protocols(SslUtils.PROTOCOL_TLS_V1_2).build();
+        SslHandlerMetrics metrics = new SslHandlerMetrics();
+        serverCtx.setMetrics(metrics);
+        try {
+            assertSame(metrics, serverCtx.newHandler(UnpooledByteBufAllocator.DEFAULT).metrics());
+            assertNull(clientCtx.newHandler(UnpooledByteBufAllocator.DEFAULT).metrics());
+
+            connect(clientCtx, serverCtx);
+            // A full handshake must not count as resumed.
+            assertEquals(0, metrics.snapshot().resumedHandshakes());
+            assertEquals(1, metrics.snapshot().fullHandshakes());
+
+            // The client reconnects to the same peer and resumes the session.
+            sleepUntilNextSecond();
+            connect(clientCtx, serverCtx);
+
+            SslHandlerMetrics.Snapshot snapshot = metrics.snapshot();
+            assertEquals(2, snapshot.handshakes());
+            assertEquals(1, snapshot.resumedHandshakes());
+            assertEquals(1, snapshot.fullHandshakes());
+            assertEquals(0, snapshot.failedHandshakes());
+            assertTrue(snapshot.handshakeTimeNanos() > 0);
+            assertTrue(snapshot.wrapCalls() > 0);
+            assertTrue(snapshot.wrapBytesProduced() > 0);
+            assertTrue(snapshot.unwrapCalls() > 0);
+            assertTrue(snapshot.unwrapBytesProduced() >= 2048);
+            assertTrue(snapshot.unwrapBytesConsumed() > snapshot.unwrapBytesProduced());
+            assertTrue(snapshot.delegatedTasks() > 0);
+
+            long inboundRecords = 0;
+            for (long count: snapshot.inboundRecordSizes()) {
+                inboundRecords += count;
+            }
+            assertTrue(inboundRecords > 0);
+            // The two application data records of 1024 bytes plus the record overhead.
+            assertTrue(snapshot.inboundRecordSizes()[3] >= 2);
+        } finally {
+            cert.delete();
+        }
+    }
+
+    @Test
+    public void testMetricsResumedHandshakeOpenSsl() throws Exception {
+        assumeTrue(OpenSsl.isAvailable());
+        SelfSignedCertificate cert = new SelfSignedCertificate();
+        SslContext serverCtx = SslContextBuilder.forServer(cert.certificate(), cert.privateKey())
+                .sslProvider(SslProvider.OPENSSL).protocols(SslUtils.PROTOCOL_TLS_V1_2).build();
+        SslContext clientCtx = SslContextBuilder.forClient().trustManager(InsecureTrustManagerFactory.INSTANCE)
+                .sslProvider(SslProvider.JDK).protocols(SslUtils.PROTOCOL_TLS_V1_2).build();
+        SslHandlerMetrics metrics = new SslHandlerMetrics();
+        serverCtx.setMetrics(metrics);
+        try {
+            // The session of the first handshake is created within the same second, which must not be mistaken for
+            // resuming a session created before the handshake.
+            connect(clientCtx, serverCtx);
+            assertEquals(0, metrics.snapshot().resumedHandshakes());
+
+            sleepUntilNextSecond();
+            connect(clientCtx, serverCtx);
+
+            SslHandlerMetrics.Snapshot snapshot = metrics.snapshot();
+            assertEquals(2, snapshot.handshakes());
+            assertEquals(1, snapshot.resumedHandshakes());
+            assertEquals(1, snapshot.fullHandshakes());
+        } finally {
+            ReferenceCountUtil.release(serverCtx);
+            cert.delete();
+        }
+    }
+
+    private static void connect(SslContext clientCtx, SslContext serverCtx) {
+        // Always the same peer, so the client looks up the session of the previous connection.
+        SslHandler clientHandler = clientCtx.newHandler(UnpooledByteBufAllocator.DEFAULT, "localhost", 443);
+        SslHandler serverHandler = serverCtx.newHandler(UnpooledByteBufAllocator.DEFAULT);
+        EmbeddedChannel client = new EmbeddedChannel(clientHandler);
+        EmbeddedChannel server = new EmbeddedChannel(serverHandler);
+        try {
+            handshake(client, clientHandler, server, serverHandler);
+            writeAndReceive(client, server);
+        } finally {
+            client.finishAndReleaseAll();
+            server.finishAndReleaseAll();
+        }
+    }
+
+    private static void sleepUntilNextSecond() throws InterruptedException {
+        // Sessions are only counted as resumed if they were created before the second the handshake started in.
+        Thread.sleep(1000 - System.currentTimeMillis() % 1000 + 10);
+    }
+
+    private static void handshake(EmbeddedChannel client, SslHandler clientHandler,
+                                  EmbeddedChannel server, SslHandler serverHandler) {
+        while (!clientHandler.handshakeFuture().isDone()) {
+            forward(client, server);
+            forward(server, client);
+        }
+        assertTrue(clientHandler.handshakeFuture().isSuccess());
+        forward(client, server);
+        assertTrue(serverHandler.handshakeFuture().isSuccess());
+    }
+
+    private static void writeAndReceive(EmbeddedChannel client, EmbeddedChannel server) {
+        assertTrue(client.writeOutbound(Unpooled.buffer(1024).writeZero(1024)));
+        forward(client, server);
+        ByteBuf received = server.readInbound();
+        assertEquals(1024, received.readableBytes());
+        received.release();
+    }
+
+    @Test
+    public void testMetricsRecordSizeBuckets() {
+        assertEquals(0, SslHandlerMetrics.recordSizeBucket(1));
+        assertEquals(0, SslHandlerMetrics.recordSizeBucket(256));
+        assertEquals(1, SslHandlerMetrics.recordSizeBucket(257));
+        assertEquals(6, SslHandlerMetrics.recordSizeBucket(16384));
+        assertEquals(7, SslHandlerMetrics.recordSizeBucket(16385 + 256));
+        for (int i = 0; i < SslHandlerMetrics.RECORD_SIZE_BUCKETS - 1; i++) {
+            int upperBound = SslHandlerMetrics.recordSizeBucketUpperBound(i);
+            assertEquals(i, SslHandlerMetrics.recordSizeBucket(upperBound));
+            assertEquals(i + 1, SslHandlerMetrics.recordSizeBucket(upperBound + 1));
+        }
+        assertEquals(Integer.MAX_VALUE,
+                SslHandlerMetrics.recordSizeBucketUpperBound(SslHandlerMetrics.RECORD_SIZE_BUCKETS - 1));
+    }
+
+    private static void forward(EmbeddedChannel from, EmbeddedChannel to) {
+        for (;;) {
+            ByteBuf buf = from.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            to.writeInbound(buf);
+        }
+    }
+
+    private static int countApplicationDataRecords(EmbeddedChannel channel) {
+        int records = 0;
+        for (;;) {
+            ByteBuf buf = channel.readOutbound();
+            if (buf == null) {
+                return records;
+            }
+            while (buf.isReadable()) {
+                if (buf.readUnsignedByte() == SslUtils.SSL_CONTENT_TYPE_APPLICATION_DATA) {
+                    records++;
+                }
+                buf.skipBytes(2);
+                buf.skipBytes(buf.readUnsignedShort());
+            }
+            buf.release();
+        }
+    }
+
     @Test
     public void testReleaseSslEngine() throws Exception {
         assumeTrue(OpenSsl.isAvailable());
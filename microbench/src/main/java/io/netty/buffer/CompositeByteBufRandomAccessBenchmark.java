@@ -48,6 +48,12 @@ public class CompositeByteBufRandomAccessBenchmark extends AbstractMicrobenchmar
             ByteBuf newBuffer(int length) {
                 return newBufferLargeChunks(length);
             }
+        },
+        SMALL_CHUNKS_CONSOLIDATED {
+            @Override
+            ByteBuf newBuffer(int length) {
+                return newBufferSmallChunksConsolidated(length);
+            }
         };
         abstract ByteBuf newBuffer(int length);
     }
@@ -60,6 +66,7 @@ public class CompositeByteBufRandomAccessBenchmark extends AbstractMicrobenchmar
 
     private ByteBuf buffer;
     private Random random;
+    private int index;
 
     @Setup
     public void setup() {
@@ -84,8 +91,14 @@ public class CompositeByteBufRandomAccessBenchmark extends AbstractMicrobenchmar
         return buffer.setLong(i, 1);
     }
 
-    private static ByteBuf newBufferSmallChunks(int length) {
+    @Benchmark
+    public long sequentialGetLong() {
+        int i = index;
+        index = i + 8 < size - 8 ? i + 8 : 0;
+        return buffer.getLong(i);
+    }
 
+    private static List<ByteBuf> smallChunks(int length) {
         List<ByteBuf> buffers = new ArrayList<>(((length + 1) / 45) * 19);
         for (int i = 0; i < length + 45; i += 45) {
             for (int j = 1; j <= 9; j++) {
@@ -94,8 +107,22 @@ public class CompositeByteBufRandomAccessBenchmark extends AbstractMicrobenchmar
             }
             buffers.add(EMPTY_BUFFER);
         }
+        return buffers;
+    }
 
-        ByteBuf buffer = wrappedBuffer(Integer.MAX_VALUE, buffers.toArray(new ByteBuf[0]));
+    private static ByteBuf newBufferSmallChunks(int length) {
+
+        ByteBuf buffer = wrappedBuffer(Integer.MAX_VALUE, smallChunks(length).toArray(new ByteBuf[0]));
+
+        // Truncate to the requested capacity.
+        return buffer.capacity(length).writerIndex(0);
+    }
+
+    private static ByteBuf newBufferSmallChunksConsolidated(int length) {
+
+        CompositeByteBuf buffer = new CompositeByteBuf(UnpooledByteBufAllocator.DEFAULT, false, Integer.MAX_VALUE)
+                .consolidationThreshold(1024)
+                .addComponents(true, smallChunks(length));
 
         // Truncate to the requested capacity.
         return buffer.capacity(length).writerIndex(0);
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link MqttDecoder} and {@link MqttIncrementalDecoder} decoding a PUBLISH message which is received in one
+ * or in several reads.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class MqttDecoderBenchmark extends AbstractMicrobenchmark {
+
+    private static final int MAX_BYTES_IN_MESSAGE = 65536;
+    private static final ByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
+
+    @Param({ "64", "1024", "16384" })
+    public int payloadSize;
+
+    @Param({ "1", "8" })
+    public int reads;
+
+    private ByteBuf[] fragments;
+    private EmbeddedChannel replayingChannel;
+    private EmbeddedChannel incrementalChannel;
+
+    @Setup
+    public void setup() {
+        MqttPublishMessage message = MqttMessageBuilders.publish()
+                .topicName("devices/0123456789/telemetry")
+                .qos(MqttQoS.AT_LEAST_ONCE)
+                .messageId(1)
+                .payload(Unpooled.wrappedBuffer(new byte[payloadSize]))
+                .build();
+        ByteBuf encoded = MqttEncoder.doEncode(UnpooledByteBufAllocator.DEFAULT, message);
+        message.release();
+
+        fragments = new ByteBuf[reads];
+        int fragmentSize = (encoded.readableBytes() + reads - 1) / reads;
+        for (int i = 0; i < reads; i++) {
+            ByteBuf fragment = encoded.readSlice(Math.min(fragmentSize, encoded.readableBytes()));
+            fragments[i] = Unpooled.directBuffer(fragment.readableBytes()).writeBytes(fragment);
+        }
+        encoded.release();
+
+        replayingChannel = new EmbeddedChannel(new MqttDecoder(MAX_BYTES_IN_MESSAGE), new ReleaseHandler());
+        incrementalChannel = new EmbeddedChannel(
+                new MqttIncrementalDecoder(MAX_BYTES_IN_MESSAGE), new ReleaseHandler());
+    }
+
+    @TearDown
+    public void teardown() {
+        replayingChannel.finishAndReleaseAll();
+        incrementalChannel.finishAndReleaseAll();
+        for (ByteBuf fragment: fragments) {
+            fragment.release();
+        }
+    }
+
+    @Benchmark
+    public void replayingDecoder() {
+        decode(replayingChannel);
+    }
+
+    @Benchmark
+    public void incrementalDecoder() {
+        decode(incrementalChannel);
+    }
+
+    private void decode(EmbeddedChannel channel) {
+        // Each read is a new buffer, like a read from a socket. Handing in the same buffer for each read would let
+        // the decoder cumulate into it, so the next invocation would decode corrupted bytes.
+        for (ByteBuf fragment: fragments) {
+            int length = fragment.readableBytes();
+            channel.writeInbound(ALLOCATOR.directBuffer(length).writeBytes(fragment, fragment.readerIndex(), length));
+        }
+    }
+
+    private static final class ReleaseHandler implements ChannelInboundHandler {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+}
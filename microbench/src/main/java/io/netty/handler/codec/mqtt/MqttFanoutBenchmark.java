@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.netty.handler.codec.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares encoding a PUBLISH message for each subscriber with {@link MqttEncoder} against encoding it with
+ * {@link MqttFanoutPublish}.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class MqttFanoutBenchmark extends AbstractMicrobenchmark {
+
+    private static final ByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
+    private static final String TOPIC_NAME = "devices/0123456789/telemetry";
+
+    @Param({ "64", "4096" })
+    public int payloadSize;
+
+    @Param({ "100" })
+    public int subscribers;
+
+    private ByteBuf payload;
+
+    @Setup
+    public void setup() {
+        payload = ALLOCATOR.directBuffer(payloadSize).writeZero(payloadSize);
+    }
+
+    @TearDown
+    public void teardown() {
+        payload.release();
+    }
+
+    @Benchmark
+    public void perSubscriberEncode() {
+        for (int i = 0; i < subscribers; i++) {
+            MqttPublishMessage message = publish(i + 1);
+            MqttEncoder.doEncode(ALLOCATOR, message).release();
+            message.release();
+        }
+    }
+
+    @Benchmark
+    public void fanoutEncode() {
+        MqttPublishMessage message = publish(1);
+        MqttFanoutPublish fanout = new MqttFanoutPublish(message);
+        message.release();
+        for (int i = 0; i < subscribers; i++) {
+            fanout.encode(ALLOCATOR, MqttVersion.MQTT_3_1_1, MqttQoS.AT_LEAST_ONCE, i + 1).release();
+        }
+        fanout.release();
+    }
+
+    private MqttPublishMessage publish(int packetId) {
+        return new MqttPublishMessage(
+                new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.AT_LEAST_ONCE, false, 0),
+                new MqttPublishVariableHeader(TOPIC_NAME, packetId), payload.retainedDuplicate());
+    }
+}
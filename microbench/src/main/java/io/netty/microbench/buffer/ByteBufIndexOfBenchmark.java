@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ByteProcessor;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares searching a delimiter eight bytes at a time with {@link ByteBuf#indexOf(int, int, byte)} and
+ * {@link ByteBufUtil#indexOf(ByteBuf, ByteBuf)} against processing one byte per call with
+ * {@link ByteBuf#forEachByte(ByteProcessor)}.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ByteBufIndexOfBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "16", "256", "8192" })
+    public int size;
+
+    @Param({ "true", "false" })
+    public boolean direct;
+
+    private ByteBuf buffer;
+    private ByteBuf crlf;
+    private ByteBuf boundary;
+
+    @Setup
+    public void setup() {
+        buffer = direct ? Unpooled.directBuffer(size + 32) : Unpooled.buffer(size + 32);
+        for (int i = 0; i < size; i++) {
+            // Contains CR, but no CRLF before the end.
+            buffer.writeByte(i % 64 == 0 ? '\r' : 'a' + i % 26);
+        }
+        buffer.writeBytes("\r\n--boundary\r\n".getBytes(CharsetUtil.US_ASCII));
+        crlf = Unpooled.copiedBuffer("\r\n", CharsetUtil.US_ASCII);
+        boundary = Unpooled.copiedBuffer("\r\n--boundary", CharsetUtil.US_ASCII);
+    }
+
+    @TearDown
+    public void teardown() {
+        buffer.release();
+        crlf.release();
+        boundary.release();
+    }
+
+    @Benchmark
+    public int forEachByteLf() {
+        return buffer.forEachByte(ByteProcessor.FIND_LF);
+    }
+
+    @Benchmark
+    public int indexOfLf() {
+        return buffer.indexOf(buffer.readerIndex(), buffer.writerIndex(), (byte) '\n');
+    }
+
+    @Benchmark
+    public int indexOfCrlf() {
+        return ByteBufUtil.indexOf(crlf, buffer);
+    }
+
+    @Benchmark
+    public int indexOfBoundary() {
+        return ByteBufUtil.indexOf(boundary, buffer);
+    }
+}
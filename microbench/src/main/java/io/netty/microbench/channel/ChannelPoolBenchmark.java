@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandler;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalHandler;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.channel.pool.SimpleChannelPool;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures acquiring and releasing {@link Channel}s under contention, once from threads outside of the
+ * {@link EventLoopGroup}, which hand every operation over to the {@link EventLoop} of the {@link Channel}, and once
+ * from the {@link EventLoop}s themselves, which are served by {@link Channel}s registered on the same
+ * {@link EventLoop} without a thread hop.
+ */
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ChannelPoolBenchmark extends AbstractMicrobenchmark {
+
+    private static final int BATCH = 100;
+
+    @Param({ "simple", "fixed" })
+    public String pool;
+
+    private EventLoopGroup group;
+    private Channel server;
+    private ChannelPool channelPool;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        group = new MultithreadEventLoopGroup(4, LocalHandler.newFactory());
+        LocalAddress address = new LocalAddress(ChannelPoolBenchmark.class.getName());
+        server = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInboundHandler() { })
+                .bind(address).sync().channel();
+        Bootstrap bootstrap = new Bootstrap().group(group).channel(LocalChannel.class).remoteAddress(address);
+        if ("simple".equals(pool)) {
+            channelPool = new SimpleChannelPool(bootstrap, ch -> { });
+        } else {
+            channelPool = new FixedChannelPool(bootstrap, ch -> { }, 4);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+        channelPool.close();
+        server.close().sync();
+        group.shutdownGracefully();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        EventLoop loop;
+
+        @Setup(Level.Trial)
+        public void setup(ChannelPoolBenchmark benchmark) {
+            loop = benchmark.group.next();
+        }
+    }
+
+    @Benchmark
+    public Object acquireReleaseFromExternalThread() {
+        Channel channel = channelPool.acquire().syncUninterruptibly().getNow();
+        return channelPool.release(channel).syncUninterruptibly();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object acquireReleaseFromEventLoop(ThreadState state) {
+        Promise<Void> promise = state.loop.newPromise();
+        state.loop.execute(() -> acquireRelease(BATCH, promise));
+        return promise.syncUninterruptibly();
+    }
+
+    private void acquireRelease(int remaining, Promise<Void> promise) {
+        if (remaining == 0) {
+            promise.setSuccess(null);
+            return;
+        }
+        // Completes synchronously once a Channel of the calling EventLoop is idle in the pool.
+        channelPool.acquire().addListener((Future<Channel> future) -> {
+            if (future.isSuccess()) {
+                channelPool.release(future.getNow());
+                acquireRelease(remaining - 1, promise);
+            } else {
+                promise.setFailure(future.cause());
+            }
+        });
+    }
+}
@@ -48,18 +48,25 @@ public class DefaultChannelPipelineBenchmark extends AbstractMicrobenchmark {
         }
     };
 
-    @Param({ "4" })
+    @ChannelHandler.Sharable
+    private static final class ChurnHandler implements ChannelInboundHandler { }
+
+    private static final ChannelInboundHandler CHURN_HANDLER = new ChurnHandler();
+
+    @Param({ "4", "16" })
     public int extraHandlers;
 
     private ChannelPipeline pipeline;
+    private String lastName;
 
     @Setup(Level.Iteration)
     public void setup() {
         pipeline = new EmbeddedChannel().pipeline();
         for (int i = 0; i < extraHandlers; i++) {
-            pipeline.addLast(NOOP_HANDLER);
+            pipeline.addLast("noop" + i, NOOP_HANDLER);
         }
         pipeline.addLast(CONSUMING_HANDLER);
+        lastName = "noop" + (extraHandlers - 1);
     }
 
     @TearDown
@@ -73,4 +80,25 @@ public class DefaultChannelPipelineBenchmark extends AbstractMicrobenchmark {
             hole.consume(pipeline.fireChannelReadComplete());
         }
     }
+
+    @Benchmark
+    public ChannelPipeline addRemoveLast() {
+        return pipeline.addLast("churn", CHURN_HANDLER).remove(CHURN_HANDLER);
+    }
+
+    @Benchmark
+    public ChannelHandler addRemoveMiddle() {
+        return pipeline.addAfter("noop0", "churn", CHURN_HANDLER).remove("churn");
+    }
+
+    @Benchmark
+    public ChannelHandler getByName() {
+        return pipeline.get(lastName);
+    }
+
+    // Not part of the pipeline, so all handlers are looked at.
+    @Benchmark
+    public ChannelHandler getByType() {
+        return pipeline.get(ChurnHandler.class);
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.concurrent;
+
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.HierarchicalWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link HashedWheelTimer} and {@link HierarchicalWheelTimer} while a large number of long timeouts, such
+ * as idle connection timeouts, is pending.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+public class WheelTimerBenchmark extends AbstractMicrobenchmark {
+
+    private static final TimerTask NO_OP = timeout -> { };
+    private static final int EXPIRE_BATCH = 10000;
+
+    @Param({ "hashed", "hierarchical" })
+    public String timerType;
+
+    @Param({ "0", "1000000" })
+    public int pendingTimeouts;
+
+    private Timer timer;
+
+    @Setup
+    public void setup() {
+        switch (timerType) {
+            case "hashed":
+                timer = new HashedWheelTimer(Executors.defaultThreadFactory(), 1, TimeUnit.MILLISECONDS);
+                break;
+            case "hierarchical":
+                timer = new HierarchicalWheelTimer(Executors.defaultThreadFactory(), 1, TimeUnit.MILLISECONDS);
+                break;
+            default:
+                throw new IllegalArgumentException("timerType: " + timerType);
+        }
+        for (int i = 0; i < pendingTimeouts; i++) {
+            timer.newTimeout(NO_OP, longDelay(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        timer.stop();
+    }
+
+    private static long longDelay() {
+        return TimeUnit.MINUTES.toMillis(10) + ThreadLocalRandom.current().nextInt(60000);
+    }
+
+    @Benchmark
+    public Timeout scheduleAndCancel() {
+        Timeout timeout = timer.newTimeout(NO_OP, longDelay(), TimeUnit.MILLISECONDS);
+        timeout.cancel();
+        return timeout;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EXPIRE_BATCH)
+    public void scheduleAndExpire() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(EXPIRE_BATCH);
+        TimerTask task = timeout -> latch.countDown();
+        for (int i = 0; i < EXPIRE_BATCH; i++) {
+            timer.newTimeout(task, 1, TimeUnit.MILLISECONDS);
+        }
+        latch.await();
+    }
+}
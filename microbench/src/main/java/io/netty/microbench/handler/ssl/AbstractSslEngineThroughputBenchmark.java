@@ -81,4 +81,27 @@ public abstract class AbstractSslEngineThroughputBenchmark extends AbstractSslEn
         }
         return wrapDstBuffer;
     }
+
+    /**
+     * Wraps {@code numWraps} messages by passing all of them to {@link javax.net.ssl.SSLEngine#wrap(ByteBuffer[],
+     * ByteBuffer)} at once, so they are coalesced into as few records as possible.
+     */
+    protected final ByteBuffer doWrapCoalesced(int numWraps) throws SSLException {
+        wrapDstBuffer.clear();
+
+        ByteBuffer[] srcs = new ByteBuffer[numWraps];
+        for (int i = 0; i < numWraps; ++i) {
+            srcs[i] = wrapSrcBuffer.duplicate();
+            srcs[i].position(0).limit(messageSize);
+        }
+        int remaining = numWraps * messageSize;
+        while (remaining > 0) {
+            SSLEngineResult wrapResult = clientEngine.wrap(srcs, wrapDstBuffer);
+            if (wrapResult.getStatus() != SSLEngineResult.Status.OK) {
+                throw new IllegalStateException("status: " + wrapResult.getStatus());
+            }
+            remaining -= wrapResult.bytesConsumed();
+        }
+        return wrapDstBuffer;
+    }
 }
@@ -35,4 +35,9 @@ public class SslEngineWrapBenchmark extends AbstractSslEngineThroughputBenchmark
     public ByteBuffer wrap() throws SSLException {
         return doWrap(numWraps);
     }
+
+    @Benchmark
+    public ByteBuffer wrapCoalesced() throws SSLException {
+        return doWrapCoalesced(numWraps);
+    }
 }
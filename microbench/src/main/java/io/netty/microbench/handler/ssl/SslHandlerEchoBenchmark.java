@@ -17,12 +17,25 @@ package io.netty.microbench.handler.ssl;
 
 import io.netty.buffer.ByteBuf;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.concurrent.TimeUnit;
 
 public class SslHandlerEchoBenchmark extends AbstractSslHandlerThroughputBenchmark {
     @Param({ "1", "2", "5", "10" })
     public int numWrites;
 
+    // 0 disables dynamic record sizing, otherwise all records are kept at this size for the whole iteration.
+    @Param({ "0", "1400" })
+    public int dynamicRecordSize;
+
+    @Setup(Level.Iteration)
+    public void setupRecordSizing() {
+        clientSslHandler.setDynamicRecordSizing(dynamicRecordSize, Long.MAX_VALUE, 1, TimeUnit.HOURS);
+    }
+
     @Benchmark
     public ByteBuf wrapUnwrap() throws Exception {
         ByteBuf src = doWrite(numWrites);
@@ -17,6 +17,7 @@ package io.netty.microbench.internal;
 
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import io.netty.util.internal.RecyclableArrayList;
+import io.netty.util.internal.SystemPropertyUtil;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Param;
@@ -24,6 +25,8 @@ import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Threads;
 
+import java.util.Arrays;
+
 /**
  * This class benchmarks different allocators with different allocation sizes.
  */
@@ -35,6 +38,17 @@ public class RecyclableArrayListBenchmark extends AbstractMicrobenchmark {
     @Param({ "00000", "00256", "01024", "04096", "16384", "65536" })
     public int size;
 
+    @Override
+    protected String[] jvmArgs() {
+        // Pass the Recycler implementation on to the forked JVM, so both can be compared by running with
+        // -Dio.netty.recycler.useMpscQueue=true and without.
+        String[] jvmArgs = super.jvmArgs();
+        String[] args = Arrays.copyOf(jvmArgs, jvmArgs.length + 1);
+        args[jvmArgs.length] = "-Dio.netty.recycler.useMpscQueue=" +
+                SystemPropertyUtil.getBoolean("io.netty.recycler.useMpscQueue", false);
+        return args;
+    }
+
     @Benchmark
     public void recycleSameThread() {
         RecyclableArrayList list = RecyclableArrayList.newInstance(size);
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.channel.nio.NioHandler;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.NetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.net.InetAddress;
+
+/**
+ * Measures the cost of caching hostnames and the pressure a full {@link DefaultDnsCache} puts on the
+ * {@link EventLoop} it uses for expiration. Before the caches used an {@link ExpirationWheel} every cached hostname
+ * was a task in the scheduled task queue of the {@link EventLoop}.
+ */
+@State(Scope.Benchmark)
+public class DnsCacheExpirationBenchmark extends AbstractMicrobenchmark {
+
+    private static final int TTL = 3600;
+    private static final Runnable NOOP = () -> { };
+
+    @Param({ "1000", "100000" })
+    public int size;
+
+    private EventLoopGroup group;
+    private EventLoop loop;
+    private DefaultDnsCache cache;
+    private String[] hostnames;
+    private InetAddress address;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        group = new MultithreadEventLoopGroup(1, NioHandler.newFactory());
+        loop = group.next();
+        cache = new DefaultDnsCache();
+        address = NetUtil.LOCALHOST4;
+        hostnames = new String[size];
+        for (int i = 0; i < size; i++) {
+            hostnames[i] = "host" + i + ".netty.io.";
+            cache.cache(hostnames[i], null, address, TTL, loop);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        cache.clear();
+        group.shutdownGracefully();
+    }
+
+    /**
+     * Removes and caches a hostname again, which registers a new expiration each time.
+     */
+    @Benchmark
+    public Object recache() {
+        String hostname = hostnames[index];
+        index = index + 1 == hostnames.length ? 0 : index + 1;
+        cache.clear(hostname);
+        return cache.cache(hostname, null, address, TTL, loop);
+    }
+
+    /**
+     * Runs a task on the {@link EventLoop} while the cache is full, which is slowed down by a large scheduled task
+     * queue.
+     */
+    @Benchmark
+    public Object eventLoopRoundTrip() {
+        return loop.submit(NOOP).syncUninterruptibly();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.channel.nio.NioHandler;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.handler.codec.dns.DefaultDnsQuestion;
+import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.NetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures allocating, looking up and releasing query IDs from many threads, either all through one shared
+ * {@link DnsNameResolver} or through one resolver per thread.
+ */
+@Threads(4)
+@State(Scope.Benchmark)
+public class DnsQueryContextManagerBenchmark extends AbstractMicrobenchmark {
+
+    private static final InetSocketAddress NAME_SERVER = new InetSocketAddress(NetUtil.LOCALHOST4, 53);
+    private static final int MAX_THREADS = 64;
+
+    @Param({ "true", "false" })
+    public boolean sharedResolver;
+
+    // Number of queries each thread keeps in flight, so lookups do not only hit a nearly empty ID space.
+    @Param({ "1", "128" })
+    public int inflight;
+
+    private EventLoopGroup group;
+    private DnsNameResolver[] resolvers;
+    private final AtomicInteger threadIndex = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        group = new MultithreadEventLoopGroup(1, NioHandler.newFactory());
+        resolvers = new DnsNameResolver[sharedResolver ? 1 : MAX_THREADS];
+        for (int i = 0; i < resolvers.length; i++) {
+            resolvers[i] = new DnsNameResolverBuilder(group.next())
+                    .channelType(NioDatagramChannel.class)
+                    .nameServerProvider(new SingletonDnsServerAddressStreamProvider(NAME_SERVER))
+                    .build();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        for (DnsNameResolver resolver: resolvers) {
+            resolver.close();
+        }
+        group.shutdownGracefully();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        DnsQueryContextManager manager;
+        DnsQueryContext qCtx;
+        int[] ids;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setup(DnsQueryContextManagerBenchmark benchmark) {
+            DnsNameResolver[] resolvers = benchmark.resolvers;
+            DnsNameResolver resolver = resolvers[benchmark.threadIndex.getAndIncrement() % resolvers.length];
+            manager = resolver.queryContextManager;
+            // The context registers itself, release its ID again so it can be reused for all the adds below.
+            qCtx = new DnsQueryContext(resolver, NAME_SERVER, new DefaultDnsQuestion("netty.io.", DnsRecordType.A),
+                    new DnsRecord[0], resolver.executor().newPromise());
+            manager.remove(NAME_SERVER, qCtx.id());
+            ids = new int[benchmark.inflight];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = manager.add(qCtx);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            for (int id: ids) {
+                manager.remove(NAME_SERVER, id);
+            }
+        }
+    }
+
+    @Benchmark
+    public DnsQueryContext addGetRemove(ThreadState state) {
+        // Replace the oldest in-flight query, like a response completing it while a new query is sent.
+        int slot = state.next;
+        state.next = slot + 1 == state.ids.length ? 0 : slot + 1;
+        DnsQueryContextManager manager = state.manager;
+        manager.remove(NAME_SERVER, state.ids[slot]);
+        int id = manager.add(state.qCtx);
+        state.ids[slot] = id;
+        return manager.get(NAME_SERVER, id);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the bucket based and the compact storage of {@link DefaultAttributeMap}. The {@code gc.alloc.rate.norm}
+ * of {@link #newMap()} is the memory footprint of a map with {@link #attributes} attributes, plus the intermediate
+ * copies of the array in compact mode which are garbage once the map is built.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+public class DefaultAttributeMapBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "false", "true" })
+    public boolean compact;
+
+    @Param({ "1", "4", "16" })
+    public int attributes;
+
+    private AttributeKey<Integer>[] keys;
+    private DefaultAttributeMap map;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setup() {
+        keys = new AttributeKey[attributes];
+        for (int i = 0; i < attributes; i++) {
+            keys[i] = AttributeKey.valueOf(DefaultAttributeMapBenchmark.class, "key" + i);
+        }
+        map = newMap();
+    }
+
+    @Override
+    protected ChainedOptionsBuilder newOptionsBuilder() throws Exception {
+        return super.newOptionsBuilder().addProfiler(GCProfiler.class);
+    }
+
+    @Benchmark
+    public DefaultAttributeMap newMap() {
+        DefaultAttributeMap map = new DefaultAttributeMap(compact);
+        for (int i = 0; i < keys.length; i++) {
+            map.attr(keys[i]).set(i);
+        }
+        return map;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Integer getAttribute() {
+        return map.attr(keys[keys.length - 1]).get();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean hasAttribute() {
+        return map.hasAttr(keys[0]);
+    }
+}
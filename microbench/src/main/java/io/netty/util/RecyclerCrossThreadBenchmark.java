@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.internal.PlatformDependent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link Recycler} implementations when objects are recycled by another thread than the one which got
+ * them, as it happens when buffers allocated on an event loop are released by another thread pool.
+ */
+@State(Scope.Group)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+public class RecyclerCrossThreadBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "false", "true" })
+    public boolean useMpscQueue;
+
+    private Recycler<DummyObject> recycler;
+    private Queue<DummyObject> queue;
+
+    @Setup
+    public void setup() {
+        recycler = new Recycler<DummyObject>(4096, 2, 8, NettyRuntime.availableProcessors() * 2, useMpscQueue) {
+            @Override
+            protected DummyObject newObject(Handle<DummyObject> handle) {
+                return new DummyObject(handle);
+            }
+        };
+        queue = PlatformDependent.newFixedMpscQueue(1024);
+    }
+
+    @TearDown
+    public void teardown() {
+        queue.clear();
+    }
+
+    @Benchmark
+    @Group("crossThread")
+    @GroupThreads(1)
+    public DummyObject allocate() {
+        DummyObject object = recycler.get();
+        if (!queue.offer(object)) {
+            // The recycling thread falls behind, recycle here so the number of objects stays bounded.
+            object.recycle();
+        }
+        return object;
+    }
+
+    @Benchmark
+    @Group("crossThread")
+    @GroupThreads(1)
+    public DummyObject recycle() {
+        DummyObject object = queue.poll();
+        if (object != null) {
+            object.recycle();
+        }
+        return object;
+    }
+
+    static final class DummyObject {
+        private final Recycler.Handle<DummyObject> handle;
+
+        DummyObject(Recycler.Handle<DummyObject> handle) {
+            this.handle = handle;
+        }
+
+        void recycle() {
+            handle.recycle(this);
+        }
+    }
+}
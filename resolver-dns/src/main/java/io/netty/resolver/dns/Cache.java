@@ -19,74 +19,97 @@ import io.netty.channel.EventLoop;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Delayed;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import static java.util.Collections.singletonList;
 
 /**
  * Abstract cache that automatically removes entries for a hostname once the TTL for an entry is reached.
+ * <p>
+ * Optionally the cache can
+ * <ul>
+ *     <li>hold at most a maximum number of hostnames, evicting the least recently or least frequently used ones
+ *     once this number is exceeded,</li>
+ *     <li>keep expired entries around as stale for a while so they can still be served if the name servers cannot
+ *     be reached (<a href="https://tools.ietf.org/html/rfc8767">RFC 8767</a>),</li>
+ *     <li>signal that frequently used entries are about to expire so they can be refreshed ahead of time.</li>
+ * </ul>
  *
  * @param <E>
  */
 abstract class Cache<E> {
-    private static final AtomicReferenceFieldUpdater<Cache.Entries, ScheduledFuture> FUTURE_UPDATER =
-            AtomicReferenceFieldUpdater.newUpdater(Cache.Entries.class, ScheduledFuture.class, "expirationFuture");
-
-    private static final ScheduledFuture<?> CANCELLED = new ScheduledFuture<Object>() {
-
-        @Override
-        public boolean cancel(boolean mayInterruptIfRunning) {
-            return false;
-        }
-
-        @Override
-        public long getDelay(TimeUnit unit) {
-            // We ignore unit and always return the minimum value to ensure the TTL of the cancelled marker is
-            // the smallest.
-            return Long.MIN_VALUE;
-        }
-
-        @Override
-        public int compareTo(Delayed o) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public boolean isCancelled() {
-            return true;
-        }
-
-        @Override
-        public boolean isDone() {
-            return true;
-        }
-
-        @Override
-        public Object get() {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public Object get(long timeout, TimeUnit unit) {
-            throw new UnsupportedOperationException();
-        }
-    };
+    private static final AtomicLongFieldUpdater<Cache.Entries> EXPIRATION_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(Cache.Entries.class, "expirationNanos");
+    private static final AtomicIntegerFieldUpdater<Cache.Entries> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(Cache.Entries.class, "state");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Cache> EVICTING_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(Cache.class, "evicting");
+
+    // The entries are up to date.
+    private static final int FRESH = 0;
+    // needsPrefetch(...) returned true, the next added entry replaces all current entries.
+    private static final int REFRESHING = 1;
+    // The TTL was reached but the entries may still be served as stale, the next added entry replaces them.
+    private static final int STALE = 2;
+
+    // Entries are refreshed ahead of time once less than this percentage of their TTL is left.
+    static final int PREFETCH_THRESHOLD_PERCENT = 10;
+
+    // Marker values for Entries.expirationNanos
+    private static final long NOT_SCHEDULED = Long.MAX_VALUE;
+    private static final long CLEARED = Long.MIN_VALUE;
 
     // Two years are supported by all our EventLoop implementations and so safe to use as maximum.
     // See also: https://github.com/netty/netty/commit/b47fb817991b42ec8808c7d26538f3f2464e1fa6
     static final int MAX_SUPPORTED_TTL_SECS = (int) TimeUnit.DAYS.toSeconds(365 * 2);
 
     private final ConcurrentMap<String, Entries> resolveCache = new ConcurrentHashMap<>();
+    private final ExpirationWheel expirationWheel = new ExpirationWheel();
+    private final int maxSize;
+    private final Comparator<? super EvictionCandidate> evictionOrder;
+    private final boolean lfu;
+    private final int staleTtl;
+    private final int prefetchHits;
+    private final boolean trackUsage;
+    // Needs to be package-private to be able to access it via the AtomicIntegerFieldUpdater
+    volatile int evicting;
+
+    /**
+     * Creates an unbounded cache which neither serves stale entries nor prefetches.
+     */
+    Cache() {
+        this(0, DnsCacheEvictionPolicy.LRU, 0, 0);
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxSize the maximum number of hostnames to cache or {@code 0} for no limit
+     * @param evictionPolicy how to pick the hostnames that are evicted once {@code maxSize} is exceeded
+     * @param staleTtl the number of seconds to keep positive entries as stale after their TTL was reached or
+     *                 {@code 0} to remove them right away
+     * @param prefetchHits the number of hits after which an entry is considered for refreshing before its TTL is
+     *                     reached or {@code 0} to disable refreshing ahead of time
+     */
+    Cache(int maxSize, DnsCacheEvictionPolicy evictionPolicy, int staleTtl, int prefetchHits) {
+        this.maxSize = maxSize;
+        lfu = evictionPolicy == DnsCacheEvictionPolicy.LFU;
+        evictionOrder = lfu ? LFU_ORDER : LRU_ORDER;
+        this.staleTtl = staleTtl;
+        this.prefetchHits = prefetchHits;
+        trackUsage = maxSize > 0 || prefetchHits > 0;
+    }
 
     /**
      * Remove everything from the cache.
@@ -115,7 +138,43 @@ abstract class Cache<E> {
      */
     final List<? extends E> get(String hostname) {
         Entries entries = resolveCache.get(hostname);
-        return entries == null ? null : entries.get();
+        if (entries == null || entries.expireIfDue() || entries.state == STALE) {
+            return null;
+        }
+        if (trackUsage) {
+            entries.recordAccess();
+        }
+        return entries.get();
+    }
+
+    /**
+     * Returns the entries for the given hostname whose TTL was reached but which are still kept as stale, or
+     * {@code null} if there are none.
+     */
+    final List<? extends E> getStale(String hostname) {
+        Entries entries = resolveCache.get(hostname);
+        if (entries == null) {
+            return null;
+        }
+        entries.expireIfDue();
+        if (entries.state != STALE) {
+            return null;
+        }
+        List<E> stale = entries.get();
+        return stale.isEmpty() ? null : stale;
+    }
+
+    /**
+     * Returns {@code true} if the entries for the given hostname were used often enough and are about to expire,
+     * in which case the caller is expected to resolve the hostname again and cache the results. Only one caller
+     * gets {@code true} until new entries were added for the hostname.
+     */
+    final boolean needsPrefetch(String hostname) {
+        if (prefetchHits == 0) {
+            return false;
+        }
+        Entries entries = resolveCache.get(hostname);
+        return entries != null && entries.needsPrefetch(prefetchHits);
     }
 
     /**
@@ -128,13 +187,61 @@ abstract class Cache<E> {
             Entries oldEntries = resolveCache.putIfAbsent(hostname, entries);
             if (oldEntries != null) {
                 entries = oldEntries;
+            } else if (maxSize > 0 && resolveCache.size() > maxSize) {
+                evict(entries);
             }
         }
         entries.add(value, ttl, loop);
     }
 
     /**
-     * Return the number of hostames for which we have cached something.
+     * Evicts hostnames until the size is below the maximum again. To not pay for a full scan on every insert
+     * a batch of {@code 1/16} of the maximum size is evicted at once. Only one thread evicts at a time, others
+     * may temporarily exceed the maximum size instead of waiting.
+     */
+    private void evict(Entries added) {
+        if (!EVICTING_UPDATER.compareAndSet(this, 0, 1)) {
+            return;
+        }
+        try {
+            int toEvict = resolveCache.size() - maxSize;
+            if (toEvict <= 0) {
+                return;
+            }
+            toEvict += maxSize >>> 4;
+
+            // The usage statistics change concurrently, so sort a snapshot of them as sorting must see consistent
+            // keys.
+            long nowNanos = System.nanoTime();
+            List<EvictionCandidate> candidates = new ArrayList<>(resolveCache.size());
+            for (Entries entries: resolveCache.values()) {
+                // Never evict the hostname that triggered the eviction, it did not have a chance to be used yet.
+                if (entries != added) {
+                    candidates.add(new EvictionCandidate(entries, nowNanos));
+                }
+            }
+            candidates.sort(evictionOrder);
+
+            toEvict = Math.min(toEvict, candidates.size());
+            for (int i = 0; i < toEvict; i++) {
+                Entries entries = candidates.get(i).entries;
+                if (resolveCache.remove(entries.hostname, entries)) {
+                    entries.clearAndCancel();
+                }
+            }
+            if (lfu) {
+                // Age the counters so hostnames that were popular in the past do not stay forever.
+                for (int i = toEvict; i < candidates.size(); i++) {
+                    candidates.get(i).entries.hits >>>= 1;
+                }
+            }
+        } finally {
+            evicting = 0;
+        }
+    }
+
+    /**
+     * Return the number of hostames for which we have cached something, including stale entries.
      */
     final int size() {
         return resolveCache.size();
@@ -158,21 +265,87 @@ abstract class Cache<E> {
      */
     protected abstract boolean equals(E entry, E otherEntry);
 
+    // Longest idle first.
+    private static final Comparator<Cache<?>.EvictionCandidate> LRU_ORDER =
+            (c1, c2) -> Long.compare(c2.idleNanos, c1.idleNanos);
+
+    private static final Comparator<Cache<?>.EvictionCandidate> LFU_ORDER = (c1, c2) -> {
+        int result = Integer.compare(c1.hits, c2.hits);
+        return result != 0 ? result : LRU_ORDER.compare(c1, c2);
+    };
+
+    /**
+     * The usage statistics of {@link Entries} at the time the eviction started.
+     */
+    private final class EvictionCandidate {
+        final Entries entries;
+        final long idleNanos;
+        final int hits;
+
+        EvictionCandidate(Entries entries, long nowNanos) {
+            this.entries = entries;
+            // Relative to now, as System.nanoTime() values may only be compared by their difference.
+            idleNanos = nowNanos - entries.lastAccessNanos;
+            hits = entries.hits;
+        }
+    }
+
     // Directly extend AtomicReference for intrinsics and also to keep memory overhead low.
-    private final class Entries extends AtomicReference<List<E>> implements Runnable {
+    private final class Entries extends AtomicReference<List<E>> implements ExpirationWheel.Expirable {
 
         private final String hostname;
-        // Needs to be package-private to be able to access it via the AtomicReferenceFieldUpdater
-        volatile ScheduledFuture<?> expirationFuture;
+        // Needs to be package-private to be able to access it via the AtomicLongFieldUpdater
+        volatile long expirationNanos = NOT_SCHEDULED;
+        // Needs to be package-private to be able to access it via the AtomicIntegerFieldUpdater
+        volatile int state;
+        // The TTL and EventLoop of the last scheduled expiration, used for prefetching and serving stale entries.
+        private volatile int ttl;
+        private volatile EventLoop loop;
+        // Usage statistics for eviction and prefetching. Updates may race, which is fine as these are only hints.
+        volatile long lastAccessNanos = System.nanoTime();
+        volatile int hits;
 
         Entries(String hostname) {
             super(Collections.emptyList());
             this.hostname = hostname;
         }
 
+        void recordAccess() {
+            lastAccessNanos = System.nanoTime();
+            int hits = this.hits;
+            if (hits != Integer.MAX_VALUE) {
+                this.hits = hits + 1;
+            }
+        }
+
+        boolean needsPrefetch(int minHits) {
+            if (state != FRESH || hits < minHits) {
+                return false;
+            }
+            List<E> entries = get();
+            if (entries.isEmpty() || shouldReplaceAll(entries.get(0))) {
+                // Never prefetch failures.
+                return false;
+            }
+            long deadline = expirationNanos;
+            if (deadline == NOT_SCHEDULED || deadline == CLEARED) {
+                return false;
+            }
+            long thresholdNanos = TimeUnit.SECONDS.toNanos(ttl) * PREFETCH_THRESHOLD_PERCENT / 100;
+            return deadline - System.nanoTime() <= thresholdNanos &&
+                    STATE_UPDATER.compareAndSet(this, FRESH, REFRESHING);
+        }
+
         void add(E e, int ttl, EventLoop loop) {
+            if (replaceIfNotFresh(e, ttl, loop)) {
+                return;
+            }
             if (!shouldReplaceAll(e)) {
                 for (;;) {
+                    // Checked again after a failed CAS, as the entries may have gone stale in the meantime.
+                    if (replaceIfNotFresh(e, ttl, loop)) {
+                        return;
+                    }
                     List<E> entries = get();
                     if (!entries.isEmpty()) {
                         final E firstEntry = entries.get(0);
@@ -180,7 +353,7 @@ abstract class Cache<E> {
                             assert entries.size() == 1;
 
                             if (compareAndSet(entries, singletonList(e))) {
-                                scheduleCacheExpirationIfNeeded(ttl, loop);
+                                scheduleCacheExpiration(ttl, loop, false);
                                 return;
                             } else {
                                 // Need to try again as CAS failed
@@ -216,44 +389,50 @@ abstract class Cache<E> {
                         sortEntries(hostname, newEntries);
 
                         if (compareAndSet(entries, Collections.unmodifiableList(newEntries))) {
-                            scheduleCacheExpirationIfNeeded(ttl, loop);
+                            scheduleCacheExpiration(ttl, loop, false);
                             return;
                         }
                     } else if (compareAndSet(entries, singletonList(e))) {
-                        scheduleCacheExpirationIfNeeded(ttl, loop);
+                        scheduleCacheExpiration(ttl, loop, false);
                         return;
                     }
                 }
             } else {
                 set(singletonList(e));
-                scheduleCacheExpirationIfNeeded(ttl, loop);
+                scheduleCacheExpiration(ttl, loop, false);
             }
         }
 
-        private void scheduleCacheExpirationIfNeeded(int ttl, EventLoop loop) {
+        private boolean replaceIfNotFresh(E e, int ttl, EventLoop loop) {
+            int state = this.state;
+            if (state != FRESH && STATE_UPDATER.compareAndSet(this, state, FRESH)) {
+                // These are the first results after a prefetch or after the entries went stale, replace everything
+                // that is cached and expire based on the new TTL, even if the old entries would expire earlier.
+                set(singletonList(e));
+                hits = 0;
+                scheduleCacheExpiration(ttl, loop, true);
+                return true;
+            }
+            return false;
+        }
+
+        private void scheduleCacheExpiration(int ttl, EventLoop loop, boolean force) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(ttl);
             for (;;) {
-                // We currently don't calculate a new TTL when we need to retry the CAS as we don't expect this to
-                // be invoked very concurrently and also we use SECONDS anyway. If this ever becomes a problem
-                // we can reconsider.
-                ScheduledFuture<?> oldFuture = FUTURE_UPDATER.get(this);
-                if (oldFuture == null || oldFuture.getDelay(TimeUnit.SECONDS) > ttl) {
-                    ScheduledFuture<?> newFuture = loop.schedule(this, ttl, TimeUnit.SECONDS);
-                    // It is possible that
-                    // 1. task will fire in between this line, or
-                    // 2. multiple timers may be set if there is concurrency
-                    // (1) Shouldn't be a problem because we will fail the CAS and then the next loop will see CANCELLED
-                    //     so the ttl will not be less, and we will bail out of the loop.
-                    // (2) This is a trade-off to avoid concurrency resulting in contention on a synchronized block.
-                    if (FUTURE_UPDATER.compareAndSet(this, oldFuture, newFuture)) {
-                        if (oldFuture != null) {
-                            oldFuture.cancel(true);
-                        }
-                        break;
-                    } else {
-                        // There was something else scheduled in the meantime... Cancel and try again.
-                        newFuture.cancel(true);
-                    }
-                } else {
+                long oldDeadline = expirationNanos;
+                if (oldDeadline == CLEARED) {
+                    // The entries were removed from the cache already.
+                    break;
+                }
+                if (!force && oldDeadline != NOT_SCHEDULED && oldDeadline - deadline <= 0) {
+                    // Expires earlier already.
+                    break;
+                }
+                this.ttl = ttl;
+                this.loop = loop;
+                if (EXPIRATION_UPDATER.compareAndSet(this, oldDeadline, deadline)) {
+                    // The registration for the old deadline, if any, is dropped by the wheel once it sees it.
+                    expirationWheel.register(this, deadline, loop);
                     break;
                 }
             }
@@ -265,16 +444,30 @@ abstract class Cache<E> {
                 return false;
             }
 
-            ScheduledFuture<?> expirationFuture = FUTURE_UPDATER.getAndSet(this, CANCELLED);
-            if (expirationFuture != null) {
-                expirationFuture.cancel(false);
-            }
-
+            expirationNanos = CLEARED;
             return true;
         }
 
         @Override
-        public void run() {
+        public long expirationNanos() {
+            return expirationNanos;
+        }
+
+        /**
+         * Expires the entries if their deadline was reached, which may not have been noticed by the
+         * {@link ExpirationWheel} yet, and returns {@code true} if they were removed.
+         */
+        boolean expireIfDue() {
+            long deadline = expirationNanos;
+            if (deadline == NOT_SCHEDULED || deadline == CLEARED || deadline - System.nanoTime() > 0) {
+                return false;
+            }
+            expire(deadline);
+            return expirationNanos == CLEARED;
+        }
+
+        @Override
+        public void expire(long deadline) {
             // We always remove all entries for a hostname once one entry expire. This is not the
             // most efficient to do but this way we can guarantee that if a DnsResolver
             // be configured to prefer one ip family over the other we will not return unexpected
@@ -284,9 +477,53 @@ abstract class Cache<E> {
             // completely fine to remove the entry even if the TTL is not reached yet.
             //
             // See https://github.com/netty/netty/issues/7329
-            resolveCache.remove(hostname, this);
+            if (staleTtl > 0 && goStale(deadline)) {
+                return;
+            }
+            // Only one of the ExpirationWheel and a concurrent lookup may remove the entries.
+            if (EXPIRATION_UPDATER.compareAndSet(this, deadline, CLEARED)) {
+                resolveCache.remove(hostname, this);
+                set(Collections.emptyList());
+            }
+        }
 
-            clearAndCancel();
+        /**
+         * Marks positive entries as stale and registers their final removal once the stale TTL is reached.
+         */
+        private boolean goStale(long deadline) {
+            if (state == STALE) {
+                return false;
+            }
+            List<E> entries = get();
+            if (entries.isEmpty() || shouldReplaceAll(entries.get(0))) {
+                return false;
+            }
+            long staleDeadline = deadline + TimeUnit.SECONDS.toNanos(staleTtl);
+            if (!EXPIRATION_UPDATER.compareAndSet(this, deadline, staleDeadline)) {
+                // New entries were added, the entries were cleared or somebody else expired them concurrently.
+                return true;
+            }
+            // Mark the entries stale before checking that they are still the ones which reached the deadline, so a
+            // concurrent add() either sees the state and replaces them, or changes them and is noticed below.
+            for (;;) {
+                int state = this.state;
+                if (state == STALE || STATE_UPDATER.compareAndSet(this, state, STALE)) {
+                    break;
+                }
+            }
+            // Swap in a new list with the same entries, so a concurrent add() which did not see the state yet fails
+            // its CAS and sees it on retry. If this fails instead, entries were added since they were read above.
+            // The entries must be copied, as wrapping an unmodifiable list again may return the same instance.
+            if (!compareAndSet(entries, Collections.unmodifiableList(new ArrayList<>(entries)))) {
+                // The entries just added are not stale, so keep all of them for another TTL instead. If the state
+                // changed again, add() replaced the stale entries and scheduled their expiration already.
+                if (STATE_UPDATER.compareAndSet(this, STALE, FRESH)) {
+                    scheduleCacheExpiration(ttl, loop, true);
+                }
+                return true;
+            }
+            expirationWheel.register(this, staleDeadline, loop);
+            return true;
         }
     }
 }
@@ -31,32 +31,24 @@ import static java.util.Objects.requireNonNull;
 /**
  * Default implementation of {@link DnsCache}, backed by a {@link ConcurrentMap}.
  * If any additional {@link DnsRecord} is used, no caching takes place.
+ * <p>
+ * By default the cache is unbounded and entries are removed once their TTL is reached. It can optionally be limited
+ * to a maximum number of hostnames, keep expired entries as stale to serve them while the name servers cannot be
+ * reached (<a href="https://tools.ietf.org/html/rfc8767">RFC 8767</a>) and ask the resolver to refresh popular
+ * entries shortly before they expire, so lookups of these hostnames never have to wait for a name server.
  */
 @UnstableApi
 public class DefaultDnsCache implements DnsCache {
 
-    private final Cache<DefaultDnsCacheEntry> resolveCache = new Cache<DefaultDnsCacheEntry>() {
-
-        @Override
-        protected boolean shouldReplaceAll(DefaultDnsCacheEntry entry) {
-            return entry.cause() != null;
-        }
-
-        @Override
-        protected boolean equals(DefaultDnsCacheEntry entry, DefaultDnsCacheEntry otherEntry) {
-            if (entry.address() != null) {
-                return entry.address().equals(otherEntry.address());
-            }
-            if (otherEntry.address() != null) {
-                return false;
-            }
-            return entry.cause().equals(otherEntry.cause());
-        }
-    };
+    private final Cache<DefaultDnsCacheEntry> resolveCache;
 
     private final int minTtl;
     private final int maxTtl;
     private final int negativeTtl;
+    private final int maxSize;
+    private final DnsCacheEvictionPolicy evictionPolicy;
+    private final int staleTtl;
+    private final int prefetchHits;
 
     /**
      * Create a cache that respects the TTL returned by the DNS server
@@ -73,6 +65,23 @@ public class DefaultDnsCache implements DnsCache {
      * @param negativeTtl the TTL for failed queries
      */
     public DefaultDnsCache(int minTtl, int maxTtl, int negativeTtl) {
+        this(minTtl, maxTtl, negativeTtl, 0, DnsCacheEvictionPolicy.LRU, 0, 0);
+    }
+
+    /**
+     * Create a cache.
+     * @param minTtl the minimum TTL
+     * @param maxTtl the maximum TTL
+     * @param negativeTtl the TTL for failed queries
+     * @param maxSize the maximum number of hostnames to cache or {@code 0} for no limit
+     * @param evictionPolicy how to pick the hostnames that are evicted once {@code maxSize} is exceeded
+     * @param staleTtl the number of seconds resolved addresses may still be served after their TTL was reached
+     *                 when the name servers cannot be reached, or {@code 0} to disable serving stale addresses
+     * @param prefetchHits the number of lookups after which resolved addresses are resolved again shortly before
+     *                     their TTL is reached, or {@code 0} to disable prefetching
+     */
+    public DefaultDnsCache(int minTtl, int maxTtl, int negativeTtl, int maxSize,
+                           DnsCacheEvictionPolicy evictionPolicy, int staleTtl, int prefetchHits) {
         this.minTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(minTtl, "minTtl"));
         this.maxTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(maxTtl, "maxTtl"));
         if (minTtl > maxTtl) {
@@ -80,6 +89,28 @@ public class DefaultDnsCache implements DnsCache {
                     "minTtl: " + minTtl + ", maxTtl: " + maxTtl + " (expected: 0 <= minTtl <= maxTtl)");
         }
         this.negativeTtl = checkPositiveOrZero(negativeTtl, "negativeTtl");
+        this.maxSize = checkPositiveOrZero(maxSize, "maxSize");
+        this.evictionPolicy = requireNonNull(evictionPolicy, "evictionPolicy");
+        this.staleTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(staleTtl, "staleTtl"));
+        this.prefetchHits = checkPositiveOrZero(prefetchHits, "prefetchHits");
+        resolveCache = new Cache<DefaultDnsCacheEntry>(this.maxSize, evictionPolicy, this.staleTtl, prefetchHits) {
+
+            @Override
+            protected boolean shouldReplaceAll(DefaultDnsCacheEntry entry) {
+                return entry.cause() != null;
+            }
+
+            @Override
+            protected boolean equals(DefaultDnsCacheEntry entry, DefaultDnsCacheEntry otherEntry) {
+                if (entry.address() != null) {
+                    return entry.address().equals(otherEntry.address());
+                }
+                if (otherEntry.address() != null) {
+                    return false;
+                }
+                return entry.cause().equals(otherEntry.cause());
+            }
+        };
     }
 
     /**
@@ -108,6 +139,37 @@ public class DefaultDnsCache implements DnsCache {
         return negativeTtl;
     }
 
+    /**
+     * Returns the maximum number of cached hostnames. The default value is {@code 0}, which means the number of
+     * hostnames is not limited.
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns how the hostnames to evict are picked once {@link #maxSize()} is exceeded.
+     */
+    public DnsCacheEvictionPolicy evictionPolicy() {
+        return evictionPolicy;
+    }
+
+    /**
+     * Returns for how long (in seconds) resolved addresses may be served after their TTL was reached if the name
+     * servers cannot be reached. The default value is {@code 0}, which disables serving stale addresses.
+     */
+    public int staleTtl() {
+        return staleTtl;
+    }
+
+    /**
+     * Returns the number of lookups after which resolved addresses are resolved again shortly before their TTL is
+     * reached. The default value is {@code 0}, which disables prefetching.
+     */
+    public int prefetchHits() {
+        return prefetchHits;
+    }
+
     @Override
     public void clear() {
         resolveCache.clear();
@@ -133,6 +195,22 @@ public class DefaultDnsCache implements DnsCache {
         return resolveCache.get(appendDot(hostname));
     }
 
+    @Override
+    public List<? extends DnsCacheEntry> getStale(String hostname, DnsRecord[] additionals) {
+        requireNonNull(hostname, "hostname");
+        if (!emptyAdditionals(additionals)) {
+            return null;
+        }
+
+        return resolveCache.getStale(appendDot(hostname));
+    }
+
+    @Override
+    public boolean needsPrefetch(String hostname, DnsRecord[] additionals) {
+        requireNonNull(hostname, "hostname");
+        return emptyAdditionals(additionals) && resolveCache.needsPrefetch(appendDot(hostname));
+    }
+
     @Override
     public DnsCacheEntry cache(String hostname, DnsRecord[] additionals,
                                InetAddress address, long originalTtl, EventLoop loop) {
@@ -168,7 +246,11 @@ public class DefaultDnsCache implements DnsCache {
                 .append("DefaultDnsCache(minTtl=")
                 .append(minTtl).append(", maxTtl=")
                 .append(maxTtl).append(", negativeTtl=")
-                .append(negativeTtl).append(", cached resolved hostname=")
+                .append(negativeTtl).append(", maxSize=")
+                .append(maxSize).append(", evictionPolicy=")
+                .append(evictionPolicy).append(", staleTtl=")
+                .append(staleTtl).append(", prefetchHits=")
+                .append(prefetchHits).append(", cached resolved hostname=")
                 .append(resolveCache.size()).append(')')
                 .toString();
     }
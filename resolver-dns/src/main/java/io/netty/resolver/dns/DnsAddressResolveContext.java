@@ -90,6 +90,12 @@ final class DnsAddressResolveContext extends DnsResolveContext<InetAddress> {
         resolveCache.cache(hostname, additionals, cause, parent.ch.eventLoop());
     }
 
+    @Override
+    boolean serveStale(Promise<List<InetAddress>> promise) {
+        return DnsNameResolver.doResolveAllCached(resolveCache.getStale(hostname, additionals), promise,
+                parent.resolvedInternetProtocolFamiliesUnsafe());
+    }
+
     @Override
     void doSearchDomainQuery(String hostname, Promise<List<InetAddress>> nextPromise) {
         // Query the cache for the hostname first and only do a query if we could not find it in the cache.
@@ -51,6 +51,31 @@ public interface DnsCache {
      */
     List<? extends DnsCacheEntry> get(String hostname, DnsRecord[] additionals);
 
+    /**
+     * Return the entries for the given hostname that already expired but may still be served because the name
+     * servers could not be reached, as described in <a href="https://tools.ietf.org/html/rfc8767">RFC 8767</a>.
+     * The default implementation never keeps stale entries.
+     * @param hostname the hostname
+     * @param additionals the additional records
+     * @return the stale entries or {@code null} if there are none
+     */
+    default List<? extends DnsCacheEntry> getStale(String hostname, DnsRecord[] additionals) {
+        return null;
+    }
+
+    /**
+     * Returns {@code true} if the entries for the given hostname should be resolved again before they expire.
+     * This is called after the entries were returned by {@link #get(String, DnsRecord[])} and the caller that
+     * received {@code true} is expected to resolve the hostname and cache the results. The default implementation
+     * never prefetches.
+     * @param hostname the hostname
+     * @param additionals the additional records
+     * @return {@code true} if the hostname should be resolved again now
+     */
+    default boolean needsPrefetch(String hostname, DnsRecord[] additionals) {
+        return false;
+    }
+
     /**
      * Create a new {@link DnsCacheEntry} and cache a resolved address for a given hostname.
      * @param hostname the hostname
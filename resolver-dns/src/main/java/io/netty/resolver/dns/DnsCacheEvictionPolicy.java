@@ -0,0 +1,34 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Decides which hostnames are evicted from a {@link DefaultDnsCache} once its maximum size is exceeded.
+ */
+@UnstableApi
+public enum DnsCacheEvictionPolicy {
+    /**
+     * Evict the hostnames that were not looked up for the longest time.
+     */
+    LRU,
+    /**
+     * Evict the hostnames that were looked up the least often. Counts are halved on every eviction so hostnames
+     * that were popular a long time ago are evicted eventually.
+     */
+    LFU
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFactory;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.dns.DnsQuery;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.PromiseNotifier;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maintains one persistent connection per name server over which queries are sent, for transports which are not
+ * based on datagrams.
+ */
+abstract class DnsConnectionManager {
+
+    final DnsNameResolver parent;
+    private final Bootstrap bootstrap;
+    private final ConcurrentMap<InetSocketAddress, ChannelFuture> connections = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    DnsConnectionManager(DnsNameResolver parent, EventLoop eventLoop,
+                         ChannelFactory<? extends SocketChannel> channelFactory) {
+        this.parent = parent;
+        bootstrap = new Bootstrap()
+                .group(eventLoop)
+                .channelFactory(channelFactory)
+                .option(ChannelOption.TCP_NODELAY, true);
+    }
+
+    /**
+     * Initializes the {@link Channel} of a new connection to the given name server.
+     */
+    abstract void initChannel(Channel ch, InetSocketAddress nameServerAddr) throws Exception;
+
+    /**
+     * Writes and flushes the {@code query} on the given connection, which is established. Called from the
+     * {@link EventLoop} of the connection.
+     */
+    abstract ChannelFuture writeQuery(Channel channel, DnsQueryContext queryContext, DnsQuery query);
+
+    /**
+     * Writes and flushes the {@code query} on the connection to the given name server, opening the connection if
+     * needed. The returned {@link ChannelFuture} is notified once the query was written.
+     */
+    final ChannelFuture writeQuery(DnsQueryContext queryContext, InetSocketAddress nameServerAddr, DnsQuery query) {
+        ChannelFuture connectFuture = connection(nameServerAddr);
+        Channel channel = connectFuture.channel();
+        if (connectFuture.isDone() && channel.eventLoop().inEventLoop()) {
+            return writeQuery(connectFuture, queryContext, query);
+        }
+        // Listeners are notified on the EventLoop, which is where the in-flight queries are tracked. The connect
+        // future is notified before channelActive() is fired, so the write is deferred until handlers which write
+        // on activation, such as the HTTP/2 connection preface, did so.
+        ChannelPromise writePromise = channel.newPromise();
+        connectFuture.addListener((ChannelFutureListener) future -> channel.eventLoop().execute(() ->
+                writeQuery(future, queryContext, query).addListener(new PromiseNotifier<>(writePromise))));
+        return writePromise;
+    }
+
+    private ChannelFuture writeQuery(ChannelFuture connectFuture, DnsQueryContext queryContext, DnsQuery query) {
+        Channel channel = connectFuture.channel();
+        if (!connectFuture.isSuccess()) {
+            ReferenceCountUtil.release(query);
+            return channel.newFailedFuture(connectFuture.cause());
+        }
+        return writeQuery(channel, queryContext, query);
+    }
+
+    private ChannelFuture connection(InetSocketAddress nameServerAddr) {
+        ChannelFuture future = connections.get(nameServerAddr);
+        if (future != null && (!future.isDone() || future.channel().isActive())) {
+            return future;
+        }
+        if (future != null) {
+            connections.remove(nameServerAddr, future);
+        }
+        ChannelFuture newFuture = bootstrap.clone().handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                DnsConnectionManager.this.initChannel(ch, nameServerAddr);
+            }
+        }).connect(nameServerAddr);
+        ChannelFuture existing = connections.putIfAbsent(nameServerAddr, newFuture);
+        if (existing != null) {
+            // Lost the race against another query to the same name server.
+            newFuture.channel().close();
+            return existing;
+        }
+        newFuture.channel().closeFuture().addListener(f -> connections.remove(nameServerAddr, newFuture));
+        if (closed) {
+            // The resolver was closed concurrently, make sure the new connection does not leak.
+            newFuture.channel().close();
+        }
+        return newFuture;
+    }
+
+    /**
+     * Closes all connections.
+     */
+    final void close() {
+        closed = true;
+        for (ChannelFuture future: connections.values()) {
+            future.channel().close();
+        }
+        connections.clear();
+    }
+}
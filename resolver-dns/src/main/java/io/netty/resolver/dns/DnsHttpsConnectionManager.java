@@ -0,0 +1,278 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFactory;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandler;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.dns.DnsQuery;
+import io.netty.handler.codec.dns.DnsQueryEncoder;
+import io.netty.handler.codec.dns.DnsResponse;
+import io.netty.handler.codec.dns.DnsResponseDecoder;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpScheme;
+import io.netty.handler.codec.http2.DefaultHttp2DataFrame;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+import io.netty.handler.codec.http2.Http2MultiplexCodecBuilder;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.AsciiString;
+import io.netty.util.NetUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.PromiseNotifier;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * Sends queries over HTTPS, as defined in <a href="https://tools.ietf.org/html/rfc8484">RFC8484</a>. All queries to
+ * a name server are multiplexed over one HTTP/2 connection, each query is sent as a {@code POST} request on its own
+ * stream and completed by the response on that stream.
+ */
+final class DnsHttpsConnectionManager extends DnsConnectionManager {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(DnsHttpsConnectionManager.class);
+    private static final AsciiString DNS_MESSAGE = AsciiString.cached("application/dns-message");
+    private static final DnsQueryEncoder ENCODER = new DnsQueryEncoder();
+    private static final DnsResponseDecoder DECODER = new DnsResponseDecoder();
+    private static final ChannelHandler PUSH_REJECTOR = new PushRejector();
+
+    private final SslContext sslContext;
+    private final boolean endpointIdentification;
+    private final String path;
+
+    DnsHttpsConnectionManager(DnsNameResolver parent, EventLoop eventLoop,
+                              ChannelFactory<? extends SocketChannel> channelFactory,
+                              SslContext sslContext, boolean endpointIdentification, String path) {
+        super(parent, eventLoop, channelFactory);
+        this.sslContext = sslContext;
+        this.endpointIdentification = endpointIdentification;
+        this.path = path;
+    }
+
+    @Override
+    void initChannel(Channel ch, InetSocketAddress nameServerAddr) throws Exception {
+        ch.pipeline().addLast(
+                DnsTlsConnectionManager.newSslHandler(sslContext, ch.alloc(), nameServerAddr, endpointIdentification),
+                Http2MultiplexCodecBuilder.forClient(PUSH_REJECTOR).build());
+    }
+
+    @Override
+    ChannelFuture writeQuery(Channel channel, DnsQueryContext queryContext, DnsQuery query) {
+        ChannelPromise writePromise = channel.newPromise();
+        InetSocketAddress nameServerAddr = queryContext.nameServerAddr();
+        new Http2StreamChannelBootstrap(channel)
+                .handler(new DohStreamInitializer(queryContext, nameServerAddr))
+                .open()
+                .addListener((FutureListener<Http2StreamChannel>) future -> {
+                    if (future.isSuccess()) {
+                        future.getNow().writeAndFlush(query).addListener(new PromiseNotifier<>(writePromise));
+                    } else {
+                        ReferenceCountUtil.release(query);
+                        writePromise.setFailure(future.cause());
+                    }
+                });
+        return writePromise;
+    }
+
+    /**
+     * Sets up the pipeline of the stream of a single query.
+     */
+    private final class DohStreamInitializer extends ChannelInitializer<Http2StreamChannel> {
+        private final DnsQueryContext queryContext;
+        private final InetSocketAddress nameServerAddr;
+
+        DohStreamInitializer(DnsQueryContext queryContext, InetSocketAddress nameServerAddr) {
+            this.queryContext = queryContext;
+            this.nameServerAddr = nameServerAddr;
+        }
+
+        @Override
+        protected void initChannel(Http2StreamChannel ch) {
+            String authority = NetUtil.toSocketAddressString(nameServerAddr.getHostString(), nameServerAddr.getPort());
+            ch.pipeline().addLast(new DohFrameCodec(authority, path), ENCODER, DECODER,
+                                  new DohResponseHandler(queryContext, nameServerAddr));
+        }
+    }
+
+    /**
+     * Translates between the DNS messages of a query and the HTTP/2 frames of its stream.
+     */
+    private static final class DohFrameCodec extends ChannelDuplexHandler {
+        private final String authority;
+        private final String path;
+        private CompositeByteBuf body;
+        private boolean ok;
+
+        DohFrameCodec(String authority, String path) {
+            this.authority = authority;
+            this.path = path;
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            if (!(msg instanceof ByteBuf)) {
+                ctx.write(msg, promise);
+                return;
+            }
+            ByteBuf content = (ByteBuf) msg;
+            Http2Headers headers = new DefaultHttp2Headers()
+                    .method(HttpMethod.POST.asciiName())
+                    .scheme(HttpScheme.HTTPS.name())
+                    .authority(authority)
+                    .path(path);
+            headers.set(HttpHeaderNames.CONTENT_TYPE, DNS_MESSAGE);
+            headers.set(HttpHeaderNames.ACCEPT, DNS_MESSAGE);
+            headers.setInt(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+            // If writing the headers fails, writing the data fails as well.
+            ctx.write(new DefaultHttp2HeadersFrame(headers, false), ctx.voidPromise());
+            ctx.write(new DefaultHttp2DataFrame(content, true), promise);
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof Http2HeadersFrame) {
+                Http2HeadersFrame headersFrame = (Http2HeadersFrame) msg;
+                if (!ok) {
+                    CharSequence status = headersFrame.headers().status();
+                    if (!HttpResponseStatus.OK.codeAsText().contentEquals(status)) {
+                        throw new IOException("DNS over HTTPS server responded with status " + status);
+                    }
+                    ok = true;
+                }
+                if (headersFrame.isEndStream()) {
+                    fireBody(ctx);
+                }
+            } else if (msg instanceof Http2DataFrame) {
+                Http2DataFrame dataFrame = (Http2DataFrame) msg;
+                try {
+                    if (body == null) {
+                        body = ctx.alloc().compositeBuffer();
+                    }
+                    body.addComponent(true, dataFrame.content().retain());
+                    if (dataFrame.isEndStream()) {
+                        fireBody(ctx);
+                    }
+                } finally {
+                    dataFrame.release();
+                }
+            } else {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        private void fireBody(ChannelHandlerContext ctx) throws IOException {
+            ByteBuf body = this.body;
+            if (body == null) {
+                throw new IOException("DNS over HTTPS server responded without a body");
+            }
+            this.body = null;
+            ctx.fireChannelRead(body);
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) {
+            if (body != null) {
+                body.release();
+                body = null;
+            }
+        }
+    }
+
+    /**
+     * Completes the {@link DnsQueryContext} of a stream with the response received on it.
+     */
+    private static final class DohResponseHandler implements ChannelInboundHandler {
+        private final DnsQueryContext queryContext;
+        private final InetSocketAddress nameServerAddr;
+        private boolean received;
+
+        DohResponseHandler(DnsQueryContext queryContext, InetSocketAddress nameServerAddr) {
+            this.queryContext = queryContext;
+            this.nameServerAddr = nameServerAddr;
+        }
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            // Reset the stream if the query times out or is cancelled.
+            queryContext.promise().addListener(f -> ctx.channel().close());
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            DnsResponse response = (DnsResponse) msg;
+            try {
+                received = true;
+                if (logger.isDebugEnabled()) {
+                    logger.debug("{} RECEIVED: [{}: {}], {}", ctx.channel(), response.id(), nameServerAddr, response);
+                }
+                queryContext.finish(new DnsResponseEnvelope(
+                        response, nameServerAddr, (InetSocketAddress) ctx.channel().parent().localAddress()));
+            } finally {
+                ReferenceCountUtil.release(response);
+                ctx.close();
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            if (!received) {
+                queryContext.setFailure("HTTP/2 stream closed before a response was received",
+                                        new ClosedChannelException());
+            }
+            ctx.fireChannelInactive();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            received = true;
+            queryContext.setFailure("DNS over HTTPS query failed", cause);
+            ctx.close();
+        }
+    }
+
+    /**
+     * Closes streams which are pushed by the server, as they are of no use for DNS queries.
+     */
+    @ChannelHandler.Sharable
+    private static final class PushRejector implements ChannelHandler {
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            ctx.close();
+        }
+    }
+}
@@ -32,6 +32,7 @@ import io.netty.channel.EventLoop;
 import io.netty.channel.FixedRecvByteBufAllocator;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.InternetProtocolFamily;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.dns.DatagramDnsQueryEncoder;
 import io.netty.handler.codec.dns.DatagramDnsResponse;
 import io.netty.handler.codec.dns.DatagramDnsResponseDecoder;
@@ -71,6 +72,8 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static io.netty.resolver.dns.DefaultDnsServerAddressStreamProvider.DNS_PORT;
 import static io.netty.resolver.dns.UnixResolverDnsServerAddressStreamProvider.parseEtcResolverFirstNdots;
@@ -170,6 +173,19 @@ public class DnsNameResolver extends InetNameResolver {
      */
     final DnsQueryContextManager queryContextManager = new DnsQueryContextManager();
 
+    /**
+     * Manages the TCP connections to the name servers, or {@code null} if queries are only sent over UDP.
+     */
+    final DnsTcpConnectionManager tcpConnectionManager;
+    private final boolean tcpPreferred;
+    private final ChannelFactory<? extends SocketChannel> socketChannelFactory;
+
+    /**
+     * Manages the connections to the name servers which use a {@link DnsQueryTransport}, created on demand.
+     */
+    private final ConcurrentMap<DnsQueryTransport, DnsConnectionManager> transportConnectionManagers =
+            new ConcurrentHashMap<>();
+
     /**
      * Cache for {@link #doResolve(String, Promise)} and {@link #doResolveAll(String, Promise)}.
      */
@@ -325,7 +341,37 @@ public class DnsNameResolver extends InetNameResolver {
             String[] searchDomains,
             int ndots,
             boolean decodeIdn) {
+        this(eventLoop, channelFactory, null, false, resolveCache, cnameCache, authoritativeDnsServerCache,
+             dnsQueryLifecycleObserverFactory, queryTimeoutMillis, resolvedAddressTypes, recursionDesired,
+             maxQueriesPerResolve, traceEnabled, maxPayloadSize, optResourceEnabled, hostsFileEntriesResolver,
+             dnsServerAddressStreamProvider, searchDomains, ndots, decodeIdn);
+    }
+
+    DnsNameResolver(
+            EventLoop eventLoop,
+            ChannelFactory<? extends DatagramChannel> channelFactory,
+            ChannelFactory<? extends SocketChannel> socketChannelFactory,
+            boolean tcpPreferred,
+            final DnsCache resolveCache,
+            final DnsCnameCache cnameCache,
+            final AuthoritativeDnsServerCache authoritativeDnsServerCache,
+            DnsQueryLifecycleObserverFactory dnsQueryLifecycleObserverFactory,
+            long queryTimeoutMillis,
+            ResolvedAddressTypes resolvedAddressTypes,
+            boolean recursionDesired,
+            int maxQueriesPerResolve,
+            boolean traceEnabled,
+            int maxPayloadSize,
+            boolean optResourceEnabled,
+            HostsFileEntriesResolver hostsFileEntriesResolver,
+            DnsServerAddressStreamProvider dnsServerAddressStreamProvider,
+            String[] searchDomains,
+            int ndots,
+            boolean decodeIdn) {
         super(eventLoop);
+        if (tcpPreferred && socketChannelFactory == null) {
+            throw new IllegalArgumentException("socketChannelFactory is required if TCP is preferred");
+        }
         this.queryTimeoutMillis = checkPositive(queryTimeoutMillis, "queryTimeoutMillis");
         this.resolvedAddressTypes = resolvedAddressTypes != null ? resolvedAddressTypes : DEFAULT_RESOLVE_ADDRESS_TYPES;
         this.recursionDesired = recursionDesired;
@@ -406,7 +452,18 @@ public class DnsNameResolver extends InetNameResolver {
         ch = future.channel();
         ch.config().setRecvByteBufAllocator(new FixedRecvByteBufAllocator(maxPayloadSize));
 
+        tcpConnectionManager = socketChannelFactory != null ?
+                new DnsTcpConnectionManager(this, executor(), socketChannelFactory) : null;
+        this.tcpPreferred = tcpPreferred;
+        this.socketChannelFactory = socketChannelFactory;
+
         ch.closeFuture().addListener((ChannelFutureListener) future1 -> {
+            if (tcpConnectionManager != null) {
+                tcpConnectionManager.close();
+            }
+            for (DnsConnectionManager connectionManager: transportConnectionManagers.values()) {
+                connectionManager.close();
+            }
             resolveCache.clear();
             cnameCache.clear();
             authoritativeDnsServerCache.clear();
@@ -431,6 +488,41 @@ public class DnsNameResolver extends InetNameResolver {
         return new InetSocketAddress(server, DNS_PORT);
     }
 
+    /**
+     * Returns {@code true} if queries are sent over TCP in the first place instead of only after a truncated
+     * UDP response.
+     */
+    final boolean isTcpPreferred() {
+        return tcpPreferred;
+    }
+
+    /**
+     * Returns the {@link DnsQueryTransport} to use for the given name server, or {@code null} to use UDP or TCP.
+     */
+    final DnsQueryTransport queryTransport(InetSocketAddress nameServerAddr) {
+        return dnsServerAddressStreamProvider.queryTransport(nameServerAddr);
+    }
+
+    /**
+     * Returns the {@link DnsConnectionManager} which sends queries over the given {@link DnsQueryTransport}.
+     */
+    final DnsConnectionManager connectionManager(DnsQueryTransport transport) {
+        DnsConnectionManager connectionManager = transportConnectionManagers.get(transport);
+        if (connectionManager != null) {
+            return connectionManager;
+        }
+        if (socketChannelFactory == null) {
+            throw new IllegalStateException("socketChannelFactory is required to send queries over " + transport);
+        }
+        connectionManager = transportConnectionManagers.computeIfAbsent(
+                transport, t -> t.newConnectionManager(this, executor(), socketChannelFactory));
+        if (!ch.isOpen()) {
+            // The resolver was closed concurrently, make sure no connection leaks.
+            connectionManager.close();
+        }
+        return connectionManager;
+    }
+
     final DnsQueryLifecycleObserverFactory dnsQueryLifecycleObserverFactory() {
         return dnsQueryLifecycleObserverFactory;
     }
@@ -822,7 +914,9 @@ public class DnsNameResolver extends InetNameResolver {
             return;
         }
 
-        if (!doResolveCached(hostname, additionals, promise, resolveCache)) {
+        if (doResolveCached(hostname, additionals, promise, resolveCache)) {
+            prefetchIfNeeded(hostname, additionals, resolveCache);
+        } else {
             doResolveUncached(hostname, additionals, promise, resolveCache);
         }
     }
@@ -916,17 +1010,35 @@ public class DnsNameResolver extends InetNameResolver {
             return;
         }
 
-        if (!doResolveAllCached(hostname, additionals, promise, resolveCache, resolvedInternetProtocolFamilies)) {
+        if (doResolveAllCached(hostname, additionals, promise, resolveCache, resolvedInternetProtocolFamilies)) {
+            prefetchIfNeeded(hostname, additionals, resolveCache);
+        } else {
             doResolveAllUncached(hostname, additionals, promise, resolveCache);
         }
     }
 
+    /**
+     * Resolves the hostname again in the background if the cache asks for it, so the cached entries are refreshed
+     * before they expire and lookups of popular hostnames never have to wait for a name server.
+     */
+    private void prefetchIfNeeded(String hostname, DnsRecord[] additionals, DnsCache resolveCache) {
+        if (resolveCache.needsPrefetch(hostname, additionals)) {
+            // Nobody waits for the result, the resolution only needs to update the cache.
+            doResolveAllUncached(hostname, additionals, executor().newPromise(), resolveCache);
+        }
+    }
+
     static boolean doResolveAllCached(String hostname,
                                       DnsRecord[] additionals,
                                       Promise<List<InetAddress>> promise,
                                       DnsCache resolveCache,
                                       InternetProtocolFamily[] resolvedInternetProtocolFamilies) {
-        final List<? extends DnsCacheEntry> cachedEntries = resolveCache.get(hostname, additionals);
+        return doResolveAllCached(resolveCache.get(hostname, additionals), promise, resolvedInternetProtocolFamilies);
+    }
+
+    static boolean doResolveAllCached(List<? extends DnsCacheEntry> cachedEntries,
+                                      Promise<List<InetAddress>> promise,
+                                      InternetProtocolFamily[] resolvedInternetProtocolFamilies) {
         if (cachedEntries == null || cachedEntries.isEmpty()) {
             return false;
         }
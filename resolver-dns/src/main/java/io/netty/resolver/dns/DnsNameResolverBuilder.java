@@ -20,6 +20,7 @@ import io.netty.channel.EventLoop;
 import io.netty.channel.ReflectiveChannelFactory;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.InternetProtocolFamily;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.resolver.HostsFileEntriesResolver;
 import io.netty.resolver.ResolvedAddressTypes;
 import io.netty.util.internal.UnstableApi;
@@ -39,6 +40,8 @@ import static java.util.Objects.requireNonNull;
 public final class DnsNameResolverBuilder {
     private EventLoop eventLoop;
     private ChannelFactory<? extends DatagramChannel> channelFactory;
+    private ChannelFactory<? extends SocketChannel> socketChannelFactory;
+    private boolean tcpPreferred;
     private DnsCache resolveCache;
     private DnsCnameCache cnameCache;
     private AuthoritativeDnsServerCache authoritativeDnsServerCache;
@@ -113,6 +116,46 @@ public final class DnsNameResolverBuilder {
         return channelFactory(new ReflectiveChannelFactory<DatagramChannel>(channelType));
     }
 
+    /**
+     * Sets the {@link ChannelFactory} that will create a {@link SocketChannel} for DNS over TCP. If set, a query that
+     * receives a truncated UDP response is sent again over TCP to obtain the complete response. Connections to the
+     * name servers are kept open and reused by subsequent queries.
+     *
+     * @param socketChannelFactory the {@link ChannelFactory} or {@code null} to only use UDP
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder socketChannelFactory(ChannelFactory<? extends SocketChannel> socketChannelFactory) {
+        this.socketChannelFactory = socketChannelFactory;
+        return this;
+    }
+
+    /**
+     * Sets the {@link ChannelFactory} for DNS over TCP as a {@link ReflectiveChannelFactory} of this type.
+     * Use as an alternative to {@link #socketChannelFactory(ChannelFactory)}.
+     *
+     * @param channelType the type or {@code null} to only use UDP
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder socketChannelType(Class<? extends SocketChannel> channelType) {
+        if (channelType == null) {
+            return socketChannelFactory(null);
+        }
+        return socketChannelFactory(new ReflectiveChannelFactory<SocketChannel>(channelType));
+    }
+
+    /**
+     * Sets if all queries should be sent over TCP instead of UDP. Queries to the same name server are pipelined on a
+     * single persistent connection, which amortizes the connection setup when many names are resolved. This requires
+     * {@link #socketChannelFactory(ChannelFactory)} to be set.
+     *
+     * @param tcpPreferred {@code true} to send all queries over TCP
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder tcpPreferred(boolean tcpPreferred) {
+        this.tcpPreferred = tcpPreferred;
+        return this;
+    }
+
     /**
      * Sets the cache for resolution results.
      *
@@ -200,7 +243,8 @@ public final class DnsNameResolverBuilder {
     }
 
     /**
-     * Sets the timeout of each DNS query performed by this resolver (in milliseconds).
+     * Sets the timeout of each DNS query performed by this resolver (in milliseconds). A query which is sent again over
+     * TCP after a truncated UDP response gets this timeout again for the TCP query.
      *
      * @param queryTimeoutMillis the query timeout
      * @return {@code this}
@@ -415,6 +459,10 @@ public final class DnsNameResolverBuilder {
             throw new IllegalStateException("eventLoop should be specified to build a DnsNameResolver.");
         }
 
+        if (tcpPreferred && socketChannelFactory == null) {
+            throw new IllegalStateException("socketChannelFactory should be specified if TCP is preferred.");
+        }
+
         if (resolveCache != null && (minTtl != null || maxTtl != null || negativeTtl != null)) {
             throw new IllegalStateException("resolveCache and TTLs are mutually exclusive");
         }
@@ -430,6 +478,8 @@ public final class DnsNameResolverBuilder {
         return new DnsNameResolver(
                 eventLoop,
                 channelFactory,
+                socketChannelFactory,
+                tcpPreferred,
                 resolveCache,
                 cnameCache,
                 authoritativeDnsServerCache,
@@ -464,6 +514,11 @@ public final class DnsNameResolverBuilder {
             copiedBuilder.channelFactory(channelFactory);
         }
 
+        if (socketChannelFactory != null) {
+            copiedBuilder.socketChannelFactory(socketChannelFactory);
+        }
+        copiedBuilder.tcpPreferred(tcpPreferred);
+
         if (resolveCache != null) {
             copiedBuilder.resolveCache(resolveCache);
         }
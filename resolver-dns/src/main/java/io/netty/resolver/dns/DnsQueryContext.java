@@ -21,6 +21,7 @@ import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.dns.DatagramDnsQuery;
 import io.netty.handler.codec.dns.AbstractDnsOptPseudoRrRecord;
+import io.netty.handler.codec.dns.DefaultDnsQuery;
 import io.netty.handler.codec.dns.DnsQuery;
 import io.netty.handler.codec.dns.DnsQuestion;
 import io.netty.handler.codec.dns.DnsRecord;
@@ -29,6 +30,7 @@ import io.netty.handler.codec.dns.DnsSection;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.FutureListener;
 import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.PromiseNotifier;
 import io.netty.util.concurrent.ScheduledFuture;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
@@ -52,6 +54,8 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
 
     private final boolean recursionDesired;
     private volatile ScheduledFuture<?> timeoutFuture;
+    // Whether the query was sent over TCP, either in the first place or after a truncated UDP response.
+    private volatile boolean tcp;
 
     DnsQueryContext(DnsNameResolver parent,
                     InetSocketAddress nameServerAddr,
@@ -83,14 +87,51 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
         return nameServerAddr;
     }
 
+    int id() {
+        return id;
+    }
+
     DnsQuestion question() {
         return question;
     }
 
+    Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> promise() {
+        return promise;
+    }
+
     void query(boolean flush, ChannelPromise writePromise) {
         final DnsQuestion question = question();
         final InetSocketAddress nameServerAddr = nameServerAddr();
-        final DatagramDnsQuery query = new DatagramDnsQuery(null, nameServerAddr, id);
+        final DnsQueryTransport transport = parent.queryTransport(nameServerAddr);
+        // Queries sent over a DnsQueryTransport are framed the same way as over TCP and are never truncated.
+        tcp = transport != null || parent.isTcpPreferred();
+        final DnsQuery query = newQuery(tcp);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} WRITE: [{}: {}], {}{}", parent.ch, id, nameServerAddr, question,
+                    transport != null ? " (" + transport + ')' : tcp ? " (TCP)" : "");
+        }
+
+        if (transport != null) {
+            final DnsConnectionManager connectionManager;
+            try {
+                connectionManager = parent.connectionManager(transport);
+            } catch (IllegalStateException e) {
+                query.release();
+                writePromise.setFailure(e);
+                setFailure("failed to send a query", e);
+                return;
+            }
+            sendQuery(connectionManager, query, writePromise);
+        } else if (tcp) {
+            sendQuery(parent.tcpConnectionManager, query, writePromise);
+        } else {
+            sendQuery(query, flush, writePromise);
+        }
+    }
+
+    private DnsQuery newQuery(boolean tcp) {
+        final DnsQuery query = tcp ? new DefaultDnsQuery(id) : new DatagramDnsQuery(null, nameServerAddr(), id);
 
         query.setRecursionDesired(recursionDesired);
 
@@ -103,12 +144,18 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
         if (optResource != null) {
             query.addRecord(DnsSection.ADDITIONAL, optResource);
         }
+        return query;
+    }
 
-        if (logger.isDebugEnabled()) {
-            logger.debug("{} WRITE: [{}: {}], {}", parent.ch, id, nameServerAddr, question);
+    private void sendQuery(final DnsConnectionManager connectionManager, final DnsQuery query,
+                           final ChannelPromise writePromise) {
+        final ChannelFuture writeFuture = connectionManager.writeQuery(this, nameServerAddr, query);
+        writeFuture.addListener(new PromiseNotifier<>(writePromise));
+        if (writeFuture.isDone()) {
+            onQueryWriteCompletion(writeFuture);
+        } else {
+            writeFuture.addListener((ChannelFutureListener) future -> onQueryWriteCompletion(writeFuture));
         }
-
-        sendQuery(query, flush, writePromise);
     }
 
     private void sendQuery(final DnsQuery query, final boolean flush, final ChannelPromise writePromise) {
@@ -146,6 +193,10 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
             return;
         }
 
+        scheduleTimeout();
+    }
+
+    private void scheduleTimeout() {
         // Schedule a query timeout task if necessary.
         final long queryTimeoutMillis = parent.queryTimeoutMillis();
         if (queryTimeoutMillis > 0) {
@@ -172,9 +223,46 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
             return;
         }
 
+        if (res.isTruncated() && !tcp && parent.tcpConnectionManager != null) {
+            retryOverTcp(envelope);
+            return;
+        }
+
         setSuccess(envelope);
     }
 
+    /**
+     * Sends the query again over TCP after a truncated UDP response. The query keeps its id, so the TCP response
+     * completes this context. If the query can not be sent over TCP the truncated response is used instead.
+     * <p>
+     * Connecting and querying over TCP takes longer than the UDP query which just completed, so the TCP query gets
+     * the full query timeout on its own instead of what is left of the timeout of the UDP query.
+     */
+    private void retryOverTcp(final AddressedEnvelope<? extends DnsResponse, InetSocketAddress> envelope) {
+        tcp = true;
+        cancelTimeout();
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} Received a truncated response, retrying over TCP: [{}: {}], {}",
+                    parent.ch, id, nameServerAddr, question);
+        }
+
+        envelope.retain();
+        final ChannelFuture writeFuture = parent.tcpConnectionManager.writeQuery(this, nameServerAddr, newQuery(true));
+        writeFuture.addListener((ChannelFutureListener) future -> {
+            try {
+                if (future.isSuccess()) {
+                    scheduleTimeout();
+                } else {
+                    logger.debug("{} Failed to retry over TCP, using the truncated response: [{}: {}]",
+                            parent.ch, id, nameServerAddr, future.cause());
+                    setSuccess(envelope);
+                }
+            } finally {
+                envelope.release();
+            }
+        });
+    }
+
     private void setSuccess(AddressedEnvelope<? extends DnsResponse, InetSocketAddress> envelope) {
         Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> promise = this.promise;
         @SuppressWarnings("unchecked")
@@ -186,7 +274,7 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
         }
     }
 
-    private void setFailure(String message, Throwable cause) {
+    void setFailure(String message, Throwable cause) {
         final InetSocketAddress nameServerAddr = nameServerAddr();
 
         final StringBuilder buf = new StringBuilder(message.length() + 64);
@@ -209,15 +297,18 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
 
     @Override
     public void operationComplete(Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future) {
-        // Cancel the timeout task.
+        cancelTimeout();
+
+        // Remove the id from the manager as soon as the query completes. This may be because of success, failure or
+        // cancellation
+        parent.queryContextManager.remove(nameServerAddr, id);
+    }
+
+    private void cancelTimeout() {
         final ScheduledFuture<?> timeoutFuture = this.timeoutFuture;
         if (timeoutFuture != null) {
             this.timeoutFuture = null;
             timeoutFuture.cancel(false);
         }
-
-        // Remove the id from the manager as soon as the query completes. This may be because of success, failure or
-        // cancellation
-        parent.queryContextManager.remove(nameServerAddr, id);
     }
 }
@@ -17,111 +17,143 @@
 package io.netty.resolver.dns;
 
 import io.netty.util.NetUtil;
-import io.netty.util.collection.IntObjectHashMap;
-import io.netty.util.collection.IntObjectMap;
 
 import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Allocates the DNS query IDs of a {@link DnsNameResolver} and maps them back to their {@link DnsQueryContext}.
+ * This is lock-free so queries can be sent from many threads through the same resolver without contention.
+ */
 final class DnsQueryContextManager {
 
     /**
-     * A map whose key is the DNS server address and value is the map of the DNS query ID and its corresponding
-     * {@link DnsQueryContext}.
+     * A map whose key is the DNS server address and value is the ID space of the queries sent to it.
      */
-    final Map<InetSocketAddress, IntObjectMap<DnsQueryContext>> map = new HashMap<>();
+    private final ConcurrentMap<InetSocketAddress, DnsQueryIdSpace> map = new ConcurrentHashMap<>();
 
     int add(DnsQueryContext qCtx) {
-        final IntObjectMap<DnsQueryContext> contexts = getOrCreateContextMap(qCtx.nameServerAddr());
-
-        int id = ThreadLocalRandom.current().nextInt(65536 - 1) + 1;
-        final int maxTries = 65535 << 1;
-        int tries = 0;
-
-        synchronized (contexts) {
-            for (;;) {
-                if (!contexts.containsKey(id)) {
-                    contexts.put(id, qCtx);
-                    return id;
-                }
-
-                id = id + 1 & 0xFFFF;
-
-                if (++tries >= maxTries) {
-                    throw new IllegalStateException("query ID space exhausted: " + qCtx.question());
-                }
-            }
+        final DnsQueryIdSpace ids = getOrCreateIdSpace(qCtx.nameServerAddr());
+        final int id = ids.add(qCtx);
+        if (id == -1) {
+            throw new IllegalStateException("query ID space exhausted: " + qCtx.question());
         }
+        return id;
     }
 
     DnsQueryContext get(InetSocketAddress nameServerAddr, int id) {
-        final IntObjectMap<DnsQueryContext> contexts = getContextMap(nameServerAddr);
-        final DnsQueryContext qCtx;
-        if (contexts != null) {
-            synchronized (contexts) {
-                qCtx = contexts.get(id);
-            }
-        } else {
-            qCtx = null;
-        }
-
-        return qCtx;
+        final DnsQueryIdSpace ids = map.get(nameServerAddr);
+        return ids != null ? ids.get(id) : null;
     }
 
     DnsQueryContext remove(InetSocketAddress nameServerAddr, int id) {
-        final IntObjectMap<DnsQueryContext> contexts = getContextMap(nameServerAddr);
-        if (contexts == null) {
-            return null;
+        final DnsQueryIdSpace ids = map.get(nameServerAddr);
+        return ids != null ? ids.remove(id) : null;
+    }
+
+    private DnsQueryIdSpace getOrCreateIdSpace(InetSocketAddress nameServerAddr) {
+        final DnsQueryIdSpace ids = map.get(nameServerAddr);
+        if (ids != null) {
+            return ids;
         }
 
-        synchronized (contexts) {
-            return  contexts.remove(id);
+        final DnsQueryIdSpace newIds = new DnsQueryIdSpace();
+        final DnsQueryIdSpace existing = map.putIfAbsent(nameServerAddr, newIds);
+        if (existing != null) {
+            return existing;
         }
-    }
 
-    private IntObjectMap<DnsQueryContext> getContextMap(InetSocketAddress nameServerAddr) {
-        synchronized (map) {
-            return map.get(nameServerAddr);
+        final InetAddress a = nameServerAddr.getAddress();
+        final int port = nameServerAddr.getPort();
+        if (a instanceof Inet4Address) {
+            // Also add the mapping for the IPv4-compatible IPv6 address.
+            final Inet4Address a4 = (Inet4Address) a;
+            if (a4.isLoopbackAddress()) {
+                map.putIfAbsent(new InetSocketAddress(NetUtil.LOCALHOST6, port), newIds);
+            } else {
+                map.putIfAbsent(new InetSocketAddress(toCompactAddress(a4), port), newIds);
+            }
+        } else if (a instanceof Inet6Address) {
+            // Also add the mapping for the IPv4 address if this IPv6 address is compatible.
+            final Inet6Address a6 = (Inet6Address) a;
+            if (a6.isLoopbackAddress()) {
+                map.putIfAbsent(new InetSocketAddress(NetUtil.LOCALHOST4, port), newIds);
+            } else if (a6.isIPv4CompatibleAddress()) {
+                map.putIfAbsent(new InetSocketAddress(toIPv4Address(a6), port), newIds);
+            }
         }
+        return newIds;
     }
 
-    private IntObjectMap<DnsQueryContext> getOrCreateContextMap(InetSocketAddress nameServerAddr) {
-        synchronized (map) {
-            final IntObjectMap<DnsQueryContext> contexts = map.get(nameServerAddr);
-            if (contexts != null) {
-                return contexts;
+    /**
+     * The 65535 usable query IDs of a single name server. IDs are claimed with a CAS on their slot, so adding,
+     * looking up and removing never block. The slots are split into pages which are only allocated once an ID
+     * on them is used, which keeps the footprint small for name servers that see few concurrent queries.
+     */
+    static final class DnsQueryIdSpace {
+        private static final int PAGE_SHIFT = 8;
+        private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+        private static final int PAGE_MASK = PAGE_SIZE - 1;
+        private static final int PAGES = 65536 >>> PAGE_SHIFT;
+        // Number of random IDs to try before falling back to scanning for a free one.
+        private static final int MAX_RANDOM_TRIES = 32;
+
+        private final AtomicReferenceArray<AtomicReferenceArray<DnsQueryContext>> pages =
+                new AtomicReferenceArray<>(PAGES);
+
+        /**
+         * Claims a random free ID for the given context, or returns {@code -1} if all IDs are in use.
+         */
+        int add(DnsQueryContext qCtx) {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            // Picking every candidate at random (instead of probing linearly from a random start) keeps the next
+            // ID unpredictable even if many IDs are in use, which makes spoofing responses harder.
+            for (int i = 0; i < MAX_RANDOM_TRIES; i++) {
+                final int id = random.nextInt(65535) + 1;
+                if (tryAdd(id, qCtx)) {
+                    return id;
+                }
             }
 
-            final IntObjectMap<DnsQueryContext> newContexts = new IntObjectHashMap<DnsQueryContext>();
-            final InetAddress a = nameServerAddr.getAddress();
-            final int port = nameServerAddr.getPort();
-            map.put(nameServerAddr, newContexts);
-
-            if (a instanceof Inet4Address) {
-                // Also add the mapping for the IPv4-compatible IPv6 address.
-                final Inet4Address a4 = (Inet4Address) a;
-                if (a4.isLoopbackAddress()) {
-                    map.put(new InetSocketAddress(NetUtil.LOCALHOST6, port), newContexts);
-                } else {
-                    map.put(new InetSocketAddress(toCompactAddress(a4), port), newContexts);
-                }
-            } else if (a instanceof Inet6Address) {
-                // Also add the mapping for the IPv4 address if this IPv6 address is compatible.
-                final Inet6Address a6 = (Inet6Address) a;
-                if (a6.isLoopbackAddress()) {
-                    map.put(new InetSocketAddress(NetUtil.LOCALHOST4, port), newContexts);
-                } else if (a6.isIPv4CompatibleAddress()) {
-                    map.put(new InetSocketAddress(toIPv4Address(a6), port), newContexts);
+            // Almost all IDs are in use, scan from a random position so we still find a free one if there is any.
+            final int start = random.nextInt(65535);
+            for (int i = 0; i < 65535; i++) {
+                final int id = (start + i) % 65535 + 1;
+                if (tryAdd(id, qCtx)) {
+                    return id;
                 }
             }
+            return -1;
+        }
 
-            return newContexts;
+        DnsQueryContext get(int id) {
+            final AtomicReferenceArray<DnsQueryContext> page = pages.get(id >>> PAGE_SHIFT & PAGES - 1);
+            return page != null ? page.get(id & PAGE_MASK) : null;
+        }
+
+        DnsQueryContext remove(int id) {
+            final AtomicReferenceArray<DnsQueryContext> page = pages.get(id >>> PAGE_SHIFT & PAGES - 1);
+            return page != null ? page.getAndSet(id & PAGE_MASK, null) : null;
+        }
+
+        private boolean tryAdd(int id, DnsQueryContext qCtx) {
+            return page(id >>> PAGE_SHIFT).compareAndSet(id & PAGE_MASK, null, qCtx);
+        }
+
+        private AtomicReferenceArray<DnsQueryContext> page(int index) {
+            AtomicReferenceArray<DnsQueryContext> page = pages.get(index);
+            if (page == null) {
+                final AtomicReferenceArray<DnsQueryContext> newPage = new AtomicReferenceArray<>(PAGE_SIZE);
+                page = pages.compareAndSet(index, null, newPage) ? newPage : pages.get(index);
+            }
+            return page;
         }
     }
 
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.ChannelFactory;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.internal.UnstableApi;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The transport over which {@link DnsNameResolver} sends queries to a name server, as returned by
+ * {@link DnsServerAddressStreamProvider#queryTransport(InetSocketAddress)}. Queries to name servers without a
+ * {@link DnsQueryTransport} are sent as UDP datagrams, or over TCP depending on the configuration of the resolver.
+ * <p>
+ * All transports keep one persistent connection per name server and require
+ * {@link DnsNameResolverBuilder#socketChannelType(Class)} or
+ * {@link DnsNameResolverBuilder#socketChannelFactory(ChannelFactory)} to be set. They need {@code netty-handler} and,
+ * for DNS over HTTPS, {@code netty-codec-http2} on the class path.
+ * <p>
+ * The certificate presented by the name server is verified against the hostname the name server address was created
+ * with, for example with {@link InetAddress#getByAddress(String, byte[])}, which is also used for SNI. If it was
+ * created without a hostname, the certificate must contain the IP address of the name server as a subject
+ * alternative name. This can only be turned off explicitly.
+ */
+@UnstableApi
+public abstract class DnsQueryTransport {
+
+    /**
+     * The default path of DNS over HTTPS requests, as suggested by
+     * <a href="https://tools.ietf.org/html/rfc8484#section-8.1">RFC8484</a>.
+     */
+    public static final String DEFAULT_HTTPS_PATH = "/dns-query";
+
+    // Only the transports in this package are supported.
+    DnsQueryTransport() { }
+
+    /**
+     * Returns a transport which sends queries over TLS, as defined in
+     * <a href="https://tools.ietf.org/html/rfc7858">RFC7858</a>. Queries are pipelined on the connection.
+     *
+     * @param sslContext the client {@link SslContext} used for the connections.
+     */
+    public static DnsQueryTransport tls(SslContext sslContext) {
+        return tls(sslContext, true);
+    }
+
+    /**
+     * Returns a transport which sends queries over TLS, as defined in
+     * <a href="https://tools.ietf.org/html/rfc7858">RFC7858</a>. Queries are pipelined on the connection.
+     *
+     * @param sslContext the client {@link SslContext} used for the connections.
+     * @param endpointIdentification {@code false} to accept any certificate the {@link SslContext} trusts, even if
+     *                               it was issued for another name server. This allows anybody who can get such a
+     *                               certificate to intercept the queries.
+     */
+    public static DnsQueryTransport tls(SslContext sslContext, boolean endpointIdentification) {
+        return new Tls(checkClient(sslContext), endpointIdentification);
+    }
+
+    /**
+     * Returns a transport which sends queries over HTTPS to {@value #DEFAULT_HTTPS_PATH}.
+     *
+     * @param sslContext the client {@link SslContext} used for the connections.
+     * @see #https(SslContext, String)
+     */
+    public static DnsQueryTransport https(SslContext sslContext) {
+        return https(sslContext, DEFAULT_HTTPS_PATH);
+    }
+
+    /**
+     * Returns a transport which sends queries over HTTPS, as defined in
+     * <a href="https://tools.ietf.org/html/rfc8484">RFC8484</a>. Queries are multiplexed over one HTTP/2 connection,
+     * so the {@link SslContext} should be configured to negotiate {@code h2} via ALPN.
+     *
+     * @param sslContext the client {@link SslContext} used for the connections.
+     * @param path the path of the requests.
+     */
+    public static DnsQueryTransport https(SslContext sslContext, String path) {
+        return https(sslContext, path, true);
+    }
+
+    /**
+     * Returns a transport which sends queries over HTTPS, as defined in
+     * <a href="https://tools.ietf.org/html/rfc8484">RFC8484</a>. Queries are multiplexed over one HTTP/2 connection,
+     * so the {@link SslContext} should be configured to negotiate {@code h2} via ALPN.
+     *
+     * @param sslContext the client {@link SslContext} used for the connections.
+     * @param path the path of the requests.
+     * @param endpointIdentification {@code false} to accept any certificate the {@link SslContext} trusts, even if
+     *                               it was issued for another name server. This allows anybody who can get such a
+     *                               certificate to intercept the queries.
+     */
+    public static DnsQueryTransport https(SslContext sslContext, String path, boolean endpointIdentification) {
+        requireNonNull(path, "path");
+        if (!path.startsWith("/")) {
+            throw new IllegalArgumentException("path must start with '/': " + path);
+        }
+        return new Https(checkClient(sslContext), path, endpointIdentification);
+    }
+
+    private static SslContext checkClient(SslContext sslContext) {
+        requireNonNull(sslContext, "sslContext");
+        if (!sslContext.isClient()) {
+            throw new IllegalArgumentException("sslContext must be a client context");
+        }
+        return sslContext;
+    }
+
+    /**
+     * Creates the {@link DnsConnectionManager} which sends the queries of the given resolver.
+     */
+    abstract DnsConnectionManager newConnectionManager(DnsNameResolver parent, EventLoop eventLoop,
+                                                       ChannelFactory<? extends SocketChannel> channelFactory);
+
+    private static final class Tls extends DnsQueryTransport {
+        private final SslContext sslContext;
+        private final boolean endpointIdentification;
+
+        Tls(SslContext sslContext, boolean endpointIdentification) {
+            this.sslContext = sslContext;
+            this.endpointIdentification = endpointIdentification;
+        }
+
+        @Override
+        DnsConnectionManager newConnectionManager(DnsNameResolver parent, EventLoop eventLoop,
+                                                  ChannelFactory<? extends SocketChannel> channelFactory) {
+            return new DnsTlsConnectionManager(parent, eventLoop, channelFactory, sslContext, endpointIdentification);
+        }
+
+        @Override
+        public String toString() {
+            return "TLS";
+        }
+    }
+
+    private static final class Https extends DnsQueryTransport {
+        private final SslContext sslContext;
+        private final String path;
+        private final boolean endpointIdentification;
+
+        Https(SslContext sslContext, String path, boolean endpointIdentification) {
+            this.sslContext = sslContext;
+            this.path = path;
+            this.endpointIdentification = endpointIdentification;
+        }
+
+        @Override
+        DnsConnectionManager newConnectionManager(DnsNameResolver parent, EventLoop eventLoop,
+                                                  ChannelFactory<? extends SocketChannel> channelFactory) {
+            return new DnsHttpsConnectionManager(
+                    parent, eventLoop, channelFactory, sslContext, endpointIdentification, path);
+        }
+
+        @Override
+        public String toString() {
+            return "HTTPS " + path;
+        }
+    }
+}
@@ -92,7 +92,7 @@ abstract class DnsResolveContext<T> {
 
     final DnsNameResolver parent;
     private final DnsServerAddressStream nameServerAddrs;
-    private final String hostname;
+    final String hostname;
     private final int dnsClass;
     private final DnsRecordType[] expectedTypes;
     private final int maxAllowedQueries;
@@ -872,10 +872,22 @@ abstract class DnsResolveContext<T> {
             cache(hostname, additionals, unknownHostException);
         } else {
             unknownHostException.initCause(cause);
+            if (serveStale(promise)) {
+                // The name servers could not be reached but the cache still holds expired results (RFC 8767).
+                return;
+            }
         }
         promise.tryFailure(unknownHostException);
     }
 
+    /**
+     * Completes the {@link Promise} with stale results from the cache, if any, after the resolution failed because
+     * the name servers could not be reached. Returns {@code true} if the {@link Promise} was completed.
+     */
+    boolean serveStale(Promise<List<T>> promise) {
+        return false;
+    }
+
     static String decodeDomainName(ByteBuf in) {
         int readerIndex = in.readerIndex();
         try {
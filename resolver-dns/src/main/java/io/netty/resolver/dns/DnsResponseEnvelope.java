@@ -0,0 +1,113 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.AddressedEnvelope;
+import io.netty.handler.codec.dns.DnsResponse;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Adapts a {@link DnsResponse} received over a connection, rather than as a datagram, to the
+ * {@link AddressedEnvelope} used by the resolver.
+ */
+final class DnsResponseEnvelope implements AddressedEnvelope<DnsResponse, InetSocketAddress> {
+    private final DnsResponse response;
+    private final InetSocketAddress sender;
+    private final InetSocketAddress recipient;
+
+    DnsResponseEnvelope(DnsResponse response, InetSocketAddress sender, InetSocketAddress recipient) {
+        this.response = response;
+        this.sender = sender;
+        this.recipient = recipient;
+    }
+
+    @Override
+    public DnsResponse content() {
+        return response;
+    }
+
+    @Override
+    public InetSocketAddress sender() {
+        return sender;
+    }
+
+    @Override
+    public InetSocketAddress recipient() {
+        return recipient;
+    }
+
+    @Override
+    public AddressedEnvelope<DnsResponse, InetSocketAddress> retain() {
+        response.retain();
+        return this;
+    }
+
+    @Override
+    public AddressedEnvelope<DnsResponse, InetSocketAddress> retain(int increment) {
+        response.retain(increment);
+        return this;
+    }
+
+    @Override
+    public AddressedEnvelope<DnsResponse, InetSocketAddress> touch() {
+        response.touch();
+        return this;
+    }
+
+    @Override
+    public AddressedEnvelope<DnsResponse, InetSocketAddress> touch(Object hint) {
+        response.touch(hint);
+        return this;
+    }
+
+    @Override
+    public int refCnt() {
+        return response.refCnt();
+    }
+
+    @Override
+    public boolean release() {
+        return response.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return response.release(decrement);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof DnsResponseEnvelope)) {
+            return false;
+        }
+        DnsResponseEnvelope that = (DnsResponseEnvelope) obj;
+        return response.equals(that.response) && sender.equals(that.sender);
+    }
+
+    @Override
+    public int hashCode() {
+        return response.hashCode() * 31 + sender.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "DnsResponseEnvelope(" + sender + " => " + recipient + ", " + response + ')';
+    }
+}
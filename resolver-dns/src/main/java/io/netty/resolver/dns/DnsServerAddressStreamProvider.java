@@ -17,6 +17,8 @@ package io.netty.resolver.dns;
 
 import io.netty.util.internal.UnstableApi;
 
+import java.net.InetSocketAddress;
+
 /**
  * Provides an opportunity to override which {@link DnsServerAddressStream} is used to resolve a specific hostname.
  * <p>
@@ -34,4 +36,15 @@ public interface DnsServerAddressStreamProvider {
      * @return The {@link DnsServerAddressStream} which should be used to resolve {@code hostname}.
      */
     DnsServerAddressStream nameServerAddressStream(String hostname);
+
+    /**
+     * Returns the {@link DnsQueryTransport} over which queries are sent to the given name server, which was returned
+     * by a {@link DnsServerAddressStream} of this provider.
+     * @param nameServerAddress the address of the name server.
+     * @return the {@link DnsQueryTransport} or {@code null} to send queries as UDP datagrams, or over TCP depending on
+     * the configuration of the resolver.
+     */
+    default DnsQueryTransport queryTransport(InetSocketAddress nameServerAddress) {
+        return null;
+    }
 }
@@ -18,9 +18,12 @@ package io.netty.resolver.dns;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.UnstableApi;
 
+import java.net.InetSocketAddress;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * Utility methods related to {@link DnsServerAddressStreamProvider}.
  */
@@ -71,4 +74,28 @@ public final class DnsServerAddressStreamProviders {
     public static DnsServerAddressStreamProvider platformDefault() {
         return DEFAULT_DNS_SERVER_ADDRESS_STREAM_PROVIDER;
     }
+
+    /**
+     * Returns a {@link DnsServerAddressStreamProvider} which returns the same name servers as {@code provider}, but
+     * sends all queries to them over the given {@link DnsQueryTransport}.
+     * @param provider the {@link DnsServerAddressStreamProvider} which returns the name servers.
+     * @param transport the {@link DnsQueryTransport} to use for all name servers.
+     * @return A {@link DnsServerAddressStreamProvider} which uses {@code transport}.
+     */
+    public static DnsServerAddressStreamProvider withQueryTransport(DnsServerAddressStreamProvider provider,
+                                                                    DnsQueryTransport transport) {
+        requireNonNull(provider, "provider");
+        requireNonNull(transport, "transport");
+        return new DnsServerAddressStreamProvider() {
+            @Override
+            public DnsServerAddressStream nameServerAddressStream(String hostname) {
+                return provider.nameServerAddressStream(hostname);
+            }
+
+            @Override
+            public DnsQueryTransport queryTransport(InetSocketAddress nameServerAddress) {
+                return transport;
+            }
+        };
+    }
 }
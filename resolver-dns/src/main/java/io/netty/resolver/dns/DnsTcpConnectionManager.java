@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFactory;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandler;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.dns.DnsQuery;
+import io.netty.handler.codec.dns.DnsResponse;
+import io.netty.handler.codec.dns.TcpDnsQueryEncoder;
+import io.netty.handler.codec.dns.TcpDnsResponseDecoder;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Maintains one persistent TCP connection per name server which is used for queries that are retried over TCP after
+ * a truncated UDP response, or for all queries if the resolver prefers TCP. Queries are pipelined on the connection
+ * and responses are matched by their id, the same way as for UDP.
+ */
+class DnsTcpConnectionManager extends DnsConnectionManager {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(DnsTcpConnectionManager.class);
+    private static final TcpDnsQueryEncoder ENCODER = new TcpDnsQueryEncoder();
+
+    DnsTcpConnectionManager(DnsNameResolver parent, EventLoop eventLoop,
+                            ChannelFactory<? extends SocketChannel> channelFactory) {
+        super(parent, eventLoop, channelFactory);
+    }
+
+    @Override
+    void initChannel(Channel ch, InetSocketAddress nameServerAddr) throws Exception {
+        ch.pipeline().addLast(ENCODER, new TcpDnsResponseDecoder(), new TcpDnsResponseHandler());
+    }
+
+    @Override
+    final ChannelFuture writeQuery(Channel channel, DnsQueryContext queryContext, DnsQuery query) {
+        TcpDnsResponseHandler handler = channel.pipeline().get(TcpDnsResponseHandler.class);
+        if (handler == null) {
+            // The connection was closed in the meantime.
+            ReferenceCountUtil.release(query);
+            return channel.newFailedFuture(new ClosedChannelException());
+        }
+        handler.add(queryContext);
+        return channel.writeAndFlush(query);
+    }
+
+    /**
+     * Completes the {@link DnsQueryContext}s with the responses received on a connection and fails those which
+     * did not receive a response before the connection was closed.
+     */
+    private final class TcpDnsResponseHandler implements ChannelInboundHandler {
+        // Only accessed from the EventLoop.
+        private final Set<DnsQueryContext> inflight = new HashSet<>();
+
+        void add(DnsQueryContext queryContext) {
+            if (inflight.add(queryContext)) {
+                queryContext.promise().addListener(f -> inflight.remove(queryContext));
+            }
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            DnsResponse response = (DnsResponse) msg;
+            Channel channel = ctx.channel();
+            try {
+                InetSocketAddress sender = (InetSocketAddress) channel.remoteAddress();
+                int queryId = response.id();
+                if (logger.isDebugEnabled()) {
+                    logger.debug("{} RECEIVED: [{}: {}], {}", channel, queryId, sender, response);
+                }
+
+                DnsQueryContext qCtx = parent.queryContextManager.get(sender, queryId);
+                if (qCtx == null) {
+                    logger.warn("{} Received a DNS response with an unknown ID: {}", channel, queryId);
+                    return;
+                }
+                qCtx.finish(new DnsResponseEnvelope(
+                        response, sender, (InetSocketAddress) channel.localAddress()));
+            } finally {
+                ReferenceCountUtil.release(response);
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            if (!inflight.isEmpty()) {
+                List<DnsQueryContext> queries = new ArrayList<>(inflight);
+                inflight.clear();
+                for (DnsQueryContext queryContext: queries) {
+                    queryContext.setFailure("TCP connection closed before a response was received", null);
+                }
+            }
+            ctx.fireChannelInactive();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            logger.debug("{} Closing TCP connection to name server after exception: ", ctx.channel(), cause);
+            ctx.close();
+        }
+    }
+}
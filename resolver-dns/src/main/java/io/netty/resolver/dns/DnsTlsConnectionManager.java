@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFactory;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslHandler;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import java.net.InetSocketAddress;
+
+/**
+ * Sends queries over TLS, as defined in <a href="https://tools.ietf.org/html/rfc7858">RFC7858</a>. The messages are
+ * framed the same way as for DNS over TCP, so this only adds a {@link SslHandler} in front of the TCP pipeline.
+ */
+final class DnsTlsConnectionManager extends DnsTcpConnectionManager {
+
+    private final SslContext sslContext;
+    private final boolean endpointIdentification;
+
+    DnsTlsConnectionManager(DnsNameResolver parent, EventLoop eventLoop,
+                            ChannelFactory<? extends SocketChannel> channelFactory, SslContext sslContext,
+                            boolean endpointIdentification) {
+        super(parent, eventLoop, channelFactory);
+        this.sslContext = sslContext;
+        this.endpointIdentification = endpointIdentification;
+    }
+
+    @Override
+    void initChannel(Channel ch, InetSocketAddress nameServerAddr) throws Exception {
+        ch.pipeline().addLast(newSslHandler(sslContext, ch.alloc(), nameServerAddr, endpointIdentification));
+        super.initChannel(ch, nameServerAddr);
+    }
+
+    /**
+     * Creates a {@link SslHandler} for a connection to the given name server. Unless {@code endpointIdentification} is
+     * {@code false}, the certificate of the name server is verified against the hostname the address was created
+     * with, or against its IP address otherwise. The hostname is also used for SNI.
+     */
+    static SslHandler newSslHandler(SslContext sslContext, ByteBufAllocator alloc, InetSocketAddress nameServerAddr,
+                                    boolean endpointIdentification) {
+        SslHandler sslHandler = sslContext.newHandler(alloc, nameServerAddr.getHostString(), nameServerAddr.getPort());
+        if (endpointIdentification) {
+            SSLEngine engine = sslHandler.engine();
+            SSLParameters parameters = engine.getSSLParameters();
+            // For an IP address this checks the IP address entries of the subject alternative names, which the
+            // certificates of public resolvers such as 1.1.1.1 contain.
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            engine.setSSLParameters(parameters);
+        }
+        return sslHandler;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.EventLoop;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Hashed wheel with a resolution of one second which expires the entries of a {@link Cache}.
+ * <p>
+ * Instead of scheduling one task per cached hostname, which puts as many tasks into the scheduled task queue of the
+ * {@link EventLoop} as there are hostnames, a single task per wheel runs once a second while anything is registered
+ * and expires everything whose deadline was reached. Registrations which are more than one revolution away are
+ * checked and put back once per revolution.
+ * <p>
+ * A registration is never removed when the deadline of its item changes. Instead the item is registered again and
+ * the outdated registration is dropped once its bucket is processed, as its deadline no longer matches
+ * {@link Expirable#expirationNanos()}.
+ */
+final class ExpirationWheel {
+
+    /**
+     * Something that is expired by an {@link ExpirationWheel}.
+     */
+    interface Expirable {
+        /**
+         * Returns the current deadline in {@link System#nanoTime()} terms.
+         */
+        long expirationNanos();
+
+        /**
+         * Called once the given deadline, which was the current deadline when this method was called, was reached.
+         */
+        void expire(long deadlineNanos);
+    }
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ExpirationWheel.class);
+
+    private static final AtomicReferenceFieldUpdater<ExpirationWheel, EventLoop> TICK_LOOP_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(ExpirationWheel.class, EventLoop.class, "tickLoop");
+
+    static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    static final int WHEEL_SIZE = 256;
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    private final long startNanos = System.nanoTime();
+    private final Queue<Registration>[] buckets;
+    private final AtomicInteger registrations = new AtomicInteger();
+    // The next tick to process, only written by the tick task. It is advanced before a bucket is processed.
+    private volatile long nextTick;
+    // The EventLoop the tick task runs on, or null if it is not running.
+    // Needs to be package-private to be able to access it via the AtomicReferenceFieldUpdater
+    volatile EventLoop tickLoop;
+
+    @SuppressWarnings("unchecked")
+    ExpirationWheel() {
+        buckets = new Queue[WHEEL_SIZE];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Registers the item to be expired once the deadline is reached. If nothing is ticking yet the tick task is
+     * started on the given {@link EventLoop}.
+     */
+    void register(Expirable item, long deadlineNanos, EventLoop loop) {
+        // Round up so the bucket is never processed before the deadline.
+        long deadlineTick = (deadlineNanos - startNanos + TICK_NANOS - 1) / TICK_NANOS;
+        Registration registration = new Registration(item, deadlineNanos);
+        registrations.incrementAndGet();
+        for (;;) {
+            long tick = Math.max(deadlineTick, nextTick);
+            Queue<Registration> bucket = buckets[(int) (tick & MASK)];
+            bucket.add(registration);
+            // The tick task advances nextTick before it processes a bucket. So if it did not move past our tick, the
+            // bucket was not processed for it yet and will see the registration. Otherwise it may have been processed
+            // before the registration was added, which would delay it by a whole revolution, so take it back and
+            // retry with the next tick. If it can't be taken back it was processed after all.
+            if (tick >= nextTick || !bucket.remove(registration)) {
+                break;
+            }
+        }
+        startTicking(loop);
+    }
+
+    /**
+     * Returns the number of registrations, including outdated ones which were not dropped yet.
+     */
+    int registrations() {
+        return registrations.get();
+    }
+
+    private void startTicking(EventLoop loop) {
+        for (;;) {
+            EventLoop current = tickLoop;
+            if (current != null && !current.isShuttingDown()) {
+                return;
+            }
+            if (TICK_LOOP_UPDATER.compareAndSet(this, current, loop)) {
+                scheduleTick(loop);
+                return;
+            }
+        }
+    }
+
+    private void scheduleTick(EventLoop loop) {
+        long delay = startNanos + (currentTick() + 1) * TICK_NANOS - System.nanoTime();
+        try {
+            loop.schedule(() -> tick(loop), delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // The EventLoop is shutting down, the next registration will start ticking on another one. Until then
+            // the cache still expires entries lazily when they are looked up.
+            TICK_LOOP_UPDATER.compareAndSet(this, loop, null);
+        }
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startNanos) / TICK_NANOS;
+    }
+
+    private void tick(EventLoop loop) {
+        if (tickLoop != loop) {
+            // Ticking moved to another EventLoop after this one started to shut down.
+            return;
+        }
+        long now = System.nanoTime();
+        long currentTick = (now - startNanos) / TICK_NANOS;
+        long tick = nextTick;
+        // If we are more than one revolution behind every bucket is processed once, which covers all ticks.
+        long lastTick = Math.min(currentTick, tick + MASK);
+        for (; tick <= lastTick; tick++) {
+            // Advance first, see register().
+            nextTick = tick == lastTick ? currentTick + 1 : tick + 1;
+            expireBucket(buckets[(int) (tick & MASK)], now);
+        }
+
+        if (registrations.get() != 0) {
+            scheduleTick(loop);
+            return;
+        }
+        tickLoop = null;
+        if (registrations.get() != 0) {
+            // Something was registered while we stopped.
+            startTicking(loop);
+        }
+    }
+
+    private void expireBucket(Queue<Registration> bucket, long now) {
+        // Drain first as registrations for later revolutions are put back into the same bucket.
+        List<Registration> drained = new ArrayList<>();
+        for (;;) {
+            Registration registration = bucket.poll();
+            if (registration == null) {
+                break;
+            }
+            drained.add(registration);
+        }
+        for (Registration registration: drained) {
+            long deadline = registration.deadlineNanos;
+            if (registration.item.expirationNanos() != deadline) {
+                // Outdated, the item was registered again or removed.
+                registrations.decrementAndGet();
+            } else if (deadline - now <= 0) {
+                registrations.decrementAndGet();
+                try {
+                    registration.item.expire(deadline);
+                } catch (Throwable t) {
+                    // Don't let one item stop the others from being expired.
+                    logger.warn("An exception was thrown by {}.expire()", registration.item.getClass().getName(), t);
+                }
+            } else {
+                bucket.add(registration);
+            }
+        }
+    }
+
+    private static final class Registration {
+        final Expirable item;
+        final long deadlineNanos;
+
+        Registration(Expirable item, long deadlineNanos) {
+            this.item = item;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
@@ -17,6 +17,7 @@ package io.netty.resolver.dns;
 
 import io.netty.util.internal.UnstableApi;
 
+import java.net.InetSocketAddress;
 import java.util.List;
 
 /**
@@ -53,4 +54,18 @@ public final class MultiDnsServerAddressStreamProvider implements DnsServerAddre
         }
         return null;
     }
+
+    /**
+     * Returns the first {@link DnsQueryTransport} one of the providers returns for the name server.
+     */
+    @Override
+    public DnsQueryTransport queryTransport(InetSocketAddress nameServerAddress) {
+        for (DnsServerAddressStreamProvider provider : providers) {
+            DnsQueryTransport transport = provider.queryTransport(nameServerAddress);
+            if (transport != null) {
+                return transport;
+            }
+        }
+        return null;
+    }
 }
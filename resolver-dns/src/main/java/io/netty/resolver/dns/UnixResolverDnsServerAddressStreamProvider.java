@@ -15,13 +15,16 @@
  */
 package io.netty.resolver.dns;
 
+import io.netty.resolver.FileReloader;
 import io.netty.util.NetUtil;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.internal.SocketUtils;
 import io.netty.util.internal.UnstableApi;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
@@ -32,6 +35,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import static io.netty.resolver.dns.DefaultDnsServerAddressStreamProvider.DNS_PORT;
@@ -44,7 +49,7 @@ import static java.util.Objects.requireNonNull;
  * /etc/resolver</a> to respect the system default domain servers.
  */
 @UnstableApi
-public final class UnixResolverDnsServerAddressStreamProvider implements DnsServerAddressStreamProvider {
+public final class UnixResolverDnsServerAddressStreamProvider implements DnsServerAddressStreamProvider, Closeable {
     private static final InternalLogger logger =
             InternalLoggerFactory.getInstance(UnixResolverDnsServerAddressStreamProvider.class);
     private static final String ETC_RESOLV_CONF_FILE = "/etc/resolv.conf";
@@ -57,8 +62,8 @@ public final class UnixResolverDnsServerAddressStreamProvider implements DnsServ
     private static final String PORT_ROW_LABEL = "port";
     private static final String NDOTS_LABEL = "ndots:";
     static final int DEFAULT_NDOTS = 1;
-    private final DnsServerAddresses defaultNameServerAddresses;
-    private final Map<String, DnsServerAddresses> domainToNameServerStreamMap;
+    private volatile NameServers nameServers;
+    private final FileReloader<NameServers> reloader;
     private static final Pattern SEARCH_DOMAIN_PATTERN = Pattern.compile("\\s+");
 
     /**
@@ -91,24 +96,8 @@ public final class UnixResolverDnsServerAddressStreamProvider implements DnsServ
      * @throws IOException If an error occurs while parsing the input files.
      */
     public UnixResolverDnsServerAddressStreamProvider(File etcResolvConf, File... etcResolverFiles) throws IOException {
-        Map<String, DnsServerAddresses> etcResolvConfMap = parse(requireNonNull(etcResolvConf, "etcResolvConf"));
-        final boolean useEtcResolverFiles = etcResolverFiles != null && etcResolverFiles.length != 0;
-        domainToNameServerStreamMap = useEtcResolverFiles ? parse(etcResolverFiles) : etcResolvConfMap;
-
-        DnsServerAddresses defaultNameServerAddresses = etcResolvConfMap.get(etcResolvConf.getName());
-        if (defaultNameServerAddresses == null) {
-            Collection<DnsServerAddresses> values = etcResolvConfMap.values();
-            if (values.isEmpty()) {
-                throw new IllegalArgumentException(etcResolvConf + " didn't provide any name servers");
-            }
-            this.defaultNameServerAddresses = values.iterator().next();
-        } else {
-            this.defaultNameServerAddresses = defaultNameServerAddresses;
-        }
-
-        if (useEtcResolverFiles) {
-            domainToNameServerStreamMap.putAll(etcResolvConfMap);
-        }
+        nameServers = parseNameServers(requireNonNull(etcResolvConf, "etcResolvConf"), etcResolverFiles);
+        reloader = null;
     }
 
     /**
@@ -129,15 +118,69 @@ public final class UnixResolverDnsServerAddressStreamProvider implements DnsServ
              etcResolverDir == null ? null : new File(etcResolverDir).listFiles());
     }
 
+    /**
+     * Parse the files the same way as {@link #UnixResolverDnsServerAddressStreamProvider(String, String)} and parse
+     * them again whenever one of them changes or files are added to or removed from {@code etcResolverDir}, so
+     * changes to the name servers are picked up without creating a new resolver. If parsing fails after a change the
+     * previous name servers are kept.
+     * <p>
+     * Note that this only applies to the name servers, the search domains and {@code ndots} are still only read
+     * once when the default {@link DnsNameResolver} configuration is loaded.
+     * @param etcResolvConf <a href="https://linux.die.net/man/5/resolver">/etc/resolv.conf</a>.
+     * @param etcResolverDir Directory containing files of the format defined in
+     * <a href="
+     * https://developer.apple.com/legacy/library/documentation/Darwin/Reference/ManPages/man5/resolver.5.html">
+     * /etc/resolver</a>, may be {@code null}.
+     * @param executor the {@link EventExecutor} used to check if the files changed.
+     * @param parseExecutor the {@link Executor} used to parse the files once they changed, which should be allowed
+     *                      to block.
+     * @param refreshInterval the interval in which the files are checked for changes.
+     * @param unit the {@link TimeUnit} of {@code refreshInterval}.
+     * @throws IOException If an error occurs while parsing the input files initially.
+     */
+    public UnixResolverDnsServerAddressStreamProvider(File etcResolvConf, File etcResolverDir,
+                                                      EventExecutor executor, Executor parseExecutor,
+                                                      long refreshInterval, TimeUnit unit) throws IOException {
+        requireNonNull(etcResolvConf, "etcResolvConf");
+        nameServers = parseNameServers(etcResolvConf, etcResolverDir == null ? null : etcResolverDir.listFiles());
+        File[] watched = etcResolverDir == null ? new File[] { etcResolvConf }
+                                                : new File[] { etcResolvConf, etcResolverDir };
+        reloader = new FileReloader<>(executor, parseExecutor, refreshInterval, unit,
+                () -> parseNameServers(etcResolvConf, etcResolverDir == null ? null : etcResolverDir.listFiles()),
+                newNameServers -> nameServers = newNameServers, watched);
+    }
+
+    private static NameServers parseNameServers(File etcResolvConf, File... etcResolverFiles) throws IOException {
+        Map<String, DnsServerAddresses> etcResolvConfMap = parse(etcResolvConf);
+        final boolean useEtcResolverFiles = etcResolverFiles != null && etcResolverFiles.length != 0;
+        Map<String, DnsServerAddresses> domainToNameServerStreamMap =
+                useEtcResolverFiles ? parse(etcResolverFiles) : etcResolvConfMap;
+
+        DnsServerAddresses defaultNameServerAddresses = etcResolvConfMap.get(etcResolvConf.getName());
+        if (defaultNameServerAddresses == null) {
+            Collection<DnsServerAddresses> values = etcResolvConfMap.values();
+            if (values.isEmpty()) {
+                throw new IllegalArgumentException(etcResolvConf + " didn't provide any name servers");
+            }
+            defaultNameServerAddresses = values.iterator().next();
+        }
+
+        if (useEtcResolverFiles) {
+            domainToNameServerStreamMap.putAll(etcResolvConfMap);
+        }
+        return new NameServers(defaultNameServerAddresses, domainToNameServerStreamMap);
+    }
+
     @Override
     public DnsServerAddressStream nameServerAddressStream(String hostname) {
+        NameServers nameServers = this.nameServers;
         for (;;) {
             int i = hostname.indexOf('.', 1);
             if (i < 0 || i == hostname.length() - 1) {
-                return defaultNameServerAddresses.stream();
+                return nameServers.defaultNameServerAddresses.stream();
             }
 
-            DnsServerAddresses addresses = domainToNameServerStreamMap.get(hostname);
+            DnsServerAddresses addresses = nameServers.domainToNameServerStreamMap.get(hostname);
             if (addresses != null) {
                 return addresses.stream();
             }
@@ -146,8 +189,20 @@ public final class UnixResolverDnsServerAddressStreamProvider implements DnsServ
         }
     }
 
+    /**
+     * Stops reloading the files. The name servers which were parsed last are still used.
+     */
+    @Override
+    public void close() {
+        if (reloader != null) {
+            reloader.close();
+        }
+    }
+
     private boolean mayOverrideNameServers() {
-        return !domainToNameServerStreamMap.isEmpty() || defaultNameServerAddresses.stream().next() != null;
+        NameServers nameServers = this.nameServers;
+        return !nameServers.domainToNameServerStreamMap.isEmpty() ||
+                nameServers.defaultNameServerAddresses.stream().next() != null;
     }
 
     private static Map<String, DnsServerAddresses> parse(File... etcResolverFiles) throws IOException {
@@ -344,4 +399,18 @@ public final class UnixResolverDnsServerAddressStreamProvider implements DnsServ
                 ? Collections.singletonList(localDomain)
                 : searchDomains;
     }
+
+    /**
+     * The parsed name servers, which are replaced as a whole when the files are parsed again.
+     */
+    private static final class NameServers {
+        final DnsServerAddresses defaultNameServerAddresses;
+        final Map<String, DnsServerAddresses> domainToNameServerStreamMap;
+
+        NameServers(DnsServerAddresses defaultNameServerAddresses,
+                    Map<String, DnsServerAddresses> domainToNameServerStreamMap) {
+            this.defaultNameServerAddresses = defaultNameServerAddresses;
+            this.domainToNameServerStreamMap = domainToNameServerStreamMap;
+        }
+    }
 }
@@ -18,6 +18,7 @@ package io.netty.resolver.dns;
 import io.netty.channel.MultithreadEventLoopGroup;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
 
 import io.netty.channel.local.LocalHandler;
 import io.netty.channel.nio.NioHandler;
@@ -25,15 +26,20 @@ import io.netty.util.NetUtil;
 import org.junit.Test;
 
 import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class DefaultDnsCacheTest {
 
@@ -196,4 +202,176 @@ public class DefaultDnsCacheTest {
             group.shutdownGracefully();
         }
     }
+
+    @Test
+    public void testMaxSizeEvictsLeastRecentlyUsed() throws Exception {
+        EventLoopGroup group = new MultithreadEventLoopGroup(1, LocalHandler.newFactory());
+
+        try {
+            EventLoop loop = group.next();
+            final DefaultDnsCache cache = new DefaultDnsCache(0, 100, 0, 3, DnsCacheEvictionPolicy.LRU, 0, 0);
+            InetAddress addr = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+            cache.cache("a.netty.io", null, addr, 100, loop);
+            cache.cache("b.netty.io", null, addr, 100, loop);
+            cache.cache("c.netty.io", null, addr, 100, loop);
+            assertNotNull(cache.get("a.netty.io", null));
+
+            cache.cache("d.netty.io", null, addr, 100, loop);
+            assertNull(cache.get("b.netty.io", null));
+            assertNotNull(cache.get("a.netty.io", null));
+            assertNotNull(cache.get("c.netty.io", null));
+            assertNotNull(cache.get("d.netty.io", null));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testMaxSizeEvictsLeastFrequentlyUsed() throws Exception {
+        EventLoopGroup group = new MultithreadEventLoopGroup(1, LocalHandler.newFactory());
+
+        try {
+            EventLoop loop = group.next();
+            final DefaultDnsCache cache = new DefaultDnsCache(0, 100, 0, 3, DnsCacheEvictionPolicy.LFU, 0, 0);
+            InetAddress addr = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+            cache.cache("a.netty.io", null, addr, 100, loop);
+            cache.cache("b.netty.io", null, addr, 100, loop);
+            cache.cache("c.netty.io", null, addr, 100, loop);
+            for (int i = 0; i < 3; i++) {
+                assertNotNull(cache.get("a.netty.io", null));
+            }
+            assertNotNull(cache.get("c.netty.io", null));
+            assertNotNull(cache.get("c.netty.io", null));
+            // b.netty.io is the most recently used but also the least frequently used.
+            assertNotNull(cache.get("b.netty.io", null));
+
+            cache.cache("d.netty.io", null, addr, 100, loop);
+            assertNull(cache.get("b.netty.io", null));
+            assertNotNull(cache.get("a.netty.io", null));
+            assertNotNull(cache.get("c.netty.io", null));
+            assertNotNull(cache.get("d.netty.io", null));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testServeStale() throws Exception {
+        InetAddress addr1 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        InetAddress addr2 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 });
+        EventLoopGroup group = new MultithreadEventLoopGroup(1, LocalHandler.newFactory());
+
+        try {
+            EventLoop loop = group.next();
+            final DefaultDnsCache cache = new DefaultDnsCache(0, 100, 0, 0, DnsCacheEvictionPolicy.LRU, 100, 0);
+            cache.cache("netty.io", null, addr1, 1, loop);
+            assertNull(cache.getStale("netty.io", null));
+
+            while (cache.get("netty.io", null) != null) {
+                Thread.sleep(50);
+            }
+            List<? extends DnsCacheEntry> stale = cache.getStale("netty.io", null);
+            assertEquals(1, stale.size());
+            assertEntry(stale.get(0), addr1);
+
+            // Fresh results replace the stale ones.
+            cache.cache("netty.io", null, addr2, 100, loop);
+            assertNull(cache.getStale("netty.io", null));
+            List<? extends DnsCacheEntry> entries = cache.get("netty.io", null);
+            assertEquals(1, entries.size());
+            assertEntry(entries.get(0), addr2);
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testStaleFailuresAreNotKept() throws Exception {
+        EventLoopGroup group = new MultithreadEventLoopGroup(1, LocalHandler.newFactory());
+
+        try {
+            EventLoop loop = group.next();
+            final DefaultDnsCache cache = new DefaultDnsCache(0, 100, 1, 0, DnsCacheEvictionPolicy.LRU, 100, 0);
+            cache.cache("netty.io", null, new UnknownHostException(), loop);
+
+            while (cache.get("netty.io", null) != null) {
+                Thread.sleep(50);
+            }
+            assertNull(cache.getStale("netty.io", null));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testPrefetch() throws Exception {
+        InetAddress addr1 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        InetAddress addr2 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 });
+        EventLoopGroup group = new MultithreadEventLoopGroup(1, LocalHandler.newFactory());
+
+        try {
+            EventLoop loop = group.next();
+            final DefaultDnsCache cache = new DefaultDnsCache(0, 100, 0, 0, DnsCacheEvictionPolicy.LRU, 100, 2);
+            cache.cache("netty.io", null, addr1, 1, loop);
+            assertNotNull(cache.get("netty.io", null));
+            // Not used often enough yet.
+            assertFalse(cache.needsPrefetch("netty.io", null));
+            assertNotNull(cache.get("netty.io", null));
+
+            boolean prefetch = false;
+            while (!prefetch && cache.get("netty.io", null) != null) {
+                prefetch = cache.needsPrefetch("netty.io", null);
+                Thread.sleep(10);
+            }
+            assertTrue(prefetch);
+            // Only one caller should refresh the entry.
+            assertFalse(cache.needsPrefetch("netty.io", null));
+
+            // The refreshed results replace the old ones and expire based on their own TTL.
+            cache.cache("netty.io", null, addr2, 100, loop);
+            Thread.sleep(1500);
+            List<? extends DnsCacheEntry> entries = cache.get("netty.io", null);
+            assertEquals(1, entries.size());
+            assertEntry(entries.get(0), addr2);
+            assertFalse(cache.needsPrefetch("netty.io", null));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testEntriesAddedWhileGoingStaleAreNotLost() {
+        // The ExpirationWheel never ticks on an EmbeddedEventLoop, so only the lookups below expire the entries.
+        EventLoop loop = new EmbeddedChannel().eventLoop();
+        final AtomicBoolean expireWhileAdding = new AtomicBoolean();
+        final Cache<String> cache = new Cache<String>(0, DnsCacheEvictionPolicy.LRU, 100, 0) {
+            @Override
+            protected boolean shouldReplaceAll(String entry) {
+                return false;
+            }
+
+            @Override
+            protected boolean equals(String entry, String otherEntry) {
+                return entry.equals(otherEntry);
+            }
+
+            @Override
+            protected void sortEntries(String hostname, List<String> entries) {
+                // Expire the entries after add() read them but before it swaps in the new list.
+                if (expireWhileAdding.getAndSet(false)) {
+                    assertNull(get(hostname));
+                }
+            }
+        };
+        cache.cache("netty.io", "a", 0, loop);
+        cache.cache("netty.io", "b", 0, loop);
+
+        expireWhileAdding.set(true);
+        cache.cache("netty.io", "c", 100, loop);
+        assertFalse(expireWhileAdding.get());
+
+        // The entry which was added concurrently replaces the stale ones instead of going stale with them.
+        assertNull(cache.getStale("netty.io"));
+        assertEquals(Collections.singletonList("c"), cache.get("netty.io"));
+    }
 }
@@ -15,19 +15,35 @@
  */
 package io.netty.resolver.dns;
 
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufHolder;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.AddressedEnvelope;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFactory;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.MultithreadEventLoopGroup;
 import io.netty.channel.ReflectiveChannelFactory;
+import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.nio.NioHandler;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.InternetProtocolFamily;
 import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.dns.DatagramDnsQuery;
+import io.netty.handler.codec.dns.DatagramDnsQueryDecoder;
+import io.netty.handler.codec.dns.DatagramDnsResponse;
+import io.netty.handler.codec.dns.DatagramDnsResponseEncoder;
+import io.netty.handler.codec.dns.DefaultDnsRawRecord;
+import io.netty.handler.codec.dns.DefaultDnsResponse;
+import io.netty.handler.codec.dns.DnsQuery;
 import io.netty.handler.codec.dns.DefaultDnsQuestion;
 import io.netty.handler.codec.dns.DnsQuestion;
 import io.netty.handler.codec.dns.DnsRawRecord;
@@ -36,6 +52,8 @@ import io.netty.handler.codec.dns.DnsRecordType;
 import io.netty.handler.codec.dns.DnsResponse;
 import io.netty.handler.codec.dns.DnsResponseCode;
 import io.netty.handler.codec.dns.DnsSection;
+import io.netty.handler.codec.dns.TcpDnsQueryDecoder;
+import io.netty.handler.codec.dns.TcpDnsResponseEncoder;
 import io.netty.resolver.HostsFileEntriesResolver;
 import io.netty.resolver.ResolvedAddressTypes;
 import io.netty.util.CharsetUtil;
@@ -2489,6 +2507,229 @@ public class DnsNameResolverTest {
         }
     }
 
+    @Test(timeout = 10000)
+    public void testTruncatedResponseRetriedOverTcp() throws Exception {
+        TcpAndUdpDnsServer server = new TcpAndUdpDnsServer();
+        DnsNameResolver resolver = new DnsNameResolverBuilder(group.next())
+                .channelType(NioDatagramChannel.class)
+                .socketChannelType(NioSocketChannel.class)
+                .nameServerProvider(new SingletonDnsServerAddressStreamProvider(server.localAddress()))
+                .resolvedAddressTypes(ResolvedAddressTypes.IPV4_ONLY)
+                .optResourceEnabled(false)
+                .ndots(1)
+                .build();
+        try {
+            List<InetAddress> addresses = resolver.resolveAll("netty.io").syncUninterruptibly().getNow();
+            assertEquals(TcpAndUdpDnsServer.ADDRESSES, addresses.size());
+            assertEquals(1, server.udpQueries.get());
+            assertEquals(1, server.tcpQueries.get());
+        } finally {
+            resolver.close();
+            server.stop();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTruncatedResponseRetriedOverTcpWithOwnTimeout() throws Exception {
+        // The UDP and the TCP query each fit into the timeout, but not both together.
+        TcpAndUdpDnsServer server = new TcpAndUdpDnsServer(600);
+        DnsNameResolver resolver = new DnsNameResolverBuilder(group.next())
+                .channelType(NioDatagramChannel.class)
+                .socketChannelType(NioSocketChannel.class)
+                .nameServerProvider(new SingletonDnsServerAddressStreamProvider(server.localAddress()))
+                .resolvedAddressTypes(ResolvedAddressTypes.IPV4_ONLY)
+                .queryTimeoutMillis(1000)
+                .maxQueriesPerResolve(1)
+                .optResourceEnabled(false)
+                .ndots(1)
+                .build();
+        try {
+            List<InetAddress> addresses = resolver.resolveAll("netty.io").syncUninterruptibly().getNow();
+            assertEquals(TcpAndUdpDnsServer.ADDRESSES, addresses.size());
+            assertEquals(1, server.tcpQueries.get());
+        } finally {
+            resolver.close();
+            server.stop();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTruncatedResponseWithoutTcp() throws Exception {
+        TcpAndUdpDnsServer server = new TcpAndUdpDnsServer();
+        DnsNameResolver resolver = new DnsNameResolverBuilder(group.next())
+                .channelType(NioDatagramChannel.class)
+                .nameServerProvider(new SingletonDnsServerAddressStreamProvider(server.localAddress()))
+                .resolvedAddressTypes(ResolvedAddressTypes.IPV4_ONLY)
+                .optResourceEnabled(false)
+                .ndots(1)
+                .build();
+        try {
+            // Without TCP the truncated response is used as is.
+            List<InetAddress> addresses = resolver.resolveAll("netty.io").syncUninterruptibly().getNow();
+            assertEquals(1, addresses.size());
+            assertEquals(0, server.tcpQueries.get());
+        } finally {
+            resolver.close();
+            server.stop();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTcpPreferredPipelinesOnSingleConnection() throws Exception {
+        TcpAndUdpDnsServer server = new TcpAndUdpDnsServer();
+        DnsNameResolver resolver = new DnsNameResolverBuilder(group.next())
+                .channelType(NioDatagramChannel.class)
+                .socketChannelType(NioSocketChannel.class)
+                .tcpPreferred(true)
+                .nameServerProvider(new SingletonDnsServerAddressStreamProvider(server.localAddress()))
+                .resolvedAddressTypes(ResolvedAddressTypes.IPV4_ONLY)
+                .optResourceEnabled(false)
+                .ndots(1)
+                .build();
+        try {
+            List<Future<List<InetAddress>>> futures = new ArrayList<Future<List<InetAddress>>>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(resolver.resolveAll("host" + i + ".netty.io"));
+            }
+            for (Future<List<InetAddress>> future: futures) {
+                assertEquals(TcpAndUdpDnsServer.ADDRESSES, future.syncUninterruptibly().getNow().size());
+            }
+            assertEquals(0, server.udpQueries.get());
+            assertEquals(10, server.tcpQueries.get());
+            assertEquals(1, server.tcpConnections.get());
+        } finally {
+            resolver.close();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testTcpPreferredRequiresSocketChannelFactory() {
+        expectedException.expect(IllegalStateException.class);
+        new DnsNameResolverBuilder(group.next())
+                .channelType(NioDatagramChannel.class)
+                .tcpPreferred(true)
+                .build();
+    }
+
+    @Test(timeout = 10000)
+    public void testServeStaleWhenNameServerUnreachable() throws Exception {
+        InetAddress address = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        // This is used to simulate a query timeout...
+        DatagramSocket socket = new DatagramSocket(new InetSocketAddress(0));
+        DefaultDnsCache cache = new DefaultDnsCache(0, 100, 0, 0, DnsCacheEvictionPolicy.LRU, 100, 0);
+        DnsNameResolver resolver = new DnsNameResolverBuilder(group.next())
+                .channelType(NioDatagramChannel.class)
+                .nameServerProvider(new SingletonDnsServerAddressStreamProvider(
+                        (InetSocketAddress) socket.getLocalSocketAddress()))
+                .resolvedAddressTypes(ResolvedAddressTypes.IPV4_ONLY)
+                .resolveCache(cache)
+                .queryTimeoutMillis(100)
+                .maxQueriesPerResolve(1)
+                .optResourceEnabled(false)
+                .ndots(1)
+                .build();
+        try {
+            cache.cache("netty.io", null, address, 1, group.next());
+            while (cache.get("netty.io", null) != null) {
+                Thread.sleep(50);
+            }
+            assertEquals(address, resolver.resolve("netty.io").syncUninterruptibly().getNow());
+            assertEquals(Collections.singletonList(address),
+                    resolver.resolveAll("netty.io").syncUninterruptibly().getNow());
+        } finally {
+            resolver.close();
+            socket.close();
+        }
+    }
+
+    /**
+     * Name server which answers over UDP with a truncated response and over TCP with the complete one.
+     */
+    private static final class TcpAndUdpDnsServer {
+        static final int ADDRESSES = 32;
+
+        final AtomicInteger udpQueries = new AtomicInteger();
+        final AtomicInteger tcpQueries = new AtomicInteger();
+        final AtomicInteger tcpConnections = new AtomicInteger();
+        private final Channel tcpChannel;
+        private final Channel udpChannel;
+
+        TcpAndUdpDnsServer() {
+            this(0);
+        }
+
+        /**
+         * Creates a server which delays each of its responses by {@code delayMillis}.
+         */
+        TcpAndUdpDnsServer(long delayMillis) {
+            tcpChannel = new ServerBootstrap()
+                    .group(group, group)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            tcpConnections.incrementAndGet();
+                            ch.pipeline().addLast(new TcpDnsQueryDecoder(), new TcpDnsResponseEncoder(),
+                                    new SimpleChannelInboundHandler<DnsQuery>() {
+                                @Override
+                                protected void channelRead0(ChannelHandlerContext ctx, DnsQuery query) {
+                                    tcpQueries.incrementAndGet();
+                                    respond(ctx, newResponse(query, new DefaultDnsResponse(query.id()), ADDRESSES),
+                                            delayMillis);
+                                }
+                            });
+                        }
+                    }).bind(NetUtil.LOCALHOST4, 0).syncUninterruptibly().channel();
+            udpChannel = new Bootstrap()
+                    .group(group)
+                    .channel(NioDatagramChannel.class)
+                    .handler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            ch.pipeline().addLast(new DatagramDnsQueryDecoder(), new DatagramDnsResponseEncoder(),
+                                    new SimpleChannelInboundHandler<DatagramDnsQuery>() {
+                                @Override
+                                protected void channelRead0(ChannelHandlerContext ctx, DatagramDnsQuery query) {
+                                    udpQueries.incrementAndGet();
+                                    DnsResponse response = newResponse(query, new DatagramDnsResponse(
+                                            query.recipient(), query.sender(), query.id()), 1);
+                                    response.setTruncated(true);
+                                    respond(ctx, response, delayMillis);
+                                }
+                            });
+                        }
+                    }).bind(localAddress()).syncUninterruptibly().channel();
+        }
+
+        private static void respond(ChannelHandlerContext ctx, DnsResponse response, long delayMillis) {
+            if (delayMillis > 0) {
+                ctx.executor().schedule(() -> ctx.writeAndFlush(response), delayMillis, TimeUnit.MILLISECONDS);
+            } else {
+                ctx.writeAndFlush(response);
+            }
+        }
+
+        private static DnsResponse newResponse(DnsQuery query, DnsResponse response, int addresses) {
+            DnsQuestion question = query.recordAt(DnsSection.QUESTION);
+            response.addRecord(DnsSection.QUESTION, question);
+            for (int i = 0; i < addresses; i++) {
+                response.addRecord(DnsSection.ANSWER, new DefaultDnsRawRecord(question.name(), A, 60,
+                        Unpooled.wrappedBuffer(new byte[] { 10, 0, 0, (byte) i })));
+            }
+            return response;
+        }
+
+        InetSocketAddress localAddress() {
+            return (InetSocketAddress) tcpChannel.localAddress();
+        }
+
+        void stop() {
+            tcpChannel.close().syncUninterruptibly();
+            udpChannel.close().syncUninterruptibly();
+        }
+    }
+
     private static List<String> decodeTxt(DnsRecord record) {
         if (!(record instanceof DnsRawRecord)) {
             return Collections.emptyList();
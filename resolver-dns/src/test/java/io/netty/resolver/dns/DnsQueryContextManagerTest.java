@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.channel.nio.NioHandler;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.handler.codec.dns.DefaultDnsQuestion;
+import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.util.NetUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DnsQueryContextManagerTest {
+
+    private static final InetSocketAddress NAME_SERVER = new InetSocketAddress(NetUtil.LOCALHOST4, 53);
+
+    private static EventLoopGroup group;
+    private static DnsNameResolver resolver;
+
+    @BeforeClass
+    public static void setUp() {
+        group = new MultithreadEventLoopGroup(1, NioHandler.newFactory());
+        resolver = new DnsNameResolverBuilder(group.next())
+                .channelType(NioDatagramChannel.class)
+                .nameServerProvider(new SingletonDnsServerAddressStreamProvider(NAME_SERVER))
+                .build();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        resolver.close();
+        group.shutdownGracefully();
+    }
+
+    private static DnsQueryContext newContext() {
+        return new DnsQueryContext(resolver, NAME_SERVER, new DefaultDnsQuestion("netty.io.", DnsRecordType.A),
+                new DnsRecord[0], resolver.executor().newPromise());
+    }
+
+    @Test
+    public void testAddGetRemove() {
+        DnsQueryContextManager manager = resolver.queryContextManager;
+        List<DnsQueryContext> contexts = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            contexts.add(newContext());
+        }
+        for (DnsQueryContext qCtx: contexts) {
+            assertTrue(qCtx.id() > 0 && qCtx.id() <= 65535);
+            assertSame(qCtx, manager.get(NAME_SERVER, qCtx.id()));
+            // The IPv4-compatible IPv6 address of the name server maps to the same query.
+            assertSame(qCtx, manager.get(new InetSocketAddress(NetUtil.LOCALHOST6, 53), qCtx.id()));
+        }
+        for (DnsQueryContext qCtx: contexts) {
+            assertSame(qCtx, manager.remove(NAME_SERVER, qCtx.id()));
+            assertNull(manager.get(NAME_SERVER, qCtx.id()));
+            assertNull(manager.remove(NAME_SERVER, qCtx.id()));
+        }
+        assertNull(manager.get(new InetSocketAddress(NetUtil.LOCALHOST4, 5353), 1));
+    }
+
+    @Test
+    public void testIdSpaceExhaustion() {
+        DnsQueryContextManager.DnsQueryIdSpace ids = new DnsQueryContextManager.DnsQueryIdSpace();
+        DnsQueryContext qCtx = newContext();
+        resolver.queryContextManager.remove(NAME_SERVER, qCtx.id());
+        for (int i = 0; i < 65535; i++) {
+            int id = ids.add(qCtx);
+            assertTrue(id > 0 && id <= 65535);
+        }
+        assertEquals(-1, ids.add(qCtx));
+        assertSame(qCtx, ids.remove(4242));
+        assertEquals(4242, ids.add(qCtx));
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentAdd() throws Throwable {
+        final int threads = 4;
+        final int perThread = 2000;
+        final Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(threads);
+        final List<DnsQueryContext> contexts = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                try {
+                    List<DnsQueryContext> added = new ArrayList<>();
+                    for (int j = 0; j < perThread; j++) {
+                        DnsQueryContext qCtx = newContext();
+                        assertTrue(ids.add(qCtx.id()));
+                        added.add(qCtx);
+                    }
+                    synchronized (contexts) {
+                        contexts.addAll(added);
+                    }
+                } catch (Throwable cause) {
+                    error.compareAndSet(null, cause);
+                } finally {
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+        if (error.get() != null) {
+            throw error.get();
+        }
+        assertEquals(threads * perThread, ids.size());
+        for (DnsQueryContext qCtx: contexts) {
+            assertSame(qCtx, resolver.queryContextManager.remove(NAME_SERVER, qCtx.id()));
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioHandler;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.dns.DefaultDnsRawRecord;
+import io.netty.handler.codec.dns.DefaultDnsResponse;
+import io.netty.handler.codec.dns.DnsQuery;
+import io.netty.handler.codec.dns.DnsQuestion;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.handler.codec.dns.DnsResponse;
+import io.netty.handler.codec.dns.DnsSection;
+import io.netty.handler.codec.dns.TcpDnsQueryDecoder;
+import io.netty.handler.codec.dns.TcpDnsResponseEncoder;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http2.DefaultHttp2DataFrame;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+import io.netty.handler.codec.http2.Http2MultiplexCodecBuilder;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.resolver.ResolvedAddressTypes;
+import io.netty.util.NetUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class DnsQueryTransportTest {
+
+    private static final int QUERIES = 10;
+
+    private static EventLoopGroup group;
+    private static SelfSignedCertificate certificate;
+    private static SslContext serverSslContext;
+    private static SslContext clientSslContext;
+    private static SslContext trustingClientSslContext;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        group = new MultithreadEventLoopGroup(2, NioHandler.newFactory());
+        certificate = new SelfSignedCertificate();
+        serverSslContext = SslContextBuilder.forServer(certificate.certificate(), certificate.privateKey()).build();
+        clientSslContext = SslContextBuilder.forClient().trustManager(InsecureTrustManagerFactory.INSTANCE).build();
+        trustingClientSslContext = SslContextBuilder.forClient().trustManager(certificate.cert()).build();
+    }
+
+    @AfterClass
+    public static void teardown() {
+        group.shutdownGracefully();
+        certificate.delete();
+    }
+
+    @Test(timeout = 10000)
+    public void testTls() throws Exception {
+        AtomicInteger connections = new AtomicInteger();
+        Channel server = bindServer(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                connections.incrementAndGet();
+                ch.pipeline().addLast(serverSslContext.newHandler(ch.alloc()), new TcpDnsQueryDecoder(),
+                                      new TcpDnsResponseEncoder(), new AnsweringHandler());
+            }
+        });
+        try {
+            testResolve(server, DnsQueryTransport.tls(clientSslContext));
+            // All queries were pipelined on one connection.
+            assertEquals(1, connections.get());
+        } finally {
+            server.close().sync();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTlsVerifiesIpAddress() throws Exception {
+        Channel server = bindServer(newTlsServerInitializer());
+        // The certificate is trusted but was issued for localhost, not for the IP address of the name server.
+        DnsNameResolver resolver = newResolver(server, DnsQueryTransport.tls(trustingClientSslContext));
+        try {
+            Future<InetAddress> future = resolver.resolve("host1.netty.io").await();
+            assertFalse(future.isSuccess());
+        } finally {
+            resolver.close();
+            server.close().sync();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTlsWithoutEndpointIdentification() throws Exception {
+        Channel server = bindServer(newTlsServerInitializer());
+        try {
+            testResolve(server, DnsQueryTransport.tls(trustingClientSslContext, false));
+        } finally {
+            server.close().sync();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testHttps() throws Exception {
+        AtomicInteger connections = new AtomicInteger();
+        AtomicInteger streams = new AtomicInteger();
+        Channel server = bindServer(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                connections.incrementAndGet();
+                ch.pipeline().addLast(serverSslContext.newHandler(ch.alloc()),
+                        Http2MultiplexCodecBuilder.forServer(new ChannelInitializer<Http2StreamChannel>() {
+                            @Override
+                            protected void initChannel(Http2StreamChannel ch) {
+                                streams.incrementAndGet();
+                                ch.pipeline().addLast(new DohServerFrameCodec(HttpResponseStatus.OK),
+                                        new TcpDnsQueryDecoder(), new TcpDnsResponseEncoder(), new AnsweringHandler());
+                            }
+                        }).build());
+            }
+        });
+        try {
+            testResolve(server, DnsQueryTransport.https(clientSslContext));
+            // All queries were multiplexed over one connection.
+            assertEquals(1, connections.get());
+            assertEquals(QUERIES, streams.get());
+        } finally {
+            server.close().sync();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testHttpsErrorStatus() throws Exception {
+        Channel server = bindServer(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline().addLast(serverSslContext.newHandler(ch.alloc()),
+                        Http2MultiplexCodecBuilder.forServer(
+                                new DohServerFrameCodec(HttpResponseStatus.INTERNAL_SERVER_ERROR)).build());
+            }
+        });
+        DnsNameResolver resolver = newResolver(server, DnsQueryTransport.https(clientSslContext));
+        try {
+            Future<InetAddress> future = resolver.resolve("host1.netty.io").await();
+            assertFalse(future.isSuccess());
+        } finally {
+            resolver.close();
+            server.close().sync();
+        }
+    }
+
+    private static ChannelHandler newTlsServerInitializer() {
+        return new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline().addLast(serverSslContext.newHandler(ch.alloc()), new TcpDnsQueryDecoder(),
+                                      new TcpDnsResponseEncoder(), new AnsweringHandler());
+            }
+        };
+    }
+
+    private static Channel bindServer(ChannelHandler childHandler) throws InterruptedException {
+        return new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(childHandler)
+                .bind(NetUtil.LOCALHOST4, 0).sync().channel();
+    }
+
+    private static DnsNameResolver newResolver(Channel server, DnsQueryTransport transport) {
+        return new DnsNameResolverBuilder(group.next())
+                .channelType(NioDatagramChannel.class)
+                .socketChannelType(NioSocketChannel.class)
+                .nameServerProvider(DnsServerAddressStreamProviders.withQueryTransport(
+                        new SingletonDnsServerAddressStreamProvider((InetSocketAddress) server.localAddress()),
+                        transport))
+                .resolvedAddressTypes(ResolvedAddressTypes.IPV4_ONLY)
+                .searchDomains(Collections.emptyList())
+                .build();
+    }
+
+    private static void testResolve(Channel server, DnsQueryTransport transport) throws Exception {
+        DnsNameResolver resolver = newResolver(server, transport);
+        try {
+            List<Future<InetAddress>> futures = new ArrayList<>();
+            for (int i = 1; i <= QUERIES; i++) {
+                futures.add(resolver.resolve("host" + i + ".netty.io"));
+            }
+            for (int i = 1; i <= QUERIES; i++) {
+                assertEquals("10.0.0." + i, futures.get(i - 1).sync().getNow().getHostAddress());
+            }
+        } finally {
+            resolver.close();
+        }
+    }
+
+    /**
+     * Answers {@code hostN.netty.io} with {@code 10.0.0.N}.
+     */
+    private static final class AnsweringHandler extends SimpleChannelInboundHandler<DnsQuery> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, DnsQuery query) {
+            DnsQuestion question = query.recordAt(DnsSection.QUESTION);
+            String name = question.name();
+            int host = Integer.parseInt(name.substring(4, name.indexOf('.')));
+            DnsResponse response = new DefaultDnsResponse(query.id());
+            response.addRecord(DnsSection.QUESTION, question);
+            response.addRecord(DnsSection.ANSWER, new DefaultDnsRawRecord(name, DnsRecordType.A, 60,
+                    Unpooled.wrappedBuffer(new byte[] { 10, 0, 0, (byte) host })));
+            ctx.writeAndFlush(response);
+        }
+    }
+
+    /**
+     * Translates between the HTTP/2 frames of a DNS over HTTPS request and the TCP framing of DNS messages.
+     */
+    @ChannelHandler.Sharable
+    private static final class DohServerFrameCodec extends ChannelDuplexHandler {
+        private final HttpResponseStatus status;
+        private ByteBuf body;
+
+        DohServerFrameCodec(HttpResponseStatus status) {
+            this.status = status;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof Http2HeadersFrame) {
+                Http2Headers headers = ((Http2HeadersFrame) msg).headers();
+                assertEquals(HttpMethod.POST.asciiName(), headers.method());
+                assertEquals(DnsQueryTransport.DEFAULT_HTTPS_PATH, headers.path().toString());
+                assertEquals("application/dns-message", headers.get(HttpHeaderNames.CONTENT_TYPE).toString());
+                if (status != HttpResponseStatus.OK) {
+                    ctx.writeAndFlush(new DefaultHttp2HeadersFrame(
+                            new DefaultHttp2Headers().status(status.codeAsText()), true));
+                }
+            } else if (msg instanceof Http2DataFrame) {
+                Http2DataFrame dataFrame = (Http2DataFrame) msg;
+                if (body == null) {
+                    body = ctx.alloc().buffer().writeShort(0);
+                }
+                body.writeBytes(dataFrame.content());
+                if (dataFrame.isEndStream()) {
+                    ByteBuf body = this.body;
+                    this.body = null;
+                    body.setShort(0, body.readableBytes() - 2);
+                    ctx.fireChannelRead(body);
+                }
+                dataFrame.release();
+            } else {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            ByteBuf response = ((ByteBuf) msg).skipBytes(2);
+            ctx.write(new DefaultHttp2HeadersFrame(new DefaultHttp2Headers()
+                    .status(HttpResponseStatus.OK.codeAsText())
+                    .set(HttpHeaderNames.CONTENT_TYPE, "application/dns-message"), false));
+            ctx.write(new DefaultHttp2DataFrame(response, true), promise);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.channel.local.LocalHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExpirationWheelTest {
+
+    private static EventLoopGroup group;
+
+    @BeforeClass
+    public static void setup() {
+        group = new MultithreadEventLoopGroup(1, LocalHandler.newFactory());
+    }
+
+    @AfterClass
+    public static void teardown() {
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 10000)
+    public void testExpire() throws Exception {
+        EventLoop loop = group.next();
+        ExpirationWheel wheel = new ExpirationWheel();
+        CountDownLatch latch = new CountDownLatch(100);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+        for (int i = 0; i < 100; i++) {
+            wheel.register(new TestExpirable(deadline, latch), deadline, loop);
+        }
+        assertEquals(100, wheel.registrations());
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - deadline >= 0);
+        assertEquals(0, wheel.registrations());
+    }
+
+    @Test(timeout = 10000)
+    public void testOutdatedRegistrationIsDropped() throws Exception {
+        EventLoop loop = group.next();
+        ExpirationWheel wheel = new ExpirationWheel();
+        CountDownLatch latch = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+        TestExpirable expirable = new TestExpirable(deadline, latch);
+        wheel.register(expirable, deadline, loop);
+
+        // Move the deadline, the registration for the first deadline must not expire the item.
+        long newDeadline = deadline + TimeUnit.SECONDS.toNanos(1);
+        expirable.deadline = newDeadline;
+        wheel.register(expirable, newDeadline, loop);
+        assertEquals(2, wheel.registrations());
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - newDeadline >= 0);
+        assertEquals(1, expirable.expired.get());
+        assertEquals(0, wheel.registrations());
+    }
+
+    @Test(timeout = 10000)
+    public void testDeadlineInThePast() throws Exception {
+        EventLoop loop = group.next();
+        ExpirationWheel wheel = new ExpirationWheel();
+        CountDownLatch latch = new CountDownLatch(1);
+        long deadline = System.nanoTime() - TimeUnit.SECONDS.toNanos(10);
+        wheel.register(new TestExpirable(deadline, latch), deadline, loop);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void testExpireThrows() throws Exception {
+        EventLoop loop = group.next();
+        ExpirationWheel wheel = new ExpirationWheel();
+        CountDownLatch latch = new CountDownLatch(3);
+        long deadline = System.nanoTime() - 1;
+        long laterDeadline = deadline + ExpirationWheel.TICK_NANOS;
+        // Registered first, so it is expired before the others in the same bucket.
+        wheel.register(new TestExpirable(deadline, latch) {
+            @Override
+            public void expire(long deadlineNanos) {
+                super.expire(deadlineNanos);
+                throw new IllegalStateException();
+            }
+        }, deadline, loop);
+        wheel.register(new TestExpirable(deadline, latch), deadline, loop);
+        wheel.register(new TestExpirable(laterDeadline, latch), laterDeadline, loop);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        while (wheel.registrations() != 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testRegisterWhileTicking() throws Exception {
+        EventLoop loop = group.next();
+        ExpirationWheel wheel = new ExpirationWheel();
+        // Register from another thread while buckets are processed, none of the registrations may end up in a
+        // bucket which was processed already and so only expire a revolution later. The deadline was reached
+        // already, so all of them go into the bucket which is processed next.
+        long deadline = System.nanoTime() - 1;
+        TestExpirable expirable = new TestExpirable(deadline, new CountDownLatch(0));
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+        int registered = 0;
+        while (System.nanoTime() - end < 0) {
+            wheel.register(expirable, deadline, loop);
+            if (++registered % 100 == 0) {
+                Thread.sleep(1);
+            }
+        }
+        while (wheel.registrations() != 0) {
+            Thread.sleep(100);
+        }
+        assertEquals(registered, expirable.expired.get());
+    }
+
+    private static class TestExpirable implements ExpirationWheel.Expirable {
+        final AtomicInteger expired = new AtomicInteger();
+        private final CountDownLatch latch;
+        volatile long deadline;
+
+        TestExpirable(long deadline, CountDownLatch latch) {
+            this.deadline = deadline;
+            this.latch = latch;
+        }
+
+        @Override
+        public long expirationNanos() {
+            return deadline;
+        }
+
+        @Override
+        public void expire(long deadlineNanos) {
+            assertEquals(deadline, deadlineNanos);
+            expired.incrementAndGet();
+            latch.countDown();
+        }
+    }
+}
@@ -16,6 +16,8 @@
 package io.netty.resolver.dns;
 
 import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -28,10 +30,14 @@ import java.net.InetSocketAddress;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static io.netty.resolver.dns.UnixResolverDnsServerAddressStreamProvider.DEFAULT_NDOTS;
 import static io.netty.resolver.dns.UnixResolverDnsServerAddressStreamProvider.parseEtcResolverFirstNdots;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class UnixResolverDnsServerAddressStreamProviderTest {
     @Rule
@@ -164,15 +170,59 @@ public class UnixResolverDnsServerAddressStreamProviderTest {
         assertEquals(Collections.singletonList("squarecorp.local"), domains);
     }
 
+    @Test(timeout = 10000)
+    public void nameServersAreReloaded() throws Exception {
+        File resolvConf = buildFile("domain linecorp.local\n" +
+                                    "nameserver 127.0.0.2\n");
+        File resolverDir = folder.newFolder();
+        EventExecutorGroup group = new DefaultEventExecutorGroup(1);
+        ExecutorService parseExecutor = Executors.newSingleThreadExecutor();
+        UnixResolverDnsServerAddressStreamProvider p = new UnixResolverDnsServerAddressStreamProvider(
+                resolvConf, resolverDir, group.next(), parseExecutor, 10, TimeUnit.MILLISECONDS);
+        try {
+            assertHostNameEquals("127.0.0.2", p.nameServerAddressStream("somehost").next());
+
+            // A broken file must not replace the name servers.
+            long lastModified = resolvConf.lastModified();
+            writeFile(resolvConf, "domain linecorp.local\n");
+            assertTrue(resolvConf.setLastModified(lastModified + 2000));
+            Thread.sleep(200);
+            assertHostNameEquals("127.0.0.2", p.nameServerAddressStream("somehost").next());
+
+            writeFile(resolvConf, "domain linecorp.local\n" +
+                                  "nameserver 127.0.0.3\n");
+            assertTrue(resolvConf.setLastModified(lastModified + 4000));
+            while (!"127.0.0.3".equals(p.nameServerAddressStream("somehost").next().getHostString())) {
+                Thread.sleep(10);
+            }
+
+            // Files added to the resolver directory are picked up as well.
+            File squarecorp = new File(resolverDir, "squarecorp.local");
+            writeFile(squarecorp, "nameserver 127.0.0.4\n");
+            while (!"127.0.0.4".equals(p.nameServerAddressStream("a.squarecorp.local").next().getHostString())) {
+                Thread.sleep(10);
+            }
+            assertHostNameEquals("127.0.0.3", p.nameServerAddressStream("somehost").next());
+        } finally {
+            p.close();
+            group.shutdownGracefully();
+            parseExecutor.shutdown();
+        }
+    }
+
     private File buildFile(String contents) throws IOException {
         File f = folder.newFile();
+        writeFile(f, contents);
+        return f;
+    }
+
+    private static void writeFile(File f, String contents) throws IOException {
         OutputStream out = new FileOutputStream(f);
         try {
             out.write(contents.getBytes(CharsetUtil.UTF_8));
         } finally {
             out.close();
         }
-        return f;
     }
 
     private static void assertHostNameEquals(String expectedHostname, InetSocketAddress next) {
@@ -16,66 +16,121 @@
 package io.netty.resolver;
 
 import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.nio.charset.Charset;
 import java.util.Locale;
-import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
 
 /**
- * Default {@link HostsFileEntriesResolver} that resolves hosts file entries only once.
+ * Default {@link HostsFileEntriesResolver} that resolves hosts file entries only once, or reloads them whenever the
+ * hosts file changes if created with
+ * {@link #DefaultHostsFileEntriesResolver(File, EventExecutor, Executor, long, TimeUnit)}.
  */
 @UnstableApi
-public final class DefaultHostsFileEntriesResolver implements HostsFileEntriesResolver {
+public final class DefaultHostsFileEntriesResolver implements HostsFileEntriesResolver, Closeable {
+
+    private static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(DefaultHostsFileEntriesResolver.class);
 
-    private final Map<String, Inet4Address> inet4Entries;
-    private final Map<String, Inet6Address> inet6Entries;
+    private volatile HostsFileIndex index;
+    private final FileReloader<HostsFileIndex> reloader;
 
     public DefaultHostsFileEntriesResolver() {
-        this(parseEntries());
+        index = parseSilently(HostsFileParser.locateHostsFile());
+        reloader = null;
+    }
+
+    /**
+     * Creates a new instance which parses the given hosts file and reloads it whenever it changes.
+     *
+     * @param hostsFile the hosts file.
+     * @param executor the {@link EventExecutor} used to check if the hosts file changed.
+     * @param parseExecutor the {@link Executor} used to parse the hosts file once it changed, which should be allowed
+     *                      to block.
+     * @param refreshInterval the interval in which the hosts file is checked for changes.
+     * @param unit the {@link TimeUnit} of {@code refreshInterval}.
+     */
+    public DefaultHostsFileEntriesResolver(File hostsFile, EventExecutor executor, Executor parseExecutor,
+                                           long refreshInterval, TimeUnit unit) {
+        requireNonNull(hostsFile, "hostsFile");
+        index = parseSilently(hostsFile);
+        reloader = new FileReloader<>(executor, parseExecutor, refreshInterval, unit,
+                () -> HostsFileParser.parseIndex(hostsFile, charsets()), newIndex -> index = newIndex, hostsFile);
     }
 
     // for testing purpose only
     DefaultHostsFileEntriesResolver(HostsFileEntries entries) {
-        inet4Entries = entries.inet4Entries();
-        inet6Entries = entries.inet6Entries();
+        index = HostsFileIndex.of(entries);
+        reloader = null;
     }
 
     @Override
     public InetAddress address(String inetHost, ResolvedAddressTypes resolvedAddressTypes) {
         String normalized = normalize(inetHost);
+        HostsFileIndex index = this.index;
         switch (resolvedAddressTypes) {
             case IPV4_ONLY:
-                return inet4Entries.get(normalized);
+                return index.inet4Address(normalized);
             case IPV6_ONLY:
-                return inet6Entries.get(normalized);
+                return index.inet6Address(normalized);
             case IPV4_PREFERRED:
-                Inet4Address inet4Address = inet4Entries.get(normalized);
-                return inet4Address != null? inet4Address : inet6Entries.get(normalized);
+                Inet4Address inet4Address = index.inet4Address(normalized);
+                return inet4Address != null? inet4Address : index.inet6Address(normalized);
             case IPV6_PREFERRED:
-                Inet6Address inet6Address = inet6Entries.get(normalized);
-                return inet6Address != null? inet6Address : inet4Entries.get(normalized);
+                Inet6Address inet6Address = index.inet6Address(normalized);
+                return inet6Address != null? inet6Address : index.inet4Address(normalized);
             default:
                 throw new IllegalArgumentException("Unknown ResolvedAddressTypes " + resolvedAddressTypes);
         }
     }
 
+    /**
+     * Stops reloading the hosts file. The entries which were loaded last are still used.
+     */
+    @Override
+    public void close() {
+        if (reloader != null) {
+            reloader.close();
+        }
+    }
+
     // package-private for testing purposes
     String normalize(String inetHost) {
         return inetHost.toLowerCase(Locale.ENGLISH);
     }
 
-    private static HostsFileEntries parseEntries() {
+    private static HostsFileIndex parseSilently(File hostsFile) {
+        try {
+            return HostsFileParser.parseIndex(hostsFile, charsets());
+        } catch (IOException e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Failed to load and parse hosts file at " + hostsFile.getPath(), e);
+            }
+            return HostsFileIndex.EMPTY;
+        }
+    }
+
+    private static Charset[] charsets() {
         if (PlatformDependent.isWindows()) {
             // Ony windows there seems to be no standard for the encoding used for the hosts file, so let us
             // try multiple until we either were able to parse it or there is none left and so we return an
             // empty intstance.
-            return HostsFileParser.parseSilently(Charset.defaultCharset(), CharsetUtil.UTF_16, CharsetUtil.UTF_8);
+            return new Charset[] { Charset.defaultCharset(), CharsetUtil.UTF_16, CharsetUtil.UTF_8 };
         }
-        return HostsFileParser.parseSilently();
+        return new Charset[] { Charset.defaultCharset() };
     }
 }
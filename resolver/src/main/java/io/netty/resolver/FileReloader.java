@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reloads configuration files, such as a hosts file or {@code /etc/resolv.conf}, whenever they change.
+ * <p>
+ * The modification time and length of the files are polled on an {@link EventExecutor}, which is cheap enough to do
+ * on an event loop. Once a change is seen the files are loaded on a separate {@link Executor}, so a slow disk or a
+ * large file never blocks the event loop, and the result is handed to a {@link Consumer} which is expected to swap
+ * an immutable representation of it atomically. If loading fails the previous result stays in use and the files are
+ * loaded again once they change again.
+ * <p>
+ * Directories are watched one level deep, so adding, removing or changing a file in a directory is seen as well.
+ *
+ * @param <T> the type of the loaded result
+ */
+@UnstableApi
+public final class FileReloader<T> implements Closeable {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(FileReloader.class);
+
+    private final File[] files;
+    private final Executor loadExecutor;
+    private final Callable<T> loader;
+    private final Consumer<? super T> consumer;
+    private final ScheduledFuture<?> pollFuture;
+    // Only accessed from the EventExecutor which polls.
+    private long[] snapshot;
+    private volatile boolean loading;
+
+    /**
+     * Creates a new instance and starts polling. The files are expected to be loaded already, changes are detected
+     * relative to their state when this constructor is called.
+     *
+     * @param executor the {@link EventExecutor} on which the files are polled.
+     * @param loadExecutor the {@link Executor} on which {@code loader} is called.
+     * @param interval the interval between two polls.
+     * @param unit the {@link TimeUnit} of {@code interval}.
+     * @param loader loads the files.
+     * @param consumer called with the result of {@code loader} after each successful load.
+     * @param files the files or directories to watch.
+     */
+    public FileReloader(EventExecutor executor, Executor loadExecutor, long interval, TimeUnit unit,
+                        Callable<T> loader, Consumer<? super T> consumer, File... files) {
+        requireNonNull(executor, "executor");
+        this.loadExecutor = requireNonNull(loadExecutor, "loadExecutor");
+        checkPositive(interval, "interval");
+        requireNonNull(unit, "unit");
+        this.loader = requireNonNull(loader, "loader");
+        this.consumer = requireNonNull(consumer, "consumer");
+        this.files = requireNonNull(files, "files").clone();
+        snapshot = snapshot(this.files);
+        pollFuture = executor.scheduleWithFixedDelay(this::poll, interval, interval, unit);
+    }
+
+    /**
+     * Stops polling. A load which is in progress is still handed to the {@link Consumer}.
+     */
+    @Override
+    public void close() {
+        pollFuture.cancel(false);
+    }
+
+    private void poll() {
+        if (loading) {
+            return;
+        }
+        long[] snapshot = snapshot(files);
+        if (Arrays.equals(snapshot, this.snapshot)) {
+            return;
+        }
+        // Remember the new state even if loading fails, so a broken file is not loaded over and over again.
+        this.snapshot = snapshot;
+        loading = true;
+        try {
+            loadExecutor.execute(() -> {
+                try {
+                    T result = loader.call();
+                    consumer.accept(result);
+                    logger.debug("Reloaded {}", Arrays.toString(files));
+                } catch (Throwable cause) {
+                    logger.warn("Failed to reload {}, keeping the previous version", Arrays.toString(files), cause);
+                } finally {
+                    loading = false;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Failed to schedule the reload of {}", Arrays.toString(files), e);
+            loading = false;
+        }
+    }
+
+    private static long[] snapshot(File[] files) {
+        List<File> watched = new ArrayList<>(files.length);
+        for (File file: files) {
+            watched.add(file);
+            File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                Collections.addAll(watched, children);
+            }
+        }
+        long[] snapshot = new long[watched.size() * 3];
+        int i = 0;
+        for (File file: watched) {
+            snapshot[i++] = file.getName().hashCode();
+            // Both are 0 if the file does not exist.
+            snapshot[i++] = file.lastModified();
+            snapshot[i++] = file.length();
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+
+/**
+ * Immutable index of hosts file entries, keyed by lower-case hostname.
+ * <p>
+ * Instead of two {@link Map}s holding an {@link InetAddress} per hostname and address family, the entries are kept in
+ * a single open addressing table of parallel arrays, which saves the map entries and a second lookup for hosts files
+ * with hundreds of thousands of entries. The {@link InetAddress}es are created once while building the index and use
+ * the hostname as written in the hosts file, so a lookup neither allocates nor changes the result depending on the
+ * case of the queried hostname.
+ */
+final class HostsFileIndex {
+
+    static final HostsFileIndex EMPTY = new Builder().build();
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String[] names;
+    private final Inet4Address[] inet4Addresses;
+    private final Inet6Address[] inet6Addresses;
+    private final int size;
+
+    private HostsFileIndex(Builder builder) {
+        names = builder.names;
+        inet4Addresses = builder.inet4Addresses;
+        inet6Addresses = builder.inet6Addresses;
+        size = builder.size;
+    }
+
+    /**
+     * Creates an index which contains the given entries.
+     */
+    static HostsFileIndex of(HostsFileEntries entries) {
+        Builder builder = new Builder();
+        for (Map.Entry<String, Inet4Address> e: entries.inet4Entries().entrySet()) {
+            builder.add(e.getKey(), e.getValue());
+        }
+        for (Map.Entry<String, Inet6Address> e: entries.inet6Entries().entrySet()) {
+            builder.add(e.getKey(), e.getValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the number of hostnames in this index.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the IPv4 address of the given lower-case hostname, or {@code null} if there is none.
+     */
+    Inet4Address inet4Address(String normalized) {
+        int slot = slot(names, normalized);
+        return slot < 0 ? null : inet4Addresses[slot];
+    }
+
+    /**
+     * Returns the IPv6 address of the given lower-case hostname, or {@code null} if there is none.
+     */
+    Inet6Address inet6Address(String normalized) {
+        int slot = slot(names, normalized);
+        return slot < 0 ? null : inet6Addresses[slot];
+    }
+
+    private static int slot(String[] names, String name) {
+        int mask = names.length - 1;
+        int slot = hash(name) & mask;
+        for (;;) {
+            String existing = names[slot];
+            if (existing == null) {
+                return -1 - slot;
+            }
+            if (existing.equals(name)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Builds a {@link HostsFileIndex}. Only the first address per hostname and address family is kept, the same way
+     * as {@link HostsFileParser} does.
+     */
+    static final class Builder {
+        private String[] names = new String[INITIAL_CAPACITY];
+        private Inet4Address[] inet4Addresses = new Inet4Address[INITIAL_CAPACITY];
+        private Inet6Address[] inet6Addresses = new Inet6Address[INITIAL_CAPACITY];
+        private int size;
+
+        /**
+         * Adds an address given as its 4 or 16 bytes for the given hostname as written in the hosts file, which is
+         * looked up by {@code normalized}. IPv4-mapped IPv6 addresses are added as IPv4 addresses, like
+         * {@link InetAddress#getByAddress(String, byte[])} does.
+         */
+        void add(String normalized, String hostname, byte[] address) {
+            final InetAddress inetAddress;
+            try {
+                inetAddress = InetAddress.getByAddress(hostname, address);
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException("address must be 4 or 16 bytes: " + address.length, e);
+            }
+            add(normalized, inetAddress);
+        }
+
+        /**
+         * Adds the given address for the given lower-case hostname.
+         */
+        void add(String normalized, InetAddress address) {
+            int slot = slot(names, normalized);
+            if (slot < 0) {
+                if ((size + 1) << 1 > names.length) {
+                    grow();
+                    slot = slot(names, normalized);
+                }
+                slot = -1 - slot;
+                names[slot] = normalized;
+                size++;
+            }
+
+            // Keep the first entry.
+            if (address instanceof Inet4Address) {
+                if (inet4Addresses[slot] == null) {
+                    inet4Addresses[slot] = (Inet4Address) address;
+                }
+            } else if (inet6Addresses[slot] == null) {
+                inet6Addresses[slot] = (Inet6Address) address;
+            }
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Builds the index, this {@link Builder} must not be used anymore afterwards.
+         */
+        HostsFileIndex build() {
+            return new HostsFileIndex(this);
+        }
+
+        private void grow() {
+            String[] oldNames = names;
+            Inet4Address[] oldInet4Addresses = inet4Addresses;
+            Inet6Address[] oldInet6Addresses = inet6Addresses;
+            int capacity = oldNames.length << 1;
+            names = new String[capacity];
+            inet4Addresses = new Inet4Address[capacity];
+            inet6Addresses = new Inet6Address[capacity];
+            for (int i = 0; i < oldNames.length; i++) {
+                String name = oldNames[i];
+                if (name != null) {
+                    int slot = -1 - slot(names, name);
+                    names[slot] = name;
+                    inet4Addresses[slot] = oldInet4Addresses[i];
+                    inet6Addresses[slot] = oldInet6Addresses[i];
+                }
+            }
+        }
+    }
+}
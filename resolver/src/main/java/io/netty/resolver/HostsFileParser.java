@@ -54,7 +54,7 @@ public final class HostsFileParser {
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(HostsFileParser.class);
 
-    private static File locateHostsFile() {
+    static File locateHostsFile() {
         File hostsFile;
         if (PlatformDependent.isWindows()) {
             hostsFile = new File(System.getenv("SystemRoot") + WINDOWS_HOSTS_FILE_RELATIVE_PATH);
@@ -148,10 +148,51 @@ public final class HostsFileParser {
      */
     public static HostsFileEntries parse(Reader reader) throws IOException {
         requireNonNull(reader, "reader");
+        Map<String, Inet4Address> ipv4Entries = new HashMap<>();
+        Map<String, Inet6Address> ipv6Entries = new HashMap<>();
+        parse(reader, (hostname, ipBytes) -> {
+            String hostnameLower = hostname.toLowerCase(Locale.ENGLISH);
+            InetAddress address = InetAddress.getByAddress(hostname, ipBytes);
+            if (address instanceof Inet4Address) {
+                // we want to keep the first entry
+                ipv4Entries.putIfAbsent(hostnameLower, (Inet4Address) address);
+            } else {
+                ipv6Entries.putIfAbsent(hostnameLower, (Inet6Address) address);
+            }
+        });
+        return ipv4Entries.isEmpty() && ipv6Entries.isEmpty() ?
+                HostsFileEntries.EMPTY :
+                new HostsFileEntries(ipv4Entries, ipv6Entries);
+    }
+
+    /**
+     * Parse a hosts file into a {@link HostsFileIndex}, which is more compact than {@link HostsFileEntries} for
+     * large files.
+     *
+     * @param file the file to be parsed
+     * @param charsets the {@link Charset}s to try as file encodings when parsing.
+     * @return a {@link HostsFileIndex}
+     * @throws IOException file could not be read
+     */
+    static HostsFileIndex parseIndex(File file, Charset... charsets) throws IOException {
+        requireNonNull(file, "file");
+        requireNonNull(charsets, "charsets");
+        if (file.exists() && file.isFile()) {
+            for (Charset charset: charsets) {
+                HostsFileIndex.Builder builder = new HostsFileIndex.Builder();
+                parse(new InputStreamReader(new FileInputStream(file), charset),
+                      (hostname, ipBytes) -> builder.add(hostname.toLowerCase(Locale.ENGLISH), hostname, ipBytes));
+                if (!builder.isEmpty()) {
+                    return builder.build();
+                }
+            }
+        }
+        return HostsFileIndex.EMPTY;
+    }
+
+    private static void parse(Reader reader, EntryConsumer consumer) throws IOException {
         BufferedReader buff = new BufferedReader(reader);
         try {
-            Map<String, Inet4Address> ipv4Entries = new HashMap<>();
-            Map<String, Inet6Address> ipv6Entries = new HashMap<>();
             String line;
             while ((line = buff.readLine()) != null) {
                 // remove comment
@@ -188,27 +229,9 @@ public final class HostsFileParser {
 
                 // loop over hostname and aliases
                 for (int i = 1; i < lineParts.size(); i ++) {
-                    String hostname = lineParts.get(i);
-                    String hostnameLower = hostname.toLowerCase(Locale.ENGLISH);
-                    InetAddress address = InetAddress.getByAddress(hostname, ipBytes);
-                    if (address instanceof Inet4Address) {
-                        Inet4Address previous = ipv4Entries.put(hostnameLower, (Inet4Address) address);
-                        if (previous != null) {
-                            // restore, we want to keep the first entry
-                            ipv4Entries.put(hostnameLower, previous);
-                        }
-                    } else {
-                        Inet6Address previous = ipv6Entries.put(hostnameLower, (Inet6Address) address);
-                        if (previous != null) {
-                            // restore, we want to keep the first entry
-                            ipv6Entries.put(hostnameLower, previous);
-                        }
-                    }
+                    consumer.accept(lineParts.get(i), ipBytes);
                 }
             }
-            return ipv4Entries.isEmpty() && ipv6Entries.isEmpty() ?
-                    HostsFileEntries.EMPTY :
-                    new HostsFileEntries(ipv4Entries, ipv6Entries);
         } finally {
             try {
                 buff.close();
@@ -218,6 +241,13 @@ public final class HostsFileParser {
         }
     }
 
+    /**
+     * Consumes the entries of a hosts file, one per hostname or alias.
+     */
+    private interface EntryConsumer {
+        void accept(String hostname, byte[] ipBytes) throws IOException;
+    }
+
     /**
      * Can't be instantiated.
      */
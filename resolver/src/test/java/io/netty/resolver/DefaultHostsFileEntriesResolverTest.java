@@ -15,18 +15,33 @@
  */
 package io.netty.resolver;
 
+import io.netty.util.CharsetUtil;
 import io.netty.util.NetUtil;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class DefaultHostsFileEntriesResolverTest {
 
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * show issue https://github.com/netty/netty/issues/5182
      * HostsFileParser tries to resolve hostnames as case-sensitive
@@ -81,4 +96,57 @@ public class DefaultHostsFileEntriesResolverTest {
         InetAddress address = resolver.address("localhost", ResolvedAddressTypes.IPV6_PREFERRED);
         Assert.assertTrue("Should pick an IPv6 address", address instanceof Inet6Address);
     }
+
+    @Test
+    public void shouldKeepHostsFileHostname() throws Exception {
+        Map<String, Inet4Address> inet4Entries = new HashMap<>();
+        inet4Entries.put("localhost",
+                         (Inet4Address) InetAddress.getByAddress("LocalHost", NetUtil.LOCALHOST4.getAddress()));
+
+        DefaultHostsFileEntriesResolver resolver = new DefaultHostsFileEntriesResolver(
+                new HostsFileEntries(inet4Entries, new HashMap<>()));
+
+        InetAddress address = resolver.address("LOCALHOST", ResolvedAddressTypes.IPV4_ONLY);
+        Assert.assertEquals("LocalHost", address.getHostName());
+        Assert.assertEquals(NetUtil.LOCALHOST4, address);
+        Assert.assertSame(address, resolver.address("localhost", ResolvedAddressTypes.IPV4_ONLY));
+    }
+
+    @Test(timeout = 10000)
+    public void testReload() throws Exception {
+        File hostsFile = folder.newFile("hosts");
+        writeHostsFile(hostsFile, "10.0.0.1 host1\n");
+        EventExecutorGroup group = new DefaultEventExecutorGroup(1);
+        ExecutorService parseExecutor = Executors.newSingleThreadExecutor();
+        DefaultHostsFileEntriesResolver resolver = new DefaultHostsFileEntriesResolver(
+                hostsFile, group.next(), parseExecutor, 10, TimeUnit.MILLISECONDS);
+        try {
+            Assert.assertEquals("10.0.0.1",
+                                resolver.address("host1", ResolvedAddressTypes.IPV4_ONLY).getHostAddress());
+            Assert.assertNull(resolver.address("host2", ResolvedAddressTypes.IPV4_ONLY));
+
+            long lastModified = hostsFile.lastModified();
+            writeHostsFile(hostsFile, "10.0.0.2 host1\n10.0.0.3 host2\n");
+            // Make sure the change is visible even if the file system only stores seconds.
+            Assert.assertTrue(hostsFile.setLastModified(lastModified + 2000));
+
+            InetAddress address;
+            while ((address = resolver.address("host2", ResolvedAddressTypes.IPV4_ONLY)) == null) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals("10.0.0.3", address.getHostAddress());
+            Assert.assertEquals("10.0.0.2",
+                                resolver.address("host1", ResolvedAddressTypes.IPV4_ONLY).getHostAddress());
+        } finally {
+            resolver.close();
+            group.shutdownGracefully();
+            parseExecutor.shutdown();
+        }
+    }
+
+    private static void writeHostsFile(File file, String content) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(CharsetUtil.UTF_8));
+        }
+    }
 }
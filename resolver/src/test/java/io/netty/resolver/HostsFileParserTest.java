@@ -16,6 +16,7 @@
 package io.netty.resolver;
 
 import io.netty.util.CharsetUtil;
+import io.netty.util.NetUtil;
 import io.netty.util.internal.ResourcesUtil;
 import org.junit.Assume;
 import org.junit.Test;
@@ -92,6 +93,70 @@ public class HostsFileParserTest {
                                             CharsetUtil.UTF_8, CharsetUtil.ISO_8859_1, unicodeCharset));
     }
 
+    @Test
+    public void testParseIndex() throws IOException {
+        final Charset unicodeCharset;
+        try {
+            unicodeCharset = Charset.forName("unicode");
+        } catch (UnsupportedCharsetException e) {
+            Assume.assumeNoException(e);
+            return;
+        }
+        HostsFileIndex index = HostsFileParser.parseIndex(ResourcesUtil.getFile(getClass(),  "hosts-unicode"),
+                                                          CharsetUtil.UTF_8, CharsetUtil.ISO_8859_1, unicodeCharset);
+        assertEquals(2, index.size());
+        assertEquals("127.0.0.1", index.inet4Address("localhost").getHostAddress());
+        assertEquals("255.255.255.255", index.inet4Address("broadcasthost").getHostAddress());
+        assertEquals("0:0:0:0:0:0:0:1", index.inet6Address("localhost").getHostAddress());
+        assertNull(index.inet6Address("broadcasthost"));
+        assertNull(index.inet4Address("unknown"));
+    }
+
+    @Test
+    public void testIndexLargeNumberOfEntries() {
+        HostsFileIndex.Builder builder = new HostsFileIndex.Builder();
+        int entries = 100000;
+        for (int i = 0; i < entries; i++) {
+            String hostname = "host" + i;
+            builder.add(hostname, hostname, new byte[] { 10, (byte) (i >>> 16), (byte) (i >>> 8), (byte) i });
+            if (i % 2 == 0) {
+                builder.add(hostname, hostname, new byte[] {
+                        0x20, 0x01, 0x0d, (byte) 0xb8, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) (i >>> 16), (byte) (i >>> 8),
+                        (byte) i });
+            }
+        }
+        // Only the first address per family is kept.
+        builder.add("host0", "host0", new byte[] { 127, 0, 0, 1 });
+        HostsFileIndex index = builder.build();
+
+        assertEquals(entries, index.size());
+        for (int i = 0; i < entries; i++) {
+            String hostname = "host" + i;
+            Inet4Address inet4Address = index.inet4Address(hostname);
+            assertEquals("10." + (i >>> 16 & 0xff) + '.' + (i >>> 8 & 0xff) + '.' + (i & 0xff),
+                         inet4Address.getHostAddress());
+            assertEquals(hostname, inet4Address.getHostName());
+            assertSame(inet4Address, index.inet4Address(hostname));
+            Inet6Address inet6Address = index.inet6Address(hostname);
+            if (i % 2 == 0) {
+                assertEquals("2001:db8:0:0:0:0:" + Integer.toHexString(i >>> 16 & 0xff) + ':' +
+                             Integer.toHexString(i & 0xffff), inet6Address.getHostAddress());
+            } else {
+                assertNull(inet6Address);
+            }
+        }
+        assertNull(index.inet4Address("host" + entries));
+    }
+
+    @Test
+    public void testIndexIpv4MappedAddress() throws IOException {
+        HostsFileIndex.Builder builder = new HostsFileIndex.Builder();
+        builder.add("host1", "host1", NetUtil.createByteArrayFromIpAddressString("::ffff:192.168.0.1"));
+        HostsFileIndex index = builder.build();
+        assertEquals("192.168.0.1", index.inet4Address("host1").getHostAddress());
+        assertNull(index.inet6Address("host1"));
+    }
+
     private static void testParseFile(HostsFileEntries entries) throws IOException {
         Map<String, Inet4Address> inet4Entries = entries.inet4Entries();
         Map<String, Inet6Address> inet6Entries = entries.inet6Entries();
@@ -55,6 +55,35 @@
 #define SO_BUSY_POLL 46
 #endif
 
+// TCP_ULP is defined in linux 4.13. We define this here so older kernels can compile.
+#ifndef TCP_ULP
+#define TCP_ULP 31
+#endif
+
+// SOL_TLS is defined in linux 4.13. We define this here so older kernels can compile.
+#ifndef SOL_TLS
+#define SOL_TLS 282
+#endif
+
+// The kernel TLS constants and structs are defined in linux/tls.h, which is only present since linux 4.13. We mirror
+// the ones we need here so older kernels can compile.
+#define NETTY_TLS_TX 1
+#define NETTY_TLS_RX 2
+#define NETTY_TLS_CIPHER_AES_GCM_128 51
+#define NETTY_TLS_CIPHER_AES_GCM_128_IV_SIZE 8
+#define NETTY_TLS_CIPHER_AES_GCM_128_KEY_SIZE 16
+#define NETTY_TLS_CIPHER_AES_GCM_128_SALT_SIZE 4
+#define NETTY_TLS_CIPHER_AES_GCM_128_REC_SEQ_SIZE 8
+
+struct netty_tls12_crypto_info_aes_gcm_128 {
+    unsigned short version;
+    unsigned short cipher_type;
+    unsigned char iv[NETTY_TLS_CIPHER_AES_GCM_128_IV_SIZE];
+    unsigned char key[NETTY_TLS_CIPHER_AES_GCM_128_KEY_SIZE];
+    unsigned char salt[NETTY_TLS_CIPHER_AES_GCM_128_SALT_SIZE];
+    unsigned char rec_seq[NETTY_TLS_CIPHER_AES_GCM_128_REC_SEQ_SIZE];
+};
+
 static jclass peerCredentialsClass = NULL;
 static jmethodID peerCredentialsMethodId = NULL;
 
@@ -158,6 +187,39 @@ static void netty_epoll_linuxsocket_setTcpMd5Sig(JNIEnv* env, jclass clazz, jint
     }
 }
 
+static void netty_epoll_linuxsocket_setTcpUlpTls(JNIEnv* env, jclass clazz, jint fd) {
+    static const char ulp[] = "tls";
+    netty_unix_socket_setOption(env, fd, IPPROTO_TCP, TCP_ULP, (void*) ulp, sizeof(ulp));
+}
+
+static jboolean netty_epoll_linuxsocket_copyTlsCryptoBytes(JNIEnv* env, jbyteArray src, unsigned char* dst, jint dstLen) {
+    if ((*env)->GetArrayLength(env, src) != dstLen) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "invalid kernel TLS crypto info: ", EINVAL);
+        return JNI_FALSE;
+    }
+    (*env)->GetByteArrayRegion(env, src, 0, dstLen, (jbyte*) dst);
+    return (*env)->ExceptionCheck(env) == JNI_TRUE ? JNI_FALSE : JNI_TRUE;
+}
+
+static void netty_epoll_linuxsocket_setTlsCryptoInfoAesGcm128(JNIEnv* env, jclass clazz, jint fd, jboolean tx, jint version,
+        jbyteArray key, jbyteArray iv, jbyteArray salt, jbyteArray recSeq) {
+    struct netty_tls12_crypto_info_aes_gcm_128 info;
+    memset(&info, 0, sizeof(info));
+    info.version = (unsigned short) version;
+    info.cipher_type = NETTY_TLS_CIPHER_AES_GCM_128;
+
+    if (netty_epoll_linuxsocket_copyTlsCryptoBytes(env, key, info.key, NETTY_TLS_CIPHER_AES_GCM_128_KEY_SIZE) == JNI_FALSE ||
+        netty_epoll_linuxsocket_copyTlsCryptoBytes(env, iv, info.iv, NETTY_TLS_CIPHER_AES_GCM_128_IV_SIZE) == JNI_FALSE ||
+        netty_epoll_linuxsocket_copyTlsCryptoBytes(env, salt, info.salt, NETTY_TLS_CIPHER_AES_GCM_128_SALT_SIZE) == JNI_FALSE ||
+        netty_epoll_linuxsocket_copyTlsCryptoBytes(env, recSeq, info.rec_seq, NETTY_TLS_CIPHER_AES_GCM_128_REC_SEQ_SIZE) == JNI_FALSE) {
+        return;
+    }
+
+    netty_unix_socket_setOption(env, fd, SOL_TLS, tx == JNI_TRUE ? NETTY_TLS_TX : NETTY_TLS_RX, &info, sizeof(info));
+    // Don't keep the key material on the stack longer than needed.
+    memset(&info, 0, sizeof(info));
+}
+
 static jint netty_epoll_linuxsocket_getTcpKeepIdle(JNIEnv* env, jclass clazz, jint fd) {
     int optval;
     if (netty_unix_socket_getOption(env, fd, IPPROTO_TCP, TCP_KEEPIDLE, &optval, sizeof(optval)) == -1) {
@@ -385,7 +447,9 @@ static const JNINativeMethod fixed_method_table[] = {
   { "isIpTransparent", "(I)I", (void *) netty_epoll_linuxsocket_isIpTransparent },
   { "isIpRecvOrigDestAddr", "(I)I", (void *) netty_epoll_linuxsocket_isIpRecvOrigDestAddr },
   { "getTcpInfo", "(I[J)V", (void *) netty_epoll_linuxsocket_getTcpInfo },
-  { "setTcpMd5Sig", "(I[BI[B)V", (void *) netty_epoll_linuxsocket_setTcpMd5Sig }
+  { "setTcpMd5Sig", "(I[BI[B)V", (void *) netty_epoll_linuxsocket_setTcpMd5Sig },
+  { "setTcpUlpTls", "(I)V", (void *) netty_epoll_linuxsocket_setTcpUlpTls },
+  { "setTlsCryptoInfoAesGcm128", "(IZI[B[B[B[B)V", (void *) netty_epoll_linuxsocket_setTlsCryptoInfoAesGcm128 }
   // "sendFile" has a dynamic signature
 };
 
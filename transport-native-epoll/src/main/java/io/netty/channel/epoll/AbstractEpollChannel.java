@@ -560,7 +560,7 @@ abstract class AbstractEpollChannel extends AbstractChannel implements UnixChann
                     // Schedule connect timeout.
                     int connectTimeoutMillis = config().getConnectTimeoutMillis();
                     if (connectTimeoutMillis > 0) {
-                        connectTimeoutFuture = eventLoop().schedule(() -> {
+                        connectTimeoutFuture = eventLoop().scheduleApproximately(() -> {
                             ChannelPromise connectPromise = AbstractEpollChannel.this.connectPromise;
                             ConnectTimeoutException cause =
                                     new ConnectTimeoutException("connection timed out: " + remoteAddress);
@@ -656,7 +656,7 @@ abstract class AbstractEpollChannel extends AbstractChannel implements UnixChann
          * Finish the connect
          */
         private boolean doFinishConnect() throws Exception {
-            if (socket.finishConnect()) {
+            if (finishConnect0()) {
                 clearFlag(Native.EPOLLOUT);
                 if (requestedRemoteAddress instanceof InetSocketAddress) {
                     remote = computeRemoteAddr((InetSocketAddress) requestedRemoteAddress, socket.remoteAddress());
@@ -732,6 +732,13 @@ abstract class AbstractEpollChannel extends AbstractChannel implements UnixChann
         }
     }
 
+    /**
+     * Finishes a connection attempt which was in progress, returns {@code false} if it still is.
+     */
+    boolean finishConnect0() throws Exception {
+        return socket.finishConnect();
+    }
+
     @Override
     protected SocketAddress localAddress0() {
         return local;
@@ -62,6 +62,8 @@ public class EpollHandler implements IoHandler {
     private final FileDescriptor eventFd;
     private final FileDescriptor timerFd;
     private final IntObjectMap<AbstractEpollChannel> channels = new IntObjectHashMap<AbstractEpollChannel>(4096);
+    // Channels by the additional eventfds they are woken up by, see EpollRegistration.addEventFd(...).
+    private final IntObjectMap<AbstractEpollChannel> eventFdChannels = new IntObjectHashMap<AbstractEpollChannel>();
     private final boolean allowGrowing;
     private final EpollEventArray events;
 
@@ -193,6 +195,16 @@ public class EpollHandler implements IoHandler {
                 EpollHandler.this.remove(epollChannel);
             }
 
+            @Override
+            public void addEventFd(FileDescriptor eventFd) throws IOException {
+                EpollHandler.this.addEventFd(epollChannel, eventFd);
+            }
+
+            @Override
+            public void removeEventFd(FileDescriptor eventFd) throws IOException {
+                EpollHandler.this.removeEventFd(eventFd);
+            }
+
             @Override
             public IovArray cleanIovArray() {
                 return EpollHandler.this.cleanIovArray();
@@ -249,6 +261,20 @@ public class EpollHandler implements IoHandler {
         }
     }
 
+    private void addEventFd(AbstractEpollChannel ch, FileDescriptor eventFd) throws IOException {
+        int fd = eventFd.intValue();
+        // Level-triggered like our own eventFd, as it is always read once signalled.
+        Native.epollCtlAdd(epollFd.intValue(), fd, Native.EPOLLIN);
+        eventFdChannels.put(fd, ch);
+    }
+
+    private void removeEventFd(FileDescriptor eventFd) throws IOException {
+        int fd = eventFd.intValue();
+        if (eventFdChannels.remove(fd) != null && eventFd.isOpen()) {
+            Native.epollCtlDel(epollFd.intValue(), fd);
+        }
+    }
+
     private int epollWait(IoExecutionContext context, boolean oldWakeup) throws IOException {
         // If a task was submitted when wakenUp value was 1, the task didn't get a chance to produce wakeup event.
         // So we need to check task queue again before calling epoll_wait. If we don't, the task might be pended
@@ -425,6 +451,9 @@ public class EpollHandler implements IoHandler {
                     if ((ev & Native.EPOLLRDHUP) != 0) {
                         unsafe.epollRdHupReady();
                     }
+                } else if ((ch = eventFdChannels.get(fd)) != null) {
+                    Native.eventFdRead(fd);
+                    ((AbstractEpollUnsafe) ch.unsafe()).epollInReady();
                 } else {
                     // We received an event for an fd which we not use anymore. Remove it from the epoll_event set.
                     try {
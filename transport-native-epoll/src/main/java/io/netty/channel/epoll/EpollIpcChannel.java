@@ -0,0 +1,458 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
+import io.netty.channel.unix.Buffer;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static io.netty.channel.epoll.LinuxSocket.newSocketDomain;
+
+/**
+ * {@link Channel} which exchanges bytes with another process on the same host through shared memory. Use
+ * {@link EpollIpcServerChannel} to accept connections.
+ * <p>
+ * A connection is established over a unix domain socket. The accepting side then creates a memory-mapped file which
+ * holds an {@link IpcRingBuffer} per direction, and an eventfd per side, and passes both eventfds and the path of the
+ * file to the connecting side over the socket. Afterwards bytes are copied in and out of the shared memory without
+ * any system call. An eventfd is only signalled if the other side waits for bytes to read or for space to write, and
+ * the socket is only used to notice that the other side closed the connection or died.
+ */
+public final class EpollIpcChannel extends AbstractEpollChannel {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(EpollIpcChannel.class);
+    private static final String EXPECTED_TYPES = " (expected: " + StringUtil.simpleClassName(ByteBuf.class) + ')';
+    private static final int MAX_PATH_LENGTH = 4096;
+
+    private final EpollIpcChannelConfig config = new EpollIpcChannelConfig(this);
+    private final boolean server;
+
+    private volatile DomainSocketAddress local;
+    private volatile DomainSocketAddress remote;
+
+    // All of the following is only accessed from the EventLoop.
+    private IpcSharedMemory memory;
+    private IpcRingBuffer inbound;
+    private IpcRingBuffer outbound;
+    // Signalled by the other side to wake us up.
+    private FileDescriptor eventFd;
+    // Signalled by us to wake up the other side.
+    private FileDescriptor peerEventFd;
+    private boolean writeParked;
+    // Only used by the connecting side while it receives the path of the shared memory.
+    private ByteBuffer handshakeBuffer;
+    private Exception handshakeFailure;
+
+    public EpollIpcChannel(EventLoop eventLoop) {
+        super(eventLoop, newSocketDomain());
+        server = false;
+        flags |= Native.EPOLLRDHUP;
+    }
+
+    EpollIpcChannel(EpollIpcServerChannel parent, EventLoop eventLoop, LinuxSocket fd) {
+        super(parent, eventLoop, fd, false);
+        server = true;
+        local = parent.localAddress();
+        flags |= Native.EPOLLRDHUP;
+    }
+
+    @Override
+    protected AbstractEpollUnsafe newUnsafe() {
+        return new EpollIpcUnsafe();
+    }
+
+    @Override
+    public EpollIpcChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    public DomainSocketAddress remoteAddress() {
+        return (DomainSocketAddress) super.remoteAddress();
+    }
+
+    @Override
+    public DomainSocketAddress localAddress() {
+        return (DomainSocketAddress) super.localAddress();
+    }
+
+    @Override
+    protected DomainSocketAddress localAddress0() {
+        return local;
+    }
+
+    @Override
+    protected DomainSocketAddress remoteAddress0() {
+        return remote;
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        socket.bind(localAddress);
+        local = (DomainSocketAddress) localAddress;
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        super.doConnect(remoteAddress, localAddress);
+        if (localAddress != null) {
+            local = (DomainSocketAddress) localAddress;
+        }
+        remote = (DomainSocketAddress) remoteAddress;
+        // The connection is only established once the handshake was received, see EpollIpcUnsafe.readHandshake().
+        setFlag(Native.EPOLLIN);
+        return false;
+    }
+
+    @Override
+    boolean finishConnect0() throws Exception {
+        Exception cause = handshakeFailure;
+        if (cause != null) {
+            handshakeFailure = null;
+            throw cause;
+        }
+        return memory != null && super.finishConnect0();
+    }
+
+    @Override
+    void register0(EpollRegistration registration) throws Exception {
+        super.register0(registration);
+        if (server && memory == null) {
+            sendHandshake();
+        }
+        if (memory != null) {
+            registration.addEventFd(eventFd);
+            if (server && !active) {
+                active = true;
+                // The other side may write before we read for the first time.
+                ((AbstractEpollUnsafe) unsafe()).maybeMoreDataToRead = true;
+            }
+        }
+    }
+
+    @Override
+    void deregister0() throws Exception {
+        if (eventFd != null && registration != null) {
+            registration.removeEventFd(eventFd);
+        }
+        super.deregister0();
+    }
+
+    private void sendHandshake() throws IOException {
+        IpcSharedMemory memory = IpcSharedMemory.create(IpcSharedMemory.defaultDirectory(), config.getRingSize());
+        FileDescriptor eventFd = null;
+        FileDescriptor peerEventFd = null;
+        ByteBuffer buffer = null;
+        boolean success = false;
+        try {
+            eventFd = Native.newEventFd();
+            peerEventFd = Native.newEventFd();
+            byte[] path = memory.path().getBytes(CharsetUtil.UTF_8);
+            buffer = Buffer.allocateDirectWithNativeOrder(2 + path.length);
+            buffer.putShort((short) path.length).put(path).flip();
+            // The socket was just accepted, so its send buffer has room for all of the handshake.
+            if (socket.sendFd(peerEventFd.intValue()) <= 0 || socket.sendFd(eventFd.intValue()) <= 0 ||
+                    socket.write(buffer, 0, buffer.limit()) != buffer.limit()) {
+                throw new IOException("Failed to send the handshake");
+            }
+            success = true;
+        } finally {
+            if (buffer != null) {
+                Buffer.free(buffer);
+            }
+            if (!success) {
+                closeQuietly(eventFd);
+                closeQuietly(peerEventFd);
+                memory.deleteFile();
+                memory.release();
+            }
+        }
+        setSharedMemory(memory, eventFd, peerEventFd);
+    }
+
+    private void setSharedMemory(IpcSharedMemory memory, FileDescriptor eventFd, FileDescriptor peerEventFd) {
+        this.memory = memory;
+        this.eventFd = eventFd;
+        this.peerEventFd = peerEventFd;
+        inbound = memory.inbound(server);
+        outbound = memory.outbound(server);
+    }
+
+    private void signalPeer() {
+        Native.eventFdWrite(peerEventFd.intValue(), 1L);
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return msg;
+        }
+        throw new UnsupportedOperationException(
+                "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        // If the other process corrupted the shared memory, the IOException thrown by the ring closes the channel.
+        boolean written = false;
+        try {
+            for (;;) {
+                Object msg = in.current();
+                if (msg == null) {
+                    break;
+                }
+                ByteBuf buf = (ByteBuf) msg;
+                int readableBytes = buf.readableBytes();
+                if (readableBytes == 0) {
+                    in.remove();
+                    continue;
+                }
+                int localWritten = outbound.write(buf, buf.readerIndex(), readableBytes);
+                if (localWritten > 0) {
+                    written = true;
+                    in.removeBytes(localWritten);
+                }
+                if (localWritten < readableBytes && outbound.parkWriter()) {
+                    // The other side signals our eventFd once it made room, which flushes again.
+                    writeParked = true;
+                    break;
+                }
+            }
+        } finally {
+            if (written && outbound.unparkReader()) {
+                signalPeer();
+            }
+        }
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        try {
+            super.doClose();
+        } finally {
+            // Release it later, as we may be closed from a handler while reading from or writing to it.
+            try {
+                eventLoop().execute(this::releaseSharedMemory);
+            } catch (RejectedExecutionException e) {
+                releaseSharedMemory();
+            }
+        }
+    }
+
+    private void releaseSharedMemory() {
+        if (eventFd != null && registration != null) {
+            try {
+                // Remove it before it is closed, as the other process still holds the eventfd, so the kernel would
+                // not remove it from the epoll set by itself.
+                registration.removeEventFd(eventFd);
+            } catch (IOException e) {
+                logger.warn("Failed to remove an eventfd from epoll.", e);
+            }
+        }
+        IpcSharedMemory memory = this.memory;
+        if (memory != null) {
+            this.memory = null;
+            if (server) {
+                // In case the other side never opened it.
+                memory.deleteFile();
+            }
+            memory.release();
+        }
+        closeQuietly(eventFd);
+        closeQuietly(peerEventFd);
+        eventFd = null;
+        peerEventFd = null;
+        if (handshakeBuffer != null) {
+            Buffer.free(handshakeBuffer);
+            handshakeBuffer = null;
+        }
+    }
+
+    private static void closeQuietly(FileDescriptor fd) {
+        if (fd != null) {
+            try {
+                fd.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close an eventfd.", e);
+            }
+        }
+    }
+
+    private final class EpollIpcUnsafe extends AbstractEpollUnsafe {
+        @Override
+        void epollInReady() {
+            if (!active) {
+                if (!server && memory == null && isOpen()) {
+                    readHandshake();
+                }
+                return;
+            }
+            if (writeParked) {
+                writeParked = false;
+                epollOutReady();
+            }
+
+            final EpollIpcChannelConfig config = config();
+            final EpollRecvByteAllocatorHandle allocHandle = recvBufAllocHandle();
+            if (!readPending && !config.isAutoRead() && !allocHandle.isReceivedRdHup()) {
+                // Woken up by the other side, but no read was requested. Read once it is.
+                maybeMoreDataToRead = true;
+                return;
+            }
+            allocHandle.edgeTriggered(true);
+
+            final ChannelPipeline pipeline = pipeline();
+            final ByteBufAllocator allocator = config.getAllocator();
+            allocHandle.reset(config);
+            epollInBefore();
+
+            ByteBuf byteBuf = null;
+            try {
+                do {
+                    byteBuf = allocHandle.allocate(allocator);
+                    allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+                    allocHandle.lastBytesRead(inbound.read(byteBuf));
+                    if (allocHandle.lastBytesRead() <= 0) {
+                        byteBuf.release();
+                        byteBuf = null;
+                        break;
+                    }
+                    allocHandle.incMessagesRead(1);
+                    readPending = false;
+                    pipeline.fireChannelRead(byteBuf);
+                    byteBuf = null;
+                    if (inbound.unparkWriter()) {
+                        signalPeer();
+                    }
+                } while (allocHandle.continueReading() && isActive());
+
+                allocHandle.readComplete();
+                pipeline.fireChannelReadComplete();
+
+                if (allocHandle.lastBytesRead() == 0 && isActive()) {
+                    if (allocHandle.isReceivedRdHup()) {
+                        // The other side is gone and we read everything it wrote.
+                        close(voidPromise());
+                    } else if (!inbound.parkReader()) {
+                        // Bytes were written while we parked, so the other side may not signal us.
+                        executeEpollInReadyRunnable(config);
+                    }
+                }
+            } catch (Throwable cause) {
+                if (byteBuf != null) {
+                    byteBuf.release();
+                }
+                allocHandle.readComplete();
+                pipeline.fireChannelReadComplete();
+                pipeline.fireExceptionCaught(cause);
+                if (cause instanceof IOException) {
+                    // The other process corrupted the shared memory, so it can't be used anymore.
+                    close(voidPromise());
+                }
+            } finally {
+                epollInFinally(config);
+            }
+        }
+
+        /**
+         * Receives the eventfds and the path of the shared memory which the accepting side sends once it accepted
+         * the connection, and finishes the pending connect once all of it was received.
+         */
+        private void readHandshake() {
+            try {
+                if (eventFd == null) {
+                    FileDescriptor fd = receiveFd();
+                    if (fd == null) {
+                        return;
+                    }
+                    eventFd = fd;
+                }
+                if (peerEventFd == null) {
+                    FileDescriptor fd = receiveFd();
+                    if (fd == null) {
+                        return;
+                    }
+                    peerEventFd = fd;
+                }
+                if (handshakeBuffer == null) {
+                    handshakeBuffer = Buffer.allocateDirectWithNativeOrder(2 + MAX_PATH_LENGTH);
+                    handshakeBuffer.limit(2);
+                }
+                ByteBuffer buffer = handshakeBuffer;
+                while (buffer.hasRemaining()) {
+                    int read = socket.read(buffer, buffer.position(), buffer.limit());
+                    if (read == 0) {
+                        return;
+                    }
+                    if (read < 0) {
+                        throw new ClosedChannelException();
+                    }
+                    buffer.position(buffer.position() + read);
+                    if (buffer.limit() == 2 && !buffer.hasRemaining()) {
+                        int length = buffer.getShort(0) & 0xFFFF;
+                        if (length > MAX_PATH_LENGTH) {
+                            throw new IOException("Path of the shared memory too long: " + length);
+                        }
+                        buffer.limit(2 + length);
+                    }
+                }
+                byte[] path = new byte[buffer.limit() - 2];
+                buffer.position(2);
+                buffer.get(path);
+                handshakeBuffer = null;
+                Buffer.free(buffer);
+
+                IpcSharedMemory memory = IpcSharedMemory.open(new File(new String(path, CharsetUtil.UTF_8)));
+                memory.deleteFile();
+                setSharedMemory(memory, eventFd, peerEventFd);
+                registration().addEventFd(eventFd);
+                // The other side may write before we read for the first time.
+                maybeMoreDataToRead = true;
+            } catch (Exception e) {
+                handshakeFailure = e;
+            }
+            // Completes or fails the pending connect.
+            epollOutReady();
+        }
+
+        private FileDescriptor receiveFd() throws IOException {
+            int fd = socket.recvFd();
+            if (fd == 0) {
+                return null;
+            }
+            if (fd < 0) {
+                throw new ClosedChannelException();
+            }
+            return new FileDescriptor(fd);
+        }
+    }
+}
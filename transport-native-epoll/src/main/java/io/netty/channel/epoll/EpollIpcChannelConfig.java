@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.MessageSizeEstimator;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.WriteBufferWaterMark;
+
+import java.util.Map;
+
+import static io.netty.channel.epoll.EpollChannelOption.IPC_RING_SIZE;
+
+/**
+ * {@link EpollChannelConfig} of an {@link EpollIpcChannel}.
+ */
+public final class EpollIpcChannelConfig extends EpollChannelConfig {
+    static final int MIN_RING_SIZE = 4096;
+    static final int DEFAULT_RING_SIZE = 256 * 1024;
+
+    private volatile int ringSize = DEFAULT_RING_SIZE;
+
+    EpollIpcChannelConfig(AbstractEpollChannel channel) {
+        super(channel);
+    }
+
+    @Override
+    public Map<ChannelOption<?>, Object> getOptions() {
+        return getOptions(super.getOptions(), IPC_RING_SIZE);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T getOption(ChannelOption<T> option) {
+        if (option == IPC_RING_SIZE) {
+            return (T) Integer.valueOf(getRingSize());
+        }
+        return super.getOption(option);
+    }
+
+    @Override
+    public <T> boolean setOption(ChannelOption<T> option, T value) {
+        validate(option, value);
+
+        if (option == IPC_RING_SIZE) {
+            setRingSize((Integer) value);
+        } else {
+            return super.setOption(option, value);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the capacity in bytes of each of the two rings, one per direction, of a connection.
+     */
+    public int getRingSize() {
+        return ringSize;
+    }
+
+    /**
+     * Sets the capacity in bytes of each of the two rings, one per direction, of a connection. It must be a power of
+     * two and at least {@code 4096}. Only the accepting side decides the size, so setting it on the connecting side
+     * has no effect; use {@link io.netty.bootstrap.ServerBootstrap#childOption(ChannelOption, Object)} instead.
+     */
+    public EpollIpcChannelConfig setRingSize(int ringSize) {
+        if (ringSize < MIN_RING_SIZE || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException(
+                    "ringSize: " + ringSize + " (expected: power of two and >= " + MIN_RING_SIZE + ')');
+        }
+        this.ringSize = ringSize;
+        return this;
+    }
+
+    @Override
+    @Deprecated
+    public EpollIpcChannelConfig setMaxMessagesPerRead(int maxMessagesPerRead) {
+        super.setMaxMessagesPerRead(maxMessagesPerRead);
+        return this;
+    }
+
+    @Override
+    public EpollIpcChannelConfig setConnectTimeoutMillis(int connectTimeoutMillis) {
+        super.setConnectTimeoutMillis(connectTimeoutMillis);
+        return this;
+    }
+
+    @Override
+    public EpollIpcChannelConfig setWriteSpinCount(int writeSpinCount) {
+        super.setWriteSpinCount(writeSpinCount);
+        return this;
+    }
+
+    @Override
+    public EpollIpcChannelConfig setRecvByteBufAllocator(RecvByteBufAllocator allocator) {
+        super.setRecvByteBufAllocator(allocator);
+        return this;
+    }
+
+    @Override
+    public EpollIpcChannelConfig setAllocator(ByteBufAllocator allocator) {
+        super.setAllocator(allocator);
+        return this;
+    }
+
+    @Override
+    public EpollIpcChannelConfig setAutoClose(boolean autoClose) {
+        super.setAutoClose(autoClose);
+        return this;
+    }
+
+    @Override
+    public EpollIpcChannelConfig setMessageSizeEstimator(MessageSizeEstimator estimator) {
+        super.setMessageSizeEstimator(estimator);
+        return this;
+    }
+
+    @Override
+    @Deprecated
+    public EpollIpcChannelConfig setWriteBufferLowWaterMark(int writeBufferLowWaterMark) {
+        super.setWriteBufferLowWaterMark(writeBufferLowWaterMark);
+        return this;
+    }
+
+    @Override
+    @Deprecated
+    public EpollIpcChannelConfig setWriteBufferHighWaterMark(int writeBufferHighWaterMark) {
+        super.setWriteBufferHighWaterMark(writeBufferHighWaterMark);
+        return this;
+    }
+
+    @Override
+    public EpollIpcChannelConfig setWriteBufferWaterMark(WriteBufferWaterMark writeBufferWaterMark) {
+        super.setWriteBufferWaterMark(writeBufferWaterMark);
+        return this;
+    }
+
+    @Override
+    public EpollIpcChannelConfig setAutoRead(boolean autoRead) {
+        super.setAutoRead(autoRead);
+        return this;
+    }
+
+    @Override
+    public EpollIpcChannelConfig setEpollMode(EpollMode mode) {
+        super.setEpollMode(mode);
+        return this;
+    }
+}
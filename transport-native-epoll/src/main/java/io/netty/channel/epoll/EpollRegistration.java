@@ -15,6 +15,7 @@
  */
 package io.netty.channel.epoll;
 
+import io.netty.channel.unix.FileDescriptor;
 import io.netty.channel.unix.IovArray;
 
 import java.io.IOException;
@@ -34,6 +35,17 @@ interface EpollRegistration {
      */
     void remove() throws IOException;
 
+    /**
+     * Watches an additional eventfd on behalf of the channel. Once it is signalled, it is read and
+     * {@link AbstractEpollChannel.AbstractEpollUnsafe#epollInReady()} is called.
+     */
+    void addEventFd(FileDescriptor eventFd) throws IOException;
+
+    /**
+     * Stops watching an eventfd which was added by {@link #addEventFd(FileDescriptor)}.
+     */
+    void removeEventFd(FileDescriptor eventFd) throws IOException;
+
     /**
      * Returns an {@link IovArray} that can be used for {@code writev}.
      */
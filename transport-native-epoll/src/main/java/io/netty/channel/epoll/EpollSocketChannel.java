@@ -17,10 +17,14 @@ package io.netty.channel.epoll;
 
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.EventLoop;
 import io.netty.channel.socket.ServerSocketChannel;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.io.IOException;
 import java.net.InetAddress;
@@ -31,17 +35,26 @@ import java.util.Map;
 import java.util.concurrent.Executor;
 
 import static io.netty.channel.epoll.LinuxSocket.newSocketStream;
+import static java.util.Objects.requireNonNull;
 
 /**
  * {@link SocketChannel} implementation that uses linux EPOLL Edge-Triggered Mode for
  * maximal performance.
  */
 public final class EpollSocketChannel extends AbstractEpollStreamChannel implements SocketChannel {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(EpollSocketChannel.class);
+    // Not referenced directly, as the handler module is not a dependency.
+    private static final String SSL_HANDLER_CLASS_NAME = "io.netty.handler.ssl.SslHandler";
 
     private final EpollSocketChannelConfig config;
 
     private volatile Collection<InetAddress> tcpMd5SigAddresses = Collections.emptyList();
 
+    // Only accessed from the EventLoop.
+    private boolean kernelTlsUlp;
+    private boolean kernelTlsTx;
+    private boolean kernelTlsRx;
+
     public EpollSocketChannel(EventLoop eventLoop) {
         super(eventLoop, newSocketStream(), false);
         config = new EpollSocketChannelConfig(this);
@@ -86,6 +99,123 @@ public final class EpollSocketChannel extends AbstractEpollStreamChannel impleme
         }
     }
 
+    /**
+     * Tries to let the kernel encrypt all data written to this channel from now on, using the given key material of
+     * an established TLS connection (<a href="https://www.kernel.org/doc/html/latest/networking/tls.html">kTLS</a>).
+     * Once this method returned {@code true}, plaintext must be written to the channel. This also allows to use
+     * {@link io.netty.channel.DefaultFileRegion}s (and so {@code sendfile}) for TLS connections.
+     * <p>
+     * This is not public yet, as nothing can take the key material over from an {@code SslHandler} so far.
+     * <p>
+     * This method must be called from the {@link EventLoop}, after the {@code SslHandler} that negotiated the keys
+     * was removed from the pipeline in the same task, so nothing is written in between. It returns {@code false} and
+     * leaves the channel unchanged if the kernel does not support TLS offload for the given cipher (or the {@code tls}
+     * module is not loaded), if the channel is not active or if there are still bytes pending in the
+     * {@link ChannelOutboundBuffer} which were encrypted in user space already. In this case the caller must continue
+     * to encrypt in user space, or close the channel.
+     *
+     * @param info the key material and the sequence number of the next record that will be written.
+     * @return {@code true} if the kernel will encrypt all data written from now on.
+     * @throws IllegalStateException if not called from the {@link EventLoop} or if there is still an
+     *                               {@code SslHandler} in the pipeline, which would encrypt everything twice.
+     */
+    boolean enableKernelTlsTx(EpollTlsCryptoInfo info) {
+        requireNonNull(info, "info");
+        checkKernelTlsAllowed();
+        if (kernelTlsTx) {
+            return true;
+        }
+        ChannelOutboundBuffer outboundBuffer = unsafe().outboundBuffer();
+        if (!isActive() || outboundBuffer == null || outboundBuffer.totalPendingWriteBytes() != 0) {
+            return false;
+        }
+        kernelTlsTx = setKernelTlsCryptoInfo(true, info);
+        return kernelTlsTx;
+    }
+
+    /**
+     * Tries to let the kernel decrypt all data read from this channel from now on, using the given key material of
+     * an established TLS connection. Once this method returned {@code true} the channel will read plaintext.
+     * <p>
+     * Non application data records (like alerts or TLS 1.3 post-handshake messages) can not be read via {@code read}
+     * once the kernel decrypts the records and will cause the next read to fail, so this should only be used if the
+     * peer is not expected to send them.
+     * <p>
+     * This method must be called from the {@link EventLoop}, after the {@code SslHandler} that negotiated the keys
+     * was removed from the pipeline. It returns {@code false} and leaves the channel unchanged if the kernel does not
+     * support TLS offload for the given cipher or if the channel is not active.
+     *
+     * @param info the key material and the sequence number of the next record that will be read.
+     * @return {@code true} if the kernel will decrypt all data read from now on.
+     * @throws IllegalStateException if not called from the {@link EventLoop} or if there is still an
+     *                               {@code SslHandler} in the pipeline, which would decrypt everything twice.
+     */
+    boolean enableKernelTlsRx(EpollTlsCryptoInfo info) {
+        requireNonNull(info, "info");
+        checkKernelTlsAllowed();
+        if (kernelTlsRx) {
+            return true;
+        }
+        if (!isActive()) {
+            return false;
+        }
+        kernelTlsRx = setKernelTlsCryptoInfo(false, info);
+        return kernelTlsRx;
+    }
+
+    /**
+     * Returns {@code true} if the kernel encrypts all data written to this channel.
+     */
+    boolean isKernelTlsTxEnabled() {
+        return kernelTlsTx;
+    }
+
+    /**
+     * Returns {@code true} if the kernel decrypts all data read from this channel.
+     */
+    boolean isKernelTlsRxEnabled() {
+        return kernelTlsRx;
+    }
+
+    private boolean setKernelTlsCryptoInfo(boolean tx, EpollTlsCryptoInfo info) {
+        try {
+            if (!kernelTlsUlp) {
+                // Attaching the tls ULP alone does not change how data is sent or received, so it is fine to keep it
+                // even if installing the keys fails below.
+                socket.setTcpUlpTls();
+                kernelTlsUlp = true;
+            }
+            socket.setTlsCryptoInfo(tx, info);
+            return true;
+        } catch (IOException | ChannelException | UnsatisfiedLinkError e) {
+            // UnsatisfiedLinkError if the native library was built before kernel TLS support was added.
+            logger.debug("Unable to enable kernel TLS {} for {}, falling back to user space TLS.",
+                    tx ? "TX" : "RX", this, e);
+            return false;
+        }
+    }
+
+    private void checkKernelTlsAllowed() {
+        if (!eventLoop().inEventLoop()) {
+            throw new IllegalStateException("Must be called from the EventLoop");
+        }
+        for (Map.Entry<String, ChannelHandler> entry: pipeline()) {
+            if (isSslHandler(entry.getValue())) {
+                throw new IllegalStateException(
+                        "The SslHandler " + entry.getKey() + " must be removed before enabling kernel TLS");
+            }
+        }
+    }
+
+    private static boolean isSslHandler(ChannelHandler handler) {
+        for (Class<?> clazz = handler.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+            if (SSL_HANDLER_CLASS_NAME.equals(clazz.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public InetSocketAddress remoteAddress() {
         return (InetSocketAddress) super.remoteAddress();
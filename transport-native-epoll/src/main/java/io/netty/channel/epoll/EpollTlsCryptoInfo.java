@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The key material of one direction of an established TLS connection, which can be installed on a socket via
+ * {@link EpollSocketChannel#enableKernelTlsTx(EpollTlsCryptoInfo)} or
+ * {@link EpollSocketChannel#enableKernelTlsRx(EpollTlsCryptoInfo)} so the kernel encrypts or decrypts the records.
+ * <p>
+ * This mirrors {@code struct tls12_crypto_info_aes_gcm_128} of {@code linux/tls.h}. Only the
+ * {@code AES_128_GCM} cipher is supported. See <a href="https://www.kernel.org/doc/html/latest/networking/tls.html">
+ * Kernel TLS</a>.
+ */
+final class EpollTlsCryptoInfo {
+
+    /**
+     * {@code TLS_1_2_VERSION}.
+     */
+    static final int TLS_1_2_VERSION = 0x0303;
+    /**
+     * {@code TLS_1_3_VERSION}, supported since linux 5.1.
+     */
+    static final int TLS_1_3_VERSION = 0x0304;
+
+    static final int KEY_SIZE = 16;
+    static final int IV_SIZE = 8;
+    static final int SALT_SIZE = 4;
+    static final int RECORD_SEQUENCE_SIZE = 8;
+
+    private final int version;
+    final byte[] key;
+    final byte[] iv;
+    final byte[] salt;
+    final byte[] recordSequence;
+
+    private EpollTlsCryptoInfo(int version, byte[] key, byte[] iv, byte[] salt, byte[] recordSequence) {
+        this.version = version;
+        this.key = key;
+        this.iv = iv;
+        this.salt = salt;
+        this.recordSequence = recordSequence;
+    }
+
+    /**
+     * Creates a new instance for the {@code AES_128_GCM} cipher.
+     *
+     * @param version either {@link #TLS_1_2_VERSION} or {@link #TLS_1_3_VERSION}.
+     * @param key the 16 bytes write key.
+     * @param iv the 8 bytes explicit part of the nonce.
+     * @param salt the 4 bytes implicit part of the nonce.
+     * @param recordSequence the 8 bytes sequence number of the next record.
+     */
+    static EpollTlsCryptoInfo newAesGcm128(int version, byte[] key, byte[] iv, byte[] salt,
+                                                  byte[] recordSequence) {
+        if (version != TLS_1_2_VERSION && version != TLS_1_3_VERSION) {
+            throw new IllegalArgumentException("version: " + version + " (expected: TLS_1_2_VERSION or " +
+                    "TLS_1_3_VERSION)");
+        }
+        return new EpollTlsCryptoInfo(version, copy(key, KEY_SIZE, "key"), copy(iv, IV_SIZE, "iv"),
+                copy(salt, SALT_SIZE, "salt"), copy(recordSequence, RECORD_SEQUENCE_SIZE, "recordSequence"));
+    }
+
+    private static byte[] copy(byte[] bytes, int expectedLength, String name) {
+        requireNonNull(bytes, name);
+        if (bytes.length != expectedLength) {
+            throw new IllegalArgumentException(name + ".length: " + bytes.length + " (expected: " +
+                    expectedLength + ')');
+        }
+        return bytes.clone();
+    }
+
+    /**
+     * Returns the TLS version.
+     */
+    int version() {
+        return version;
+    }
+}
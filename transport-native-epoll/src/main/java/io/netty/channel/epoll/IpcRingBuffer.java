@@ -0,0 +1,226 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.lang.Math.min;
+
+/**
+ * Single-producer single-consumer ring of bytes in memory which is shared between two processes.
+ * <p>
+ * The header holds the total number of bytes written ({@code tail}) and read ({@code head}), each on its own cache
+ * line, followed by a flag per side which is set when that side waits to be woken up: the reader because the ring
+ * is empty, the writer because it is full. The other side clears the flag and signals the waiting side once it made
+ * progress. As the positions are published with volatile stores and the flags are checked afterwards (and the other
+ * way around when parking), at least one side sees the other's update, so no wakeup is ever lost.
+ * <p>
+ * The other process can write to the header at any time, so the positions are checked every time they are loaded
+ * before they are used to copy memory. An {@link IOException} is thrown if they are inconsistent, after which the
+ * ring must not be used anymore.
+ */
+final class IpcRingBuffer {
+
+    static final int HEADER_SIZE = 256;
+
+    private static final int TAIL_OFFSET = 0;
+    private static final int HEAD_OFFSET = 64;
+    private static final int READER_PARKED_OFFSET = 128;
+    private static final int WRITER_PARKED_OFFSET = 192;
+
+    private final long tailAddress;
+    private final long headAddress;
+    private final long readerParkedAddress;
+    private final long writerParkedAddress;
+    private final long dataAddress;
+    private final ByteBuffer data;
+    private final int capacity;
+    private final int mask;
+
+    /**
+     * Creates a ring on the {@code capacity} bytes following the {@link #HEADER_SIZE} bytes at {@code offset} in the
+     * given direct {@link ByteBuffer}. The capacity must be a power of two.
+     */
+    IpcRingBuffer(ByteBuffer memory, int offset, int capacity) {
+        assert memory.isDirect() && Integer.bitCount(capacity) == 1;
+        long address = PlatformDependent.directBufferAddress(memory) + offset;
+        tailAddress = address + TAIL_OFFSET;
+        headAddress = address + HEAD_OFFSET;
+        readerParkedAddress = address + READER_PARKED_OFFSET;
+        writerParkedAddress = address + WRITER_PARKED_OFFSET;
+        dataAddress = address + HEADER_SIZE;
+        ByteBuffer data = memory.duplicate();
+        data.limit(offset + HEADER_SIZE + capacity).position(offset + HEADER_SIZE);
+        this.data = data.slice();
+        this.capacity = capacity;
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the number of bytes of shared memory a ring with the given capacity needs.
+     */
+    static int size(int capacity) {
+        return HEADER_SIZE + capacity;
+    }
+
+    /**
+     * Returns the capacity of the ring in bytes.
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of bytes which can be read.
+     */
+    int readableBytes() throws IOException {
+        return readableBytes(PlatformDependent.getLongVolatile(tailAddress),
+                             PlatformDependent.getLongVolatile(headAddress));
+    }
+
+    private int readableBytes(long tail, long head) throws IOException {
+        long readableBytes = tail - head;
+        if (readableBytes < 0 || readableBytes > capacity) {
+            throw new IOException(
+                    "Corrupted IPC ring: tail: " + tail + ", head: " + head + " (capacity: " + capacity + ')');
+        }
+        return (int) readableBytes;
+    }
+
+    /**
+     * Copies up to {@code length} bytes of {@code src}, starting at {@code srcIndex}, into the ring without changing
+     * the indexes of {@code src}. Returns the number of bytes copied, which is {@code 0} if the ring is full. Must
+     * only be called by the writer.
+     *
+     * @throws IOException if the other process corrupted the positions of the ring
+     */
+    int write(ByteBuf src, int srcIndex, int length) throws IOException {
+        long tail = PlatformDependent.getLong(tailAddress);
+        long head = PlatformDependent.getLongVolatile(headAddress);
+        int written = min(length, capacity - readableBytes(tail, head));
+        if (written <= 0) {
+            return 0;
+        }
+        int index = (int) tail & mask;
+        int first = min(written, capacity - index);
+        copyToRing(src, srcIndex, index, first);
+        if (first < written) {
+            copyToRing(src, srcIndex + first, 0, written - first);
+        }
+        // Volatile so the store is visible before unparkReader() checks the flag of the reader.
+        PlatformDependent.putLongVolatile(tailAddress, tail + written);
+        return written;
+    }
+
+    /**
+     * Copies up to {@link ByteBuf#writableBytes()} bytes out of the ring into {@code dst} and increases its writer
+     * index accordingly. Returns the number of bytes copied, which is {@code 0} if the ring is empty. Must only be
+     * called by the reader.
+     *
+     * @throws IOException if the other process corrupted the positions of the ring
+     */
+    int read(ByteBuf dst) throws IOException {
+        long head = PlatformDependent.getLong(headAddress);
+        long tail = PlatformDependent.getLongVolatile(tailAddress);
+        int read = min(dst.writableBytes(), readableBytes(tail, head));
+        if (read <= 0) {
+            return 0;
+        }
+        int index = (int) head & mask;
+        int first = min(read, capacity - index);
+        int writerIndex = dst.writerIndex();
+        copyFromRing(index, dst, writerIndex, first);
+        if (first < read) {
+            copyFromRing(0, dst, writerIndex + first, read - first);
+        }
+        dst.writerIndex(writerIndex + read);
+        // Volatile so the store is visible before unparkWriter() checks the flag of the writer.
+        PlatformDependent.putLongVolatile(headAddress, head + read);
+        return read;
+    }
+
+    private void copyToRing(ByteBuf src, int srcIndex, int index, int length) {
+        if (src.hasMemoryAddress()) {
+            PlatformDependent.copyMemory(src.memoryAddress() + srcIndex, dataAddress + index, length);
+        } else {
+            data.clear().position(index).limit(index + length);
+            src.getBytes(srcIndex, data);
+        }
+    }
+
+    private void copyFromRing(int index, ByteBuf dst, int dstIndex, int length) {
+        if (dst.hasMemoryAddress()) {
+            PlatformDependent.copyMemory(dataAddress + index, dst.memoryAddress() + dstIndex, length);
+        } else {
+            data.clear().position(index).limit(index + length);
+            dst.setBytes(dstIndex, data);
+        }
+    }
+
+    /**
+     * Marks the reader as waiting for data. Returns {@code false} and leaves the flag cleared if data arrived in the
+     * meantime, in which case the reader must continue reading instead of waiting.
+     */
+    boolean parkReader() throws IOException {
+        PlatformDependent.putIntVolatile(readerParkedAddress, 1);
+        if (readableBytes() == 0) {
+            return true;
+        }
+        PlatformDependent.putIntVolatile(readerParkedAddress, 0);
+        return false;
+    }
+
+    /**
+     * Marks the writer as waiting for space. Returns {@code false} and leaves the flag cleared if space was freed in
+     * the meantime, in which case the writer must continue writing instead of waiting.
+     */
+    boolean parkWriter() throws IOException {
+        PlatformDependent.putIntVolatile(writerParkedAddress, 1);
+        if (readableBytes() == capacity) {
+            return true;
+        }
+        PlatformDependent.putIntVolatile(writerParkedAddress, 0);
+        return false;
+    }
+
+    /**
+     * Clears the flag of a waiting reader and returns {@code true} if the reader must be woken up. Must be called by
+     * the writer after {@link #write(ByteBuf, int, int)}.
+     */
+    boolean unparkReader() {
+        return unparkIfParked(readerParkedAddress);
+    }
+
+    /**
+     * Clears the flag of a waiting writer and returns {@code true} if the writer must be woken up. Must be called by
+     * the reader after {@link #read(ByteBuf)}.
+     */
+    boolean unparkWriter() {
+        return unparkIfParked(writerParkedAddress);
+    }
+
+    private static boolean unparkIfParked(long parkedAddress) {
+        if (PlatformDependent.getIntVolatile(parkedAddress) == 0) {
+            return false;
+        }
+        PlatformDependent.putIntVolatile(parkedAddress, 0);
+        return true;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+/**
+ * Memory-mapped file which holds the two {@link IpcRingBuffer}s of an IPC connection, one per direction. The file is
+ * created by the server side of the connection and deleted as soon as the client mapped it, so it is only reachable
+ * through the mappings of the two processes afterwards.
+ */
+final class IpcSharedMemory {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(IpcSharedMemory.class);
+
+    private static final int MAGIC = 0x4e495043; // NIPC
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final IpcRingBuffer clientToServer;
+    private final IpcRingBuffer serverToClient;
+
+    private IpcSharedMemory(File file, MappedByteBuffer buffer, int ringCapacity) {
+        this.file = file;
+        this.buffer = buffer;
+        clientToServer = new IpcRingBuffer(buffer, HEADER_SIZE, ringCapacity);
+        serverToClient = new IpcRingBuffer(buffer, HEADER_SIZE + IpcRingBuffer.size(ringCapacity), ringCapacity);
+    }
+
+    /**
+     * Creates a new file in {@code directory} with two rings of the given capacity, which must be a power of two.
+     */
+    static IpcSharedMemory create(File directory, int ringCapacity) throws IOException {
+        File file = Files.createTempFile(directory.toPath(), "netty-ipc-", ".shm").toFile();
+        boolean success = false;
+        try {
+            MappedByteBuffer buffer = map(file, HEADER_SIZE + 2L * IpcRingBuffer.size(ringCapacity));
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, ringCapacity);
+            success = true;
+            return new IpcSharedMemory(file, buffer, ringCapacity);
+        } finally {
+            if (!success) {
+                delete(file);
+            }
+        }
+    }
+
+    /**
+     * Maps a file which was created by {@link #create(File, int)} in another process.
+     */
+    static IpcSharedMemory open(File file) throws IOException {
+        long length = file.length();
+        if (length < HEADER_SIZE) {
+            throw new IOException("Not an IPC shared memory file: " + file);
+        }
+        MappedByteBuffer buffer = map(file, length);
+        boolean success = false;
+        try {
+            int ringCapacity = buffer.getInt(8);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || Integer.bitCount(ringCapacity) != 1 ||
+                    length != HEADER_SIZE + 2L * IpcRingBuffer.size(ringCapacity)) {
+                throw new IOException("Not an IPC shared memory file: " + file);
+            }
+            success = true;
+            return new IpcSharedMemory(file, buffer, ringCapacity);
+        } finally {
+            if (!success) {
+                PlatformDependent.freeDirectBuffer(buffer);
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(File file, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("IPC shared memory too large: " + length);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+            // The mapping stays valid after the file is closed.
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+    }
+
+    /**
+     * Returns the path of the file, which is sent to the client.
+     */
+    String path() {
+        return file.getPath();
+    }
+
+    /**
+     * Returns the ring the given side reads from.
+     */
+    IpcRingBuffer inbound(boolean server) {
+        return server ? clientToServer : serverToClient;
+    }
+
+    /**
+     * Returns the ring the given side writes to.
+     */
+    IpcRingBuffer outbound(boolean server) {
+        return server ? serverToClient : clientToServer;
+    }
+
+    /**
+     * Deletes the file, the memory stays mapped until {@link #release()} is called.
+     */
+    void deleteFile() {
+        delete(file);
+    }
+
+    private static void delete(File file) {
+        if (!file.delete() && file.exists() && logger.isDebugEnabled()) {
+            logger.debug("Failed to delete an IPC shared memory file: {}", file);
+        }
+    }
+
+    /**
+     * Unmaps the memory, the rings must not be used anymore afterwards.
+     */
+    void release() {
+        PlatformDependent.freeDirectBuffer(buffer);
+    }
+
+    /**
+     * Returns the default directory of the files, {@code /dev/shm} if available so the memory is never written back
+     * to disk.
+     */
+    static File defaultDirectory() {
+        File shm = new File("/dev/shm");
+        return shm.isDirectory() && shm.canWrite() ? shm : PlatformDependent.tmpdir();
+    }
+}
@@ -116,6 +116,14 @@ final class LinuxSocket extends Socket {
         setTcpMd5Sig(intValue(), a.address(), a.scopeId(), key);
     }
 
+    void setTcpUlpTls() throws IOException {
+        setTcpUlpTls(intValue());
+    }
+
+    void setTlsCryptoInfo(boolean tx, EpollTlsCryptoInfo info) throws IOException {
+        setTlsCryptoInfoAesGcm128(intValue(), tx, info.version(), info.key, info.iv, info.salt, info.recordSequence);
+    }
+
     boolean isTcpCork() throws IOException  {
         return isTcpCork(intValue()) != 0;
     }
@@ -226,4 +234,7 @@ final class LinuxSocket extends Socket {
     private static native void setIpTransparent(int fd, int transparent) throws IOException;
     private static native void setIpRecvOrigDestAddr(int fd, int transparent) throws IOException;
     private static native void setTcpMd5Sig(int fd, byte[] address, int scopeId, byte[] key) throws IOException;
+    private static native void setTcpUlpTls(int fd) throws IOException;
+    private static native void setTlsCryptoInfoAesGcm128(int fd, boolean tx, int version, byte[] key, byte[] iv,
+                                                         byte[] salt, byte[] recordSequence) throws IOException;
 }
@@ -16,17 +16,38 @@
 package io.netty.channel.epoll;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandler;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
+import java.io.File;
 import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 
 public class EpollSocketChannelTest {
 
+    // Lists the upper layer protocols the kernel has loaded, does not exist without TCP_ULP support.
+    private static final File TCP_AVAILABLE_ULP = new File("/proc/sys/net/ipv4/tcp_available_ulp");
+
     @Test
     public void testTcpInfo() throws Exception {
         EventLoopGroup group = new MultithreadEventLoopGroup(1, EpollHandler.newFactory());
@@ -64,6 +85,144 @@ public class EpollSocketChannelTest {
         }
     }
 
+    @Test
+    public void testKernelTlsFallbackWhenNotConnected() throws Exception {
+        EventLoopGroup group = new MultithreadEventLoopGroup(1, EpollHandler.newFactory());
+
+        try {
+            Bootstrap bootstrap = new Bootstrap();
+            EpollSocketChannel ch = (EpollSocketChannel) bootstrap.group(group)
+                    .channel(EpollSocketChannel.class)
+                    .handler(new ChannelInboundHandler() { })
+                    .bind(new InetSocketAddress(0)).syncUninterruptibly().channel();
+            EpollTlsCryptoInfo info = newCryptoInfo();
+
+            // The kernel only allows to attach the tls ULP to established connections, so we must fall back.
+            Assert.assertFalse(ch.eventLoop().submit(() -> ch.enableKernelTlsTx(info)).get());
+            Assert.assertFalse(ch.eventLoop().submit(() -> ch.enableKernelTlsRx(info)).get());
+            Assert.assertFalse(ch.isKernelTlsTxEnabled());
+            Assert.assertFalse(ch.isKernelTlsRxEnabled());
+            ch.close().syncUninterruptibly();
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testKernelTlsFailsWithSslHandler() throws Exception {
+        EventLoopGroup group = new MultithreadEventLoopGroup(1, EpollHandler.newFactory());
+
+        try {
+            Bootstrap bootstrap = new Bootstrap();
+            EpollSocketChannel ch = (EpollSocketChannel) bootstrap.group(group)
+                    .channel(EpollSocketChannel.class)
+                    .handler(new ChannelInboundHandler() { })
+                    .bind(new InetSocketAddress(0)).syncUninterruptibly().channel();
+            SSLEngine engine = SSLContext.getDefault().createSSLEngine();
+            engine.setUseClientMode(true);
+            ch.pipeline().addLast(new SslHandler(engine));
+            EpollTlsCryptoInfo info = newCryptoInfo();
+
+            // The SslHandler would encrypt everything a second time.
+            assertKernelTlsFails(() -> ch.enableKernelTlsTx(info), ch);
+            assertKernelTlsFails(() -> ch.enableKernelTlsRx(info), ch);
+            Assert.assertFalse(ch.isKernelTlsTxEnabled());
+            Assert.assertFalse(ch.isKernelTlsRxEnabled());
+            ch.close().syncUninterruptibly();
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    private static void assertKernelTlsFails(Callable<Boolean> enable, Channel ch) throws Exception {
+        try {
+            ch.eventLoop().submit(enable).get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testKernelTlsTxConnected() throws Exception {
+        Assume.assumeTrue("The kernel does not support TCP_ULP", TCP_AVAILABLE_ULP.exists());
+        EventLoopGroup group = new MultithreadEventLoopGroup(1, EpollHandler.newFactory());
+        LinkedBlockingQueue<ByteBuf> received = new LinkedBlockingQueue<>();
+        try {
+            Channel server = new ServerBootstrap().group(group)
+                    .channel(EpollServerSocketChannel.class)
+                    .childHandler(new ChannelInboundHandler() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            received.add((ByteBuf) msg);
+                        }
+                    })
+                    .bind(new InetSocketAddress(0)).syncUninterruptibly().channel();
+            EpollSocketChannel ch = (EpollSocketChannel) new Bootstrap().group(group)
+                    .channel(EpollSocketChannel.class)
+                    .handler(new ChannelInboundHandler() { })
+                    .connect(server.localAddress()).syncUninterruptibly().channel();
+            EpollTlsCryptoInfo info = newCryptoInfo();
+
+            // Falls back if the tls module is neither loaded nor loaded on demand, in which case the channel must be
+            // unchanged.
+            boolean supported = ch.eventLoop().submit(() -> ch.enableKernelTlsTx(info)).get();
+            if (isTlsUlpLoaded()) {
+                Assert.assertTrue(supported);
+            }
+            Assert.assertEquals(supported, ch.isKernelTlsTxEnabled());
+
+            byte[] data = "kernel tls".getBytes(CharsetUtil.US_ASCII);
+            ch.writeAndFlush(Unpooled.wrappedBuffer(data)).syncUninterruptibly();
+            // A TLS 1.2 application data record holds the explicit nonce, the data and the tag of AES-GCM.
+            int expectedLength = supported ? 5 + 8 + data.length + 16 : data.length;
+            ByteBuf bytes = Unpooled.buffer();
+            try {
+                while (bytes.readableBytes() < expectedLength) {
+                    ByteBuf buf = received.poll(10, TimeUnit.SECONDS);
+                    Assert.assertNotNull(buf);
+                    bytes.writeBytes(buf);
+                    buf.release();
+                }
+                Assert.assertEquals(expectedLength, bytes.readableBytes());
+                if (supported) {
+                    // Application data, TLS 1.2 and the length of the record.
+                    Assert.assertEquals(23, bytes.getByte(0));
+                    Assert.assertEquals(EpollTlsCryptoInfo.TLS_1_2_VERSION, bytes.getUnsignedShort(1));
+                    Assert.assertEquals(expectedLength - 5, bytes.getUnsignedShort(3));
+                } else {
+                    // The channel is unchanged and still writes plaintext.
+                    Assert.assertEquals(Unpooled.wrappedBuffer(data), bytes);
+                }
+            } finally {
+                bytes.release();
+            }
+            ch.close().syncUninterruptibly();
+            server.close().syncUninterruptibly();
+        } finally {
+            group.shutdownGracefully();
+            for (ByteBuf buf: received) {
+                ReferenceCountUtil.release(buf);
+            }
+        }
+    }
+
+    private static boolean isTlsUlpLoaded() throws Exception {
+        return new String(Files.readAllBytes(TCP_AVAILABLE_ULP.toPath()), CharsetUtil.US_ASCII)
+                .trim().matches("(.* )?tls( .*)?");
+    }
+
+    private static EpollTlsCryptoInfo newCryptoInfo() {
+        return EpollTlsCryptoInfo.newAesGcm128(EpollTlsCryptoInfo.TLS_1_2_VERSION,
+                new byte[16], new byte[8], new byte[4], new byte[8]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTlsCryptoInfoInvalidKeyLength() {
+        EpollTlsCryptoInfo.newAesGcm128(EpollTlsCryptoInfo.TLS_1_3_VERSION,
+                new byte[32], new byte[8], new byte[4], new byte[8]);
+    }
+
     private static void assertTcpInfo0(EpollTcpInfo info) throws Exception {
         Assert.assertNotNull(info);
 
@@ -139,6 +139,25 @@ class EpollSocketTestPermutation extends SocketTestPermutation {
         );
     }
 
+    public List<TestsuitePermutation.BootstrapComboFactory<ServerBootstrap, Bootstrap>> ipc() {
+        return combo(serverIpc(), clientIpc());
+    }
+
+    public List<BootstrapFactory<ServerBootstrap>> serverIpc() {
+        return Collections.singletonList(
+                // A small ring, so writes wrap around and both sides have to wait for each other.
+                () -> new ServerBootstrap().group(EPOLL_BOSS_GROUP, EPOLL_WORKER_GROUP)
+                        .channel(EpollIpcServerChannel.class)
+                        .childOption(EpollChannelOption.IPC_RING_SIZE, 4096)
+        );
+    }
+
+    public List<BootstrapFactory<Bootstrap>> clientIpc() {
+        return Collections.singletonList(
+                () -> new Bootstrap().group(EPOLL_WORKER_GROUP).channel(EpollIpcChannel.class)
+        );
+    }
+
     @Override
     public List<BootstrapFactory<Bootstrap>> datagramSocket() {
         return Collections.singletonList(
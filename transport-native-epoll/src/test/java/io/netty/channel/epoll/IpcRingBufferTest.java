@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IpcRingBufferTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static IpcRingBuffer newRing(int capacity) {
+        return new IpcRingBuffer(ByteBuffer.allocateDirect(IpcRingBuffer.size(capacity)), 0, capacity);
+    }
+
+    @Test
+    public void testWriteAndReadWrapAround() throws Exception {
+        testWriteAndReadWrapAround(Unpooled.directBuffer(), Unpooled.directBuffer());
+        testWriteAndReadWrapAround(Unpooled.buffer(), Unpooled.buffer());
+    }
+
+    private static void testWriteAndReadWrapAround(ByteBuf src, ByteBuf dst) throws Exception {
+        IpcRingBuffer ring = newRing(16);
+        try {
+            for (int i = 0; i < 100; i++) {
+                src.clear().writeBytes(new byte[] { (byte) i, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 });
+                assertEquals(11, ring.write(src, src.readerIndex(), src.readableBytes()));
+                assertEquals(11, ring.readableBytes());
+                // The indexes of the source are left alone.
+                assertEquals(11, src.readableBytes());
+
+                dst.clear().ensureWritable(32);
+                assertEquals(11, ring.read(dst));
+                assertEquals(src, dst);
+                assertEquals(0, ring.readableBytes());
+            }
+        } finally {
+            src.release();
+            dst.release();
+        }
+    }
+
+    @Test
+    public void testFullAndEmpty() throws Exception {
+        IpcRingBuffer ring = newRing(16);
+        ByteBuf buf = Unpooled.directBuffer(32).writeZero(32);
+        try {
+            assertEquals(16, ring.write(buf, 0, 32));
+            assertEquals(0, ring.write(buf, 0, 32));
+
+            buf.clear();
+            assertEquals(16, ring.read(buf));
+            assertEquals(0, ring.read(buf));
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testParkReader() throws Exception {
+        IpcRingBuffer ring = newRing(16);
+        ByteBuf buf = Unpooled.directBuffer(16).writeZero(8);
+        try {
+            assertFalse(ring.unparkReader());
+            assertTrue(ring.parkReader());
+            ring.write(buf, 0, 8);
+            assertTrue(ring.unparkReader());
+            assertFalse(ring.unparkReader());
+
+            // Bytes are readable, so the reader must not wait.
+            assertFalse(ring.parkReader());
+            assertFalse(ring.unparkReader());
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testParkWriter() throws Exception {
+        IpcRingBuffer ring = newRing(16);
+        ByteBuf buf = Unpooled.directBuffer(16).writeZero(16);
+        try {
+            // There is room, so the writer must not wait.
+            assertFalse(ring.parkWriter());
+
+            ring.write(buf, 0, 16);
+            assertTrue(ring.parkWriter());
+            buf.clear();
+            ring.read(buf);
+            assertTrue(ring.unparkWriter());
+            assertFalse(ring.unparkWriter());
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testCorruptedPositions() throws Exception {
+        // tail, head
+        testCorruptedPositions(1 << 20, 0);
+        testCorruptedPositions(0, 1);
+        testCorruptedPositions(Long.MAX_VALUE, Long.MIN_VALUE);
+        testCorruptedPositions(17, 0);
+    }
+
+    private static void testCorruptedPositions(long tail, long head) throws Exception {
+        ByteBuffer memory = ByteBuffer.allocateDirect(IpcRingBuffer.size(16)).order(ByteOrder.nativeOrder());
+        IpcRingBuffer ring = new IpcRingBuffer(memory, 0, 16);
+        // Written by the other process.
+        memory.putLong(0, tail);
+        memory.putLong(64, head);
+        ByteBuf buf = Unpooled.directBuffer(1 << 21).writeZero(1 << 20);
+        try {
+            try {
+                ring.write(buf, 0, buf.readableBytes());
+                fail();
+            } catch (IOException expected) {
+                // expected
+            }
+            buf.clear();
+            try {
+                ring.read(buf);
+                fail();
+            } catch (IOException expected) {
+                // expected
+            }
+            // Nothing was copied.
+            assertEquals(0, buf.writerIndex());
+            try {
+                ring.parkReader();
+                fail();
+            } catch (IOException expected) {
+                // expected
+            }
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testSharedMemory() throws Exception {
+        IpcSharedMemory server = IpcSharedMemory.create(folder.getRoot(), 4096);
+        IpcSharedMemory client = IpcSharedMemory.open(new File(server.path()));
+        ByteBuf buf = Unpooled.directBuffer(8);
+        try {
+            buf.writeLong(42);
+            assertEquals(8, client.outbound(false).write(buf, 0, 8));
+            assertEquals(8, server.inbound(true).readableBytes());
+            assertEquals(0, server.outbound(true).readableBytes());
+
+            buf.clear();
+            assertEquals(8, server.inbound(true).read(buf));
+            assertEquals(42, buf.readLong());
+        } finally {
+            buf.release();
+            server.deleteFile();
+            server.release();
+            client.release();
+        }
+        assertFalse(new File(server.path()).exists());
+    }
+}
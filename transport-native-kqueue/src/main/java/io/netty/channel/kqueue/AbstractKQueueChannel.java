@@ -535,7 +535,7 @@ abstract class AbstractKQueueChannel extends AbstractChannel implements UnixChan
                     // Schedule connect timeout.
                     int connectTimeoutMillis = config().getConnectTimeoutMillis();
                     if (connectTimeoutMillis > 0) {
-                        connectTimeoutFuture = eventLoop().schedule(() -> {
+                        connectTimeoutFuture = eventLoop().scheduleApproximately(() -> {
                             ChannelPromise connectPromise = AbstractKQueueChannel.this.connectPromise;
                             ConnectTimeoutException cause =
                                     new ConnectTimeoutException("connection timed out: " + remoteAddress);
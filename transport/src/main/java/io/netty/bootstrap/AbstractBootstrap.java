@@ -253,7 +253,10 @@ public abstract class AbstractBootstrap<B extends AbstractBootstrap<B, C, F>, C
     }
 
     final ChannelFuture initAndRegister() {
-        EventLoop loop = group.next();
+        return initAndRegister(group.next());
+    }
+
+    final ChannelFuture initAndRegister(EventLoop loop) {
         final Channel channel;
         try {
             channel = newChannel(loop);
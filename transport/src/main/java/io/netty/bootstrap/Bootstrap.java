@@ -34,6 +34,7 @@ import io.netty.resolver.AddressResolverGroup;
 import io.netty.util.AttributeKey;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.FutureListener;
+import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
@@ -42,6 +43,7 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A {@link Bootstrap} that makes it easy to bootstrap a {@link Channel} to use
@@ -56,12 +58,16 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel, ChannelFact
 
     private static final AddressResolverGroup<?> DEFAULT_RESOLVER = DefaultAddressResolverGroup.INSTANCE;
 
+    // The recommended value of https://tools.ietf.org/html/rfc8305#section-8
+    private static final long DEFAULT_CONNECTION_ATTEMPT_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
     private final BootstrapConfig config = new BootstrapConfig(this);
 
     @SuppressWarnings("unchecked")
     private volatile AddressResolverGroup<SocketAddress> resolver =
             (AddressResolverGroup<SocketAddress>) DEFAULT_RESOLVER;
     private volatile SocketAddress remoteAddress;
+    private volatile long connectionAttemptDelayNanos = DEFAULT_CONNECTION_ATTEMPT_DELAY_NANOS;
     volatile ChannelFactory<? extends Channel> channelFactory;
 
     public Bootstrap() { }
@@ -70,6 +76,7 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel, ChannelFact
         super(bootstrap);
         resolver = bootstrap.resolver;
         remoteAddress = bootstrap.remoteAddress;
+        connectionAttemptDelayNanos = bootstrap.connectionAttemptDelayNanos;
         channelFactory = bootstrap.channelFactory;
     }
 
@@ -112,6 +119,16 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel, ChannelFact
         return this;
     }
 
+    /**
+     * The time to wait for a connection attempt to complete before the next address is tried in parallel when
+     * connecting with {@link #connectHappyEyeballs()}. The default is {@code 250} milliseconds.
+     */
+    public Bootstrap connectionAttemptDelay(long delay, TimeUnit unit) {
+        requireNonNull(unit, "unit");
+        connectionAttemptDelayNanos = unit.toNanos(ObjectUtil.checkPositiveOrZero(delay, "delay"));
+        return this;
+    }
+
     /**
      * The {@link Class} which is used to create {@link Channel} instances from.
      * You either use this or {@link #channelFactory(ChannelFactory)} if your
@@ -185,6 +202,44 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel, ChannelFact
         return doResolveAndConnect(remoteAddress, localAddress);
     }
 
+    /**
+     * Connect a {@link Channel} to the remote peer, racing connections to all addresses it resolves to as described by
+     * <a href="https://tools.ietf.org/html/rfc8305">Happy Eyeballs Version 2</a>.
+     * <p>
+     * All addresses are resolved first, with A and AAAA queries sent concurrently if the resolver supports this, and
+     * sorted so address families alternate. Connection attempts are then started one
+     * {@linkplain #connectionAttemptDelay(long, TimeUnit) connection attempt delay} apart, or as soon as the previous
+     * attempt failed. The returned {@link Future} is notified with the first {@link Channel} that connected and all
+     * other attempts are closed. Each attempt creates its own {@link Channel}, initialized like for
+     * {@link #connect()}.
+     */
+    public Future<Channel> connectHappyEyeballs() {
+        validate();
+        SocketAddress remoteAddress = this.remoteAddress;
+        if (remoteAddress == null) {
+            throw new IllegalStateException("remoteAddress not set");
+        }
+        return HappyEyeballsConnector.connect(
+                this, remoteAddress, config.localAddress(), connectionAttemptDelayNanos);
+    }
+
+    /**
+     * @see #connectHappyEyeballs()
+     */
+    public Future<Channel> connectHappyEyeballs(String inetHost, int inetPort) {
+        return connectHappyEyeballs(InetSocketAddress.createUnresolved(inetHost, inetPort));
+    }
+
+    /**
+     * @see #connectHappyEyeballs()
+     */
+    public Future<Channel> connectHappyEyeballs(SocketAddress remoteAddress) {
+        requireNonNull(remoteAddress, "remoteAddress");
+        validate();
+        return HappyEyeballsConnector.connect(
+                this, remoteAddress, config.localAddress(), connectionAttemptDelayNanos);
+    }
+
     /**
      * @see #connect()
      */
@@ -259,7 +314,7 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel, ChannelFact
         return promise;
     }
 
-    private static void doConnect(
+    static void doConnect(
             final SocketAddress remoteAddress, final SocketAddress localAddress, final ChannelPromise connectPromise) {
 
         // This method is invoked before channelRegistered() is triggered.  Give user handlers a chance to set up
@@ -342,4 +397,8 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel, ChannelFact
     final AddressResolverGroup<?> resolver() {
         return resolver;
     }
+
+    final long connectionAttemptDelayNanos() {
+        return connectionAttemptDelayNanos;
+    }
 }
@@ -20,6 +20,7 @@ import io.netty.channel.ChannelFactory;
 import io.netty.resolver.AddressResolverGroup;
 
 import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Exposes the configuration of a {@link Bootstrap}.
@@ -50,6 +51,13 @@ public final class BootstrapConfig extends
         return bootstrap.resolver();
     }
 
+    /**
+     * Returns the delay in milliseconds between two connection attempts of {@link Bootstrap#connectHappyEyeballs()}.
+     */
+    public long connectionAttemptDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(bootstrap.connectionAttemptDelayNanos());
+    }
+
     @Override
     public String toString() {
         StringBuilder buf = new StringBuilder(super.toString());
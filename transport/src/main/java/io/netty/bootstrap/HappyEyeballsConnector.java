@@ -0,0 +1,245 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.bootstrap;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.resolver.AddressResolver;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connects to all addresses a remote address resolves to in a staggered way, as described by
+ * <a href="https://tools.ietf.org/html/rfc8305">Happy Eyeballs Version 2</a>, and keeps the first connection that
+ * is established.
+ * <p>
+ * The addresses are sorted so that address families alternate, starting with the family of the first address the
+ * resolver returned. A new connection attempt is started whenever the previous one failed or the connection attempt
+ * delay passed without the previous one completing, so a broken IPv6 path costs the delay instead of the connect
+ * timeout. Once a connection is established all other attempts are closed.
+ * <p>
+ * All state is only accessed from the {@link EventLoop} all attempts are registered on.
+ */
+final class HappyEyeballsConnector {
+
+    private final Bootstrap bootstrap;
+    private final EventLoop loop;
+    private final List<SocketAddress> addresses;
+    private final SocketAddress localAddress;
+    private final long connectionAttemptDelayNanos;
+    private final Promise<Channel> promise;
+    private final List<Channel> attempts = new ArrayList<>();
+    private int nextAddress;
+    private int pendingAttempts;
+    private Throwable failure;
+    private ScheduledFuture<?> nextAttemptFuture;
+
+    private HappyEyeballsConnector(Bootstrap bootstrap, EventLoop loop, List<SocketAddress> addresses,
+                                   SocketAddress localAddress, long connectionAttemptDelayNanos,
+                                   Promise<Channel> promise) {
+        this.bootstrap = bootstrap;
+        this.loop = loop;
+        this.addresses = addresses;
+        this.localAddress = localAddress;
+        this.connectionAttemptDelayNanos = connectionAttemptDelayNanos;
+        this.promise = promise;
+    }
+
+    /**
+     * Resolves all addresses of {@code remoteAddress} and races connections to them.
+     */
+    static Future<Channel> connect(Bootstrap bootstrap, SocketAddress remoteAddress, SocketAddress localAddress,
+                                   long connectionAttemptDelayNanos) {
+        final EventLoop loop = bootstrap.config().group().next();
+        final Promise<Channel> promise = loop.newPromise();
+        try {
+            @SuppressWarnings("unchecked")
+            AddressResolver<SocketAddress> resolver =
+                    (AddressResolver<SocketAddress>) bootstrap.resolver().getResolver(loop);
+            if (!resolver.isSupported(remoteAddress) || resolver.isResolved(remoteAddress)) {
+                start(bootstrap, loop, Collections.singletonList(remoteAddress), localAddress,
+                      connectionAttemptDelayNanos, promise);
+                return promise;
+            }
+            resolver.resolveAll(remoteAddress).addListener((FutureListener<List<SocketAddress>>) future -> {
+                if (future.isSuccess()) {
+                    start(bootstrap, loop, future.getNow(), localAddress, connectionAttemptDelayNanos, promise);
+                } else {
+                    promise.tryFailure(future.cause());
+                }
+            });
+        } catch (Throwable cause) {
+            promise.tryFailure(cause);
+        }
+        return promise;
+    }
+
+    private static void start(Bootstrap bootstrap, EventLoop loop, List<SocketAddress> addresses,
+                              SocketAddress localAddress, long connectionAttemptDelayNanos,
+                              Promise<Channel> promise) {
+        if (addresses.isEmpty()) {
+            promise.tryFailure(new UnknownHostException("no addresses to connect to"));
+            return;
+        }
+        HappyEyeballsConnector connector = new HappyEyeballsConnector(bootstrap, loop,
+                interleaveAddressFamilies(addresses), localAddress, connectionAttemptDelayNanos, promise);
+        if (loop.inEventLoop()) {
+            connector.start();
+        } else {
+            loop.execute(connector::start);
+        }
+    }
+
+    /**
+     * Sorts the addresses so that address families alternate, starting with the family of the first address and
+     * otherwise keeping the order of the resolver (RFC 8305, section 4).
+     */
+    static List<SocketAddress> interleaveAddressFamilies(List<SocketAddress> addresses) {
+        final int size = addresses.size();
+        if (size <= 1) {
+            return addresses;
+        }
+        boolean firstIsIpv6 = isIpv6(addresses.get(0));
+        List<SocketAddress> firstFamily = new ArrayList<>(size);
+        List<SocketAddress> otherFamily = new ArrayList<>(size);
+        for (SocketAddress address: addresses) {
+            (isIpv6(address) == firstIsIpv6 ? firstFamily : otherFamily).add(address);
+        }
+        if (otherFamily.isEmpty()) {
+            return addresses;
+        }
+        List<SocketAddress> interleaved = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (i < firstFamily.size()) {
+                interleaved.add(firstFamily.get(i));
+            }
+            if (i < otherFamily.size()) {
+                interleaved.add(otherFamily.get(i));
+            }
+        }
+        return interleaved;
+    }
+
+    private static boolean isIpv6(SocketAddress address) {
+        return address instanceof InetSocketAddress &&
+                ((InetSocketAddress) address).getAddress() instanceof Inet6Address;
+    }
+
+    private void start() {
+        assert loop.inEventLoop();
+        promise.addListener(future -> {
+            if (future.isCancelled()) {
+                cancelNextAttempt();
+                closeAttempts(null);
+            }
+        });
+        startNextAttempt();
+    }
+
+    private void startNextAttempt() {
+        nextAttemptFuture = null;
+        if (promise.isDone()) {
+            return;
+        }
+        final SocketAddress remoteAddress = addresses.get(nextAddress++);
+        if (nextAddress < addresses.size()) {
+            // Schedule before starting the attempt, as it may fail synchronously and so start the next attempt (and
+            // cancel this timer) before initAndRegister returns.
+            nextAttemptFuture = loop.schedule(this::startNextAttempt, connectionAttemptDelayNanos,
+                                              TimeUnit.NANOSECONDS);
+        }
+        pendingAttempts++;
+        ChannelFuture regFuture = bootstrap.initAndRegister(loop);
+        final Channel channel = regFuture.channel();
+        attempts.add(channel);
+        regFuture.addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                attemptFailed(channel, future.cause());
+                return;
+            }
+            ChannelPromise connectPromise = channel.newPromise();
+            connectPromise.addListener((ChannelFutureListener) f -> {
+                if (f.isSuccess()) {
+                    attemptSucceeded(channel);
+                } else {
+                    attemptFailed(channel, f.cause());
+                }
+            });
+            Bootstrap.doConnect(remoteAddress, localAddress, connectPromise);
+        });
+    }
+
+    private void attemptSucceeded(Channel channel) {
+        if (!promise.trySuccess(channel)) {
+            // Cancelled, or another attempt won in the meantime.
+            channel.close();
+            return;
+        }
+        cancelNextAttempt();
+        closeAttempts(channel);
+    }
+
+    private void attemptFailed(Channel channel, Throwable cause) {
+        pendingAttempts--;
+        attempts.remove(channel);
+        if (promise.isDone()) {
+            return;
+        }
+        if (failure == null) {
+            // Report the failure of the first attempt, which used the preferred address.
+            failure = cause;
+        }
+        if (nextAddress < addresses.size()) {
+            // Do not wait for the connection attempt delay if the previous attempt failed already.
+            cancelNextAttempt();
+            startNextAttempt();
+        } else if (pendingAttempts == 0) {
+            promise.tryFailure(failure);
+        }
+    }
+
+    private void cancelNextAttempt() {
+        ScheduledFuture<?> nextAttemptFuture = this.nextAttemptFuture;
+        if (nextAttemptFuture != null) {
+            this.nextAttemptFuture = null;
+            nextAttemptFuture.cancel(false);
+        }
+    }
+
+    private void closeAttempts(Channel winner) {
+        List<Channel> losers = new ArrayList<>(attempts);
+        attempts.clear();
+        for (Channel channel: losers) {
+            if (channel != winner) {
+                channel.close();
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@ package io.netty.channel;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufHolder;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.util.Recycler;
@@ -455,9 +456,16 @@ public final class ChannelOutboundBuffer {
     private static int nioBuffers(Entry entry, ByteBuf buf, ByteBuffer[] nioBuffers, int nioBufferCount, int maxCount) {
         ByteBuffer[] nioBufs = entry.bufs;
         if (nioBufs == null) {
-            // cached ByteBuffers as they may be expensive to create in terms
-            // of Object allocation
-            entry.bufs = nioBufs = buf.nioBuffers();
+            int maxBuffers = maxCount - nioBufferCount;
+            if (entry.count > maxBuffers && buf instanceof CompositeByteBuf) {
+                // The composite is written over several calls, so only expose the components which are written in
+                // this one instead of walking all of them each time.
+                nioBufs = ((CompositeByteBuf) buf).nioBuffers(buf.readerIndex(), buf.readableBytes(), maxBuffers);
+            } else {
+                // cached ByteBuffers as they may be expensive to create in terms
+                // of Object allocation
+                entry.bufs = nioBufs = buf.nioBuffers();
+            }
         }
         for (int i = 0; i < nioBufs.length && nioBufferCount < maxCount; ++i) {
             ByteBuffer nioBuf = nioBufs[i];
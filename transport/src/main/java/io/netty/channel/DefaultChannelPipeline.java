@@ -29,15 +29,17 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
-import java.util.function.IntSupplier;
 import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 /**
  * The default {@link ChannelPipeline} implementation.  It is usually created
@@ -59,6 +61,8 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         }
     };
 
+    private static final AtomicReferenceFieldUpdater<DefaultChannelPipeline, HandlerSnapshot> HANDLERS =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultChannelPipeline.class, HandlerSnapshot.class, "handlers");
     private static final AtomicReferenceFieldUpdater<DefaultChannelPipeline, MessageSizeEstimator.Handle> ESTIMATOR =
             AtomicReferenceFieldUpdater.newUpdater(
                     DefaultChannelPipeline.class, MessageSizeEstimator.Handle.class, "estimatorHandle");
@@ -68,7 +72,11 @@ public class DefaultChannelPipeline implements ChannelPipeline {
     private final ChannelFuture succeededFuture;
     private final VoidChannelPromise voidPromise;
     private final boolean touch = ResourceLeakDetector.isEnabled();
-    private final List<DefaultChannelHandlerContext> handlers = new ArrayList<>(4);
+    // Only serializes mutations from outside the EventLoop, so they are executed in the same order as they are
+    // applied to the handlers snapshot.
+    private final Object mutationLock = new Object();
+
+    private volatile HandlerSnapshot handlers = HandlerSnapshot.EMPTY;
 
     private volatile MessageSizeEstimator.Handle estimatorHandle;
 
@@ -124,24 +132,15 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
         DefaultChannelHandlerContext newCtx = newContext(name, handler);
         EventExecutor executor = executor();
-        boolean inEventLoop = executor.inEventLoop();
-        synchronized (handlers) {
-            if (context(name) != null) {
-                throw new IllegalArgumentException("Duplicate handler name: " + name);
-            }
-            handlers.add(0, newCtx);
-            if (!inEventLoop) {
-                try {
-                    executor.execute(() -> addFirst0(newCtx));
-                    return this;
-                } catch (Throwable cause) {
-                    handlers.remove(0);
-                    throw cause;
-                }
-            }
+        if (executor.inEventLoop()) {
+            addHandler(0, newCtx);
+            addFirst0(newCtx);
+            return this;
+        }
+        synchronized (mutationLock) {
+            addHandler(0, newCtx);
+            execute(executor, () -> addFirst0(newCtx), () -> updateHandlers(h -> h.remove(newCtx)));
         }
-
-        addFirst0(newCtx);
         return this;
     }
 
@@ -163,24 +162,15 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
         DefaultChannelHandlerContext newCtx = newContext(name, handler);
         EventExecutor executor = executor();
-        boolean inEventLoop = executor.inEventLoop();
-        synchronized (this) {
-            if (context(name) != null) {
-                throw new IllegalArgumentException("Duplicate handler name: " + name);
-            }
-            handlers.add(newCtx);
-            if (!inEventLoop) {
-                try {
-                    executor.execute(() -> addLast0(newCtx));
-                    return this;
-                } catch (Throwable cause) {
-                    handlers.remove(handlers.size() - 1);
-                    throw cause;
-                }
-            }
+        if (executor.inEventLoop()) {
+            addHandler(-1, newCtx);
+            addLast0(newCtx);
+            return this;
+        }
+        synchronized (mutationLock) {
+            addHandler(-1, newCtx);
+            execute(executor, () -> addLast0(newCtx), () -> updateHandlers(h -> h.remove(newCtx)));
         }
-
-        addLast0(newCtx);
         return this;
     }
 
@@ -195,8 +185,6 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
     @Override
     public final ChannelPipeline addBefore(String baseName, String name, ChannelHandler handler) {
-        final DefaultChannelHandlerContext ctx;
-
         checkMultiplicity(handler);
         if (name == null) {
             name = generateName(handler);
@@ -204,31 +192,14 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
         DefaultChannelHandlerContext newCtx = newContext(name, handler);
         EventExecutor executor = executor();
-        boolean inEventLoop = executor.inEventLoop();
-        synchronized (handlers) {
-            int i = findCtxIdx(context -> context.name().equals(baseName));
-
-            if (i == -1) {
-                throw new NoSuchElementException(baseName);
-            }
-
-            if (context(name) != null) {
-                throw new IllegalArgumentException("Duplicate handler name: " + name);
-            }
-            ctx = handlers.get(i);
-            handlers.add(i, newCtx);
-            if (!inEventLoop) {
-                try {
-                    executor.execute(() -> addBefore0(ctx, newCtx));
-                    return this;
-                } catch (Throwable cause) {
-                    handlers.remove(i);
-                    throw cause;
-                }
-            }
+        if (executor.inEventLoop()) {
+            addBefore0(addHandler(baseName, false, newCtx), newCtx);
+            return this;
+        }
+        synchronized (mutationLock) {
+            DefaultChannelHandlerContext ctx = addHandler(baseName, false, newCtx);
+            execute(executor, () -> addBefore0(ctx, newCtx), () -> updateHandlers(h -> h.remove(newCtx)));
         }
-
-        addBefore0(ctx, newCtx);
         return this;
     }
 
@@ -242,8 +213,6 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
     @Override
     public final ChannelPipeline addAfter(String baseName, String name, ChannelHandler handler) {
-        final DefaultChannelHandlerContext ctx;
-
         checkMultiplicity(handler);
         if (name == null) {
             name = generateName(handler);
@@ -251,31 +220,14 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
         DefaultChannelHandlerContext newCtx = newContext(name, handler);
         EventExecutor executor = executor();
-        boolean inEventLoop = executor.inEventLoop();
-        synchronized (handlers) {
-            int i = findCtxIdx(context -> context.name().equals(baseName));
-
-            if (i == -1) {
-                throw new NoSuchElementException(baseName);
-            }
-
-            if (context(name) != null) {
-                throw new IllegalArgumentException("Duplicate handler name: " + name);
-            }
-            ctx = handlers.get(i);
-            handlers.add(i + 1, newCtx);
-            if (!inEventLoop) {
-                try {
-                    executor.execute(() -> addAfter0(ctx, newCtx));
-                    return this;
-                } catch (Throwable cause) {
-                    handlers.remove(i + 1);
-                    throw cause;
-                }
-            }
+        if (executor.inEventLoop()) {
+            addAfter0(addHandler(baseName, true, newCtx), newCtx);
+            return this;
+        }
+        synchronized (mutationLock) {
+            DefaultChannelHandlerContext ctx = addHandler(baseName, true, newCtx);
+            execute(executor, () -> addAfter0(ctx, newCtx), () -> updateHandlers(h -> h.remove(newCtx)));
         }
-
-        addAfter0(ctx, newCtx);
         return this;
     }
 
@@ -340,17 +292,16 @@ public class DefaultChannelPipeline implements ChannelPipeline {
             cache.put(handlerType, name);
         }
 
-        synchronized (handlers) {
-            // It's not very likely for a user to put more than one handler of the same type, but make sure to avoid
-            // any name conflicts.  Note that we don't cache the names generated here.
-            if (context(name) != null) {
-                String baseName = name.substring(0, name.length() - 1); // Strip the trailing '0'.
-                for (int i = 1;; i ++) {
-                    String newName = baseName + i;
-                    if (context(newName) == null) {
-                        name = newName;
-                        break;
-                    }
+        // It's not very likely for a user to put more than one handler of the same type, but make sure to avoid
+        // any name conflicts.  Note that we don't cache the names generated here.
+        HandlerSnapshot handlers = this.handlers;
+        if (handlers.context(name) != null) {
+            String baseName = name.substring(0, name.length() - 1); // Strip the trailing '0'.
+            for (int i = 1;; i ++) {
+                String newName = baseName + i;
+                if (handlers.context(newName) == null) {
+                    name = newName;
+                    break;
                 }
             }
         }
@@ -362,138 +313,156 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         return StringUtil.simpleClassName(handlerType) + "#0";
     }
 
-    private int findCtxIdx(Predicate<DefaultChannelHandlerContext> predicate) {
-        for (int i = 0; i < handlers.size(); i++) {
-            if (predicate.test(handlers.get(i))) {
-                return i;
+    /**
+     * Adds {@code newCtx} to the snapshot of handlers at the given index, or at the end if it is negative.
+     */
+    private void addHandler(int index, DefaultChannelHandlerContext newCtx) {
+        for (;;) {
+            HandlerSnapshot handlers = this.handlers;
+            checkDuplicateName(handlers, newCtx.name());
+            HandlerSnapshot newHandlers = handlers.insert(index < 0 ? handlers.size() : index, newCtx);
+            if (HANDLERS.compareAndSet(this, handlers, newHandlers)) {
+                return;
             }
         }
-        return -1;
     }
 
-    @Override
-    public final ChannelPipeline remove(ChannelHandler handler) {
-        final DefaultChannelHandlerContext ctx;
-        EventExecutor executor = executor();
-        boolean inEventLoop = executor.inEventLoop();
-        synchronized (handlers) {
-            int idx = findCtxIdx(context -> context.handler() == handler);
+    /**
+     * Adds {@code newCtx} to the snapshot of handlers before or after the handler with the given name, and returns the
+     * context of that handler.
+     */
+    private DefaultChannelHandlerContext addHandler(
+            String baseName, boolean after, DefaultChannelHandlerContext newCtx) {
+        for (;;) {
+            HandlerSnapshot handlers = this.handlers;
+            int idx = handlers.indexOf(ctx -> ctx.name().equals(baseName));
             if (idx == -1) {
-                throw new NoSuchElementException();
+                throw new NoSuchElementException(baseName);
             }
-            ctx = handlers.remove(idx);
-            assert ctx != null;
-
-            if (!inEventLoop) {
-                try {
-                    executor.execute(() -> remove0(ctx));
-                    return this;
-                } catch (Throwable cause) {
-                    handlers.add(idx, ctx);
-                    throw cause;
-                }
+            checkDuplicateName(handlers, newCtx.name());
+            HandlerSnapshot newHandlers = handlers.insert(after ? idx + 1 : idx, newCtx);
+            if (HANDLERS.compareAndSet(this, handlers, newHandlers)) {
+                return handlers.get(idx);
             }
         }
+    }
 
-        remove0(ctx);
-        return this;
+    private static void checkDuplicateName(HandlerSnapshot handlers, String name) {
+        if (handlers.context(name) != null) {
+            throw new IllegalArgumentException("Duplicate handler name: " + name);
+        }
     }
 
-    @Override
-    public final ChannelHandler remove(String name) {
-        final DefaultChannelHandlerContext ctx;
-        EventExecutor executor = executor();
-        boolean inEventLoop = executor.inEventLoop();
-        synchronized (handlers) {
-            int idx = findCtxIdx(context -> context.name().equals(name));
+    /**
+     * Removes the first handler matching {@code predicate} from the snapshot of handlers and returns its context, or
+     * {@code null} if there is none.
+     */
+    private DefaultChannelHandlerContext removeHandler(Predicate<DefaultChannelHandlerContext> predicate) {
+        for (;;) {
+            HandlerSnapshot handlers = this.handlers;
+            int idx = handlers.indexOf(predicate);
             if (idx == -1) {
-                throw new NoSuchElementException();
+                return null;
             }
-            ctx = handlers.remove(idx);
-            assert ctx != null;
-
-            if (!inEventLoop) {
-                try {
-                    executor.execute(() -> remove0(ctx));
-                    return ctx.handler();
-                } catch (Throwable cause) {
-                    handlers.add(idx, ctx);
-                    throw cause;
-                }
+            if (HANDLERS.compareAndSet(this, handlers, handlers.remove(idx))) {
+                return handlers.get(idx);
             }
         }
-
-        remove0(ctx);
-        return ctx.handler();
     }
 
-    @SuppressWarnings("unchecked")
-    @Override
-    public final <T extends ChannelHandler> T remove(Class<T> handlerType) {
-        final DefaultChannelHandlerContext ctx;
-        EventExecutor executor = executor();
-        boolean inEventLoop = executor.inEventLoop();
-        synchronized (handlers) {
-            int idx = findCtxIdx(context -> handlerType.isAssignableFrom(context.handler().getClass()));
-            if (idx == -1) {
-                throw new NoSuchElementException();
+    private void updateHandlers(UnaryOperator<HandlerSnapshot> update) {
+        for (;;) {
+            HandlerSnapshot handlers = this.handlers;
+            if (HANDLERS.compareAndSet(this, handlers, update.apply(handlers))) {
+                return;
             }
-            ctx = handlers.remove(idx);
-            assert ctx != null;
-
-            if (!inEventLoop) {
-                try {
-                    executor.execute(() -> remove0(ctx));
-                    return (T) ctx.handler();
-                } catch (Throwable cause) {
-                    handlers.add(idx, ctx);
-                    throw cause;
+        }
+    }
+
+    /**
+     * Re-adds the context of a removal which could not be executed, before the first context which follows it in the
+     * linked list and is still part of the pipeline.
+     */
+    private void restoreHandler(DefaultChannelHandlerContext ctx) {
+        updateHandlers(handlers -> {
+            for (DefaultChannelHandlerContext next = ctx.next; next != tail; next = next.next) {
+                int idx = handlers.indexOf(next);
+                if (idx != -1) {
+                    return handlers.insert(idx, ctx);
                 }
             }
+            return handlers.insert(handlers.size(), ctx);
+        });
+    }
+
+    /**
+     * Executes the change of the linked list of contexts on the {@link EventExecutor}, and reverts the change of the
+     * snapshot of handlers if that fails.
+     */
+    private static void execute(EventExecutor executor, Runnable task, Runnable rollback) {
+        try {
+            executor.execute(task);
+        } catch (Throwable cause) {
+            rollback.run();
+            throw cause;
         }
+    }
 
-        remove0(ctx);
-        return (T) ctx.handler();
+    @Override
+    public final ChannelPipeline remove(ChannelHandler handler) {
+        remove(context -> context.handler() == handler, true);
+        return this;
+    }
+
+    @Override
+    public final ChannelHandler remove(String name) {
+        return remove(context -> context.name().equals(name), true).handler();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final <T extends ChannelHandler> T remove(Class<T> handlerType) {
+        return (T) remove(context -> handlerType.isAssignableFrom(context.handler().getClass()), true).handler();
     }
 
     public final <T extends ChannelHandler> T removeIfExists(String name) {
-        return removeIfExists(() -> findCtxIdx(context -> name.equals(context.name())));
+        return removeIfExists(context -> name.equals(context.name()));
     }
 
     public final <T extends ChannelHandler> T removeIfExists(Class<T> handlerType) {
-        return removeIfExists(() -> findCtxIdx(
-                context -> handlerType.isAssignableFrom(context.handler().getClass())));
+        return removeIfExists(context -> handlerType.isAssignableFrom(context.handler().getClass()));
     }
 
     public final <T extends ChannelHandler> T removeIfExists(ChannelHandler handler) {
-        return removeIfExists(() -> findCtxIdx(context -> handler == context.handler()));
+        return removeIfExists(context -> handler == context.handler());
     }
 
     @SuppressWarnings("unchecked")
-    private <T extends ChannelHandler> T removeIfExists(IntSupplier idxSupplier) {
+    private <T extends ChannelHandler> T removeIfExists(Predicate<DefaultChannelHandlerContext> predicate) {
+        DefaultChannelHandlerContext ctx = remove(predicate, false);
+        return ctx == null ? null : (T) ctx.handler();
+    }
+
+    private DefaultChannelHandlerContext remove(Predicate<DefaultChannelHandlerContext> predicate, boolean required) {
         final DefaultChannelHandlerContext ctx;
         EventExecutor executor = executor();
-        boolean inEventLoop = executor.inEventLoop();
-        synchronized (handlers) {
-            int idx = idxSupplier.getAsInt();
-            if (idx == -1) {
-                return null;
+        if (executor.inEventLoop()) {
+            ctx = removeHandler(predicate);
+            if (ctx != null) {
+                remove0(ctx);
             }
-            ctx = handlers.remove(idx);
-            assert ctx != null;
-
-            if (!inEventLoop) {
-                try {
-                    executor.execute(() -> remove0(ctx));
-                    return (T) ctx.handler();
-                } catch (Throwable cause) {
-                    handlers.add(idx, ctx);
-                    throw cause;
+        } else {
+            synchronized (mutationLock) {
+                ctx = removeHandler(predicate);
+                if (ctx != null) {
+                    execute(executor, () -> remove0(ctx), () -> restoreHandler(ctx));
                 }
             }
         }
-        remove0(ctx);
-        return (T) ctx.handler();
+        if (ctx == null && required) {
+            throw new NoSuchElementException();
+        }
+        return ctx;
     }
 
     private void unlink(DefaultChannelHandlerContext ctx) {
@@ -534,39 +503,39 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         if (newName == null) {
             newName = generateName(newHandler);
         }
-        DefaultChannelHandlerContext oldCtx;
         DefaultChannelHandlerContext newCtx = newContext(newName, newHandler);
         EventExecutor executor = executor();
-        boolean inEventLoop = executor.inEventLoop();
-        synchronized (handlers) {
-            int idx = findCtxIdx(predicate);
+        if (executor.inEventLoop()) {
+            DefaultChannelHandlerContext oldCtx = replaceHandler(predicate, newCtx);
+            replace0(oldCtx, newCtx);
+            return oldCtx.handler();
+        }
+        synchronized (mutationLock) {
+            DefaultChannelHandlerContext oldCtx = replaceHandler(predicate, newCtx);
+            execute(executor, () -> replace0(oldCtx, newCtx),
+                    () -> updateHandlers(h -> h.replace(newCtx, oldCtx)));
+            return oldCtx.handler();
+        }
+    }
+
+    private DefaultChannelHandlerContext replaceHandler(
+            Predicate<DefaultChannelHandlerContext> predicate, DefaultChannelHandlerContext newCtx) {
+        for (;;) {
+            HandlerSnapshot handlers = this.handlers;
+            int idx = handlers.indexOf(predicate);
             if (idx == -1) {
                 throw new NoSuchElementException();
             }
-            oldCtx = handlers.get(idx);
-            assert oldCtx != head && oldCtx != tail && oldCtx != null;
+            DefaultChannelHandlerContext oldCtx = handlers.get(idx);
+            assert oldCtx != head && oldCtx != tail;
 
-            if (!oldCtx.name().equals(newName)) {
-                if (context(newName) != null) {
-                    throw new IllegalArgumentException("Duplicate handler name: " + newName);
-                }
+            if (!oldCtx.name().equals(newCtx.name())) {
+                checkDuplicateName(handlers, newCtx.name());
             }
-            DefaultChannelHandlerContext removed = handlers.set(idx, newCtx);
-            assert removed != null;
-
-            if (!inEventLoop) {
-                try {
-                    executor.execute(() -> replace0(oldCtx, newCtx));
-                    return oldCtx.handler();
-                } catch (Throwable cause) {
-                    handlers.set(idx, oldCtx);
-                    throw cause;
-                }
+            if (HANDLERS.compareAndSet(this, handlers, handlers.set(idx, newCtx))) {
+                return oldCtx;
             }
         }
-
-        replace0(oldCtx, newCtx);
-        return oldCtx.handler();
     }
 
     private void replace0(DefaultChannelHandlerContext oldCtx, DefaultChannelHandlerContext newCtx) {
@@ -611,10 +580,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         } catch (Throwable t) {
             boolean removed = false;
             try {
-                synchronized (handlers) {
-                    handlers.remove(ctx);
-                }
-
+                updateHandlers(handlers -> handlers.remove(ctx));
                 unlink(ctx);
                 ctx.callHandlerRemoved();
 
@@ -660,52 +626,34 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         return ctx == null ? null : (T) ctx.handler();
     }
 
-    private DefaultChannelHandlerContext findCtx(Predicate<DefaultChannelHandlerContext> predicate) {
-        for (int i = 0; i < handlers.size(); i++) {
-            DefaultChannelHandlerContext ctx = handlers.get(i);
-            if (predicate.test(ctx)) {
-                return ctx;
-            }
-        }
-        return null;
-    }
-
     @Override
     public final ChannelHandlerContext context(String name) {
         requireNonNull(name, "name");
-
-        synchronized (handlers) {
-            return findCtx(ctx -> ctx.name().equals(name));
-        }
+        return handlers.context(name);
     }
 
     @Override
     public final ChannelHandlerContext context(ChannelHandler handler) {
         requireNonNull(handler, "handler");
-
-        synchronized (handlers) {
-            return findCtx(ctx -> ctx.handler() == handler);
-        }
+        HandlerSnapshot handlers = this.handlers;
+        int idx = handlers.indexOf(ctx -> ctx.handler() == handler);
+        return idx == -1 ? null : handlers.get(idx);
     }
 
     @Override
     public final ChannelHandlerContext context(Class<? extends ChannelHandler> handlerType) {
         requireNonNull(handlerType, "handlerType");
-
-        synchronized (handlers) {
-            return findCtx(ctx -> handlerType.isAssignableFrom(ctx.handler().getClass()));
-        }
+        return handlers.context(handlerType);
     }
 
     @Override
     public final List<String> names() {
-        synchronized (handlers) {
-            List<String> names = new ArrayList<>(handlers.size());
-            for (int i = 0; i < handlers.size(); i++) {
-                names.add(handlers.get(i).name());
-            }
-            return names;
+        HandlerSnapshot handlers = this.handlers;
+        List<String> names = new ArrayList<>(handlers.size());
+        for (int i = 0; i < handlers.size(); i++) {
+            names.add(handlers.get(i).name());
         }
+        return names;
     }
 
     /**
@@ -716,19 +664,18 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         StringBuilder buf = new StringBuilder()
             .append(StringUtil.simpleClassName(this))
             .append('{');
-        synchronized (handlers) {
-            if (!handlers.isEmpty())  {
-                for (int i = 0; i < handlers.size(); i++) {
-                    DefaultChannelHandlerContext ctx = handlers.get(i);
-
-                    buf.append('(')
-                            .append(ctx.name())
-                            .append(" = ")
-                            .append(ctx.handler().getClass().getName())
-                            .append("), ");
-                }
-                buf.setLength(buf.length() - 2);
+        HandlerSnapshot handlers = this.handlers;
+        if (handlers.size() > 0)  {
+            for (int i = 0; i < handlers.size(); i++) {
+                DefaultChannelHandlerContext ctx = handlers.get(i);
+
+                buf.append('(')
+                        .append(ctx.name())
+                        .append(" = ")
+                        .append(ctx.handler().getClass().getName())
+                        .append("), ");
             }
+            buf.setLength(buf.length() - 2);
         }
         buf.append('}');
         return buf.toString();
@@ -736,22 +683,20 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
     @Override
     public ChannelHandler removeFirst() {
-        synchronized (handlers) {
-            if (handlers.isEmpty()) {
-                throw new NoSuchElementException();
-            }
-            return handlers.remove(0).handler();
+        ChannelHandlerContext ctx = firstContext();
+        if (ctx == null) {
+            throw new NoSuchElementException();
         }
+        return remove(context -> context == ctx, true).handler();
     }
 
     @Override
     public ChannelHandler removeLast() {
-        synchronized (handlers) {
-            if (handlers.isEmpty()) {
-                throw new NoSuchElementException();
-            }
-            return handlers.remove(handlers.size() - 1).handler();
+        ChannelHandlerContext ctx = lastContext();
+        if (ctx == null) {
+            throw new NoSuchElementException();
         }
+        return remove(context -> context == ctx, true).handler();
     }
 
     @Override
@@ -762,9 +707,8 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
     @Override
     public ChannelHandlerContext firstContext() {
-        synchronized (handlers) {
-            return handlers.isEmpty() ? null : handlers.get(0);
-        }
+        HandlerSnapshot handlers = this.handlers;
+        return handlers.size() == 0 ? null : handlers.get(0);
     }
 
     @Override
@@ -775,25 +719,22 @@ public class DefaultChannelPipeline implements ChannelPipeline {
 
     @Override
     public ChannelHandlerContext lastContext() {
-        synchronized (handlers) {
-            return handlers.isEmpty() ? null : handlers.get(handlers.size() - 1);
-        }
+        HandlerSnapshot handlers = this.handlers;
+        return handlers.size() == 0 ? null : handlers.get(handlers.size() - 1);
     }
 
     @Override
     public Map<String, ChannelHandler> toMap() {
-        Map<String, ChannelHandler> map;
-        synchronized (handlers) {
-            if (handlers.isEmpty()) {
-                return Collections.emptyMap();
-            }
-            map = new LinkedHashMap<>(handlers.size());
-            for (int i = 0; i < handlers.size(); i++) {
-                ChannelHandlerContext ctx = handlers.get(i);
-                map.put(ctx.name(), ctx.handler());
-            }
-            return map;
+        HandlerSnapshot handlers = this.handlers;
+        if (handlers.size() == 0) {
+            return Collections.emptyMap();
         }
+        Map<String, ChannelHandler> map = new LinkedHashMap<>(handlers.size());
+        for (int i = 0; i < handlers.size(); i++) {
+            ChannelHandlerContext ctx = handlers.get(i);
+            map.put(ctx.name(), ctx.handler());
+        }
+        return map;
     }
 
     @Override
@@ -830,9 +771,8 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         assert executor().inEventLoop();
         DefaultChannelHandlerContext ctx = this.tail.prev;
         while (ctx != head) {
-            synchronized (handlers) {
-                handlers.remove(ctx);
-            }
+            DefaultChannelHandlerContext removed = ctx;
+            updateHandlers(handlers -> handlers.remove(removed));
             remove0(ctx);
 
             ctx = ctx.prev;
@@ -1094,6 +1034,135 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         }
     }
 
+    /**
+     * Immutable snapshot of the handlers of a pipeline, in order, which is replaced as a whole on every mutation. This
+     * allows lookups by name or type without any locking. Pipelines with many handlers additionally get an index for
+     * those lookups, which is built lazily on first use.
+     */
+    private static final class HandlerSnapshot {
+        static final HandlerSnapshot EMPTY = new HandlerSnapshot(new DefaultChannelHandlerContext[0]);
+
+        // Below this size a linear scan is cheaper than building and probing an index.
+        private static final int INDEX_THRESHOLD = 8;
+        private static final Object NOT_FOUND = new Object();
+
+        private final DefaultChannelHandlerContext[] contexts;
+        private volatile Map<String, DefaultChannelHandlerContext> nameIndex;
+        private volatile ConcurrentHashMap<Class<?>, Object> typeIndex;
+
+        private HandlerSnapshot(DefaultChannelHandlerContext[] contexts) {
+            this.contexts = contexts;
+        }
+
+        int size() {
+            return contexts.length;
+        }
+
+        DefaultChannelHandlerContext get(int index) {
+            return contexts[index];
+        }
+
+        int indexOf(DefaultChannelHandlerContext ctx) {
+            for (int i = 0; i < contexts.length; i++) {
+                if (contexts[i] == ctx) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int indexOf(Predicate<DefaultChannelHandlerContext> predicate) {
+            for (int i = 0; i < contexts.length; i++) {
+                if (predicate.test(contexts[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        DefaultChannelHandlerContext context(String name) {
+            if (contexts.length < INDEX_THRESHOLD) {
+                for (DefaultChannelHandlerContext ctx: contexts) {
+                    if (ctx.name().equals(name)) {
+                        return ctx;
+                    }
+                }
+                return null;
+            }
+            Map<String, DefaultChannelHandlerContext> nameIndex = this.nameIndex;
+            if (nameIndex == null) {
+                nameIndex = new HashMap<>(contexts.length << 1);
+                for (DefaultChannelHandlerContext ctx: contexts) {
+                    nameIndex.put(ctx.name(), ctx);
+                }
+                // Racy but benign, concurrent readers build the same index.
+                this.nameIndex = nameIndex;
+            }
+            return nameIndex.get(name);
+        }
+
+        DefaultChannelHandlerContext context(Class<?> handlerType) {
+            if (contexts.length < INDEX_THRESHOLD) {
+                return context0(handlerType);
+            }
+            ConcurrentHashMap<Class<?>, Object> typeIndex = this.typeIndex;
+            if (typeIndex == null) {
+                typeIndex = new ConcurrentHashMap<>();
+                this.typeIndex = typeIndex;
+            }
+            Object ctx = typeIndex.get(handlerType);
+            if (ctx == null) {
+                DefaultChannelHandlerContext found = context0(handlerType);
+                ctx = found == null ? NOT_FOUND : found;
+                typeIndex.put(handlerType, ctx);
+            }
+            return ctx == NOT_FOUND ? null : (DefaultChannelHandlerContext) ctx;
+        }
+
+        private DefaultChannelHandlerContext context0(Class<?> handlerType) {
+            for (DefaultChannelHandlerContext ctx: contexts) {
+                if (handlerType.isAssignableFrom(ctx.handler().getClass())) {
+                    return ctx;
+                }
+            }
+            return null;
+        }
+
+        HandlerSnapshot insert(int index, DefaultChannelHandlerContext ctx) {
+            DefaultChannelHandlerContext[] newContexts = new DefaultChannelHandlerContext[contexts.length + 1];
+            System.arraycopy(contexts, 0, newContexts, 0, index);
+            newContexts[index] = ctx;
+            System.arraycopy(contexts, index, newContexts, index + 1, contexts.length - index);
+            return new HandlerSnapshot(newContexts);
+        }
+
+        HandlerSnapshot remove(int index) {
+            if (contexts.length == 1) {
+                return EMPTY;
+            }
+            DefaultChannelHandlerContext[] newContexts = new DefaultChannelHandlerContext[contexts.length - 1];
+            System.arraycopy(contexts, 0, newContexts, 0, index);
+            System.arraycopy(contexts, index + 1, newContexts, index, newContexts.length - index);
+            return new HandlerSnapshot(newContexts);
+        }
+
+        HandlerSnapshot remove(DefaultChannelHandlerContext ctx) {
+            int index = indexOf(ctx);
+            return index == -1 ? this : remove(index);
+        }
+
+        HandlerSnapshot set(int index, DefaultChannelHandlerContext ctx) {
+            DefaultChannelHandlerContext[] newContexts = contexts.clone();
+            newContexts[index] = ctx;
+            return new HandlerSnapshot(newContexts);
+        }
+
+        HandlerSnapshot replace(DefaultChannelHandlerContext oldCtx, DefaultChannelHandlerContext newCtx) {
+            int index = indexOf(oldCtx);
+            return index == -1 ? this : set(index, newCtx);
+        }
+    }
+
     // A special catch-all handler that handles both bytes and messages.
     private static final class TailHandler implements ChannelInboundHandler {
 
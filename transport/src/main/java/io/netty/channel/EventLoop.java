@@ -16,6 +16,9 @@
 package io.netty.channel;
 
 import io.netty.util.concurrent.OrderedEventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * Will handle all the I/O operations for a {@link Channel} once registered.
@@ -31,6 +34,19 @@ public interface EventLoop extends OrderedEventExecutor, EventLoopGroup {
      */
     Unsafe unsafe();
 
+    /**
+     * Schedules the given task to be run on this {@link EventLoop} approximately after the given delay. The task is
+     * never run before the delay passed, but may be run later than with {@link #schedule(Runnable, long, TimeUnit)}.
+     * This is meant for timeouts which are kept per {@link Channel} and are usually cancelled or rescheduled before
+     * they expire, like idle or connect timeouts, and which do not need to be precise.
+     * <p>
+     * The default implementation uses {@link #schedule(Runnable, long, TimeUnit)}, {@link SingleThreadEventLoop}
+     * keeps these tasks in a coarse-grained timer wheel, which makes scheduling and cancelling them O(1).
+     */
+    default ScheduledFuture<?> scheduleApproximately(Runnable task, long delay, TimeUnit unit) {
+        return schedule(task, delay, unit);
+    }
+
     /**
      * <em>Unsafe</em> operations that should <em>never</em> be called from user-code. These methods
      * are only provided to implement the actual transport, and must be invoked from the {@link EventLoop} itself.
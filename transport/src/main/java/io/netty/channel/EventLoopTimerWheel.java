@@ -0,0 +1,254 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.AbstractScheduledEventExecutor;
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coarse-grained timer wheel of a {@link SingleThreadEventLoop}, which backs
+ * {@link EventLoop#scheduleApproximately(Runnable, long, TimeUnit)}.
+ * <p>
+ * The deadline of a timeout is rounded up to the next tick and the timeout is linked into the bucket of that tick, so
+ * adding and removing it is O(1) instead of O(log n) for the scheduled task queue of the {@link EventLoop}. The wheel
+ * keeps only one task in that queue, which runs when the next non-empty bucket is due and expires all buckets which
+ * passed since the last run in one batch. Timeouts whose deadline is more than one rotation of the wheel away stay in
+ * their bucket until a later rotation.
+ * <p>
+ * All methods must be called from the {@link EventLoop}. Timeouts which are cancelled from another thread are dropped
+ * once their bucket is visited.
+ */
+final class EventLoopTimerWheel {
+
+    private final SingleThreadEventLoop loop;
+    private final long tickNanos;
+    private final WheelTimeout[] buckets;
+    private final int mask;
+    private final Runnable tickTask = this::expireTimeouts;
+    // The last tick whose bucket was expired.
+    private long lastTick;
+    private int size;
+    private ScheduledFuture<?> tickFuture;
+    private long scheduledTick = Long.MAX_VALUE;
+
+    EventLoopTimerWheel(SingleThreadEventLoop loop, long tickNanos, int ticksPerWheel) {
+        assert tickNanos > 0 && ticksPerWheel > 0 && (ticksPerWheel & ticksPerWheel - 1) == 0;
+        this.loop = loop;
+        this.tickNanos = tickNanos;
+        buckets = new WheelTimeout[ticksPerWheel];
+        mask = ticksPerWheel - 1;
+        lastTick = Math.floorDiv(AbstractScheduledEventExecutor.nanoTime(), tickNanos);
+    }
+
+    /**
+     * Returns the number of timeouts in this wheel.
+     */
+    int size() {
+        return size;
+    }
+
+    void add(WheelTimeout timeout) {
+        assert loop.inEventLoop();
+        if (timeout.isDone()) {
+            // Cancelled before it was handed over to the event loop.
+            return;
+        }
+        // Round up, so the timeout never expires before its deadline.
+        long deadlineTick = Math.max(-Math.floorDiv(-timeout.deadlineNanos, tickNanos), lastTick + 1);
+        timeout.deadlineTick = deadlineTick;
+        link(timeout, (int) deadlineTick & mask);
+        if (deadlineTick < scheduledTick) {
+            scheduleTick(deadlineTick);
+        }
+    }
+
+    /**
+     * Cancels all timeouts, called when the {@link EventLoop} is shut down.
+     */
+    void cancelAll() {
+        assert loop.inEventLoop();
+        for (int i = 0; i < buckets.length; i++) {
+            for (WheelTimeout timeout = buckets[i]; timeout != null; timeout = buckets[i]) {
+                unlink(timeout);
+                timeout.cancel(false);
+            }
+        }
+        if (tickFuture != null) {
+            tickFuture.cancel(false);
+            tickFuture = null;
+            scheduledTick = Long.MAX_VALUE;
+        }
+    }
+
+    private void expireTimeouts() {
+        tickFuture = null;
+        scheduledTick = Long.MAX_VALUE;
+        final long currentTick = Math.floorDiv(AbstractScheduledEventExecutor.nanoTime(), tickNanos);
+        // If more than one rotation passed every bucket is visited once.
+        final long ticks = Math.min(currentTick - lastTick, buckets.length);
+        WheelTimeout expiredHead = null;
+        WheelTimeout expiredTail = null;
+        for (long tick = lastTick + 1; tick <= lastTick + ticks; tick++) {
+            WheelTimeout next;
+            for (WheelTimeout timeout = buckets[(int) tick & mask]; timeout != null; timeout = next) {
+                next = timeout.next;
+                if (timeout.isCancelled()) {
+                    unlink(timeout);
+                } else if (timeout.deadlineTick <= currentTick) {
+                    unlink(timeout);
+                    if (expiredTail == null) {
+                        expiredHead = timeout;
+                    } else {
+                        expiredTail.next = timeout;
+                    }
+                    expiredTail = timeout;
+                }
+            }
+        }
+        // Update the wheel before running the tasks, as they usually schedule the next timeout.
+        lastTick = currentTick;
+        if (size > 0) {
+            scheduleTick(nextNonEmptyTick());
+        }
+
+        WheelTimeout next;
+        for (WheelTimeout timeout = expiredHead; timeout != null; timeout = next) {
+            next = timeout.next;
+            timeout.next = null;
+            timeout.run();
+        }
+    }
+
+    private long nextNonEmptyTick() {
+        for (long tick = lastTick + 1; tick <= lastTick + buckets.length; tick++) {
+            if (buckets[(int) tick & mask] != null) {
+                return tick;
+            }
+        }
+        throw new IllegalStateException("no timeouts");
+    }
+
+    private void scheduleTick(long tick) {
+        if (tickFuture != null) {
+            tickFuture.cancel(false);
+        }
+        scheduledTick = tick;
+        long delayNanos = tick > Long.MAX_VALUE / tickNanos ?
+                Long.MAX_VALUE : tick * tickNanos - AbstractScheduledEventExecutor.nanoTime();
+        tickFuture = loop.schedule(tickTask, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void link(WheelTimeout timeout, int bucket) {
+        WheelTimeout head = buckets[bucket];
+        if (head != null) {
+            head.prev = timeout;
+            timeout.next = head;
+        }
+        buckets[bucket] = timeout;
+        timeout.bucket = bucket;
+        size++;
+    }
+
+    void unlink(WheelTimeout timeout) {
+        assert loop.inEventLoop();
+        int bucket = timeout.bucket;
+        if (bucket < 0) {
+            return;
+        }
+        WheelTimeout prev = timeout.prev;
+        WheelTimeout next = timeout.next;
+        if (prev == null) {
+            buckets[bucket] = next;
+        } else {
+            prev.next = next;
+        }
+        if (next != null) {
+            next.prev = prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        size--;
+    }
+
+    /**
+     * A timeout of an {@link EventLoopTimerWheel}, which is its own node in the bucket it is linked into.
+     */
+    static final class WheelTimeout extends DefaultPromise<Void> implements ScheduledFuture<Void> {
+        private final SingleThreadEventLoop loop;
+        private final Runnable task;
+        final long deadlineNanos;
+
+        // Only accessed from the EventLoop.
+        long deadlineTick;
+        int bucket = -1;
+        WheelTimeout prev;
+        WheelTimeout next;
+
+        WheelTimeout(SingleThreadEventLoop loop, Runnable task, long deadlineNanos) {
+            super(loop);
+            this.loop = loop;
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        void run() {
+            if (setUncancellable()) {
+                try {
+                    task.run();
+                    setSuccess(null);
+                } catch (Throwable cause) {
+                    setFailure(cause);
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && loop.inEventLoop()) {
+                // Otherwise it is dropped once its bucket is visited.
+                loop.timerWheel().unlink(this);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - AbstractScheduledEventExecutor.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        protected StringBuilder toStringBuilder() {
+            StringBuilder buf = super.toStringBuilder();
+            buf.setCharAt(buf.length() - 1, ',');
+            return buf.append(" task: ")
+                      .append(task)
+                      .append(", deadline: ")
+                      .append(deadlineNanos)
+                      .append(')');
+        }
+    }
+}
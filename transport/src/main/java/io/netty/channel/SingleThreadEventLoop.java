@@ -20,13 +20,16 @@ import static java.util.Objects.requireNonNull;
 
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.concurrent.RejectedExecutionHandlers;
+import io.netty.util.concurrent.ScheduledFuture;
 import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.internal.MathUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
 
 import java.util.Queue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * {@link EventLoop} that execute all its submitted tasks in a single thread and uses an {@link IoHandler} for
@@ -41,6 +44,11 @@ public class SingleThreadEventLoop extends SingleThreadEventExecutor implements
     protected static final int DEFAULT_MAX_TASKS_PER_RUN = Math.max(1,
             SystemPropertyUtil.getInt("io.netty.eventLoop.maxTaskPerRun", 1024 * 4));
 
+    private static final long TIMER_WHEEL_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(Math.max(1,
+            SystemPropertyUtil.getInt("io.netty.eventLoop.timerWheelTickMillis", 10)));
+    private static final int TIMER_WHEEL_SIZE = MathUtil.safeFindNextPositivePowerOfTwo(
+            SystemPropertyUtil.getInt("io.netty.eventLoop.timerWheelSize", 1024));
+
     private final IoExecutionContext context = new IoExecutionContext() {
         @Override
         public boolean canBlock() {
@@ -75,6 +83,8 @@ public class SingleThreadEventLoop extends SingleThreadEventExecutor implements
 
     private final IoHandler ioHandler;
     private final int maxTasksPerRun;
+    // Created on first use, only accessed from the EventLoop.
+    private EventLoopTimerWheel timerWheel;
 
     /**
      * Create a new instance
@@ -187,6 +197,38 @@ public class SingleThreadEventLoop extends SingleThreadEventExecutor implements
         return unsafe;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The task is kept in a timer wheel with a tick duration of 10 milliseconds, which can be changed with
+     * {@code -Dio.netty.eventLoop.timerWheelTickMillis}. Only the next tick of the wheel is kept in the scheduled
+     * task queue.
+     */
+    @Override
+    public final ScheduledFuture<?> scheduleApproximately(Runnable task, long delay, TimeUnit unit) {
+        requireNonNull(task, "task");
+        requireNonNull(unit, "unit");
+        long deadlineNanos = nanoTime() + unit.toNanos(Math.max(0, delay));
+        // Guard against overflow
+        EventLoopTimerWheel.WheelTimeout timeout = new EventLoopTimerWheel.WheelTimeout(
+                this, task, deadlineNanos < 0 ? Long.MAX_VALUE : deadlineNanos);
+        if (inEventLoop()) {
+            timerWheel().add(timeout);
+        } else {
+            execute(() -> timerWheel().add(timeout));
+        }
+        return timeout;
+    }
+
+    EventLoopTimerWheel timerWheel() {
+        assert inEventLoop();
+        EventLoopTimerWheel timerWheel = this.timerWheel;
+        if (timerWheel == null) {
+            timerWheel = this.timerWheel = new EventLoopTimerWheel(this, TIMER_WHEEL_TICK_NANOS, TIMER_WHEEL_SIZE);
+        }
+        return timerWheel;
+    }
+
     // Methods that a user can override to easily add instrumentation and other things.
 
     @Override
@@ -238,6 +280,9 @@ public class SingleThreadEventLoop extends SingleThreadEventExecutor implements
     @Override
     protected final void cleanup() {
         assert inEventLoop();
+        if (timerWheel != null) {
+            timerWheel.cancelAll();
+        }
         ioHandler.destroy();
     }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Base implementation of {@link ChannelPoolMap} which creates a {@link ChannelPool} for a key on demand, for
+ * example one pool per remote address:
+ *
+ * <pre>
+ * ChannelPoolMap&lt;SocketAddress, FixedChannelPool&gt; pools =
+ *         new AbstractChannelPoolMap&lt;SocketAddress, FixedChannelPool&gt;() {
+ *     protected FixedChannelPool newPool(SocketAddress key) {
+ *         return new FixedChannelPool(bootstrap.clone().remoteAddress(key), handler, 16);
+ *     }
+ * };
+ * </pre>
+ *
+ * @param <K> the type of the key
+ * @param <P> the type of the {@link ChannelPool}
+ */
+public abstract class AbstractChannelPoolMap<K, P extends ChannelPool>
+        implements ChannelPoolMap<K, P>, Iterable<Map.Entry<K, P>>, Closeable {
+
+    private final ConcurrentMap<K, P> map = new ConcurrentHashMap<>();
+
+    @Override
+    public final P get(K key) {
+        P pool = map.get(requireNonNull(key, "key"));
+        if (pool == null) {
+            pool = newPool(key);
+            P old = map.putIfAbsent(key, pool);
+            if (old != null) {
+                // We need to destroy the newly created pool as we not use it.
+                pool.close();
+                pool = old;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Remove the {@link ChannelPool} from this {@link AbstractChannelPoolMap}. Returns {@code true} if removed,
+     * {@code false} otherwise.
+     * The removed pool is closed.
+     *
+     * Please note that {@code null} keys are not allowed.
+     */
+    public final boolean remove(K key) {
+        P pool = map.remove(requireNonNull(key, "key"));
+        if (pool != null) {
+            pool.close();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public final Iterator<Map.Entry<K, P>> iterator() {
+        return Collections.unmodifiableMap(map).entrySet().iterator();
+    }
+
+    /**
+     * Returns the number of {@link ChannelPool}s currently in this {@link AbstractChannelPoolMap}.
+     */
+    public final int size() {
+        return map.size();
+    }
+
+    /**
+     * Returns {@code true} if the {@link AbstractChannelPoolMap} is empty, otherwise {@code false}.
+     */
+    public final boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public final boolean contains(K key) {
+        return map.containsKey(requireNonNull(key, "key"));
+    }
+
+    /**
+     * Called once a new {@link ChannelPool} needs to be created as non exists yet for the {@code key}.
+     */
+    protected abstract P newPool(K key);
+
+    /**
+     * Removes and closes all {@link ChannelPool}s.
+     */
+    @Override
+    public final void close() {
+        for (K key: map.keySet()) {
+            remove(key);
+        }
+    }
+}
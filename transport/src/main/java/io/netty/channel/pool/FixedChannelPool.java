@@ -0,0 +1,340 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link ChannelPool} implementation that takes another {@link ChannelPool} implementation and enforce a maximum
+ * number of concurrent connections.
+ * <p>
+ * The number of acquired {@link Channel}s is tracked with a compare-and-set counter instead of a lock or a single
+ * executor, so acquiring and releasing keep the {@link EventLoop} affinity of {@link SimpleChannelPool}. Acquires
+ * which exceed the maximum wait in a queue until a {@link Channel} is released or their acquire timeout passes.
+ */
+public class FixedChannelPool extends SimpleChannelPool {
+
+    public enum AcquireTimeoutAction {
+        /**
+         * Create a new connection when the timeout is detected.
+         */
+        NEW,
+
+        /**
+         * Fail the {@link Future} of the acquire call with a {@link TimeoutException}.
+         */
+        FAIL
+    }
+
+    private final long acquireTimeoutNanos;
+    private final AcquireTimeoutAction action;
+    private final int maxConnections;
+    private final int maxPendingAcquires;
+    private final AtomicInteger acquiredChannelCount = new AtomicInteger();
+    private final AtomicInteger pendingAcquireCount = new AtomicInteger();
+    private final Queue<PendingAcquire> pendingAcquires = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a new instance using the {@link ChannelHealthChecker#ACTIVE}.
+     *
+     * @param bootstrap the {@link Bootstrap} that is used for connections
+     * @param handler the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param maxConnections the number of maximal active connections, once this is reached new tries to acquire
+     *                       a {@link Channel} will be delayed until a connection is returned to the pool again.
+     */
+    public FixedChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler, int maxConnections) {
+        this(bootstrap, handler, maxConnections, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new instance using the {@link ChannelHealthChecker#ACTIVE}.
+     *
+     * @param bootstrap the {@link Bootstrap} that is used for connections
+     * @param handler the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param maxConnections the number of maximal active connections, once this is reached new tries to acquire
+     *                       a {@link Channel} will be delayed until a connection is returned to the pool again.
+     * @param maxPendingAcquires the maximum number of pending acquires. Once this is exceed acquire tries will
+     *                           be failed.
+     */
+    public FixedChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler, int maxConnections,
+                            int maxPendingAcquires) {
+        this(bootstrap, handler, ChannelHealthChecker.ACTIVE, null, -1, maxConnections, maxPendingAcquires);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap the {@link Bootstrap} that is used for connections
+     * @param handler the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param healthCheck the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is
+     *                    still healthy when obtain from the {@link ChannelPool}
+     * @param action the {@link AcquireTimeoutAction} to use or {@code null} if non should be used.
+     *               In this case {@code acquireTimeoutMillis} must be {@code -1}.
+     * @param acquireTimeoutMillis the time (in milliseconds) after which an pending acquire must complete or
+     *                             the {@link AcquireTimeoutAction} takes place.
+     * @param maxConnections the number of maximal active connections, once this is reached new tries to acquire
+     *                       a {@link Channel} will be delayed until a connection is returned to the pool again.
+     * @param maxPendingAcquires the maximum number of pending acquires. Once this is exceed acquire tries will
+     *                           be failed.
+     */
+    public FixedChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler, ChannelHealthChecker healthCheck,
+                            AcquireTimeoutAction action, long acquireTimeoutMillis,
+                            int maxConnections, int maxPendingAcquires) {
+        this(bootstrap, handler, healthCheck, action, acquireTimeoutMillis, maxConnections, maxPendingAcquires,
+             true, 0);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap the {@link Bootstrap} that is used for connections
+     * @param handler the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param healthCheck the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is
+     *                    still healthy when obtain from the {@link ChannelPool}
+     * @param action the {@link AcquireTimeoutAction} to use or {@code null} if non should be used.
+     *               In this case {@code acquireTimeoutMillis} must be {@code -1}.
+     * @param acquireTimeoutMillis the time (in milliseconds) after which an pending acquire must complete or
+     *                             the {@link AcquireTimeoutAction} takes place.
+     * @param maxConnections the number of maximal active connections, once this is reached new tries to acquire
+     *                       a {@link Channel} will be delayed until a connection is returned to the pool again.
+     * @param maxPendingAcquires the maximum number of pending acquires. Once this is exceed acquire tries will
+     *                           be failed.
+     * @param releaseHealthCheck will check channel health before offering back if this parameter set to
+     *                           {@code true}.
+     * @param idleTimeoutMillis the time after which a {@link Channel} that stayed idle in the pool is closed, or
+     *                          {@code 0} to keep idle {@link Channel}s until they are found to be unhealthy.
+     */
+    public FixedChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler, ChannelHealthChecker healthCheck,
+                            AcquireTimeoutAction action, long acquireTimeoutMillis,
+                            int maxConnections, int maxPendingAcquires,
+                            boolean releaseHealthCheck, long idleTimeoutMillis) {
+        super(bootstrap, handler, healthCheck, releaseHealthCheck, idleTimeoutMillis);
+        this.maxConnections = checkPositive(maxConnections, "maxConnections");
+        this.maxPendingAcquires = checkPositive(maxPendingAcquires, "maxPendingAcquires");
+        if (action == null) {
+            if (acquireTimeoutMillis != -1) {
+                throw new IllegalArgumentException(
+                        "acquireTimeoutMillis must be -1 if no AcquireTimeoutAction is used: " + acquireTimeoutMillis);
+            }
+            acquireTimeoutNanos = -1;
+        } else {
+            acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+                    checkPositiveOrZero(acquireTimeoutMillis, "acquireTimeoutMillis"));
+        }
+        this.action = action;
+    }
+
+    /**
+     * Returns the number of acquired channels that this pool thinks it has.
+     */
+    public int acquiredChannelCount() {
+        return acquiredChannelCount.get();
+    }
+
+    /**
+     * Returns the number of acquires which wait for a {@link Channel} to be released.
+     */
+    public int pendingAcquireCount() {
+        return pendingAcquireCount.get();
+    }
+
+    @Override
+    Future<Channel> acquire(EventLoop loop, Promise<Channel> promise) {
+        if (closed) {
+            promise.tryFailure(new IllegalStateException("FixedChannelPool was closed"));
+            return promise;
+        }
+        if (tryAcquirePermit()) {
+            acquirePermitted(loop, promise);
+            return promise;
+        }
+        if (pendingAcquireCount.incrementAndGet() > maxPendingAcquires) {
+            pendingAcquireCount.decrementAndGet();
+            promise.tryFailure(new IllegalStateException("Too many outstanding acquire operations"));
+            return promise;
+        }
+        PendingAcquire pendingAcquire = new PendingAcquire(loop, promise);
+        pendingAcquires.offer(pendingAcquire);
+        if (acquireTimeoutNanos >= 0) {
+            pendingAcquire.timeoutFuture = loop.schedule(pendingAcquire, acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        // A Channel may have been released before the acquire was queued.
+        runPendingAcquires();
+        if (closed) {
+            failPendingAcquires();
+        }
+        return promise;
+    }
+
+    private boolean tryAcquirePermit() {
+        for (;;) {
+            int acquired = acquiredChannelCount.get();
+            if (acquired >= maxConnections) {
+                return false;
+            }
+            if (acquiredChannelCount.compareAndSet(acquired, acquired + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void releasePermit() {
+        int acquired = acquiredChannelCount.decrementAndGet();
+        assert acquired >= 0;
+        runPendingAcquires();
+    }
+
+    /**
+     * Hands out permits to pending acquires. Every change that may allow a pending acquire to proceed, a released
+     * permit or a newly queued acquire, is followed by a call to this method, so no pending acquire is missed.
+     */
+    private void runPendingAcquires() {
+        while (!pendingAcquires.isEmpty() && tryAcquirePermit()) {
+            PendingAcquire pendingAcquire = pendingAcquires.poll();
+            if (pendingAcquire != null && pendingAcquire.claim()) {
+                pendingAcquireCount.decrementAndGet();
+                acquirePermitted(pendingAcquire.loop, pendingAcquire.promise);
+            } else {
+                // Drained concurrently or timed out already, give the permit back.
+                acquiredChannelCount.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Acquires a {@link Channel} for which a permit was taken already. The permit is given back if the acquire
+     * fails.
+     */
+    private void acquirePermitted(EventLoop loop, Promise<Channel> promise) {
+        Promise<Channel> p = loop.newPromise();
+        p.addListener(future -> {
+            if (future.isSuccess()) {
+                Channel channel = p.getNow();
+                if (!promise.trySuccess(channel)) {
+                    // Promise was completed in the meantime (like cancelled), just release the channel again
+                    release(channel);
+                }
+            } else {
+                releasePermit();
+                promise.tryFailure(future.cause());
+            }
+        });
+        acquireChannel(loop, p);
+    }
+
+    @Override
+    public Future<Void> release(Channel channel, Promise<Void> promise) {
+        requireNonNull(channel, "channel");
+        requireNonNull(promise, "promise");
+        Promise<Void> p = channel.eventLoop().newPromise();
+        super.release(channel, p.addListener(future -> {
+            // The Channel was not acquired from this pool, so it did not take a permit.
+            if (!(future.cause() instanceof IllegalArgumentException)) {
+                releasePermit();
+            }
+            if (future.isSuccess()) {
+                promise.trySuccess(null);
+            } else {
+                promise.tryFailure(future.cause());
+            }
+        }));
+        return promise;
+    }
+
+    private void failPendingAcquires() {
+        for (;;) {
+            PendingAcquire pendingAcquire = pendingAcquires.poll();
+            if (pendingAcquire == null) {
+                break;
+            }
+            if (pendingAcquire.claim()) {
+                pendingAcquireCount.decrementAndGet();
+                pendingAcquire.promise.tryFailure(new IllegalStateException("FixedChannelPool was closed"));
+            }
+        }
+    }
+
+    /**
+     * Closes the pool, fails all pending acquires and closes all idle {@link Channel}s.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        failPendingAcquires();
+        super.close();
+    }
+
+    /**
+     * An acquire waiting for a permit. Being handed a permit races with the acquire timeout, whoever claims it
+     * first completes it.
+     */
+    private final class PendingAcquire implements Runnable {
+        final EventLoop loop;
+        final Promise<Channel> promise;
+        volatile ScheduledFuture<?> timeoutFuture;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        PendingAcquire(EventLoop loop, Promise<Channel> promise) {
+            this.loop = loop;
+            this.promise = promise;
+        }
+
+        boolean claim() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            ScheduledFuture<?> timeoutFuture = this.timeoutFuture;
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            // Acquire timeout.
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            pendingAcquires.remove(this);
+            pendingAcquireCount.decrementAndGet();
+            if (action == AcquireTimeoutAction.FAIL) {
+                promise.tryFailure(new TimeoutException(
+                        "Acquire operation took longer then configured maximum time"));
+            } else {
+                // Exceed the maximum for this acquire.
+                acquiredChannelCount.incrementAndGet();
+                acquirePermitted(loop, promise);
+            }
+        }
+    }
+}
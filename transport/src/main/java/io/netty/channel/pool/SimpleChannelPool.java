@@ -0,0 +1,492 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.ThreadExecutorMap;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Simple {@link ChannelPool} implementation which will create new {@link Channel}s if someone tries to acquire
+ * a {@link Channel} but none is in the pool atm. No limit on the maximal concurrent {@link Channel}s is enforced.
+ * <p>
+ * Idle {@link Channel}s are kept per {@link EventLoop} of the {@link EventLoopGroup} of the {@link Bootstrap}.
+ * When acquiring from one of these {@link EventLoop}s a {@link Channel} registered on the same {@link EventLoop}
+ * is preferred, and a new {@link Channel} is registered on it, so the caller can use the {@link Channel} without
+ * handing work over to another thread. Only if there is no idle {@link Channel} on the caller's {@link EventLoop}
+ * an idle {@link Channel} of another {@link EventLoop} is taken. Acquiring and releasing does not take any locks.
+ * <p>
+ * This implementation uses LIFO order for {@link Channel}s, so the most recently used {@link Channel} is reused
+ * first and {@link Channel}s which are not needed anymore become idle and can be closed after the idle timeout.
+ */
+public class SimpleChannelPool implements ChannelPool {
+    private static final AttributeKey<SimpleChannelPool> POOL_KEY =
+            AttributeKey.newInstance("io.netty.channel.pool.SimpleChannelPool");
+
+    private final Bootstrap bootstrap;
+    private final ChannelPoolHandler handler;
+    private final ChannelHealthChecker healthCheck;
+    private final boolean releaseHealthCheck;
+    private final long idleTimeoutNanos;
+    private final EventLoopGroup group;
+    private final LoopSlot[] slots;
+    // Immutable after construction, so lookups need no synchronization.
+    private final Map<EventExecutor, LoopSlot> slotsByLoop = new IdentityHashMap<>();
+    volatile boolean closed;
+
+    /**
+     * Creates a new instance using the {@link ChannelHealthChecker#ACTIVE}.
+     *
+     * @param bootstrap the {@link Bootstrap} that is used for connections
+     * @param handler the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     */
+    public SimpleChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler) {
+        this(bootstrap, handler, ChannelHealthChecker.ACTIVE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap the {@link Bootstrap} that is used for connections
+     * @param handler the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param healthCheck the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is
+     *                    still healthy when obtain from the {@link ChannelPool}
+     */
+    public SimpleChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler, ChannelHealthChecker healthCheck) {
+        this(bootstrap, handler, healthCheck, true);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap the {@link Bootstrap} that is used for connections
+     * @param handler the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param healthCheck the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is
+     *                    still healthy when obtain from the {@link ChannelPool}
+     * @param releaseHealthCheck will check channel health before offering back if this parameter set to
+     *                           {@code true}.
+     */
+    public SimpleChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler, ChannelHealthChecker healthCheck,
+                             boolean releaseHealthCheck) {
+        this(bootstrap, handler, healthCheck, releaseHealthCheck, 0);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap the {@link Bootstrap} that is used for connections
+     * @param handler the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param healthCheck the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is
+     *                    still healthy when obtain from the {@link ChannelPool}
+     * @param releaseHealthCheck will check channel health before offering back if this parameter set to
+     *                           {@code true}.
+     * @param idleTimeoutMillis the time after which a {@link Channel} that stayed idle in the pool is closed, or
+     *                          {@code 0} to keep idle {@link Channel}s until they are found to be unhealthy.
+     */
+    public SimpleChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler, ChannelHealthChecker healthCheck,
+                             boolean releaseHealthCheck, long idleTimeoutMillis) {
+        this.handler = requireNonNull(handler, "handler");
+        this.healthCheck = requireNonNull(healthCheck, "healthCheck");
+        this.releaseHealthCheck = releaseHealthCheck;
+        idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(checkPositiveOrZero(idleTimeoutMillis, "idleTimeoutMillis"));
+        // Clone the original Bootstrap as we want to set our own handler
+        this.bootstrap = requireNonNull(bootstrap, "bootstrap").clone();
+        this.bootstrap.handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                assert ch.eventLoop().inEventLoop();
+                handler.channelCreated(ch);
+            }
+        });
+        group = requireNonNull(this.bootstrap.config().group(), "bootstrap.config().group()");
+
+        List<LoopSlot> slots = new ArrayList<>();
+        for (EventExecutor executor: group) {
+            LoopSlot slot = new LoopSlot((EventLoop) executor, slots.size());
+            slots.add(slot);
+            slotsByLoop.put(executor, slot);
+        }
+        this.slots = slots.toArray(new LoopSlot[0]);
+    }
+
+    /**
+     * Returns the {@link Bootstrap} this pool will use to open new connections.
+     *
+     * @return the {@link Bootstrap} this pool will use to open new connections
+     */
+    protected Bootstrap bootstrap() {
+        return bootstrap;
+    }
+
+    /**
+     * Returns the {@link ChannelPoolHandler} that will be notified for the different pool actions.
+     *
+     * @return the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     */
+    protected ChannelPoolHandler handler() {
+        return handler;
+    }
+
+    /**
+     * Returns the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is healthy.
+     *
+     * @return the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is healthy
+     */
+    protected ChannelHealthChecker healthChecker() {
+        return healthCheck;
+    }
+
+    /**
+     * Indicates whether this pool will check the health of channels before offering them back into the pool.
+     *
+     * @return {@code true} if this pool will check the health of channels before offering them back into the pool,
+     * or {@code false} if channel health is only checked at acquisition time
+     */
+    protected boolean releaseHealthCheck() {
+        return releaseHealthCheck;
+    }
+
+    @Override
+    public final Future<Channel> acquire() {
+        EventLoop loop = preferredLoop();
+        return acquire(loop, loop.newPromise());
+    }
+
+    @Override
+    public final Future<Channel> acquire(Promise<Channel> promise) {
+        return acquire(preferredLoop(), requireNonNull(promise, "promise"));
+    }
+
+    /**
+     * Acquires a {@link Channel} for a caller on the given {@link EventLoop}, overridden by pools which limit the
+     * number of acquired {@link Channel}s.
+     */
+    Future<Channel> acquire(EventLoop loop, Promise<Channel> promise) {
+        return acquireChannel(loop, promise);
+    }
+
+    /**
+     * Acquires a {@link Channel}, preferring one which is registered on the given {@link EventLoop}.
+     */
+    final Future<Channel> acquireChannel(EventLoop loop, Promise<Channel> promise) {
+        if (closed) {
+            promise.tryFailure(new IllegalStateException("ChannelPool was closed"));
+            return promise;
+        }
+        try {
+            IdleChannel idle = pollIdle(slotsByLoop.get(loop));
+            if (idle == null) {
+                connect(loop, promise);
+            } else {
+                Channel ch = idle.channel;
+                EventLoop chLoop = ch.eventLoop();
+                if (chLoop.inEventLoop()) {
+                    doHealthCheck(ch, loop, promise);
+                } else {
+                    chLoop.execute(() -> doHealthCheck(ch, loop, promise));
+                }
+            }
+        } catch (Throwable cause) {
+            promise.tryFailure(cause);
+        }
+        return promise;
+    }
+
+    /**
+     * Returns the {@link EventLoop} of the caller if it is part of the {@link EventLoopGroup} of this pool, so
+     * acquired {@link Channel}s can be used without a thread hop. Otherwise the next {@link EventLoop} is used.
+     */
+    final EventLoop preferredLoop() {
+        EventExecutor current = ThreadExecutorMap.currentExecutor();
+        if (current != null) {
+            LoopSlot slot = slotsByLoop.get(current);
+            if (slot != null) {
+                return slot.loop;
+            }
+        }
+        return group.next();
+    }
+
+    private IdleChannel pollIdle(LoopSlot preferred) {
+        IdleChannel idle = pollIdle(preferred.idle);
+        // Take an idle Channel of another EventLoop before opening a new connection.
+        for (int i = 1; idle == null && i < slots.length; i++) {
+            idle = pollIdle(slots[(preferred.index + i) % slots.length].idle);
+        }
+        return idle;
+    }
+
+    private static IdleChannel pollIdle(Deque<IdleChannel> idle) {
+        for (;;) {
+            IdleChannel ch = idle.pollLast();
+            if (ch == null || ch.claim()) {
+                return ch;
+            }
+            // Claimed by its idle timeout, which closes it.
+        }
+    }
+
+    private void connect(EventLoop loop, Promise<Channel> promise) {
+        Bootstrap bs = bootstrap.clone(loop);
+        bs.attr(POOL_KEY, this);
+        bs.connect().addListener((ChannelFutureListener) future -> notifyConnect(future, promise));
+    }
+
+    private void notifyConnect(ChannelFuture future, Promise<Channel> promise) {
+        Channel channel = null;
+        try {
+            if (future.isSuccess()) {
+                channel = future.channel();
+                handler.channelAcquired(channel);
+                if (!promise.trySuccess(channel)) {
+                    // Promise was completed in the meantime (like cancelled), just release the channel again
+                    release(channel);
+                }
+            } else {
+                promise.tryFailure(future.cause());
+            }
+        } catch (Throwable cause) {
+            closeAndFail(channel, cause, promise);
+        }
+    }
+
+    private void doHealthCheck(Channel channel, EventLoop loop, Promise<Channel> promise) {
+        try {
+            assert channel.eventLoop().inEventLoop();
+            Future<Boolean> f = healthCheck.isHealthy(channel);
+            if (f.isDone()) {
+                notifyHealthCheck(f, channel, loop, promise);
+            } else {
+                f.addListener(future -> notifyHealthCheck(f, channel, loop, promise));
+            }
+        } catch (Throwable cause) {
+            closeAndFail(channel, cause, promise);
+        }
+    }
+
+    private void notifyHealthCheck(Future<Boolean> future, Channel channel, EventLoop loop,
+                                   Promise<Channel> promise) {
+        try {
+            assert channel.eventLoop().inEventLoop();
+            if (future.isSuccess() && future.getNow()) {
+                handler.channelAcquired(channel);
+                if (!promise.trySuccess(channel)) {
+                    // Promise was completed in the meantime (like cancelled), just release the channel again
+                    release(channel);
+                }
+            } else {
+                closeChannel(channel);
+                acquireChannel(loop, promise);
+            }
+        } catch (Throwable cause) {
+            closeAndFail(channel, cause, promise);
+        }
+    }
+
+    @Override
+    public final Future<Void> release(Channel channel) {
+        requireNonNull(channel, "channel");
+        return release(channel, channel.eventLoop().newPromise());
+    }
+
+    @Override
+    public Future<Void> release(Channel channel, Promise<Void> promise) {
+        try {
+            requireNonNull(channel, "channel");
+            requireNonNull(promise, "promise");
+            EventLoop loop = channel.eventLoop();
+            if (loop.inEventLoop()) {
+                doReleaseChannel(channel, promise);
+            } else {
+                loop.execute(() -> doReleaseChannel(channel, promise));
+            }
+        } catch (Throwable cause) {
+            closeAndFail(channel, cause, promise);
+        }
+        return promise;
+    }
+
+    private void doReleaseChannel(Channel channel, Promise<Void> promise) {
+        try {
+            assert channel.eventLoop().inEventLoop();
+            // Remove the POOL_KEY attribute from the Channel and check if it was acquired from this pool, if not fail.
+            if (channel.attr(POOL_KEY).getAndSet(null) != this) {
+                closeAndFail(channel,
+                             // Better include a stacktrace here as this is an user error.
+                             new IllegalArgumentException(
+                                     "Channel " + channel + " was not acquired from this ChannelPool"),
+                             promise);
+            } else if (releaseHealthCheck) {
+                doHealthCheckOnRelease(channel, promise);
+            } else {
+                releaseAndOffer(channel, promise);
+            }
+        } catch (Throwable cause) {
+            closeAndFail(channel, cause, promise);
+        }
+    }
+
+    private void doHealthCheckOnRelease(Channel channel, Promise<Void> promise) throws Exception {
+        Future<Boolean> f = healthCheck.isHealthy(channel);
+        if (f.isDone()) {
+            releaseAndOfferIfHealthy(channel, promise, f);
+        } else {
+            f.addListener(future -> releaseAndOfferIfHealthy(channel, promise, f));
+        }
+    }
+
+    private void releaseAndOfferIfHealthy(Channel channel, Promise<Void> promise, Future<Boolean> future) {
+        try {
+            if (future.isSuccess() && future.getNow()) {
+                releaseAndOffer(channel, promise);
+            } else {
+                handler.channelReleased(channel);
+                closeChannel(channel);
+                promise.setSuccess(null);
+            }
+        } catch (Throwable cause) {
+            closeAndFail(channel, cause, promise);
+        }
+    }
+
+    private void releaseAndOffer(Channel channel, Promise<Void> promise) throws Exception {
+        handler.channelReleased(channel);
+        channel.attr(POOL_KEY).set(this);
+        LoopSlot slot = slotsByLoop.get(channel.eventLoop());
+        if (slot == null || closed) {
+            closeChannel(channel);
+        } else {
+            IdleChannel idle = new IdleChannel(slot.idle, channel);
+            slot.idle.offerLast(idle);
+            if (idleTimeoutNanos > 0) {
+                idle.timeoutFuture = channel.eventLoop().schedule(idle, idleTimeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            if (closed) {
+                // Closed concurrently, make sure the Channel does not stay in the pool.
+                closeIdleChannels(slot.idle);
+            }
+        }
+        promise.setSuccess(null);
+    }
+
+    private static void closeChannel(Channel channel) {
+        channel.attr(POOL_KEY).getAndSet(null);
+        channel.close();
+    }
+
+    private static void closeAndFail(Channel channel, Throwable cause, Promise<?> promise) {
+        if (channel != null) {
+            try {
+                closeChannel(channel);
+            } catch (Throwable t) {
+                promise.tryFailure(t);
+            }
+        }
+        promise.tryFailure(cause);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (LoopSlot slot: slots) {
+            closeIdleChannels(slot.idle);
+        }
+    }
+
+    private static void closeIdleChannels(Deque<IdleChannel> idle) {
+        for (;;) {
+            IdleChannel ch = pollIdle(idle);
+            if (ch == null) {
+                break;
+            }
+            closeChannel(ch.channel);
+        }
+    }
+
+    /**
+     * The idle {@link Channel}s of one {@link EventLoop}.
+     */
+    private static final class LoopSlot {
+        final EventLoop loop;
+        final int index;
+        final Deque<IdleChannel> idle = new ConcurrentLinkedDeque<>();
+
+        LoopSlot(EventLoop loop, int index) {
+            this.loop = loop;
+            this.index = index;
+        }
+    }
+
+    /**
+     * A {@link Channel} in the pool. Acquiring it races with its idle timeout, whoever claims it first owns it.
+     */
+    private static final class IdleChannel implements Runnable {
+        private static final AtomicIntegerFieldUpdater<IdleChannel> CLAIMED_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(IdleChannel.class, "claimed");
+
+        final Channel channel;
+        private final Deque<IdleChannel> idle;
+        volatile ScheduledFuture<?> timeoutFuture;
+        private volatile int claimed;
+
+        IdleChannel(Deque<IdleChannel> idle, Channel channel) {
+            this.idle = idle;
+            this.channel = channel;
+        }
+
+        boolean claim() {
+            if (!CLAIMED_UPDATER.compareAndSet(this, 0, 1)) {
+                return false;
+            }
+            ScheduledFuture<?> timeoutFuture = this.timeoutFuture;
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            // Idle timeout.
+            if (CLAIMED_UPDATER.compareAndSet(this, 0, 1)) {
+                idle.remove(this);
+                closeChannel(channel);
+            }
+        }
+    }
+}
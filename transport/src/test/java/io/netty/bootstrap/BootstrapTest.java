@@ -16,6 +16,7 @@
 
 package io.netty.bootstrap;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler.Sharable;
@@ -39,15 +40,20 @@ import org.junit.AfterClass;
 import org.junit.Test;
 
 import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -281,6 +287,116 @@ public class BootstrapTest {
         assertThat(connectFuture.channel(), is(not(nullValue())));
     }
 
+    @Test(timeout = 10000)
+    public void testHappyEyeballsSkipsFailedAddress() throws Exception {
+        SocketAddress serverAddress = bindServer();
+        final Bootstrap bootstrap = new Bootstrap()
+                .group(groupA)
+                .channel(LocalChannel.class)
+                .resolver(new MultiAddressResolverGroup(new LocalAddress("unbound"), serverAddress))
+                .handler(dummyHandler);
+
+        Channel channel = bootstrap.connectHappyEyeballs(new LocalAddress("happy")).sync().getNow();
+        try {
+            assertThat(channel.remoteAddress(), is(serverAddress));
+        } finally {
+            channel.close().sync();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testHappyEyeballsStaggersAttempts() throws Exception {
+        SocketAddress serverAddress = bindServer();
+        LocalAddress blackhole = new LocalAddress("blackhole");
+        BlackholeHandler handler = new BlackholeHandler(blackhole);
+        final Bootstrap bootstrap = new Bootstrap()
+                .group(groupA)
+                .channel(LocalChannel.class)
+                .resolver(new MultiAddressResolverGroup(blackhole, serverAddress))
+                .connectionAttemptDelay(50, TimeUnit.MILLISECONDS)
+                .handler(handler);
+
+        Channel channel = bootstrap.connectHappyEyeballs(new LocalAddress("happy")).sync().getNow();
+        try {
+            assertThat(channel.remoteAddress(), is(serverAddress));
+            // The attempt that never completes must be closed once the other one won.
+            Channel blackholed = handler.channels.take();
+            assertThat(blackholed, is(not(sameInstance(channel))));
+            blackholed.closeFuture().sync();
+        } finally {
+            channel.close().sync();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testHappyEyeballsRegistrationFailsSynchronously() throws Exception {
+        SocketAddress serverAddress = bindServer();
+        LocalAddress blackhole1 = new LocalAddress("blackhole1");
+        LocalAddress blackhole2 = new LocalAddress("blackhole2");
+        BlackholeHandler handler = new BlackholeHandler(blackhole1, blackhole2);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final long delayNanos = TimeUnit.MILLISECONDS.toNanos(200);
+        final Bootstrap bootstrap = new Bootstrap()
+                .group(groupA)
+                .channelFactory(eventLoop -> {
+                    if (failed.compareAndSet(false, true)) {
+                        throw new RuntimeException("newChannel crash");
+                    }
+                    return new LocalChannel(eventLoop);
+                })
+                .resolver(new MultiAddressResolverGroup(
+                        new LocalAddress("unbound"), blackhole1, blackhole2, serverAddress))
+                .connectionAttemptDelay(delayNanos, TimeUnit.NANOSECONDS)
+                .handler(handler);
+
+        long start = System.nanoTime();
+        Channel channel = bootstrap.connectHappyEyeballs(new LocalAddress("happy")).sync().getNow();
+        try {
+            assertThat(channel.remoteAddress(), is(serverAddress));
+            // Only one attempt may be started per connection attempt delay once the first attempt failed.
+            assertTrue(System.nanoTime() - start >= 2 * delayNanos);
+            assertThat(handler.channels.size(), is(2));
+        } finally {
+            channel.close().sync();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testHappyEyeballsAllAttemptsFail() throws Exception {
+        final Bootstrap bootstrap = new Bootstrap()
+                .group(groupA)
+                .channel(LocalChannel.class)
+                .resolver(new MultiAddressResolverGroup(new LocalAddress("unbound1"), new LocalAddress("unbound2")))
+                .handler(dummyHandler);
+
+        Future<Channel> future = bootstrap.connectHappyEyeballs(new LocalAddress("happy")).await();
+        assertThat(future.cause(), is(instanceOf(ConnectException.class)));
+    }
+
+    @Test
+    public void testInterleaveAddressFamilies() throws Exception {
+        SocketAddress v6a = new InetSocketAddress(InetAddress.getByName("::1"), 1);
+        SocketAddress v6b = new InetSocketAddress(InetAddress.getByName("::2"), 1);
+        SocketAddress v6c = new InetSocketAddress(InetAddress.getByName("::3"), 1);
+        SocketAddress v4a = new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 1);
+        SocketAddress v4b = new InetSocketAddress(InetAddress.getByName("127.0.0.2"), 1);
+
+        assertThat(HappyEyeballsConnector.interleaveAddressFamilies(Arrays.asList(v6a, v6b, v6c, v4a, v4b)),
+                is(Arrays.asList(v6a, v4a, v6b, v4b, v6c)));
+        assertThat(HappyEyeballsConnector.interleaveAddressFamilies(Arrays.asList(v4a, v4b, v6a)),
+                is(Arrays.asList(v4a, v6a, v4b)));
+        assertThat(HappyEyeballsConnector.interleaveAddressFamilies(Arrays.asList(v4a, v4b)),
+                is(Arrays.asList(v4a, v4b)));
+    }
+
+    private static SocketAddress bindServer() throws InterruptedException {
+        ServerBootstrap serverBootstrap = new ServerBootstrap();
+        serverBootstrap.group(groupB);
+        serverBootstrap.channel(LocalServerChannel.class);
+        serverBootstrap.childHandler(dummyHandler);
+        return serverBootstrap.bind(LocalAddress.ANY).sync().channel().localAddress();
+    }
+
     private static final class LateRegisterHandler implements ChannelOutboundHandler {
 
         private final CountDownLatch latch = new CountDownLatch(1);
@@ -352,4 +468,57 @@ public class BootstrapTest {
             };
         }
     }
+
+    /**
+     * Never completes connection attempts to the given address.
+     */
+    @Sharable
+    private static final class BlackholeHandler implements ChannelOutboundHandler {
+        final BlockingQueue<Channel> channels = new LinkedBlockingQueue<>();
+        private final List<SocketAddress> blackholes;
+
+        BlackholeHandler(SocketAddress... blackholes) {
+            this.blackholes = Arrays.asList(blackholes);
+        }
+
+        @Override
+        public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress, SocketAddress localAddress,
+                            ChannelPromise promise) {
+            if (blackholes.contains(remoteAddress)) {
+                channels.add(ctx.channel());
+            } else {
+                ctx.connect(remoteAddress, localAddress, promise);
+            }
+        }
+    }
+
+    private static final class MultiAddressResolverGroup extends AddressResolverGroup<SocketAddress> {
+
+        private final List<SocketAddress> addresses;
+
+        MultiAddressResolverGroup(SocketAddress... addresses) {
+            this.addresses = Arrays.asList(addresses);
+        }
+
+        @Override
+        protected AddressResolver<SocketAddress> newResolver(EventExecutor executor) {
+            return new AbstractAddressResolver<SocketAddress>(executor) {
+
+                @Override
+                protected boolean doIsResolved(SocketAddress address) {
+                    return false;
+                }
+
+                @Override
+                protected void doResolve(SocketAddress unresolvedAddress, Promise<SocketAddress> promise) {
+                    promise.setSuccess(addresses.get(0));
+                }
+
+                @Override
+                protected void doResolveAll(SocketAddress unresolvedAddress, Promise<List<SocketAddress>> promise) {
+                    executor().execute(() -> promise.setSuccess(addresses));
+                }
+            };
+        }
+    }
 }
@@ -119,6 +119,35 @@ public class ChannelOutboundBufferTest {
         buf.release();
     }
 
+    @Test
+    public void testNioBuffersMaxCountComposite() {
+        TestChannel channel = new TestChannel();
+
+        ChannelOutboundBuffer buffer = new ChannelOutboundBuffer(channel);
+
+        CompositeByteBuf comp = compositeBuffer(256);
+        for (int i = 0; i < 65; i++) {
+            comp.addComponent(true, directBuffer().writeByte(i));
+        }
+        buffer.addMessage(comp, comp.readableBytes(), channel.voidPromise());
+        buffer.addFlush();
+
+        ByteBuffer[] buffers = buffer.nioBuffers(16, Integer.MAX_VALUE);
+        assertEquals(16, buffer.nioBufferCount());
+        for (int i = 0; i < 16; i++) {
+            assertEquals(i, buffers[i].get(0));
+        }
+
+        // After a partial write the next call starts at the first unwritten component.
+        buffer.removeBytes(20);
+        buffers = buffer.nioBuffers(16, Integer.MAX_VALUE);
+        assertEquals(16, buffer.nioBufferCount());
+        for (int i = 0; i < 16; i++) {
+            assertEquals(20 + i, buffers[i].get(0));
+        }
+        release(buffer);
+    }
+
     private static void release(ChannelOutboundBuffer buffer) {
         for (;;) {
             if (!buffer.remove()) {
@@ -645,6 +645,62 @@ public class DefaultChannelPipelineTest {
         assertNull(pipeline.last());
     }
 
+    @Test
+    public void testRemoveFirstAndLastCallHandlerRemoved() throws Exception {
+        ChannelPipeline pipeline = newLocalChannel().pipeline();
+        CountDownLatch removed = new CountDownLatch(2);
+        ChannelHandler first = new ChannelHandler() {
+            @Override
+            public void handlerRemoved(ChannelHandlerContext ctx) {
+                removed.countDown();
+            }
+        };
+        ChannelHandler last = new ChannelHandler() {
+            @Override
+            public void handlerRemoved(ChannelHandlerContext ctx) {
+                removed.countDown();
+            }
+        };
+        pipeline.addLast(first, newHandler(), last);
+
+        assertSame(first, pipeline.removeFirst());
+        assertSame(last, pipeline.removeLast());
+        assertTrue(removed.await(5, TimeUnit.SECONDS));
+        verifyContextNumber(pipeline, 1);
+    }
+
+    @Test
+    public void testLookupInLargePipeline() {
+        ChannelPipeline pipeline = newLocalChannel().pipeline();
+        final int handlerNum = 32;
+        ChannelHandler[] handlers = newHandlers(handlerNum);
+        for (int i = 0; i < handlerNum; i++) {
+            pipeline.addLast(String.valueOf(i), handlers[i]);
+        }
+        class OtherHandler extends ChannelHandlerAdapter { }
+
+        for (int i = 0; i < handlerNum; i++) {
+            assertSame(handlers[i], pipeline.get(String.valueOf(i)));
+        }
+        assertSame(handlers[0], pipeline.get(TestHandler.class));
+        assertNull(pipeline.get(OtherHandler.class));
+        assertNull(pipeline.get("other"));
+
+        // Lookups must see mutations made after the previous lookups.
+        OtherHandler other = new OtherHandler();
+        pipeline.addAfter("10", "other", other);
+        assertSame(other, pipeline.get("other"));
+        assertSame(other, pipeline.get(OtherHandler.class));
+        pipeline.remove("0");
+        assertNull(pipeline.get("0"));
+        assertSame(handlers[1], pipeline.get(TestHandler.class));
+        pipeline.replace("other", "other2", newHandler());
+        assertNull(pipeline.get("other"));
+        assertNull(pipeline.get(OtherHandler.class));
+        assertNotNull(pipeline.get("other2"));
+        verifyContextNumber(pipeline, handlerNum);
+    }
+
     @Test(timeout = 5000)
     public void testChannelInitializerException() throws Exception {
         final IllegalStateException exception = new IllegalStateException();
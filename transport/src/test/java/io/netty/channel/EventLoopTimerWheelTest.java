@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.local.LocalHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventLoopTimerWheelTest {
+
+    private SingleThreadEventLoop loop;
+
+    @Before
+    public void setUp() {
+        loop = new SingleThreadEventLoop(new DefaultThreadFactory("timer-wheel"),
+                                         LocalHandler.newFactory().newHandler());
+    }
+
+    @After
+    public void tearDown() {
+        loop.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Test(timeout = 5000)
+    public void testTaskDoesNotRunBeforeDelay() throws Exception {
+        final long start = System.nanoTime();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long[] elapsed = new long[1];
+        ScheduledFuture<?> future = loop.scheduleApproximately(() -> {
+            elapsed[0] = System.nanoTime() - start;
+            latch.countDown();
+        }, 50, TimeUnit.MILLISECONDS);
+        latch.await();
+        future.sync();
+        assertTrue(elapsed[0] >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(0, (int) loop.submit(() -> loop.timerWheel().size()).get());
+    }
+
+    @Test(timeout = 5000)
+    public void testCancelInEventLoop() throws Exception {
+        final AtomicBoolean run = new AtomicBoolean();
+        int size = loop.submit(() -> {
+            ScheduledFuture<?> future = loop.scheduleApproximately(() -> run.set(true), 20, TimeUnit.MILLISECONDS);
+            assertEquals(1, loop.timerWheel().size());
+            assertTrue(future.cancel(false));
+            return loop.timerWheel().size();
+        }).get();
+        assertEquals(0, size);
+        Thread.sleep(100);
+        assertFalse(run.get());
+    }
+
+    @Test(timeout = 5000)
+    public void testCancelFromOtherThread() throws Exception {
+        final AtomicBoolean run = new AtomicBoolean();
+        ScheduledFuture<?> future = loop.scheduleApproximately(() -> run.set(true), 20, TimeUnit.MILLISECONDS);
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        Thread.sleep(100);
+        assertFalse(run.get());
+        assertEquals(0, (int) loop.submit(() -> loop.timerWheel().size()).get());
+    }
+
+    @Test(timeout = 5000)
+    public void testTimeoutsLongerThanOneRotation() throws Exception {
+        // 4 buckets of 5 ms, so the wheel rotates every 20 ms.
+        final EventLoopTimerWheel wheel = new EventLoopTimerWheel(loop, TimeUnit.MILLISECONDS.toNanos(5), 4);
+        final int[] delays = { 1, 7, 23, 45, 90 };
+        final List<Integer> expired = new CopyOnWriteArrayList<>();
+        final AtomicBoolean early = new AtomicBoolean();
+        final CountDownLatch latch = new CountDownLatch(delays.length);
+        loop.submit(() -> {
+            for (final int delay: delays) {
+                final long deadline = SingleThreadEventLoop.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+                wheel.add(new EventLoopTimerWheel.WheelTimeout(loop, () -> {
+                    if (SingleThreadEventLoop.nanoTime() < deadline) {
+                        early.set(true);
+                    }
+                    expired.add(delay);
+                    latch.countDown();
+                }, deadline));
+            }
+        }).sync();
+        latch.await();
+        assertFalse(early.get());
+        assertEquals(5, expired.size());
+        assertEquals(1, (int) expired.get(0));
+        assertEquals(90, (int) expired.get(4));
+        assertEquals(0, (int) loop.submit(wheel::size).get());
+    }
+
+    @Test(timeout = 5000)
+    public void testRescheduleFromTask() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(5);
+        loop.scheduleApproximately(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+                if (latch.getCount() > 0) {
+                    loop.scheduleApproximately(this, 10, TimeUnit.MILLISECONDS);
+                }
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        latch.await();
+    }
+
+    @Test(timeout = 5000)
+    public void testShutdownCancelsTimeouts() {
+        ScheduledFuture<?> future = loop.scheduleApproximately(() -> { }, 1, TimeUnit.HOURS);
+        loop.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        assertTrue(future.isCancelled());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalHandler;
+import io.netty.util.concurrent.Future;
+import org.junit.Test;
+
+import java.net.ConnectException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractChannelPoolMapTest {
+
+    @Test
+    public void testMap() throws Exception {
+        EventLoopGroup group = new MultithreadEventLoopGroup(LocalHandler.newFactory());
+        try {
+            final Bootstrap cb = new Bootstrap().group(group).channel(LocalChannel.class);
+            AbstractChannelPoolMap<LocalAddress, SimpleChannelPool> poolMap =
+                    new AbstractChannelPoolMap<LocalAddress, SimpleChannelPool>() {
+                @Override
+                protected SimpleChannelPool newPool(LocalAddress key) {
+                    return new SimpleChannelPool(cb.clone().remoteAddress(key), ch -> { });
+                }
+            };
+
+            LocalAddress address = new LocalAddress(getClass().getName());
+            assertFalse(poolMap.contains(address));
+            SimpleChannelPool pool = poolMap.get(address);
+            assertEquals(1, poolMap.size());
+            assertTrue(poolMap.contains(address));
+            assertSame(pool, poolMap.get(address));
+
+            // Nobody is listening on the address.
+            Future<?> future = pool.acquire().await();
+            assertTrue(future.cause() instanceof ConnectException);
+
+            assertTrue(poolMap.remove(address));
+            assertFalse(poolMap.remove(address));
+            assertEquals(0, poolMap.size());
+            assertTrue(poolMap.isEmpty());
+            // The removed pool was closed.
+            assertTrue(pool.acquire().await().cause() instanceof IllegalStateException);
+            assertNotSame(pool, poolMap.get(address));
+
+            poolMap.close();
+            assertTrue(poolMap.isEmpty());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+}
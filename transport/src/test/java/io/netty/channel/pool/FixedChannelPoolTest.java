@@ -0,0 +1,204 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandler;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalHandler;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.pool.FixedChannelPool.AcquireTimeoutAction;
+import io.netty.channel.pool.SimpleChannelPoolTest.CountingChannelPoolHandler;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FixedChannelPoolTest {
+
+    private static EventLoopGroup group;
+
+    private LocalAddress address;
+    private Channel server;
+    private Bootstrap bootstrap;
+    private CountingChannelPoolHandler handler;
+
+    @BeforeClass
+    public static void setupGroup() {
+        group = new MultithreadEventLoopGroup(2, LocalHandler.newFactory());
+    }
+
+    @AfterClass
+    public static void teardownGroup() {
+        group.shutdownGracefully();
+    }
+
+    @Before
+    public void setup() throws Exception {
+        address = new LocalAddress(getClass().getName());
+        server = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInboundHandler() { })
+                .bind(address).sync().channel();
+        bootstrap = new Bootstrap().group(group).channel(LocalChannel.class).remoteAddress(address);
+        handler = new CountingChannelPoolHandler();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        server.close().sync();
+    }
+
+    @Test(timeout = 10000)
+    public void testPendingAcquireCompletesOnRelease() throws Exception {
+        FixedChannelPool pool = new FixedChannelPool(bootstrap, handler, 1);
+        try {
+            Channel channel = pool.acquire().sync().getNow();
+            Future<Channel> future = pool.acquire();
+            assertFalse(future.await(100));
+            assertEquals(1, pool.acquiredChannelCount());
+            assertEquals(1, pool.pendingAcquireCount());
+
+            pool.release(channel).sync();
+            assertSame(channel, future.sync().getNow());
+            assertEquals(1, pool.acquiredChannelCount());
+            assertEquals(0, pool.pendingAcquireCount());
+
+            pool.release(channel).sync();
+            assertEquals(0, pool.acquiredChannelCount());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testAcquireTimeoutFail() throws Exception {
+        FixedChannelPool pool = new FixedChannelPool(bootstrap, handler, ChannelHealthChecker.ACTIVE,
+                                                     AcquireTimeoutAction.FAIL, 100, 1, Integer.MAX_VALUE);
+        try {
+            Channel channel = pool.acquire().sync().getNow();
+            Future<Channel> future = pool.acquire().await();
+            assertTrue(future.cause() instanceof TimeoutException);
+            assertEquals(0, pool.pendingAcquireCount());
+
+            pool.release(channel).sync();
+            assertEquals(0, pool.acquiredChannelCount());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testAcquireTimeoutNew() throws Exception {
+        FixedChannelPool pool = new FixedChannelPool(bootstrap, handler, ChannelHealthChecker.ACTIVE,
+                                                     AcquireTimeoutAction.NEW, 100, 1, Integer.MAX_VALUE);
+        try {
+            Channel channel = pool.acquire().sync().getNow();
+            Channel channel2 = pool.acquire().sync().getNow();
+            assertNotSame(channel, channel2);
+            assertEquals(2, pool.acquiredChannelCount());
+
+            pool.release(channel).sync();
+            pool.release(channel2).sync();
+            assertEquals(0, pool.acquiredChannelCount());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTooManyPendingAcquires() throws Exception {
+        FixedChannelPool pool = new FixedChannelPool(bootstrap, handler, 1, 1);
+        try {
+            Channel channel = pool.acquire().sync().getNow();
+            Future<Channel> pending = pool.acquire();
+            Future<Channel> future = pool.acquire().await();
+            assertTrue(future.cause() instanceof IllegalStateException);
+
+            pool.release(channel).sync();
+            pool.release(pending.sync().getNow()).sync();
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testReleaseChannelOfOtherPoolKeepsPermits() throws Exception {
+        FixedChannelPool pool = new FixedChannelPool(bootstrap, handler, 1);
+        SimpleChannelPool pool2 = new SimpleChannelPool(bootstrap, handler);
+        try {
+            Channel channel = pool.acquire().sync().getNow();
+            Channel channel2 = pool2.acquire().sync().getNow();
+            assertTrue(pool.release(channel2).await().cause() instanceof IllegalArgumentException);
+            assertEquals(1, pool.acquiredChannelCount());
+            pool.release(channel).sync();
+        } finally {
+            pool.close();
+            pool2.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseFailsPendingAcquires() throws Exception {
+        FixedChannelPool pool = new FixedChannelPool(bootstrap, handler, 1);
+        Channel channel = pool.acquire().sync().getNow();
+        Future<Channel> future = pool.acquire();
+        pool.close();
+        assertTrue(future.await().cause() instanceof IllegalStateException);
+        channel.close().sync();
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentAcquireNeverExceedsMaxConnections() throws Exception {
+        final int maxConnections = 4;
+        FixedChannelPool pool = new FixedChannelPool(bootstrap, handler, maxConnections);
+        try {
+            List<Future<Channel>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                Future<Channel> future = pool.acquire();
+                future.addListener(f -> {
+                    assertTrue(pool.acquiredChannelCount() <= maxConnections);
+                    pool.release(future.getNow());
+                });
+                futures.add(future);
+            }
+            for (Future<Channel> future: futures) {
+                future.sync();
+            }
+            assertTrue(handler.created.get() <= maxConnections);
+        } finally {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandler;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalHandler;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SimpleChannelPoolTest {
+
+    private static EventLoopGroup group;
+
+    private LocalAddress address;
+    private Channel server;
+    private Bootstrap bootstrap;
+    private CountingChannelPoolHandler handler;
+
+    @BeforeClass
+    public static void setupGroup() {
+        group = new MultithreadEventLoopGroup(2, LocalHandler.newFactory());
+    }
+
+    @AfterClass
+    public static void teardownGroup() {
+        group.shutdownGracefully();
+    }
+
+    @Before
+    public void setup() throws Exception {
+        address = new LocalAddress(getClass().getName());
+        server = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInboundHandler() { })
+                .bind(address).sync().channel();
+        bootstrap = new Bootstrap().group(group).channel(LocalChannel.class).remoteAddress(address);
+        handler = new CountingChannelPoolHandler();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        server.close().sync();
+    }
+
+    @Test
+    public void testAcquireReusesReleasedChannel() throws Exception {
+        SimpleChannelPool pool = new SimpleChannelPool(bootstrap, handler);
+        try {
+            Channel channel = pool.acquire().sync().getNow();
+            pool.release(channel).sync();
+            Channel channel2 = pool.acquire().sync().getNow();
+            assertSame(channel, channel2);
+            pool.release(channel2).sync();
+
+            assertEquals(1, handler.created.get());
+            assertEquals(2, handler.acquired.get());
+            assertEquals(2, handler.released.get());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testAcquirePrefersChannelOfCallerEventLoop() throws Exception {
+        SimpleChannelPool pool = new SimpleChannelPool(bootstrap, handler);
+        try {
+            EventLoop loop1 = group.next();
+            EventLoop loop2 = group.next();
+            assertNotSame(loop1, loop2);
+
+            // Channels acquired from an EventLoop of the group are registered on it.
+            Channel channel1 = acquireOn(loop1, pool);
+            Channel channel2 = acquireOn(loop2, pool);
+            assertSame(loop1, channel1.eventLoop());
+            assertSame(loop2, channel2.eventLoop());
+            pool.release(channel1).sync();
+            pool.release(channel2).sync();
+
+            // Released Channels are handed back to callers on the same EventLoop.
+            Channel channel3 = acquireOn(loop2, pool);
+            Channel channel4 = acquireOn(loop1, pool);
+            assertSame(channel2, channel3);
+            assertSame(channel1, channel4);
+            pool.release(channel4).sync();
+
+            // Without an idle Channel on its own EventLoop, the caller takes one of another EventLoop.
+            Channel channel5 = acquireOn(loop2, pool);
+            assertSame(channel1, channel5);
+            pool.release(channel3).sync();
+            pool.release(channel5).sync();
+            assertEquals(2, handler.created.get());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testUnhealthyChannelIsReplaced() throws Exception {
+        SimpleChannelPool pool = new SimpleChannelPool(bootstrap, handler);
+        try {
+            Channel channel = pool.acquire().sync().getNow();
+            pool.release(channel).sync();
+            channel.close().sync();
+
+            Channel channel2 = pool.acquire().sync().getNow();
+            assertNotSame(channel, channel2);
+            assertTrue(channel2.isActive());
+            pool.release(channel2).sync();
+            assertEquals(2, handler.created.get());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testUnhealthyChannelIsNotOfferedOnRelease() throws Exception {
+        SimpleChannelPool pool = new SimpleChannelPool(bootstrap, handler);
+        try {
+            Channel channel = pool.acquire().sync().getNow();
+            channel.close().sync();
+            pool.release(channel).sync();
+            assertEquals(1, handler.released.get());
+
+            Channel channel2 = pool.acquire().sync().getNow();
+            assertNotSame(channel, channel2);
+            pool.release(channel2).sync();
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleChannelIsClosed() throws Exception {
+        SimpleChannelPool pool = new SimpleChannelPool(bootstrap, handler, ChannelHealthChecker.ACTIVE, true, 100);
+        try {
+            Channel channel = pool.acquire().sync().getNow();
+            pool.release(channel).sync();
+            channel.closeFuture().sync();
+
+            Channel channel2 = pool.acquire().sync().getNow();
+            assertNotSame(channel, channel2);
+            pool.release(channel2).sync();
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testReleaseChannelOfOtherPoolFails() throws Exception {
+        SimpleChannelPool pool = new SimpleChannelPool(bootstrap, handler);
+        SimpleChannelPool pool2 = new SimpleChannelPool(bootstrap, handler);
+        try {
+            Channel channel = pool.acquire().sync().getNow();
+            Future<Void> future = pool2.release(channel).await();
+            assertTrue(future.cause() instanceof IllegalArgumentException);
+            channel.closeFuture().sync();
+        } finally {
+            pool.close();
+            pool2.close();
+        }
+    }
+
+    @Test
+    public void testCloseClosesIdleChannels() throws Exception {
+        SimpleChannelPool pool = new SimpleChannelPool(bootstrap, handler);
+        Channel channel = pool.acquire().sync().getNow();
+        pool.release(channel).sync();
+        pool.close();
+        channel.closeFuture().sync();
+
+        Future<Channel> future = pool.acquire().await();
+        assertFalse(future.isSuccess());
+        assertTrue(future.cause() instanceof IllegalStateException);
+    }
+
+    private static Channel acquireOn(EventLoop loop, ChannelPool pool) throws Exception {
+        return loop.submit((Callable<Future<Channel>>) pool::acquire).sync().getNow().sync().getNow();
+    }
+
+    static final class CountingChannelPoolHandler implements ChannelPoolHandler {
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger acquired = new AtomicInteger();
+        final AtomicInteger released = new AtomicInteger();
+
+        @Override
+        public void channelCreated(Channel ch) {
+            created.incrementAndGet();
+        }
+
+        @Override
+        public void channelAcquired(Channel ch) {
+            acquired.incrementAndGet();
+        }
+
+        @Override
+        public void channelReleased(Channel ch) {
+            released.incrementAndGet();
+        }
+    }
+}